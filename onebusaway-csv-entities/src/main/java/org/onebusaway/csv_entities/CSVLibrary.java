@@ -21,6 +21,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -37,9 +38,18 @@ public class CSVLibrary {
   private final DelimitedTextParser _parser = new DelimitedTextParser(',');
 
   public static String escapeValue(String value) {
-    if (value.indexOf(',') != -1 || value.indexOf('"') != -1)
-      value = "\"" + value.replaceAll("\"", "\"\"") + "\"";
-    return value;
+    if (value.indexOf(',') == -1 && value.indexOf('"') == -1)
+      return value;
+    StringBuilder b = new StringBuilder(value.length() + 8);
+    b.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"')
+        b.append('"');
+      b.append(c);
+    }
+    b.append('"');
+    return b.toString();
   }
 
   public static String getArrayAsCSV(double[] args) {
@@ -130,4 +140,20 @@ public class CSVLibrary {
   public final List<String> parse(String line) {
     return _parser.parse(line);
   }
+
+  /**
+   * @see DelimitedTextParser#findRecordEnd(ByteBuffer, int, int)
+   */
+  public final int findRecordEnd(ByteBuffer bytes, int from, int limit) {
+    return _parser.findRecordEnd(bytes, from, limit);
+  }
+
+  public final void parse(char[] line, int offset, int length, CsvRowCursor row) {
+    _parser.parse(line, offset, length, row);
+  }
+
+  public final boolean parse(ByteBuffer bytes, int offset, int length,
+      CsvRowCursor row) {
+    return _parser.parse(bytes, offset, length, row);
+  }
 }
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Iterates over the records in a byte range of a buffer of UTF-8 encoded CSV,
+ * tokenizing each non-empty record directly from its bytes into a reusable
+ * {@link CsvRowCursor}. Records are split with
+ * {@link CsvTokenizerStrategy#findRecordEnd(ByteBuffer, int, int)}, on line
+ * terminators as the line-based read modes do.
+ *
+ * Instances are not thread-safe, but any number of instances may read
+ * different ranges of the same buffer concurrently.
+ */
+final class CsvBufferRecordReader {
+
+  private final ByteBuffer _buffer;
+
+  private final CsvTokenizerStrategy _tokenizer;
+
+  private final int _limit;
+
+  private int _position;
+
+  private final CsvRowCursor _row = new CsvRowCursor();
+
+  private int _lineCount = 0;
+
+  private int _line = -1;
+
+  private boolean _inQuotes = false;
+
+  /**
+   * @param buffer the buffer, read using absolute indices
+   * @param tokenizer the tokenizer used to split and parse records
+   * @param from index of the first byte of the first record to read
+   * @param limit index one past the last byte of the range
+   */
+  public CsvBufferRecordReader(ByteBuffer buffer,
+      CsvTokenizerStrategy tokenizer, int from, int limit) {
+    _buffer = buffer;
+    _tokenizer = tokenizer;
+    _position = from;
+    _limit = limit;
+  }
+
+  /**
+   * @return the index of a buffer's first byte of content, skipping a leading
+   *         UTF-8 byte order mark
+   */
+  public static int skipByteOrderMark(ByteBuffer buffer) {
+    int position = buffer.position();
+    if (buffer.limit() - position >= 3
+        && (buffer.get(position) & 0xFF) == 0xEF
+        && (buffer.get(position + 1) & 0xFF) == 0xBB
+        && (buffer.get(position + 2) & 0xFF) == 0xBF)
+      position += 3;
+    return position;
+  }
+
+  /**
+   * @return the index of the first record starting at or after the specified
+   *         index, which is the index itself if it is the start of the range
+   *         or follows a line terminator, or limit if there is none
+   */
+  public static int findRecordStart(ByteBuffer buffer, int from, int index,
+      int limit) {
+    if (index <= from)
+      return from;
+    int i = index - 1;
+    while (i < limit && buffer.get(i) != '\n' && buffer.get(i) != '\r')
+      i++;
+    return skipLineTerminator(buffer, i, limit);
+  }
+
+  /**
+   * Advances to the next non-empty record in the range.
+   *
+   * @return true if a record was read into {@link #getRow()}
+   */
+  public boolean next() {
+    while (_position < _limit) {
+      int start = _position;
+      int end = _tokenizer.findRecordEnd(_buffer, start, _limit);
+      _position = skipLineTerminator(_buffer, end, _limit);
+      _line = _lineCount++;
+      int length = end - start;
+      if (length == 0)
+        continue;
+      // TODO: This is a hack of sorts to deal with a malformed data file...
+      if (length == 1 && _buffer.get(start) == 26)
+        continue;
+      _inQuotes = _tokenizer.parse(_buffer, start, length, _row);
+      return true;
+    }
+    return false;
+  }
+
+  public CsvRowCursor getRow() {
+    return _row;
+  }
+
+  /**
+   * @return the index of the line of the current record, counting the lines
+   *         of the range from zero, including empty and skipped ones
+   */
+  public int getLine() {
+    return _line;
+  }
+
+  /**
+   * @return the number of lines of the range read so far
+   */
+  public int getLineCount() {
+    return _lineCount;
+  }
+
+  /**
+   * @return true if the current record ends inside a quoted value, which
+   *         usually means that the value continues on the next line
+   */
+  public boolean isInQuotes() {
+    return _inQuotes;
+  }
+
+  /**
+   * @return the index of the first byte following the current record
+   */
+  public int getPosition() {
+    return _position;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static int skipLineTerminator(ByteBuffer buffer, int index, int limit) {
+    if (index < limit) {
+      if (buffer.get(index) == '\r' && index + 1 < limit
+          && buffer.get(index + 1) == '\n')
+        return index + 2;
+      return index + 1;
+    }
+    return index;
+  }
+}
@@ -21,14 +21,25 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.ZipFile;
 
 import org.onebusaway.csv_entities.exceptions.CsvEntityIOException;
+import org.onebusaway.csv_entities.exceptions.CsvException;
+import org.onebusaway.csv_entities.exceptions.FieldCountMismatchException;
 import org.onebusaway.csv_entities.exceptions.MissingRequiredEntityException;
 import org.onebusaway.csv_entities.schema.DefaultEntitySchemaFactory;
 import org.onebusaway.csv_entities.schema.EntitySchema;
@@ -39,6 +50,8 @@ public class CsvEntityReader {
   public static final String KEY_CONTEXT = CsvEntityReader.class.getName()
       + ".context";
 
+  private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
   private EntitySchemaFactory _entitySchemaFactory = new DefaultEntitySchemaFactory();
 
   private EntityHandlerImpl _handler = new EntityHandlerImpl();
@@ -53,9 +66,14 @@ public class CsvEntityReader {
 
   private boolean _trimValues = false;
 
-  private boolean _internStrings = false;
 
-  private Map<String, String> _stringTable = new HashMap<String, String>();
+  private boolean _streamingTokenizer = false;
+
+  private int _chunkParallelism = 1;
+
+  private int _chunkSize = DEFAULT_CHUNK_SIZE;
+
+  private CsvStringPool _stringPool = null;
 
   /**
    * @return the {@link EntitySchemaFactory} that will be used for introspection
@@ -100,8 +118,84 @@ public class CsvEntityReader {
     return _context;
   }
 
+  /**
+   * @param internStrings when true, the values of every column are
+   *          deduplicated with a {@link CsvStringPool}, which stops pooling
+   *          columns whose values turn out to be mostly unique. When false,
+   *          values are not deduplicated.
+   */
   public void setInternStrings(boolean internStrings) {
-    _internStrings = internStrings;
+    _stringPool = internStrings ? new CsvStringPool() : null;
+  }
+
+  public CsvStringPool getStringPool() {
+    return _stringPool;
+  }
+
+  /**
+   * @param stringPool the pool used to deduplicate the values of selected
+   *          columns, or null to disable deduplication
+   */
+  public void setStringPool(CsvStringPool stringPool) {
+    _stringPool = stringPool;
+  }
+
+  /**
+   * When enabled, and the tokenizer strategy is a {@link CsvTokenizerStrategy},
+   * lines are scanned directly out of a reusable char buffer and tokenized into
+   * a reusable {@link CsvRowCursor} instead of allocating a line string, a
+   * builder per token and intermediate token lists. Quoting semantics are
+   * identical to the default mode. Each field is still copied into a string
+   * for the entity's field mappings, which bind from a list of values.
+   * 
+   * When the input source is a {@link RandomAccessCsvInputSource}, records are
+   * instead tokenized straight from the resource's bytes, only decoding fields
+   * that are not plain ASCII. Records are split on line terminators, as in
+   * the default mode.
+   * 
+   * @param streamingTokenizer
+   */
+  public void setStreamingTokenizer(boolean streamingTokenizer) {
+    _streamingTokenizer = streamingTokenizer;
+  }
+
+  /**
+   * When greater than one, and the tokenizer strategy is a
+   * {@link CsvTokenizerStrategy}, a file larger than the chunk size that the
+   * input source can expose as a buffer (see
+   * {@link RandomAccessCsvInputSource}) is split into chunks of whole records,
+   * which are tokenized and bound to entities by this many worker threads.
+   * Each worker finds the record boundaries of its own chunk. As each chunk
+   * and all chunks before it have been parsed, its entities are passed to
+   * the entity handlers on the calling thread, in their original order, while
+   * the chunks that follow are still being parsed. At most twice this many
+   * chunks are parsed or waiting to be handled at a time.
+   * 
+   * Handlers may therefore run while field mappings of the same file are
+   * resolving references, so they must not modify anything those mappings
+   * read, such as the entities of other classes the records refer to.
+   * 
+   * Records are split on line terminators, as in the other read modes, and
+   * line numbers count every line of the file. Since a chunk may start on any
+   * line, a record ending inside a quoted value, which usually means the value
+   * continues on the next line, fails the read instead of being split.
+   * 
+   * @param chunkParallelism the number of worker threads used per file
+   */
+  public void setChunkParallelism(int chunkParallelism) {
+    _chunkParallelism = chunkParallelism;
+  }
+
+  public int getChunkParallelism() {
+    return _chunkParallelism;
+  }
+
+  /**
+   * @param chunkSize the approximate size in bytes of the chunks a file is
+   *          split into when reading with {@link #setChunkParallelism(int)}
+   */
+  public void setChunkSize(int chunkSize) {
+    _chunkSize = chunkSize;
   }
 
   public void readEntities(Class<?> entityClass) throws IOException {
@@ -110,11 +204,30 @@ public class CsvEntityReader {
 
   public void readEntities(Class<?> entityClass, CsvInputSource source)
       throws IOException {
+    if (readEntitiesFromBuffer(entityClass, source, _handler))
+      return;
     InputStream is = openInputStreamForEntityClass(source, entityClass);
     if (is != null)
       readEntities(entityClass, is);
   }
 
+  /**
+   * Reads entities from the specified source, passing them to the specified
+   * handler instead of the handlers registered with
+   * {@link #addEntityHandler(EntityHandler)}. Reads of different entity classes
+   * may run concurrently, provided that the reader is not otherwise modified
+   * and anything looked up during field mapping is not modified in the
+   * meantime.
+   */
+  public void readEntities(Class<?> entityClass, CsvInputSource source,
+      EntityHandler handler) throws IOException {
+    if (readEntitiesFromBuffer(entityClass, source, handler))
+      return;
+    InputStream is = openInputStreamForEntityClass(source, entityClass);
+    if (is != null)
+      readEntities(entityClass, new InputStreamReader(is, "UTF-8"), handler);
+  }
+
   public void readEntities(Class<?> entityClass, InputStream is)
       throws IOException, CsvEntityIOException {
     readEntities(entityClass, new InputStreamReader(is, "UTF-8"));
@@ -122,12 +235,25 @@ public class CsvEntityReader {
 
   public void readEntities(Class<?> entityClass, Reader reader)
       throws IOException, CsvEntityIOException {
+    readEntities(entityClass, reader, _handler);
+  }
+
+  protected void readEntities(Class<?> entityClass, Reader reader,
+      EntityHandler handler) throws IOException, CsvEntityIOException {
 
     EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
 
     IndividualCsvEntityReader entityLoader = createIndividualCsvEntityReader(
-        _context, schema, _handler);
+        _context, schema, handler);
     entityLoader.setTrimValues(_trimValues);
+    entityLoader.setStringPool(_stringPool);
+
+    if (_streamingTokenizer
+        && _tokenizerStrategy instanceof CsvTokenizerStrategy) {
+      readEntitiesStreaming(entityClass, schema, entityLoader,
+          (CsvTokenizerStrategy) _tokenizerStrategy, reader);
+      return;
+    }
 
     BufferedReader lineReader = new BufferedReader(reader);
 
@@ -152,8 +278,6 @@ public class CsvEntityReader {
         if (line.length() == 1 && line.charAt(0) == 26)
           continue;
         List<String> values = _tokenizerStrategy.parse(line);
-        if (_internStrings)
-          internStrings(values);
         entityLoader.handleLine(values);
         lineNumber++;
       }
@@ -169,6 +293,230 @@ public class CsvEntityReader {
     }
   }
 
+  private void readEntitiesStreaming(Class<?> entityClass, EntitySchema schema,
+      IndividualCsvEntityReader entityLoader, CsvTokenizerStrategy tokenizer,
+      Reader reader) throws IOException, CsvEntityIOException {
+
+    CsvLineReader lineReader = new CsvLineReader(reader);
+    CsvRowCursor row = new CsvRowCursor();
+    List<String> values = new ArrayList<String>();
+    int lineNumber = 1;
+
+    try {
+      while (lineReader.next()) {
+        int length = lineReader.getLineLength();
+        if (length == 0)
+          continue;
+        char[] buffer = lineReader.getBuffer();
+        int offset = lineReader.getLineOffset();
+        // TODO: This is a hack of sorts to deal with a malformed data file...
+        if (length == 1 && buffer[offset] == 26)
+          continue;
+        tokenizer.parse(buffer, offset, length, row);
+        row.toList(values);
+        entityLoader.handleLine(values);
+        lineNumber++;
+      }
+    } catch (Exception ex) {
+      throw new CsvEntityIOException(entityClass, schema.getFilename(),
+          lineNumber, ex);
+    } finally {
+      try {
+        lineReader.close();
+      } catch (IOException ex) {
+
+      }
+    }
+  }
+
+  /**
+   * @return true if the specified entity class may be read in chunks by
+   *         concurrent workers, as configured with
+   *         {@link #setChunkParallelism(int)}
+   */
+  protected boolean canReadInChunks(Class<?> entityClass) {
+    return _chunkParallelism > 1
+        && _tokenizerStrategy instanceof CsvTokenizerStrategy;
+  }
+
+  /**
+   * @return true if the specified entity class is read from a CSV resource
+   *         whose raw bytes may be tokenized directly, when the input source is
+   *         a {@link RandomAccessCsvInputSource}
+   */
+  protected boolean canReadFromBuffer(Class<?> entityClass) {
+    return true;
+  }
+
+  /**
+   * @return true if the entities were read from the resource's buffer, false
+   *         if the resource should be read as a character stream instead
+   */
+  private boolean readEntitiesFromBuffer(Class<?> entityClass,
+      CsvInputSource source, EntityHandler handler) throws IOException {
+
+    if (!(source instanceof RandomAccessCsvInputSource)
+        || !(_tokenizerStrategy instanceof CsvTokenizerStrategy)
+        || !canReadFromBuffer(entityClass))
+      return false;
+
+    boolean chunked = canReadInChunks(entityClass);
+    if (!chunked && !_streamingTokenizer)
+      return false;
+
+    EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
+    String name = schema.getFilename();
+    if (!source.hasResource(name))
+      return false;
+
+    ByteBuffer buffer = ((RandomAccessCsvInputSource) source).getResourceBuffer(name);
+    if (buffer == null)
+      return false;
+
+    CsvTokenizerStrategy tokenizer = (CsvTokenizerStrategy) _tokenizerStrategy;
+    if (chunked && buffer.remaining() > _chunkSize)
+      readEntitiesInChunks(entityClass, schema, tokenizer, buffer, handler);
+    else if (_streamingTokenizer)
+      readEntitiesFromBuffer(entityClass, schema, tokenizer, buffer, handler);
+    else
+      return false;
+    return true;
+  }
+
+  private void readEntitiesFromBuffer(Class<?> entityClass,
+      EntitySchema schema, CsvTokenizerStrategy tokenizer, ByteBuffer buffer,
+      EntityHandler handler) throws CsvEntityIOException {
+
+    IndividualCsvEntityReader entityLoader = createIndividualCsvEntityReader(
+        _context, schema, handler);
+    entityLoader.setTrimValues(_trimValues);
+    entityLoader.setStringPool(_stringPool);
+
+    CsvBufferRecordReader reader = new CsvBufferRecordReader(buffer,
+        tokenizer, CsvBufferRecordReader.skipByteOrderMark(buffer),
+        buffer.limit());
+    List<String> values = new ArrayList<String>();
+    int lineNumber = 1;
+
+    try {
+      while (reader.next()) {
+        reader.getRow().toList(values);
+        entityLoader.handleLine(values);
+        lineNumber++;
+      }
+    } catch (Exception ex) {
+      throw new CsvEntityIOException(entityClass, schema.getFilename(),
+          lineNumber, ex);
+    }
+  }
+
+  private void readEntitiesInChunks(Class<?> entityClass, EntitySchema schema,
+      CsvTokenizerStrategy tokenizer, ByteBuffer buffer, EntityHandler handler)
+      throws IOException {
+
+    String name = schema.getFilename();
+    int position = CsvBufferRecordReader.skipByteOrderMark(buffer);
+    int limit = buffer.limit();
+
+    /**
+     * Without a fixed field order, the first record is the header, which each
+     * chunk needs in order to bind its records
+     */
+    List<String> header = null;
+    int lineNumber = 1;
+    if (schema.getFieldsInOrder().isEmpty()) {
+      CsvBufferRecordReader headerReader = new CsvBufferRecordReader(buffer,
+          tokenizer, position, limit);
+      if (!headerReader.next())
+        return;
+      header = headerReader.getRow().toList();
+      position = headerReader.getPosition();
+      lineNumber += headerReader.getLineCount();
+    }
+
+    int chunkCount = (int) ((limit - position + (long) _chunkSize - 1) / _chunkSize);
+
+    ExecutorService executor = Executors.newFixedThreadPool(_chunkParallelism,
+        new ThreadFactory() {
+          private int _index = 0;
+
+          @Override
+          public synchronized Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "csv-reader-" + (_index++));
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+
+    try {
+      Deque<Future<ChunkTask>> pending = new ArrayDeque<Future<ChunkTask>>();
+      int maxPending = 2 * _chunkParallelism;
+      int submitted = 0;
+
+      /**
+       * Keep the workers busy with the chunks that follow while the oldest one
+       * is waited for and handled
+       */
+      while (submitted < chunkCount || !pending.isEmpty()) {
+        while (submitted < chunkCount && pending.size() < maxPending) {
+          pending.add(executor.submit(new ChunkTask(schema, tokenizer, buffer,
+              header, position, submitted, limit)));
+          submitted++;
+        }
+
+        ChunkTask chunk = getResult(pending.removeFirst());
+        List<Object> entities = chunk._entities.getValues();
+        for (int i = 0; i < entities.size(); i++) {
+          try {
+            handler.handleEntity(entities.get(i));
+          } catch (Exception ex) {
+            throw new CsvEntityIOException(entityClass, name, lineNumber
+                + chunk._lines[i], ex);
+          }
+        }
+        if (chunk._failure != null) {
+          int failureLineNumber = lineNumber + chunk._failureLine;
+          throw new CsvEntityIOException(entityClass, name, failureLineNumber,
+              withLineNumber(chunk._failure, failureLineNumber));
+        }
+        lineNumber += chunk._lineCount;
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @return the specified exception of a chunk, with its line number, which the
+   *         chunk could only count from its own start, replaced
+   */
+  private static Exception withLineNumber(Exception ex, int lineNumber) {
+    if (ex instanceof FieldCountMismatchException) {
+      FieldCountMismatchException mismatch = (FieldCountMismatchException) ex;
+      return new FieldCountMismatchException(mismatch.getEntityType(),
+          lineNumber, mismatch.getExpectedFieldCount(),
+          mismatch.getActualFieldCount());
+    }
+    return ex;
+  }
+
+  private static ChunkTask getResult(Future<ChunkTask> result)
+      throws IOException {
+    try {
+      return result.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while reading entities");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
+
   protected IndividualCsvEntityReader createIndividualCsvEntityReader(
       CsvEntityContext context, EntitySchema schema, EntityHandler handler) {
     return new IndividualCsvEntityReader(context, schema, handler);
@@ -206,15 +554,99 @@ public class CsvEntityReader {
       _source.close();
   }
 
-  private void internStrings(List<String> values) {
-    for (int i = 0; i < values.size(); i++) {
-      String value = values.get(i);
-      String existing = _stringTable.get(value);
-      if (existing != null) {
-        values.set(i, existing);
-      } else {
-        _stringTable.put(value, value);
+  /**
+   * Tokenizes and binds the records of one chunk of a file, buffering the
+   * resulting entities. The chunk holds the records starting within its share
+   * of the chunk size of the file's bytes. Parsing stops at the first failing
+   * record, with the entities of the preceding records still available. Lines
+   * are counted from the start of the chunk.
+   */
+  private class ChunkTask implements Callable<ChunkTask> {
+
+    private final EntitySchema _schema;
+
+    private final CsvTokenizerStrategy _tokenizer;
+
+    private final ByteBuffer _buffer;
+
+    private final List<String> _header;
+
+    private final int _from;
+
+    private final int _index;
+
+    private final int _limit;
+
+    private final ListEntityHandler<Object> _entities = new ListEntityHandler<Object>();
+
+    /**
+     * The line of each entity
+     */
+    private int[] _lines = new int[64];
+
+    private int _lineCount = 0;
+
+    private Exception _failure = null;
+
+    private int _failureLine = 0;
+
+    /**
+     * @param from index of the first record of the first chunk
+     * @param index the index of this chunk
+     * @param limit index one past the last byte of the last chunk
+     */
+    public ChunkTask(EntitySchema schema, CsvTokenizerStrategy tokenizer,
+        ByteBuffer buffer, List<String> header, int from, int index, int limit) {
+      _schema = schema;
+      _tokenizer = tokenizer;
+      _buffer = buffer;
+      _header = header;
+      _from = from;
+      _index = index;
+      _limit = limit;
+    }
+
+    @Override
+    public ChunkTask call() {
+      IndividualCsvEntityReader entityLoader = createIndividualCsvEntityReader(
+          _context, _schema, _entities);
+      entityLoader.setTrimValues(_trimValues);
+      entityLoader.setStringPool(_stringPool);
+      CsvBufferRecordReader reader = new CsvBufferRecordReader(_buffer,
+          _tokenizer, getRecordStart(_index), getRecordStart(_index + 1));
+      List<String> values = new ArrayList<String>();
+      List<Object> entities = _entities.getValues();
+      try {
+        if (_header != null)
+          entityLoader.handleLine(new ArrayList<String>(_header));
+        while (reader.next()) {
+          if (reader.isInQuotes())
+            throw new CsvException(
+                "quoted value not closed by the end of its line, which is not supported when reading in chunks");
+          int count = entities.size();
+          reader.getRow().toList(values);
+          entityLoader.handleLine(values);
+          if (entities.size() > count)
+            addLine(count, reader.getLine());
+        }
+      } catch (Exception ex) {
+        _failure = ex;
+        _failureLine = reader.getLine();
       }
+      _lineCount = reader.getLineCount();
+      return this;
+    }
+
+    private void addLine(int index, int line) {
+      if (index == _lines.length)
+        _lines = Arrays.copyOf(_lines, index * 2);
+      _lines[index] = line;
+    }
+
+    private int getRecordStart(int chunk) {
+      long offset = _from + (long) chunk * _chunkSize;
+      return CsvBufferRecordReader.findRecordStart(_buffer, _from,
+          (int) Math.min(offset, _limit), _limit);
     }
   }
 
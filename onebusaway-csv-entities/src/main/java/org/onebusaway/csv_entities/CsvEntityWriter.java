@@ -18,6 +18,8 @@ package org.onebusaway.csv_entities;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
 
 import org.onebusaway.csv_entities.schema.DefaultEntitySchemaFactory;
 import org.onebusaway.csv_entities.schema.EntitySchemaFactory;
@@ -33,6 +35,12 @@ public class CsvEntityWriter implements EntityHandler {
 
   private OutputStrategy _outputStrategy = null;
 
+  private int _outputParallelism = 1;
+
+  private int _compressionMethod = ZipEntry.DEFLATED;
+
+  private int _compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
   public EntitySchemaFactory getEntitySchemaFactory() {
     return _entitySchemaFactory;
   }
@@ -41,9 +49,75 @@ public class CsvEntityWriter implements EntityHandler {
     _entitySchemaFactory = entitySchemaFactory;
   }
 
+  /**
+   * Enables parallel output to zip files when greater than one: each zip entry
+   * is serialized and compressed on its own worker thread, and the archive is
+   * assembled when the writer is closed. Entities must not be modified after
+   * they have been handed to the writer. Must be set before
+   * {@link #setOutputLocation(File)}.
+   *
+   * @param outputParallelism the maximum number of entries to write
+   *          concurrently
+   */
+  public void setOutputParallelism(int outputParallelism) {
+    _outputParallelism = outputParallelism;
+  }
+
+  public int getOutputParallelism() {
+    return _outputParallelism;
+  }
+
+  /**
+   * Sets the compression method of zip entries. {@link ZipEntry#STORED}
+   * entries are written without compression, which is fastest when the output
+   * is only consumed locally, and always uses the parallel zip output. Must be
+   * set before {@link #setOutputLocation(File)}.
+   *
+   * @param compressionMethod {@link ZipEntry#DEFLATED} (the default) or
+   *          {@link ZipEntry#STORED}
+   */
+  public void setCompressionMethod(int compressionMethod) {
+    if (compressionMethod != ZipEntry.DEFLATED
+        && compressionMethod != ZipEntry.STORED)
+      throw new IllegalArgumentException("invalid compression method: "
+          + compressionMethod);
+    _compressionMethod = compressionMethod;
+  }
+
+  public int getCompressionMethod() {
+    return _compressionMethod;
+  }
+
+  /**
+   * Sets the {@link Deflater} compression level of deflated zip entries. Must
+   * be set before {@link #setOutputLocation(File)}.
+   *
+   * @param compressionLevel from {@link Deflater#BEST_SPEED} to
+   *          {@link Deflater#BEST_COMPRESSION}, or
+   *          {@link Deflater#DEFAULT_COMPRESSION}
+   */
+  public void setCompressionLevel(int compressionLevel) {
+    if ((compressionLevel < Deflater.NO_COMPRESSION
+        || compressionLevel > Deflater.BEST_COMPRESSION)
+        && compressionLevel != Deflater.DEFAULT_COMPRESSION)
+      throw new IllegalArgumentException("invalid compression level: "
+          + compressionLevel);
+    _compressionLevel = compressionLevel;
+  }
+
+  public int getCompressionLevel() {
+    return _compressionLevel;
+  }
+
   public void setOutputLocation(File path) {
     if (path.getName().endsWith(".zip")) {
-      _outputStrategy = ZipOutputStrategy.create(path);
+      if (_outputParallelism > 1 || _compressionMethod == ZipEntry.STORED) {
+        _outputStrategy = new ParallelZipOutputStrategy(path,
+            Math.max(_outputParallelism, 1), _compressionMethod,
+            _compressionLevel);
+      } else {
+        _outputStrategy = ZipOutputStrategy.create(path, _compressionLevel);
+      }
     } else {
       _outputStrategy = new FileOutputStrategy(path);
     }
@@ -62,7 +136,7 @@ public class CsvEntityWriter implements EntityHandler {
     Class<?> entityType = entity.getClass();
     EntitySchemaFactory schemaFactory = _excludeOptionalAndMissing != null
         ? _excludeOptionalAndMissing : _entitySchemaFactory;
-    IndividualCsvEntityWriter writer = _outputStrategy.getEntityWriter(
+    EntityHandler writer = _outputStrategy.getEntityWriter(
         schemaFactory, _context, entityType);
     writer.handleEntity(entity);
   }
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Splits a character stream into lines without allocating a {@link String} per
+ * line. Lines are exposed as (offset, length) windows into a reusable char
+ * buffer, which is only valid until the next call to {@link #next()}.
+ *
+ * Line terminators match {@link java.io.BufferedReader#readLine()}: a line is
+ * ended by '\n', '\r' or "\r\n". A leading UTF byte order mark is skipped.
+ */
+public class CsvLineReader implements Closeable {
+
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private final Reader _reader;
+
+  private char[] _buffer;
+
+  private int _position = 0;
+
+  private int _limit = 0;
+
+  private int _lineOffset = 0;
+
+  private int _lineLength = 0;
+
+  private boolean _skipLineFeed = false;
+
+  private boolean _checkByteOrderMark = true;
+
+  private boolean _eof = false;
+
+  public CsvLineReader(Reader reader) {
+    this(reader, DEFAULT_BUFFER_SIZE);
+  }
+
+  public CsvLineReader(Reader reader, int bufferSize) {
+    _reader = reader;
+    _buffer = new char[Math.max(bufferSize, 16)];
+  }
+
+  /**
+   * Advances to the next line.
+   *
+   * @return true if a line was read, false at end of stream
+   */
+  public boolean next() throws IOException {
+
+    if (_checkByteOrderMark) {
+      _checkByteOrderMark = false;
+      if (ensureAvailable() && _buffer[_position] == 0xFEFF)
+        _position++;
+    }
+
+    if (_skipLineFeed) {
+      _skipLineFeed = false;
+      if (ensureAvailable() && _buffer[_position] == '\n')
+        _position++;
+    }
+
+    int i = _position;
+    while (true) {
+      if (i == _limit) {
+        int scanned = i - _position;
+        if (!fill()) {
+          if (scanned == 0)
+            return false;
+          _lineOffset = _position;
+          _lineLength = scanned;
+          _position = _limit;
+          return true;
+        }
+        i = _position + scanned;
+        continue;
+      }
+      char c = _buffer[i];
+      if (c == '\n' || c == '\r') {
+        _lineOffset = _position;
+        _lineLength = i - _position;
+        _position = i + 1;
+        _skipLineFeed = c == '\r';
+        return true;
+      }
+      i++;
+    }
+  }
+
+  public char[] getBuffer() {
+    return _buffer;
+  }
+
+  public int getLineOffset() {
+    return _lineOffset;
+  }
+
+  public int getLineLength() {
+    return _lineLength;
+  }
+
+  @Override
+  public void close() throws IOException {
+    _reader.close();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private boolean ensureAvailable() throws IOException {
+    return _position < _limit || fill();
+  }
+
+  /**
+   * Reads more data into the buffer, preserving any unconsumed data from
+   * {@link #_position} onwards. The unconsumed data is moved to the start of
+   * the buffer, and the buffer is grown if a single line fills it completely.
+   *
+   * @return true if any additional data was read
+   */
+  private boolean fill() throws IOException {
+    if (_eof)
+      return false;
+    if (_position > 0) {
+      int remaining = _limit - _position;
+      System.arraycopy(_buffer, _position, _buffer, 0, remaining);
+      _position = 0;
+      _limit = remaining;
+    }
+    if (_limit == _buffer.length)
+      _buffer = Arrays.copyOf(_buffer, _buffer.length * 2);
+    while (true) {
+      int n = _reader.read(_buffer, _limit, _buffer.length - _limit);
+      if (n == -1) {
+        _eof = true;
+        return false;
+      }
+      if (n > 0) {
+        _limit += n;
+        return true;
+      }
+    }
+  }
+}
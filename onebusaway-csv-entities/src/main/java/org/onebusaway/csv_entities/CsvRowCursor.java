@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A reusable holder for the fields of a single tokenized CSV row. Field values
+ * are stored as (offset, length) slices into a single shared char buffer that
+ * is grown as needed and reused from row to row, so that tokenizing a row does
+ * not allocate once the buffers have reached their steady-state size.
+ *
+ * Field values have already had quoting removed, so a slice can be turned into
+ * a {@link String} directly with {@link #getString(int)}.
+ *
+ * @see DelimitedTextParser#parse(char[], int, int, CsvRowCursor)
+ */
+public class CsvRowCursor {
+
+  private char[] _chars = new char[256];
+
+  private int _length = 0;
+
+  private int[] _offsets = new int[32];
+
+  private int[] _lengths = new int[32];
+
+  private int _size = 0;
+
+  /**
+   * True if the last field holds raw bytes, one per char, that still have to
+   * be decoded as UTF-8
+   */
+  private boolean _undecodedField = false;
+
+  private byte[] _bytes = null;
+
+  private CharsetDecoder _decoder = null;
+
+  /**
+   * @return the number of fields in the current row
+   */
+  public int size() {
+    return _size;
+  }
+
+  public boolean isEmpty() {
+    return _size == 0;
+  }
+
+  /**
+   * @return the backing character buffer for the current row. Only valid
+   *         until the next call to {@link #clear()}.
+   */
+  public char[] getChars() {
+    return _chars;
+  }
+
+  public int getOffset(int index) {
+    checkIndex(index);
+    return _offsets[index];
+  }
+
+  public int getLength(int index) {
+    checkIndex(index);
+    return _lengths[index];
+  }
+
+  public String getString(int index) {
+    checkIndex(index);
+    return new String(_chars, _offsets[index], _lengths[index]);
+  }
+
+  /**
+   * @return true if the field at the specified index has the same contents as
+   *         the specified string, without materializing the field as a string
+   */
+  public boolean contentEquals(int index, String value) {
+    checkIndex(index);
+    int length = _lengths[index];
+    if (length != value.length())
+      return false;
+    int offset = _offsets[index];
+    for (int i = 0; i < length; i++) {
+      if (_chars[offset + i] != value.charAt(i))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Copies the fields of the current row into a newly allocated list of
+   * strings, matching the output of {@link DelimitedTextParser#parse(String)}.
+   */
+  public List<String> toList() {
+    List<String> values = new ArrayList<String>(_size);
+    toList(values);
+    return values;
+  }
+
+  /**
+   * Replaces the contents of the specified list with the fields of the current
+   * row.
+   */
+  public void toList(List<String> values) {
+    values.clear();
+    for (int i = 0; i < _size; i++)
+      values.add(new String(_chars, _offsets[i], _lengths[i]));
+  }
+
+  public void clear() {
+    _length = 0;
+    _size = 0;
+    _undecodedField = false;
+  }
+
+  /****
+   * Package-Private Methods - used by the tokenizer
+   ****/
+
+  void startField() {
+    if (_undecodedField)
+      decodeLastField();
+    if (_size == _offsets.length) {
+      int newLength = _offsets.length * 2;
+      _offsets = Arrays.copyOf(_offsets, newLength);
+      _lengths = Arrays.copyOf(_lengths, newLength);
+    }
+    _offsets[_size] = _length;
+    _lengths[_size] = 0;
+    _size++;
+  }
+
+  void append(char c) {
+    if (_length == _chars.length)
+      _chars = Arrays.copyOf(_chars, _chars.length * 2);
+    _chars[_length++] = c;
+    _lengths[_size - 1]++;
+  }
+
+  /**
+   * Appends a byte of UTF-8 encoded input. ASCII bytes are appended as is,
+   * while a field containing other bytes is decoded once it is complete.
+   */
+  void appendByte(byte b) {
+    if (b < 0)
+      _undecodedField = true;
+    append((char) (b & 0xFF));
+  }
+
+  /**
+   * Must be called once the last byte of a row has been appended with
+   * {@link #appendByte(byte)}.
+   */
+  void endRow() {
+    if (_undecodedField)
+      decodeLastField();
+  }
+
+  int getCurrentFieldLength() {
+    return _lengths[_size - 1];
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Decodes the raw bytes of the last field in place. Decoding UTF-8 never
+   * yields more chars than there were bytes, so the field only shrinks.
+   * Malformed input is replaced, as with {@link java.io.InputStreamReader}.
+   */
+  private void decodeLastField() {
+    _undecodedField = false;
+    int index = _size - 1;
+    int offset = _offsets[index];
+    int length = _lengths[index];
+    if (_bytes == null || _bytes.length < length)
+      _bytes = new byte[Math.max(length, 64)];
+    for (int i = 0; i < length; i++)
+      _bytes[i] = (byte) _chars[offset + i];
+    if (_decoder == null)
+      _decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(
+          CodingErrorAction.REPLACE).onUnmappableCharacter(
+          CodingErrorAction.REPLACE);
+    CharBuffer out = CharBuffer.wrap(_chars, offset, length);
+    _decoder.reset();
+    _decoder.decode(ByteBuffer.wrap(_bytes, 0, length), out, true);
+    _decoder.flush(out);
+    int decodedLength = out.position() - offset;
+    _lengths[index] = decodedLength;
+    _length = offset + decodedLength;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= _size)
+      throw new IndexOutOfBoundsException("index=" + index + " size=" + _size);
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only view of a single CSV row as a map from CSV field name to value,
+ * backed by a column index table that is computed once per header. Used in
+ * place of a freshly populated {@link java.util.HashMap} for each row when
+ * invoking field mappings and validators that have not been compiled to
+ * positional binders.
+ */
+class CsvRowValuesMap extends AbstractMap<String, Object> {
+
+  private final Map<String, Integer> _columnIndices;
+
+  private List<String> _values;
+
+  public CsvRowValuesMap(Map<String, Integer> columnIndices) {
+    _columnIndices = columnIndices;
+  }
+
+  public void setValues(List<String> values) {
+    _values = values;
+  }
+
+  @Override
+  public int size() {
+    return _columnIndices.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return _columnIndices.containsKey(key);
+  }
+
+  @Override
+  public Object get(Object key) {
+    Integer index = _columnIndices.get(key);
+    if (index == null)
+      return null;
+    return _values.get(index);
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    return new AbstractSet<Map.Entry<String, Object>>() {
+
+      @Override
+      public int size() {
+        return _columnIndices.size();
+      }
+
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        final Iterator<Map.Entry<String, Integer>> it = _columnIndices.entrySet().iterator();
+        return new Iterator<Map.Entry<String, Object>>() {
+
+          @Override
+          public boolean hasNext() {
+            return it.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, Object> next() {
+            if (!it.hasNext())
+              throw new NoSuchElementException();
+            Map.Entry<String, Integer> entry = it.next();
+            return new SimpleImmutableEntry<String, Object>(entry.getKey(),
+                _values.get(entry.getValue()));
+          }
+        };
+      }
+    };
+  }
+}
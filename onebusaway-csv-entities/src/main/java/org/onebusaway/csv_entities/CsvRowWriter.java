@@ -0,0 +1,312 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Assembles CSV rows in a reusable char buffer and writes them, UTF-8 encoded,
+ * to a buffered byte channel. Values are appended field by field, with
+ * primitives formatted directly into the buffer, so that writing a row does
+ * not allocate intermediate strings.
+ *
+ * String values are escaped following {@link CSVLibrary#escapeValue(String)},
+ * and doubles are formatted as {@link Double#toString(double)} would format
+ * them. Rows are terminated by the platform line separator, as
+ * {@link java.io.PrintWriter#println()} would.
+ *
+ * Instances are not thread-safe.
+ */
+public final class CsvRowWriter implements Flushable, Closeable {
+
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+
+  private static final long[] POWERS_OF_TEN = {
+      1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+      1000000000L};
+
+  private final WritableByteChannel _channel;
+
+  private final Writer _writer;
+
+  private final ByteBuffer _bytes;
+
+  private char[] _row = new char[256];
+
+  private int _length = 0;
+
+  private int _fieldCount = 0;
+
+  public CsvRowWriter(WritableByteChannel channel) {
+    this(channel, DEFAULT_BUFFER_SIZE);
+  }
+
+  public CsvRowWriter(WritableByteChannel channel, int bufferSize) {
+    _channel = channel;
+    _writer = null;
+    _bytes = ByteBuffer.allocate(Math.max(bufferSize, 16));
+  }
+
+  public CsvRowWriter(OutputStream out) {
+    this(Channels.newChannel(out));
+  }
+
+  /**
+   * Writes rows as characters to the specified writer, which is expected to do
+   * its own buffering and encoding.
+   */
+  public CsvRowWriter(Writer writer) {
+    _channel = null;
+    _writer = writer;
+    _bytes = null;
+  }
+
+  /**
+   * Starts the next field of the current row, appending a separator if it is
+   * not the first.
+   */
+  public void startField() {
+    if (_fieldCount++ > 0)
+      append(',');
+  }
+
+  /**
+   * Appends a string value, quoting it if it contains a comma or a quote.
+   */
+  public void appendValue(String value) {
+    int n = value.length();
+    boolean quote = false;
+    for (int i = 0; i < n; i++) {
+      char c = value.charAt(i);
+      if (c == ',' || c == '"') {
+        quote = true;
+        break;
+      }
+    }
+    if (!quote) {
+      appendRaw(value);
+      return;
+    }
+    append('"');
+    for (int i = 0; i < n; i++) {
+      char c = value.charAt(i);
+      if (c == '"')
+        append('"');
+      append(c);
+    }
+    append('"');
+  }
+
+  /**
+   * Appends an arbitrary value, formatting numbers directly and escaping
+   * anything else by its string representation. A null value is left empty.
+   */
+  public void appendValue(Object value) {
+    if (value == null)
+      return;
+    if (value instanceof String)
+      appendValue((String) value);
+    else if (value instanceof Integer)
+      appendValue(((Integer) value).intValue());
+    else if (value instanceof Long)
+      appendValue(((Long) value).longValue());
+    else if (value instanceof Double)
+      appendValue(((Double) value).doubleValue());
+    else
+      appendValue(value.toString());
+  }
+
+  public void appendValue(int value) {
+    appendValue((long) value);
+  }
+
+  public void appendValue(long value) {
+    if (value < 0) {
+      if (value == Long.MIN_VALUE) {
+        appendRaw(Long.toString(value));
+        return;
+      }
+      append('-');
+      value = -value;
+    }
+    appendDigits(value, 1);
+  }
+
+  /**
+   * Appends a double exactly as {@link Double#toString(double)} would. Values
+   * in the plain notation range with at most nine fractional digits are
+   * formatted directly, others fall back to {@link Double#toString(double)}.
+   */
+  public void appendValue(double value) {
+    double abs = Math.abs(value);
+    if (abs >= 1e-3 && abs < 1e7) {
+      for (int digits = 1; digits < POWERS_OF_TEN.length; digits++) {
+        long scale = POWERS_OF_TEN[digits];
+        long scaled = Math.round(abs * scale);
+        if (scaled / (double) scale != abs)
+          continue;
+        if (value < 0)
+          append('-');
+        appendDigits(scaled / scale, 1);
+        append('.');
+        long fraction = scaled % scale;
+        int fractionDigits = digits;
+        while (fractionDigits > 1 && fraction % 10 == 0) {
+          fraction /= 10;
+          fractionDigits--;
+        }
+        appendDigits(fraction, fractionDigits);
+        return;
+      }
+    }
+    appendRaw(Double.toString(value));
+  }
+
+  /**
+   * Appends a non-negative integer, left-padded with zeros to at least the
+   * specified number of digits.
+   */
+  public void appendZeroPadded(int value, int digits) {
+    if (value < 0) {
+      appendValue(value);
+      return;
+    }
+    appendDigits(value, digits);
+  }
+
+  /**
+   * Appends characters without any escaping.
+   */
+  public void appendRaw(CharSequence value) {
+    int n = value.length();
+    ensureCapacity(_length + n);
+    for (int i = 0; i < n; i++)
+      _row[_length++] = value.charAt(i);
+  }
+
+  /**
+   * Terminates the current row and writes it out.
+   */
+  public void endRow() throws IOException {
+    for (char c : LINE_SEPARATOR)
+      append(c);
+    if (_writer != null)
+      _writer.write(_row, 0, _length);
+    else
+      encodeRow();
+    _length = 0;
+    _fieldCount = 0;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (_writer != null) {
+      _writer.flush();
+    } else {
+      drain();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+    if (_writer != null)
+      _writer.close();
+    else
+      _channel.close();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void append(char c) {
+    if (_length == _row.length)
+      ensureCapacity(_length + 1);
+    _row[_length++] = c;
+  }
+
+  private void appendDigits(long value, int minDigits) {
+    int digits = 1;
+    for (long v = value / 10; v > 0; v /= 10)
+      digits++;
+    digits = Math.max(digits, minDigits);
+    ensureCapacity(_length + digits);
+    for (int i = _length + digits - 1; i >= _length; i--) {
+      _row[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    _length += digits;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > _row.length)
+      _row = Arrays.copyOf(_row, Math.max(capacity, _row.length * 2));
+  }
+
+  /**
+   * Encodes the current row as UTF-8 into the byte buffer, draining the buffer
+   * to the channel as it fills up. Unpaired surrogates are replaced with '?',
+   * as the JDK's UTF-8 encoder does.
+   */
+  private void encodeRow() throws IOException {
+    ByteBuffer bytes = _bytes;
+    char[] row = _row;
+    for (int i = 0; i < _length; i++) {
+      if (bytes.remaining() < 4)
+        drain();
+      char c = row[i];
+      if (c < 0x80) {
+        bytes.put((byte) c);
+      } else if (c < 0x800) {
+        bytes.put((byte) (0xC0 | (c >> 6)));
+        bytes.put((byte) (0x80 | (c & 0x3F)));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c) && i + 1 < _length
+            && Character.isLowSurrogate(row[i + 1])) {
+          int cp = Character.toCodePoint(c, row[++i]);
+          bytes.put((byte) (0xF0 | (cp >> 18)));
+          bytes.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+          bytes.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+          bytes.put((byte) (0x80 | (cp & 0x3F)));
+        } else {
+          bytes.put((byte) '?');
+        }
+      } else {
+        bytes.put((byte) (0xE0 | (c >> 12)));
+        bytes.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        bytes.put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+  }
+
+  private void drain() throws IOException {
+    _bytes.flip();
+    while (_bytes.hasRemaining())
+      _channel.write(_bytes);
+    _bytes.clear();
+  }
+}
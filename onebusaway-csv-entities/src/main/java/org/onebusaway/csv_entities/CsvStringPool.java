@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Deduplicates the values of selected CSV columns as they are read, so that
+ * repeated values such as route ids, service ids and headsigns share a single
+ * {@link String} instance. Values are pooled per column name, so the same
+ * column in different files shares a pool.
+ *
+ * Since pooling a column whose values are mostly unique only costs memory, the
+ * first values of each column of each file are sampled, and pooling stops for
+ * the rest of the file if too large a fraction of them was not already pooled.
+ *
+ * A pool is thread-safe and may be shared by concurrent readers.
+ */
+public class CsvStringPool {
+
+  private static final int DEFAULT_SAMPLE_SIZE = 1000;
+
+  private static final double DEFAULT_MAX_DISTINCT_RATIO = 0.5;
+
+  private final Set<String> _columns;
+
+  private final ConcurrentMap<String, ConcurrentMap<String, String>> _valuesByColumn = new ConcurrentHashMap<String, ConcurrentMap<String, String>>();
+
+  private int _sampleSize = DEFAULT_SAMPLE_SIZE;
+
+  private double _maxDistinctRatio = DEFAULT_MAX_DISTINCT_RATIO;
+
+  /**
+   * Creates a pool for all columns
+   */
+  public CsvStringPool() {
+    _columns = null;
+  }
+
+  /**
+   * Creates a pool for the specified columns only
+   *
+   * @param columns the CSV column names whose values are pooled
+   */
+  public CsvStringPool(Collection<String> columns) {
+    _columns = new HashSet<String>(columns);
+  }
+
+  /**
+   * @param sampleSize the number of values of a column that are sampled in
+   *          each file before deciding whether to keep pooling it
+   */
+  public void setSampleSize(int sampleSize) {
+    _sampleSize = sampleSize;
+  }
+
+  /**
+   * @param maxDistinctRatio the largest fraction of sampled values that may be
+   *          new to the pool for pooling of a column to continue
+   */
+  public void setMaxDistinctRatio(double maxDistinctRatio) {
+    _maxDistinctRatio = maxDistinctRatio;
+  }
+
+  public boolean isPooled(String column) {
+    return _columns == null || _columns.contains(column);
+  }
+
+  /**
+   * @return the pooled instance equal to the specified value
+   */
+  public String intern(String column, String value) {
+    String existing = getValues(column).putIfAbsent(value, value);
+    return existing != null ? existing : value;
+  }
+
+  /**
+   * @return the number of distinct values pooled for the specified column
+   */
+  public int size(String column) {
+    ConcurrentMap<String, String> values = _valuesByColumn.get(column);
+    return values == null ? 0 : values.size();
+  }
+
+  /**
+   * Releases all pooled values
+   */
+  public void clear() {
+    _valuesByColumn.clear();
+  }
+
+  /**
+   * @return a sampler for the specified column of a single file, or null if
+   *         the column is not pooled
+   */
+  ColumnPool getColumnPool(String column) {
+    if (!isPooled(column))
+      return null;
+    return new ColumnPool(getValues(column));
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private ConcurrentMap<String, String> getValues(String column) {
+    ConcurrentMap<String, String> values = _valuesByColumn.get(column);
+    if (values == null) {
+      values = new ConcurrentHashMap<String, String>();
+      ConcurrentMap<String, String> existing = _valuesByColumn.putIfAbsent(
+          column, values);
+      if (existing != null)
+        values = existing;
+    }
+    return values;
+  }
+
+  /**
+   * The pooling state of one column while reading one file. Not thread-safe.
+   */
+  final class ColumnPool {
+
+    private final ConcurrentMap<String, String> _values;
+
+    private int _sampled = 0;
+
+    private int _distinct = 0;
+
+    private boolean _enabled = true;
+
+    private ColumnPool(ConcurrentMap<String, String> values) {
+      _values = values;
+    }
+
+    public String intern(String value) {
+      if (!_enabled)
+        return value;
+      String existing = _values.putIfAbsent(value, value);
+      if (_sampled < _sampleSize) {
+        _sampled++;
+        if (existing == null)
+          _distinct++;
+        if (_sampled == _sampleSize
+            && _distinct > _sampleSize * _maxDistinctRatio)
+          _enabled = false;
+      }
+      return existing != null ? existing : value;
+    }
+
+    public boolean isEnabled() {
+      return _enabled;
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package org.onebusaway.csv_entities;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public class CsvTokenizerStrategy implements TokenizerStrategy {
@@ -34,6 +35,35 @@ public class CsvTokenizerStrategy implements TokenizerStrategy {
     return _csv.parse(line);
   }
 
+  /**
+   * Allocation-free variant of {@link #parse(String)} used by the streaming
+   * read mode of {@link CsvEntityReader}.
+   */
+  public void parse(char[] line, int offset, int length, CsvRowCursor row) {
+    _csv.parse(line, offset, length, row);
+  }
+
+  /**
+   * Tokenizes a record of UTF-8 encoded bytes, as read from a
+   * {@link RandomAccessCsvInputSource}.
+   * 
+   * @return true if the record ends inside a quoted value
+   */
+  public boolean parse(ByteBuffer bytes, int offset, int length,
+      CsvRowCursor row) {
+    return _csv.parse(bytes, offset, length, row);
+  }
+
+  /**
+   * Used by the chunked read mode of {@link CsvEntityReader} to split a buffer
+   * into records.
+   * 
+   * @see DelimitedTextParser#findRecordEnd(ByteBuffer, int, int)
+   */
+  public int findRecordEnd(ByteBuffer bytes, int from, int limit) {
+    return _csv.findRecordEnd(bytes, from, limit);
+  }
+
   @Override
   public String format(Iterable<String> tokens) {
     return CSVLibrary.getIterableAsCSV(tokens);
@@ -16,6 +16,7 @@
  */
 package org.onebusaway.csv_entities;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -136,4 +137,225 @@ public class DelimitedTextParser {
       retro.add(b.toString());
     return retro;
   }
+
+  /**
+   * Tokenizes a single line held in a char buffer into the specified reusable
+   * row cursor, without allocating per-token objects. The quoting semantics
+   * are identical to {@link #parse(String)}.
+   * 
+   * @param line buffer holding the line, without any line terminator
+   * @param offset index of the first char of the line in the buffer
+   * @param length number of chars in the line
+   * @param row the row cursor that will be cleared and then filled with the
+   *          tokens of the line
+   */
+  public final void parse(char[] line, int offset, int length, CsvRowCursor row) {
+
+    row.clear();
+    if (length > 0)
+      row.startField();
+
+    EParseState resetState = _trimInitialWhitespace
+        ? EParseState.TRIM_INIT_WHITESPACE : EParseState.DATA;
+    EParseState state = resetState;
+
+    int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      char c = line[i];
+      switch (state) {
+        case TRIM_INIT_WHITESPACE:
+          if (c == _delimiter) {
+            row.startField();
+          } else {
+            switch (c) {
+              case ' ':
+                break;
+              case '"':
+                if (row.getCurrentFieldLength() == 0)
+                  state = EParseState.DATA_IN_QUOTES;
+                else
+                  row.append(c);
+                break;
+              default:
+                state = EParseState.DATA;
+                row.append(c);
+                break;
+            }
+          }
+          break;
+        case DATA:
+          if (c == _delimiter) {
+            row.startField();
+            state = resetState;
+          } else {
+            switch (c) {
+              case '"':
+                if (row.getCurrentFieldLength() == 0)
+                  state = EParseState.DATA_IN_QUOTES;
+                else
+                  row.append(c);
+                break;
+              default:
+                row.append(c);
+                break;
+            }
+          }
+          break;
+        case DATA_IN_QUOTES:
+          switch (c) {
+            case '"':
+              state = EParseState.END_QUOTE;
+              break;
+            default:
+              row.append(c);
+              break;
+          }
+          break;
+        case END_QUOTE:
+          if (c == _delimiter) {
+            row.startField();
+            state = resetState;
+            break;
+          } else {
+            switch (c) {
+              case '"':
+                row.append('"');
+                state = EParseState.DATA_IN_QUOTES;
+                break;
+              default:
+                row.append(c);
+                state = EParseState.DATA;
+                break;
+            }
+          }
+          break;
+      }
+    }
+  }
+
+  /**
+   * Tokenizes a single record held in a buffer of UTF-8 encoded bytes, with
+   * the same quoting semantics as {@link #parse(char[], int, int, CsvRowCursor)}.
+   * Since the delimiter and quote characters are ASCII, and no byte of a
+   * multi-byte UTF-8 sequence is, fields are split on the raw bytes. ASCII
+   * bytes are copied straight into the row, and only fields containing other
+   * bytes go through a UTF-8 decoder.
+   * 
+   * @param bytes buffer holding the record, read using absolute indices
+   * @param offset index of the first byte of the record
+   * @param length number of bytes in the record
+   * @param row the row cursor that will be cleared and then filled with the
+   *          tokens of the record
+   * @return true if the record ends inside a quoted value, as it does when the
+   *         value continues past a line terminator
+   */
+  public final boolean parse(ByteBuffer bytes, int offset, int length,
+      CsvRowCursor row) {
+
+    row.clear();
+    if (length > 0)
+      row.startField();
+
+    EParseState resetState = _trimInitialWhitespace
+        ? EParseState.TRIM_INIT_WHITESPACE : EParseState.DATA;
+    EParseState state = resetState;
+
+    int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      byte c = bytes.get(i);
+      switch (state) {
+        case TRIM_INIT_WHITESPACE:
+          if (c == _delimiter) {
+            row.startField();
+          } else {
+            switch (c) {
+              case ' ':
+                break;
+              case '"':
+                if (row.getCurrentFieldLength() == 0)
+                  state = EParseState.DATA_IN_QUOTES;
+                else
+                  row.appendByte(c);
+                break;
+              default:
+                state = EParseState.DATA;
+                row.appendByte(c);
+                break;
+            }
+          }
+          break;
+        case DATA:
+          if (c == _delimiter) {
+            row.startField();
+            state = resetState;
+          } else {
+            switch (c) {
+              case '"':
+                if (row.getCurrentFieldLength() == 0)
+                  state = EParseState.DATA_IN_QUOTES;
+                else
+                  row.appendByte(c);
+                break;
+              default:
+                row.appendByte(c);
+                break;
+            }
+          }
+          break;
+        case DATA_IN_QUOTES:
+          switch (c) {
+            case '"':
+              state = EParseState.END_QUOTE;
+              break;
+            default:
+              row.appendByte(c);
+              break;
+          }
+          break;
+        case END_QUOTE:
+          if (c == _delimiter) {
+            row.startField();
+            state = resetState;
+            break;
+          } else {
+            switch (c) {
+              case '"':
+                row.appendByte(c);
+                state = EParseState.DATA_IN_QUOTES;
+                break;
+              default:
+                row.appendByte(c);
+                state = EParseState.DATA;
+                break;
+            }
+          }
+          break;
+      }
+    }
+    row.endRow();
+    return state == EParseState.DATA_IN_QUOTES;
+  }
+
+  /**
+   * Finds the end of the record starting at the specified index of a buffer of
+   * UTF-8 (or other ASCII-compatible) encoded bytes. As with the line-based
+   * read modes of {@link CsvEntityReader}, a record ends at the first '\n' or
+   * '\r', whether or not it is inside a quoted field: a quoted value cannot
+   * span lines, and an unterminated quote ends with its line instead of
+   * consuming the records that follow.
+   * 
+   * @param bytes the buffer to scan, using absolute indices
+   * @param from index of the first byte of the record
+   * @param limit index one past the last byte that may be scanned
+   * @return the index of the line terminator ending the record, or limit if the
+   *         record is not terminated
+   */
+  public final int findRecordEnd(ByteBuffer bytes, int from, int limit) {
+    for (int i = from; i < limit; i++) {
+      byte c = bytes.get(i);
+      if (c == '\n' || c == '\r')
+        return i;
+    }
+    return limit;
+  }
 }
@@ -19,8 +19,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
-public class FileCsvInputSource implements CsvInputSource {
+public class FileCsvInputSource implements RandomAccessCsvInputSource {
 
   private File _sourceDirectory;
 
@@ -38,6 +41,24 @@ public class FileCsvInputSource implements CsvInputSource {
     return new FileInputStream(file);
   }
 
+  /**
+   * Memory-maps the file. Files of 2GB or more cannot be mapped into a single
+   * buffer, and null is returned.
+   */
+  public ByteBuffer getResourceBuffer(String name) throws IOException {
+    File file = new File(_sourceDirectory, name);
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE)
+        return null;
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } finally {
+      raf.close();
+    }
+  }
+
   public void close() throws IOException {
 
   }
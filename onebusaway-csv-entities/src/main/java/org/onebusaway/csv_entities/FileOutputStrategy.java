@@ -18,7 +18,8 @@ package org.onebusaway.csv_entities;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -56,7 +57,7 @@ class FileOutputStrategy implements OutputStrategy {
       if (!_outputDirectory.exists())
         _outputDirectory.mkdirs();
 
-      PrintWriter writer = openOutput(outputFile, entityType);
+      CsvRowWriter writer = openOutput(outputFile, entityType);
       entityWriter = new IndividualCsvEntityWriter(context, schema, writer);
       _writersByType.put(entityType, entityWriter);
     }
@@ -75,9 +76,12 @@ class FileOutputStrategy implements OutputStrategy {
       writer.close();
   }
 
-  private PrintWriter openOutput(File outputFile, Class<?> entityType) {
+  private CsvRowWriter openOutput(File outputFile, Class<?> entityType) {
     try {
-      return new PrintWriter(outputFile, "UTF-8");
+      FileChannel channel = FileChannel.open(outputFile.toPath(),
+          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.WRITE);
+      return new CsvRowWriter(channel);
     } catch (IOException ex) {
       throw new CsvEntityIOException(entityType, outputFile.getAbsolutePath(),
           0, ex);
@@ -19,16 +19,20 @@
 package org.onebusaway.csv_entities;
 
 import org.onebusaway.csv_entities.exceptions.EntityInstantiationException;
+import org.onebusaway.csv_entities.exceptions.FieldCountMismatchException;
 import org.onebusaway.csv_entities.schema.BaseEntitySchema;
 import org.onebusaway.csv_entities.schema.BeanWrapper;
 import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+import org.onebusaway.csv_entities.schema.CompilableFieldMapping;
 import org.onebusaway.csv_entities.schema.EntitySchema;
 import org.onebusaway.csv_entities.schema.EntityValidator;
 import org.onebusaway.csv_entities.schema.ExtensionEntitySchema;
+import org.onebusaway.csv_entities.schema.FieldBinder;
 import org.onebusaway.csv_entities.schema.FieldMapping;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -53,6 +57,16 @@ public class IndividualCsvEntityReader implements CSVListener {
 
   private boolean _trimValues = false;
 
+  private SchemaBindingPlan _plan = null;
+
+  private CsvStringPool _stringPool = null;
+
+  /**
+   * The pool of each column of the current file, or null if no column is
+   * pooled
+   */
+  private CsvStringPool.ColumnPool[] _columnPools = null;
+
   public IndividualCsvEntityReader(CsvEntityContext context,
       EntitySchema schema, EntityHandler handler) {
     _handler = handler;
@@ -81,6 +95,17 @@ public class IndividualCsvEntityReader implements CSVListener {
     _trimValues = trimValues;
   }
 
+  /**
+   * @param stringPool the pool used to deduplicate the values of its columns,
+   *          or null to disable pooling
+   */
+  public void setStringPool(CsvStringPool stringPool) {
+    _stringPool = stringPool;
+    _columnPools = null;
+    if (_initialized)
+      createColumnPools();
+  }
+
   public void handleLine(List<String> line) throws Exception {
 
     if (line.size() == 0)
@@ -95,6 +120,8 @@ public class IndividualCsvEntityReader implements CSVListener {
       readSchema(line);
       _initialized = true;
     } else {
+      if (_columnPools != null)
+        internValues(line);
       readEntity(line);
     }
     _line++;
@@ -103,12 +130,40 @@ public class IndividualCsvEntityReader implements CSVListener {
   }
 
   private void readSchema(List<String> line) {
-    _fields = line;
+    /**
+     * Copy, since the caller may reuse the list for subsequent lines
+     */
+    _fields = new ArrayList<String>(line);
+    if (_stringPool != null)
+      createColumnPools();
+  }
+
+  private void createColumnPools() {
+    CsvStringPool.ColumnPool[] pools = new CsvStringPool.ColumnPool[_fields.size()];
+    boolean any = false;
+    for (int i = 0; i < pools.length; i++) {
+      pools[i] = _stringPool.getColumnPool(_fields.get(i));
+      any |= pools[i] != null;
+    }
+    _columnPools = any ? pools : null;
+  }
+
+  private void internValues(List<String> line) {
+    int n = Math.min(line.size(), _columnPools.length);
+    for (int i = 0; i < n; i++) {
+      CsvStringPool.ColumnPool pool = _columnPools[i];
+      if (pool != null)
+        line.set(i, pool.intern(line.get(i)));
+    }
   }
 
   private void readEntity(List<String> line) {
 
-    if (line.size() != _fields.size()) {
+    if (line.size() > _fields.size())
+      throw new FieldCountMismatchException(_schema.getEntityClass(), _line,
+          _fields.size(), line.size());
+
+    if (line.size() < _fields.size()) {
       _log.warn("expected and actual number of csv fields differ: type="
           + _schema.getEntityClass().getName() + " line # " + _line
           + " expected=" + _fields.size() + " actual=" + line.size());
@@ -116,38 +171,57 @@ public class IndividualCsvEntityReader implements CSVListener {
         line.add("");
     }
 
-    Object object = createNewEntityInstance(_schema);
-    BeanWrapper wrapper = BeanWrapperFactory.wrap(object);
+    if (_plan == null)
+      _plan = compileBindingPlan();
 
-    Map<String, Object> values = new HashMap<String, Object>();
-
-    for (int i = 0; i < line.size(); i++) {
-      String csvFieldName = _fields.get(i);
-      String value = line.get(i);
-      values.put(csvFieldName, value);
-    }
+    Object object = createNewEntityInstance(_schema);
+    _plan.values.setValues(line);
 
-    for (FieldMapping mapping : _schema.getFields())
-      mapping.translateFromCSVToObject(_context, values, wrapper);
+    BeanWrapper wrapper = _plan.bind(_context, line, object);
 
     if (object instanceof HasExtensions) {
       HasExtensions hasExtensions = (HasExtensions) object;
-      for (ExtensionEntitySchema extensionSchema : _schema.getExtensions()) {
-        Object extension = createNewEntityInstance(extensionSchema);
-        BeanWrapper extensionWrapper = BeanWrapperFactory.wrap(extension);
-        for (FieldMapping mapping : extensionSchema.getFields()) {
-          mapping.translateFromCSVToObject(_context, values, extensionWrapper);
-        }
-        hasExtensions.putExtension(extensionSchema.getEntityClass(), extension);
+      for (SchemaBindingPlan extensionPlan : _plan.extensions) {
+        Object extension = createNewEntityInstance(extensionPlan.schema);
+        extensionPlan.bind(_context, line, extension);
+        hasExtensions.putExtension(extensionPlan.schema.getEntityClass(),
+            extension);
       }
     }
 
-    for (EntityValidator validator : _schema.getValidators())
-      validator.validateEntity(_context, values, wrapper);
+    List<EntityValidator> validators = _schema.getValidators();
+    if (!validators.isEmpty()) {
+      if (wrapper == null)
+        wrapper = BeanWrapperFactory.wrap(object);
+      for (EntityValidator validator : validators)
+        validator.validateEntity(_context, _plan.values, wrapper);
+    }
 
     _handler.handleEntity(object);
   }
 
+  /**
+   * Compiles, once for the current schema and CSV header, the sequence of
+   * positional field binders used to populate each entity.
+   */
+  private SchemaBindingPlan compileBindingPlan() {
+
+    Map<String, Integer> columnIndices = new HashMap<String, Integer>();
+    for (int i = 0; i < _fields.size(); i++)
+      columnIndices.put(_fields.get(i), i);
+
+    CsvRowValuesMap values = new CsvRowValuesMap(columnIndices);
+
+    SchemaBindingPlan plan = new SchemaBindingPlan(_schema, columnIndices,
+        values);
+    if (HasExtensions.class.isAssignableFrom(_schema.getEntityClass())) {
+      for (ExtensionEntitySchema extensionSchema : _schema.getExtensions())
+        plan.extensions.add(new SchemaBindingPlan(extensionSchema,
+            columnIndices, values));
+    }
+    return plan;
+  }
+
   private static Object createNewEntityInstance(BaseEntitySchema schema) {
     Class<?> entityClass = schema.getEntityClass();
     try {
@@ -156,4 +230,58 @@ public class IndividualCsvEntityReader implements CSVListener {
       throw new EntityInstantiationException(entityClass, ex);
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * The field mappings of a schema, in order, each paired with its compiled
+   * {@link FieldBinder} when the mapping supports it. Mappings that cannot be
+   * compiled are invoked with a {@link BeanWrapper} and the row's
+   * {@link CsvRowValuesMap} as before.
+   */
+  private static class SchemaBindingPlan {
+
+    private final BaseEntitySchema schema;
+
+    private final FieldMapping[] mappings;
+
+    private final FieldBinder[] binders;
+
+    private final CsvRowValuesMap values;
+
+    private final List<SchemaBindingPlan> extensions = new ArrayList<SchemaBindingPlan>();
+
+    public SchemaBindingPlan(BaseEntitySchema schema,
+        Map<String, Integer> columnIndices, CsvRowValuesMap values) {
+      this.schema = schema;
+      this.values = values;
+      List<FieldMapping> fields = schema.getFields();
+      this.mappings = fields.toArray(new FieldMapping[fields.size()]);
+      this.binders = new FieldBinder[mappings.length];
+      for (int i = 0; i < mappings.length; i++) {
+        if (mappings[i] instanceof CompilableFieldMapping) {
+          CompilableFieldMapping mapping = (CompilableFieldMapping) mappings[i];
+          binders[i] = mapping.compile(schema.getEntityClass(), columnIndices);
+        }
+      }
+    }
+
+    /**
+     * @return the {@link BeanWrapper} created for uncompiled mappings, or null
+     *         if none was needed
+     */
+    public BeanWrapper bind(CsvEntityContext context, List<String> line,
+        Object object) {
+      BeanWrapper wrapper = null;
+      for (int i = 0; i < mappings.length; i++) {
+        FieldBinder binder = binders[i];
+        if (binder != null) {
+          binder.bind(context, line, object);
+        } else {
+          if (wrapper == null)
+            wrapper = BeanWrapperFactory.wrap(object);
+          mappings[i].translateFromCSVToObject(context, values, wrapper);
+        }
+      }
+      return wrapper;
+    }
+  }
+}
@@ -13,26 +13,38 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-/**
- * 
- */
 package org.onebusaway.csv_entities;
 
+import org.onebusaway.csv_entities.exceptions.CsvEntityIOException;
 import org.onebusaway.csv_entities.schema.BeanWrapper;
 import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
 import org.onebusaway.csv_entities.schema.EntitySchema;
 import org.onebusaway.csv_entities.schema.ExtensionEntitySchema;
+import org.onebusaway.csv_entities.schema.FieldFormatter;
 import org.onebusaway.csv_entities.schema.FieldMapping;
+import org.onebusaway.csv_entities.schema.FormattableFieldMapping;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Writes entities of a single type as CSV rows to a {@link CsvRowWriter}.
+ *
+ * When the first entity is written, each field mapping that implements
+ * {@link FormattableFieldMapping} is compiled into a {@link FieldFormatter}
+ * that writes its value straight into the row buffer. Remaining mappings, and
+ * the fields of extensions, are translated through a reusable map of CSV
+ * values. Formatters are only used with the default
+ * {@link CsvTokenizerStrategy}; other tokenizer strategies format each row
+ * from the map of CSV values.
+ */
 class IndividualCsvEntityWriter implements EntityHandler {
 
-  private final PrintWriter _writer;
+  private final CsvRowWriter _writer;
 
   private final List<String> _fieldNames = new ArrayList<String>();
 
@@ -44,12 +56,39 @@ class IndividualCsvEntityWriter implements EntityHandler {
 
   private boolean _seenFirstRecord = false;
 
+  private BeanWrapper _wrapper = null;
+
+  private BeanWrapper _extensionWrapper = null;
+
+  /**
+   * The compiled formatter of each column, or null if the column's value is
+   * taken from {@link #_csvValues}
+   */
+  private FieldFormatter[] _formatters;
+
+  /**
+   * The entity field mappings that were not compiled into formatters
+   */
+  private final List<FieldMapping> _mappedFields = new ArrayList<FieldMapping>();
+
+  private boolean _includeExtensions = false;
+
+  private final Map<String, Object> _csvValues = new HashMap<String, Object>();
+
+  private final List<String> _values = new ArrayList<String>();
+
+  private int _lineNumber = 0;
+
   public IndividualCsvEntityWriter(CsvEntityContext context,
       EntitySchema schema, PrintWriter writer) {
+    this(context, schema, new CsvRowWriter(writer));
+  }
+
+  public IndividualCsvEntityWriter(CsvEntityContext context,
+      EntitySchema schema, CsvRowWriter writer) {
     _writer = writer;
     _schema = schema;
     _context = context;
-
   }
 
   public void setTokenizerStrategy(TokenizerStrategy tokenizerStrategy) {
@@ -58,61 +97,148 @@ class IndividualCsvEntityWriter implements EntityHandler {
 
   public void handleEntity(Object object) {
 
-    if (!_seenFirstRecord) {
+    try {
+      if (!_seenFirstRecord) {
+        writeHeader(object);
+        _seenFirstRecord = true;
+      }
+      writeRow(object);
+    } catch (IOException ex) {
+      throw new CsvEntityIOException(_schema.getEntityClass(),
+          _schema.getFilename(), _lineNumber, ex);
+    }
+  }
 
-      _fieldNames.clear();
-      for (FieldMapping field : _schema.getFields())
-        field.getCSVFieldNames(_fieldNames);
+  public void flush() {
+    try {
+      _writer.flush();
+    } catch (IOException ex) {
+      throw new CsvEntityIOException(_schema.getEntityClass(),
+          _schema.getFilename(), _lineNumber, ex);
+    }
+  }
 
-      if (object instanceof HasExtensions) {
-        for (ExtensionEntitySchema extension : _schema.getExtensions()) {
-          for (FieldMapping field : extension.getFields()) {
-            field.getCSVFieldNames(_fieldNames);
-          }
+  public void close() {
+    try {
+      _writer.close();
+    } catch (IOException ex) {
+      throw new CsvEntityIOException(_schema.getEntityClass(),
+          _schema.getFilename(), _lineNumber, ex);
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void writeHeader(Object object) throws IOException {
+
+    _fieldNames.clear();
+    for (FieldMapping field : _schema.getFields())
+      field.getCSVFieldNames(_fieldNames);
+
+    _includeExtensions = object instanceof HasExtensions;
+    if (_includeExtensions) {
+      for (ExtensionEntitySchema extension : _schema.getExtensions()) {
+        for (FieldMapping field : extension.getFields()) {
+          field.getCSVFieldNames(_fieldNames);
         }
       }
+    }
 
-      _writer.println(_tokenizerStrategy.format(_fieldNames));
+    compileFormatters();
 
-      _seenFirstRecord = true;
-    }
+    writeValues(_fieldNames);
+  }
+
+  /**
+   * Resolves the formatter of each column once for the schema, so that rows
+   * can be written without looking up values by name.
+   */
+  private void compileFormatters() {
+
+    _formatters = new FieldFormatter[_fieldNames.size()];
+    _mappedFields.clear();
+
+    boolean canFormat = _tokenizerStrategy.getClass() == CsvTokenizerStrategy.class;
 
-    BeanWrapper wrapper = BeanWrapperFactory.wrap(object);
-    Map<String, Object> csvValues = new HashMap<>();
     for (FieldMapping field : _schema.getFields()) {
-      field.translateFromObjectToCSV(_context, wrapper, csvValues);
+      FieldFormatter formatter = null;
+      int columnIndex = -1;
+      if (canFormat && field instanceof FormattableFieldMapping) {
+        FormattableFieldMapping formattable = (FormattableFieldMapping) field;
+        columnIndex = _fieldNames.indexOf(formattable.getCsvFieldName());
+        if (columnIndex != -1 && _formatters[columnIndex] == null)
+          formatter = formattable.compileFormatter(_schema.getEntityClass());
+      }
+      if (formatter != null)
+        _formatters[columnIndex] = formatter;
+      else
+        _mappedFields.add(field);
+    }
+  }
+
+  private void writeRow(Object object) throws IOException {
+
+    _csvValues.clear();
+
+    if (!_mappedFields.isEmpty()) {
+      BeanWrapper wrapper = _wrapper = BeanWrapperFactory.wrap(object,
+          _wrapper);
+      for (FieldMapping field : _mappedFields) {
+        field.translateFromObjectToCSV(_context, wrapper, _csvValues);
+      }
     }
-    if (object instanceof HasExtensions) {
+    if (_includeExtensions && object instanceof HasExtensions) {
       HasExtensions hasExtensions = (HasExtensions) object;
       for (ExtensionEntitySchema extensionSchema : _schema.getExtensions()) {
         Object extension = hasExtensions.getExtension(extensionSchema.getEntityClass());
         if (extension != null) {
-          BeanWrapper extensionWrapper = BeanWrapperFactory.wrap(extension);
+          BeanWrapper extensionWrapper = _extensionWrapper = BeanWrapperFactory.wrap(
+              extension, _extensionWrapper);
           for (FieldMapping field : extensionSchema.getFields()) {
             field.translateFromObjectToCSV(_context, extensionWrapper,
-                csvValues);
+                _csvValues);
           }
         }
       }
     }
 
-    List<String> values = new ArrayList<String>(csvValues.size());
-    for (String fieldName : _fieldNames) {
-      Object value = csvValues.get(fieldName);
-      if (value == null)
-        value = "";
-      values.add(value.toString());
+    if (_tokenizerStrategy.getClass() != CsvTokenizerStrategy.class) {
+      _values.clear();
+      for (String fieldName : _fieldNames) {
+        Object value = _csvValues.get(fieldName);
+        _values.add(value == null ? "" : value.toString());
+      }
+      writeValues(_values);
+      return;
     }
-    String line = _tokenizerStrategy.format(values);
-    _writer.println(line);
-  }
 
-  public void flush() {
-    _writer.flush();
+    for (int i = 0; i < _formatters.length; i++) {
+      _writer.startField();
+      FieldFormatter formatter = _formatters[i];
+      if (formatter != null) {
+        formatter.format(_context, object, _writer);
+      } else {
+        Object value = _csvValues.get(_fieldNames.get(i));
+        if (value != null)
+          _writer.appendValue(value.toString());
+      }
+    }
+    _writer.endRow();
+    _lineNumber++;
   }
 
-  public void close() {
-    _writer.close();
+  private void writeValues(List<String> values) throws IOException {
+    if (_tokenizerStrategy.getClass() == CsvTokenizerStrategy.class) {
+      for (String value : values) {
+        _writer.startField();
+        _writer.appendValue(value);
+      }
+    } else {
+      _writer.appendRaw(_tokenizerStrategy.format(values));
+    }
+    _writer.endRow();
+    _lineNumber++;
   }
-
-}
\ No newline at end of file
+}
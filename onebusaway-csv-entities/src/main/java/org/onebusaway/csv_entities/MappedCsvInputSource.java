@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A {@link RandomAccessCsvInputSource} that memory-maps its resources, so that
+ * {@link CsvEntityReader} can tokenize them straight from the page cache
+ * without copying them through an {@link InputStream} and a charset decoder.
+ *
+ * The source can be a directory, in which case each file is mapped, or a zip
+ * file, in which case entries that are stored without compression are mapped
+ * directly out of the archive. Compressed entries are still available through
+ * {@link #getResource(String)}. Resources of 2GB or more, and zip64 archives,
+ * are not mapped.
+ */
+public class MappedCsvInputSource implements RandomAccessCsvInputSource {
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+  private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+
+  private static final int LOCAL_HEADER_SIZE = 30;
+
+  private final File _path;
+
+  private ZipFile _zipFile = null;
+
+  private FileChannel _zipChannel = null;
+
+  /**
+   * The data offset and size of each stored zip entry, keyed by entry name
+   */
+  private Map<String, long[]> _storedEntries = new HashMap<String, long[]>();
+
+  public MappedCsvInputSource(File path) throws IOException {
+    _path = path;
+    if (!path.isDirectory()) {
+      _zipFile = new ZipFile(path);
+      _zipChannel = FileChannel.open(path.toPath(), StandardOpenOption.READ);
+      readStoredEntries();
+    }
+  }
+
+  public boolean hasResource(String name) throws IOException {
+    if (_zipFile == null)
+      return new File(_path, name).exists();
+    return _zipFile.getEntry(name) != null;
+  }
+
+  public InputStream getResource(String name) throws IOException {
+    if (_zipFile == null)
+      return new FileInputStream(new File(_path, name));
+    ZipEntry entry = _zipFile.getEntry(name);
+    return _zipFile.getInputStream(entry);
+  }
+
+  public ByteBuffer getResourceBuffer(String name) throws IOException {
+    if (_zipFile == null) {
+      FileChannel channel = FileChannel.open(new File(_path, name).toPath(),
+          StandardOpenOption.READ);
+      try {
+        return map(channel, 0, channel.size());
+      } finally {
+        channel.close();
+      }
+    }
+    long[] range = _storedEntries.get(name);
+    if (range == null)
+      return null;
+    return map(_zipChannel, range[0], range[1]);
+  }
+
+  public void close() throws IOException {
+    if (_zipFile != null) {
+      _zipChannel.close();
+      _zipFile.close();
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static ByteBuffer map(FileChannel channel, long offset, long size)
+      throws IOException {
+    if (size > Integer.MAX_VALUE)
+      return null;
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+  }
+
+  /**
+   * Finds the data of every stored entry by walking the archive's central
+   * directory, and the local header of each stored entry, whose extra field
+   * may differ in length from the one in the central directory.
+   */
+  private void readStoredEntries() throws IOException {
+
+    long fileSize = _zipChannel.size();
+    int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF);
+    ByteBuffer tail = read(fileSize - tailSize, tailSize);
+
+    int end = -1;
+    for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        end = i;
+        break;
+      }
+    }
+    if (end == -1)
+      return;
+
+    int entryCount = tail.getShort(end + 10) & 0xFFFF;
+    long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+    long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+    if (entryCount == 0xFFFF || directoryOffset == 0xFFFFFFFFL
+        || directoryOffset + directorySize > fileSize)
+      return;
+
+    ByteBuffer directory = read(directoryOffset, (int) directorySize);
+    int p = 0;
+    for (int n = 0; n < entryCount; n++) {
+      if (p + CENTRAL_DIRECTORY_HEADER_SIZE > directory.limit()
+          || directory.getInt(p) != CENTRAL_DIRECTORY_SIGNATURE)
+        return;
+      int flags = directory.getShort(p + 8) & 0xFFFF;
+      int method = directory.getShort(p + 10) & 0xFFFF;
+      long compressedSize = directory.getInt(p + 20) & 0xFFFFFFFFL;
+      long size = directory.getInt(p + 24) & 0xFFFFFFFFL;
+      int nameLength = directory.getShort(p + 28) & 0xFFFF;
+      int extraLength = directory.getShort(p + 30) & 0xFFFF;
+      int commentLength = directory.getShort(p + 32) & 0xFFFF;
+      long localHeaderOffset = directory.getInt(p + 42) & 0xFFFFFFFFL;
+
+      byte[] nameBytes = new byte[nameLength];
+      directory.position(p + CENTRAL_DIRECTORY_HEADER_SIZE);
+      directory.get(nameBytes);
+      String name = new String(nameBytes, (flags & 0x800) != 0
+          ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+
+      boolean encrypted = (flags & 0x1) != 0;
+      if (method == ZipEntry.STORED && !encrypted && compressedSize == size
+          && size != 0xFFFFFFFFL && localHeaderOffset != 0xFFFFFFFFL) {
+        ByteBuffer local = read(localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (local.getInt(0) == LOCAL_HEADER_SIGNATURE) {
+          long dataOffset = localHeaderOffset + LOCAL_HEADER_SIZE
+              + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+          if (dataOffset + size <= fileSize)
+            _storedEntries.put(name, new long[] {dataOffset, size});
+        }
+      }
+
+      p += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength
+          + commentLength;
+    }
+  }
+
+  private ByteBuffer read(long offset, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(
+        ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      int n = _zipChannel.read(buffer, offset + buffer.position());
+      if (n < 0)
+        throw new IOException("unexpected end of zip file: " + _path);
+    }
+    buffer.flip();
+    return buffer;
+  }
+}
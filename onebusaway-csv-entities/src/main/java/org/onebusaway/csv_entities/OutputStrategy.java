@@ -20,15 +20,15 @@ import java.io.IOException;
 import org.onebusaway.csv_entities.schema.EntitySchemaFactory;
 
 /**
- * Generic strategy interface for creating {@link IndividualCsvEntityWriter}
- * writers for outputting CSV entities.
+ * Generic strategy interface for creating the {@link EntityHandler} writers
+ * used for outputting CSV entities.
  * 
  * @author bdferris
  * 
  */
 interface OutputStrategy {
 
-  public IndividualCsvEntityWriter getEntityWriter(
+  public EntityHandler getEntityWriter(
       EntitySchemaFactory entitySchemaFactory, CsvEntityContext context,
       Class<?> entityType);
 
@@ -0,0 +1,508 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.onebusaway.csv_entities.exceptions.CsvException;
+import org.onebusaway.csv_entities.schema.EntitySchema;
+import org.onebusaway.csv_entities.schema.EntitySchemaFactory;
+
+/**
+ * Implementation of {@link OutputStrategy} that writes entities to entries
+ * within a Zip file, serializing and compressing each entry on a pool of
+ * worker threads. Entities are handed to the workers in batches, each entry is
+ * spilled to a temporary file next to the output, already compressed, and the
+ * archive is assembled from the spilled entries when the strategy is closed.
+ *
+ * Unlike {@link ZipOutputStrategy}, entities of different types may be written
+ * in any order. Entries appear in the archive in the order their types were
+ * first written. Entities must not be modified after they have been written,
+ * since they may be serialized on another thread.
+ */
+class ParallelZipOutputStrategy implements OutputStrategy {
+
+  private static final int BATCH_SIZE = 4096;
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+  private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+  private static final int ZIP64_EXTRA_FIELD = 0x0001;
+
+  private static final int UTF8_FLAG = 0x0800;
+
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  private final File _path;
+
+  private final int _compressionMethod;
+
+  private final int _compressionLevel;
+
+  private final ExecutorService _executor;
+
+  /**
+   * Bounds the number of batches waiting to be written, so that a fast
+   * producer does not queue up an unbounded number of entities
+   */
+  private final Semaphore _pendingBatches;
+
+  private final Map<Class<?>, EntryWriter> _entriesByType = new LinkedHashMap<Class<?>, EntryWriter>();
+
+  private boolean _closed = false;
+
+  /**
+   * @param path the zip file to write
+   * @param parallelism the number of entries to serialize concurrently
+   * @param compressionMethod {@link ZipEntry#DEFLATED} or
+   *          {@link ZipEntry#STORED}
+   * @param compressionLevel the {@link Deflater} compression level
+   */
+  public ParallelZipOutputStrategy(File path, int parallelism,
+      int compressionMethod, int compressionLevel) {
+    _path = path;
+    _compressionMethod = compressionMethod;
+    _compressionLevel = compressionLevel;
+    _pendingBatches = new Semaphore(parallelism * 4);
+    _executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      private int _index = 0;
+
+      @Override
+      public synchronized Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "csv-writer-" + (_index++));
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  @Override
+  public EntityHandler getEntityWriter(EntitySchemaFactory entitySchemaFactory,
+      CsvEntityContext context, Class<?> entityType) {
+    EntryWriter entry = _entriesByType.get(entityType);
+    if (entry == null) {
+      EntitySchema schema = entitySchemaFactory.getSchema(entityType);
+      entry = new EntryWriter(context, schema);
+      _entriesByType.put(entityType, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Hands any partial batches to the workers, without waiting for them to be
+   * written.
+   */
+  @Override
+  public void flush() throws IOException {
+    for (EntryWriter entry : _entriesByType.values())
+      entry.submitBatch();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (_closed)
+      return;
+    _closed = true;
+    try {
+      for (EntryWriter entry : _entriesByType.values())
+        entry.finish();
+      for (EntryWriter entry : _entriesByType.values())
+        entry.await();
+      assemble();
+    } finally {
+      _executor.shutdownNow();
+      for (EntryWriter entry : _entriesByType.values())
+        entry.deleteSpill();
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Writes the archive: each spilled entry preceded by its local header,
+   * followed by the central directory. Zip64 records are used where sizes,
+   * offsets or the entry count exceed the limits of the original format.
+   */
+  private void assemble() throws IOException {
+
+    FileChannel out = FileChannel.open(_path.toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+
+    try {
+      int[] dosDateTime = getDosDateTime(LocalDateTime.now());
+
+      for (EntryWriter entry : _entriesByType.values()) {
+        entry._offset = out.position();
+        writeFully(out, entry.getLocalHeader(dosDateTime));
+        FileChannel spill = FileChannel.open(entry._spillFile.toPath(),
+            StandardOpenOption.READ);
+        try {
+          long size = spill.size();
+          long position = 0;
+          while (position < size)
+            position += spill.transferTo(position, size - position, out);
+        } finally {
+          spill.close();
+        }
+      }
+
+      long directoryOffset = out.position();
+      for (EntryWriter entry : _entriesByType.values())
+        writeFully(out, entry.getCentralDirectoryHeader(dosDateTime));
+      long directorySize = out.position() - directoryOffset;
+
+      int entryCount = _entriesByType.size();
+      boolean zip64 = entryCount >= 0xFFFF || directoryOffset >= ZIP64_MAGIC
+          || directorySize >= ZIP64_MAGIC;
+
+      if (zip64) {
+        long zip64Offset = out.position();
+        ByteBuffer record = allocate(56 + 20);
+        record.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        record.putLong(44);
+        record.putShort((short) 45);
+        record.putShort((short) 45);
+        record.putInt(0);
+        record.putInt(0);
+        record.putLong(entryCount);
+        record.putLong(entryCount);
+        record.putLong(directorySize);
+        record.putLong(directoryOffset);
+        record.putInt(ZIP64_LOCATOR_SIGNATURE);
+        record.putInt(0);
+        record.putLong(zip64Offset);
+        record.putInt(1);
+        record.flip();
+        writeFully(out, record);
+      }
+
+      ByteBuffer end = allocate(22);
+      end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+      end.putShort((short) 0);
+      end.putShort((short) 0);
+      end.putShort((short) (zip64 ? 0xFFFF : entryCount));
+      end.putShort((short) (zip64 ? 0xFFFF : entryCount));
+      end.putInt((int) (zip64 ? ZIP64_MAGIC : directorySize));
+      end.putInt((int) (zip64 ? ZIP64_MAGIC : directoryOffset));
+      end.putShort((short) 0);
+      end.flip();
+      writeFully(out, end);
+    } finally {
+      out.close();
+    }
+  }
+
+  private static int[] getDosDateTime(LocalDateTime time) {
+    int date = ((Math.max(time.getYear(), 1980) - 1980) << 9)
+        | (time.getMonthValue() << 5) | time.getDayOfMonth();
+    int dosTime = (time.getHour() << 11) | (time.getMinute() << 5)
+        | (time.getSecond() / 2);
+    return new int[] {date, dosTime};
+  }
+
+  private static ByteBuffer allocate(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void writeFully(WritableByteChannel channel, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+  }
+
+  /**
+   * Collects the entities of one type into batches, and writes the batches in
+   * order on the worker pool to a temporary spill file.
+   */
+  private final class EntryWriter implements EntityHandler {
+
+    private final CsvEntityContext _context;
+
+    private final EntitySchema _schema;
+
+    private final byte[] _name;
+
+    private List<Object> _batch = new ArrayList<Object>();
+
+    /**
+     * Completes when the last submitted batch has been written
+     */
+    private CompletableFuture<Void> _tail = CompletableFuture.completedFuture(null);
+
+    private File _spillFile;
+
+    private SpillChannel _spill;
+
+    private IndividualCsvEntityWriter _writer;
+
+    private long _compressedSize;
+
+    private long _offset;
+
+    public EntryWriter(CsvEntityContext context, EntitySchema schema) {
+      _context = context;
+      _schema = schema;
+      _name = schema.getFilename().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void handleEntity(Object entity) {
+      _batch.add(entity);
+      if (_batch.size() == BATCH_SIZE)
+        submitBatch();
+    }
+
+    public void submitBatch() {
+      if (_batch.isEmpty())
+        return;
+      final List<Object> batch = _batch;
+      _batch = new ArrayList<Object>();
+      _pendingBatches.acquireUninterruptibly();
+      _tail = _tail.thenRunAsync(() -> write(batch), _executor);
+      _tail.whenComplete((result, failure) -> _pendingBatches.release());
+    }
+
+    public void finish() {
+      submitBatch();
+      _tail = _tail.thenRunAsync(() -> close(), _executor);
+    }
+
+    public void await() throws IOException {
+      try {
+        _tail.join();
+      } catch (CompletionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
+        throw new CsvException("error writing zip entry "
+            + _schema.getFilename(), cause);
+      }
+    }
+
+    public void deleteSpill() {
+      if (_spill != null) {
+        try {
+          _spill.close();
+        } catch (IOException ex) {
+          // The entry has already failed, or been written
+        }
+      }
+      if (_spillFile != null)
+        _spillFile.delete();
+    }
+
+    public ByteBuffer getLocalHeader(int[] dosDateTime) {
+      boolean zip64 = _spill._size >= ZIP64_MAGIC
+          || _compressedSize >= ZIP64_MAGIC;
+      ByteBuffer header = allocate(30 + _name.length + (zip64 ? 20 : 0));
+      header.putInt(LOCAL_HEADER_SIGNATURE);
+      header.putShort((short) (zip64 ? 45 : 20));
+      putEntryFields(header, dosDateTime, zip64);
+      header.putShort((short) _name.length);
+      header.putShort((short) (zip64 ? 20 : 0));
+      header.put(_name);
+      if (zip64) {
+        header.putShort((short) ZIP64_EXTRA_FIELD);
+        header.putShort((short) 16);
+        header.putLong(_spill._size);
+        header.putLong(_compressedSize);
+      }
+      header.flip();
+      return header;
+    }
+
+    public ByteBuffer getCentralDirectoryHeader(int[] dosDateTime) {
+      boolean zip64Sizes = _spill._size >= ZIP64_MAGIC
+          || _compressedSize >= ZIP64_MAGIC;
+      boolean zip64Offset = _offset >= ZIP64_MAGIC;
+      int extraLength = (zip64Sizes ? 16 : 0) + (zip64Offset ? 8 : 0);
+      if (extraLength > 0)
+        extraLength += 4;
+      short version = (short) (extraLength > 0 ? 45 : 20);
+      ByteBuffer header = allocate(46 + _name.length + extraLength);
+      header.putInt(CENTRAL_DIRECTORY_SIGNATURE);
+      header.putShort(version);
+      header.putShort(version);
+      putEntryFields(header, dosDateTime, zip64Sizes);
+      header.putShort((short) _name.length);
+      header.putShort((short) extraLength);
+      header.putShort((short) 0);
+      header.putShort((short) 0);
+      header.putShort((short) 0);
+      header.putInt(0);
+      header.putInt((int) (zip64Offset ? ZIP64_MAGIC : _offset));
+      header.put(_name);
+      if (extraLength > 0) {
+        header.putShort((short) ZIP64_EXTRA_FIELD);
+        header.putShort((short) (extraLength - 4));
+        if (zip64Sizes) {
+          header.putLong(_spill._size);
+          header.putLong(_compressedSize);
+        }
+        if (zip64Offset)
+          header.putLong(_offset);
+      }
+      header.flip();
+      return header;
+    }
+
+    /****
+     * Private Methods
+     ****/
+
+    /**
+     * The fields common to the local and central directory headers, from the
+     * general purpose flags to the uncompressed size
+     */
+    private void putEntryFields(ByteBuffer header, int[] dosDateTime,
+        boolean zip64) {
+      header.putShort((short) UTF8_FLAG);
+      header.putShort((short) _compressionMethod);
+      header.putShort((short) dosDateTime[1]);
+      header.putShort((short) dosDateTime[0]);
+      header.putInt((int) _spill._crc.getValue());
+      header.putInt((int) (zip64 ? ZIP64_MAGIC : _compressedSize));
+      header.putInt((int) (zip64 ? ZIP64_MAGIC : _spill._size));
+    }
+
+    private void write(List<Object> batch) {
+      open();
+      for (Object entity : batch)
+        _writer.handleEntity(entity);
+    }
+
+    private void close() {
+      open();
+      _writer.close();
+      _compressedSize = _spillFile.length();
+    }
+
+    private void open() {
+      if (_writer != null)
+        return;
+      try {
+        _spillFile = File.createTempFile("csv-entry-", ".tmp",
+            _path.getAbsoluteFile().getParentFile());
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(
+            _spillFile));
+        Deflater deflater = null;
+        if (_compressionMethod == ZipEntry.DEFLATED) {
+          deflater = new Deflater(_compressionLevel, true);
+          out = new DeflaterOutputStream(out, deflater, 64 * 1024);
+        }
+        _spill = new SpillChannel(out, deflater);
+        _writer = new IndividualCsvEntityWriter(_context, _schema,
+            new CsvRowWriter(_spill));
+      } catch (IOException ex) {
+        throw new CsvException("error creating spill file for zip entry "
+            + _schema.getFilename(), ex);
+      }
+    }
+  }
+
+  /**
+   * Writes uncompressed entry data to a spill stream, computing the checksum
+   * and size the zip headers need along the way.
+   */
+  private static final class SpillChannel implements WritableByteChannel {
+
+    private final OutputStream _out;
+
+    private final Deflater _deflater;
+
+    private final CRC32 _crc = new CRC32();
+
+    private long _size = 0;
+
+    private boolean _open = true;
+
+    public SpillChannel(OutputStream out, Deflater deflater) {
+      _out = out;
+      _deflater = deflater;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      int n = src.remaining();
+      _crc.update(src.duplicate());
+      if (src.hasArray()) {
+        _out.write(src.array(), src.arrayOffset() + src.position(), n);
+        src.position(src.limit());
+      } else {
+        byte[] bytes = new byte[n];
+        src.get(bytes);
+        _out.write(bytes);
+      }
+      _size += n;
+      return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return _open;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!_open)
+        return;
+      _open = false;
+      try {
+        _out.close();
+      } finally {
+        if (_deflater != null)
+          _deflater.end();
+      }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link CsvInputSource} that can expose the raw bytes of a resource as a
+ * {@link ByteBuffer}, which allows {@link CsvEntityReader} to split a large
+ * resource into chunks that are parsed concurrently.
+ */
+public interface RandomAccessCsvInputSource extends CsvInputSource {
+
+  /**
+   * @param name the resource name
+   * @return the contents of the resource, between the buffer's position and
+   *         limit, or null if the resource cannot be exposed as a buffer (for
+   *         example, a compressed zip entry)
+   */
+  public ByteBuffer getResourceBuffer(String name) throws IOException;
+}
@@ -15,12 +15,14 @@
  */
 package org.onebusaway.csv_entities;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-public class ZipFileCsvInputSource implements CsvInputSource {
+public class ZipFileCsvInputSource implements RandomAccessCsvInputSource {
 
   private ZipFile _zipFile;
 
@@ -38,6 +40,27 @@ public class ZipFileCsvInputSource implements CsvInputSource {
     return _zipFile.getInputStream(entry);
   }
 
+  /**
+   * Only entries that are stored without compression are exposed as buffers,
+   * since they can be copied out of the archive without inflating them.
+   */
+  public ByteBuffer getResourceBuffer(String name) throws IOException {
+    ZipEntry entry = _zipFile.getEntry(name);
+    if (entry == null || entry.getMethod() != ZipEntry.STORED)
+      return null;
+    long size = entry.getSize();
+    if (size < 0 || size > Integer.MAX_VALUE - 8)
+      return null;
+    byte[] data = new byte[(int) size];
+    DataInputStream in = new DataInputStream(_zipFile.getInputStream(entry));
+    try {
+      in.readFully(data);
+    } finally {
+      in.close();
+    }
+    return ByteBuffer.wrap(data);
+  }
+
   public void close() throws IOException {
     _zipFile.close();
   }
@@ -18,10 +18,11 @@ package org.onebusaway.csv_entities;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -44,7 +45,7 @@ class ZipOutputStrategy implements OutputStrategy {
 
   private final ZipOutputStream _out;
 
-  private final PrintWriter _writer;
+  private final WritableByteChannel _channel;
 
   private final Set<Class<?>> _typesWeHaveAlreadySeen = new HashSet<Class<?>>();
 
@@ -52,16 +53,20 @@ class ZipOutputStrategy implements OutputStrategy {
 
   private IndividualCsvEntityWriter _currentWriter = null;
 
-  public ZipOutputStrategy(ZipOutputStream out, PrintWriter writer) {
+  public ZipOutputStrategy(ZipOutputStream out) {
     _out = out;
-    _writer = writer;
+    _channel = Channels.newChannel(out);
   }
 
   public static ZipOutputStrategy create(File path) {
+    return create(path, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  public static ZipOutputStrategy create(File path, int compressionLevel) {
     try {
       ZipOutputStream out = new ZipOutputStream(new FileOutputStream(path));
-      PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, "UTF-8"));
-      return new ZipOutputStrategy(out, writer);
+      out.setLevel(compressionLevel);
+      return new ZipOutputStrategy(out);
     } catch (IOException ex) {
       throw new CsvException("Error creating ZipOutputStrategy for path "
           + path, ex);
@@ -94,12 +99,15 @@ class ZipOutputStrategy implements OutputStrategy {
       throw new CsvException("Error opening zip entry", ex);
     }
 
-    _currentWriter = new IndividualCsvEntityWriter(context, schema, _writer);
+    _currentWriter = new IndividualCsvEntityWriter(context, schema,
+        new CsvRowWriter(_channel));
     return _currentWriter;
   }
 
   @Override
   public void flush() throws IOException {
+    if (_currentWriter != null)
+      _currentWriter.flush();
     _out.flush();
   }
 
@@ -112,7 +120,7 @@ class ZipOutputStrategy implements OutputStrategy {
   private void closeCurrentEntityWriter() {
     if (_currentType != null) {
       try {
-        _writer.flush();
+        _currentWriter.flush();
         _out.closeEntry();
       } catch (IOException ex) {
         throw new CsvException("Error closing zip entry", ex);
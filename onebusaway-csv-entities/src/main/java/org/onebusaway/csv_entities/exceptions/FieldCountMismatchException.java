@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities.exceptions;
+
+/**
+ * Indicates that a line of CSV source for the specified entity type has more
+ * fields than its header, so that some of its values cannot be matched to a
+ * field name. Lines with fewer fields are padded with empty values instead.
+ */
+public class FieldCountMismatchException extends CsvEntityException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int _lineNumber;
+
+  private final int _expectedFieldCount;
+
+  private final int _actualFieldCount;
+
+  public FieldCountMismatchException(Class<?> entityType, int lineNumber,
+      int expectedFieldCount, int actualFieldCount) {
+    super(entityType, "expected and actual number of csv fields differ: type="
+        + entityType.getName() + " line # " + lineNumber + " expected="
+        + expectedFieldCount + " actual=" + actualFieldCount);
+    _lineNumber = lineNumber;
+    _expectedFieldCount = expectedFieldCount;
+    _actualFieldCount = actualFieldCount;
+  }
+
+  public int getLineNumber() {
+    return _lineNumber;
+  }
+
+  public int getExpectedFieldCount() {
+    return _expectedFieldCount;
+  }
+
+  public int getActualFieldCount() {
+    return _actualFieldCount;
+  }
+}
@@ -18,6 +18,7 @@ package org.onebusaway.csv_entities.schema;
 
 import java.lang.reflect.Method;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import org.onebusaway.csv_entities.exceptions.MethodInvocationException;
@@ -132,31 +133,144 @@ public abstract class AbstractFieldMapping implements SingleFieldMapping {
 
   protected boolean isMissing(BeanWrapper object) {
     if (_isSetMethod != null) {
-      Object instance = object.getWrappedInstance(Object.class);
-      try {
-        Object r = _isSetMethod.invoke(instance);
-        if (r != null && r instanceof Boolean) {
-          Boolean b = (Boolean) r;
-          return !b.booleanValue();
-        }
-      } catch (Exception ex) {
-        throw new MethodInvocationException(_entityType, _isSetMethod, ex);
-      }
+      return !isSet(object.getWrappedInstance(Object.class));
     } else {
-      Object obj = object.getPropertyValue(_objFieldName);
-      if (obj == null) {
-        return true;
-      }
-      if (_defaultValue != null && !_defaultValue.isEmpty()) {
-        return _defaultValue.equals(obj.toString());
-      }
-      return (obj instanceof String && obj.toString().isEmpty());
+      return isMissingValue(object.getPropertyValue(_objFieldName));
     }
-    return false;
   }
 
   protected boolean isOptional() {
     return !_required;
   }
 
+  /****
+   * Helpers for {@link CompilableFieldMapping} implementations
+   ****/
+
+  /**
+   * @return the column index of this mapping's CSV field, or -1 if the field
+   *         is not present in the header
+   */
+  protected int getColumnIndex(Map<String, Integer> columnIndices) {
+    Integer index = columnIndices.get(_csvFieldName);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Positional equivalent of {@link #isMissingAndOptional(Map)}.
+   */
+  protected boolean isMissingAndOptional(List<String> values, int columnIndex) {
+
+    boolean missing = columnIndex == -1
+        || values.get(columnIndex).length() == 0;
+
+    if (_required && missing)
+      throw new MissingRequiredFieldException(_entityType, _csvFieldName);
+
+    return missing;
+  }
+
+  /**
+   * @return a pre-resolved accessor for this mapping's object field on the
+   *         specified entity class, or null if the field is not writable
+   */
+  protected PropertyAccessor findSetter(Class<?> entityClass) {
+    PropertyAccessor accessor = BeanWrapperFactory.getPropertyAccessor(
+        entityClass, _objFieldName);
+    if (accessor == null || !accessor.isWritable())
+      return null;
+    return accessor;
+  }
+
+  /**
+   * @return true if the specified subclass of this mapping type still uses
+   *         this type's implementation of
+   *         {@link #translateFromCSVToObject(org.onebusaway.csv_entities.CsvEntityContext, Map, BeanWrapper)}
+   *         , in which case a compiled binder is equivalent
+   */
+  protected boolean isReadPathInheritedFrom(Class<?> mappingType) {
+    return isDeclaredBy(mappingType, "translateFromCSVToObject",
+        org.onebusaway.csv_entities.CsvEntityContext.class, Map.class,
+        BeanWrapper.class);
+  }
+
+  /****
+   * Helpers for {@link FormattableFieldMapping} implementations
+   ****/
+
+  /**
+   * Object equivalent of {@link #isMissingAndOptional(BeanWrapper)}, for a
+   * property value that has already been read from the entity.
+   */
+  protected boolean isMissingAndOptional(Object entity, Object value) {
+
+    boolean missing = _isSetMethod != null ? !isSet(entity)
+        : isMissingValue(value);
+
+    if (_required && missing)
+      throw new MissingRequiredFieldException(_entityType, _objFieldName);
+
+    return missing;
+  }
+
+  /**
+   * @return a pre-resolved accessor for this mapping's object field on the
+   *         specified entity class, or null if the field is not readable
+   */
+  protected PropertyAccessor findGetter(Class<?> entityClass) {
+    PropertyAccessor accessor = BeanWrapperFactory.getPropertyAccessor(
+        entityClass, _objFieldName);
+    if (accessor == null || !accessor.isReadable())
+      return null;
+    return accessor;
+  }
+
+  /**
+   * @return true if the specified subclass of this mapping type still uses
+   *         this type's implementation of
+   *         {@link #translateFromObjectToCSV(org.onebusaway.csv_entities.CsvEntityContext, BeanWrapper, Map)}
+   *         , in which case a compiled formatter is equivalent
+   */
+  protected boolean isWritePathInheritedFrom(Class<?> mappingType) {
+    return isDeclaredBy(mappingType, "translateFromObjectToCSV",
+        org.onebusaway.csv_entities.CsvEntityContext.class, BeanWrapper.class,
+        Map.class);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private boolean isSet(Object instance) {
+    try {
+      Object r = _isSetMethod.invoke(instance);
+      if (r != null && r instanceof Boolean) {
+        Boolean b = (Boolean) r;
+        return b.booleanValue();
+      }
+    } catch (Exception ex) {
+      throw new MethodInvocationException(_entityType, _isSetMethod, ex);
+    }
+    return true;
+  }
+
+  private boolean isMissingValue(Object obj) {
+    if (obj == null) {
+      return true;
+    }
+    if (_defaultValue != null && !_defaultValue.isEmpty()) {
+      return _defaultValue.equals(obj.toString());
+    }
+    return (obj instanceof String && obj.toString().isEmpty());
+  }
+
+  private boolean isDeclaredBy(Class<?> mappingType, String methodName,
+      Class<?>... parameterTypes) {
+    try {
+      Method method = getClass().getMethod(methodName, parameterTypes);
+      return method.getDeclaringClass() == mappingType;
+    } catch (NoSuchMethodException ex) {
+      return false;
+    }
+  }
 }
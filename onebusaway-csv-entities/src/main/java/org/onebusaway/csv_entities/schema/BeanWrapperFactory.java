@@ -17,77 +17,99 @@ package org.onebusaway.csv_entities.schema;
 
 import java.beans.BeanInfo;
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.onebusaway.csv_entities.exceptions.IntrospectionException;
-import org.onebusaway.csv_entities.exceptions.MethodInvocationException;
 import org.onebusaway.csv_entities.exceptions.NoSuchPropertyException;
 
+/**
+ * Creates {@link BeanWrapper} instances backed by per-class property metadata
+ * that is introspected once and cached. The cache is safe for concurrent use,
+ * and property access goes through pre-resolved {@link PropertyAccessor}
+ * method handles rather than reflective invocation. Wrappers themselves are
+ * lightweight flyweights holding only the wrapped instance and a reference to
+ * the shared class metadata.
+ */
 public class BeanWrapperFactory {
 
-  private static Map<Class<?>, BeanClassWrapperImpl> _classWrappers = new HashMap<Class<?>, BeanClassWrapperImpl>();
+  private static final ConcurrentMap<Class<?>, BeanClassWrapperImpl> _classWrappers = new ConcurrentHashMap<Class<?>, BeanClassWrapperImpl>();
 
   public static BeanWrapper wrap(Object object) {
-    Class<? extends Object> c = object.getClass();
+    return new BeanWrapperImpl(getClassWrapper(object.getClass()), object);
+  }
+
+  /**
+   * Re-targets a wrapper previously returned by this factory at a new
+   * instance, avoiding a wrapper allocation in tight loops. Only use this when
+   * the previous wrapper is no longer referenced elsewhere.
+   * 
+   * @param object the instance to wrap
+   * @param reuse a wrapper previously returned by this factory, or null
+   * @return a wrapper for the specified object
+   */
+  public static BeanWrapper wrap(Object object, BeanWrapper reuse) {
+    if (!(reuse instanceof BeanWrapperImpl))
+      return wrap(object);
+    BeanWrapperImpl wrapper = (BeanWrapperImpl) reuse;
+    if (wrapper._wrappedInstance == null
+        || wrapper._wrappedInstance.getClass() != object.getClass())
+      wrapper._classWrapper = getClassWrapper(object.getClass());
+    wrapper._wrappedInstance = object;
+    return wrapper;
+  }
+
+  /**
+   * @return a cached, thread-safe accessor for the specified property, or null
+   *         if the type has no such property
+   */
+  public static PropertyAccessor getPropertyAccessor(Class<?> type,
+      String propertyName) {
+    return getClassWrapper(type).getAccessor(propertyName);
+  }
+
+  private static BeanClassWrapperImpl getClassWrapper(Class<?> c) {
     BeanClassWrapperImpl classWrapper = _classWrappers.get(c);
     if (classWrapper == null) {
       try {
         BeanInfo beanInfo = java.beans.Introspector.getBeanInfo(c);
-        classWrapper = new BeanClassWrapperImpl(beanInfo);
-        _classWrappers.put(c, classWrapper);
+        classWrapper = new BeanClassWrapperImpl(c, beanInfo);
       } catch (Exception ex) {
         throw new IntrospectionException(c);
       }
+      BeanClassWrapperImpl existing = _classWrappers.putIfAbsent(c,
+          classWrapper);
+      if (existing != null)
+        classWrapper = existing;
     }
-
-    return new BeanWrapperImpl(classWrapper, object);
+    return classWrapper;
   }
 
   private static class BeanClassWrapperImpl {
 
-    private Map<String, Method> _readMethods = new HashMap<String, Method>();
+    private final Map<String, PropertyAccessor> _accessors = new HashMap<String, PropertyAccessor>();
 
-    private Map<String, Method> _writeMethods = new HashMap<String, Method>();
-
-    public BeanClassWrapperImpl(BeanInfo info) {
+    public BeanClassWrapperImpl(Class<?> type, BeanInfo info) {
       PropertyDescriptor[] properties = info.getPropertyDescriptors();
       for (PropertyDescriptor property : properties) {
         String name = property.getName();
-        _readMethods.put(name, property.getReadMethod());
-        _writeMethods.put(name, property.getWriteMethod());
+        _accessors.put(name, new PropertyAccessor(type, name,
+            property.getReadMethod(), property.getWriteMethod()));
       }
     }
 
-    public Class<?> getPropertyType(Object object, String propertyName) {
-      Method method = _readMethods.get(propertyName);
-      if (method == null)
-        throw new NoSuchPropertyException(object.getClass(), propertyName);
-      return method.getReturnType();
+    public PropertyAccessor getAccessor(String propertyName) {
+      return _accessors.get(propertyName);
     }
 
-    public Object getPropertyValue(Object object, String propertyName) {
-      Method method = _readMethods.get(propertyName);
-      if (method == null)
+    public PropertyAccessor getExistingAccessor(Object object,
+        String propertyName) {
+      PropertyAccessor accessor = _accessors.get(propertyName);
+      if (accessor == null)
         throw new NoSuchPropertyException(object.getClass(), propertyName);
-      try {
-        return method.invoke(object);
-      } catch (Exception ex) {
-        throw new MethodInvocationException(object.getClass(), method, ex);
-      }
-    }
-
-    public void setPropertyValue(Object object, String propertyName,
-        Object value) {
-      Method method = _writeMethods.get(propertyName);
-      if (method == null)
-        throw new NoSuchPropertyException(object.getClass(), propertyName);
-      try {
-        method.invoke(object, value);
-      } catch (Exception ex) {
-        throw new MethodInvocationException(object.getClass(), method, ex);
-      }
+      return accessor;
     }
   }
 
@@ -109,16 +131,17 @@ public class BeanWrapperFactory {
     }
 
     public Class<?> getPropertyType(String propertyName) {
-      return _classWrapper.getPropertyType(_wrappedInstance, propertyName);
+      return _classWrapper.getExistingAccessor(_wrappedInstance, propertyName).getPropertyType();
     }
 
     public Object getPropertyValue(String propertyName) {
-      return _classWrapper.getPropertyValue(_wrappedInstance, propertyName);
+      return _classWrapper.getExistingAccessor(_wrappedInstance, propertyName).getValue(
+          _wrappedInstance);
     }
 
     public void setPropertyValue(String propertyName, Object value) {
-      _classWrapper.setPropertyValue(_wrappedInstance, propertyName, value);
+      _classWrapper.getExistingAccessor(_wrappedInstance, propertyName).setValue(
+          _wrappedInstance, value);
     }
-
   }
 }
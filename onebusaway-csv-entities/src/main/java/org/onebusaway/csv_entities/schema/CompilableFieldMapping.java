@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities.schema;
+
+import java.util.Map;
+
+/**
+ * A {@link FieldMapping} that can be compiled, once per CSV header, into a
+ * {@link FieldBinder} that reads its value directly by column index instead of
+ * looking it up in a per-row map of CSV values.
+ */
+public interface CompilableFieldMapping extends FieldMapping {
+
+  /**
+   * @param entityClass the concrete class of the entities that will be bound
+   * @param columnIndices the index of each CSV column in the header
+   * @return a binder for the specified header, or null if this mapping cannot
+   *         be compiled, in which case
+   *         {@link #translateFromCSVToObject(org.onebusaway.csv_entities.CsvEntityContext, Map, BeanWrapper)}
+   *         will be used instead
+   */
+  public FieldBinder compile(Class<?> entityClass,
+      Map<String, Integer> columnIndices);
+}
@@ -15,14 +15,17 @@
  */
 package org.onebusaway.csv_entities.schema;
 
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.beanutils.ConvertUtils;
 import org.apache.commons.beanutils.Converter;
 import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.CsvRowWriter;
 import org.onebusaway.csv_entities.exceptions.NoDefaultConverterException;
 
-public class DefaultFieldMapping extends AbstractFieldMapping {
+public class DefaultFieldMapping extends AbstractFieldMapping implements
+    CompilableFieldMapping, FormattableFieldMapping {
 
   protected Class<?> _objFieldType;
 
@@ -58,6 +61,52 @@ public class DefaultFieldMapping extends AbstractFieldMapping {
     csvValues.put(_csvFieldName, objValue);
   }
 
+  @Override
+  public FieldBinder compile(Class<?> entityClass,
+      Map<String, Integer> columnIndices) {
+
+    if (!isReadPathInheritedFrom(DefaultFieldMapping.class))
+      return null;
+
+    final PropertyAccessor setter = findSetter(entityClass);
+    if (setter == null)
+      return null;
+
+    final int columnIndex = getColumnIndex(columnIndices);
+
+    return new FieldBinder() {
+      @Override
+      public void bind(CsvEntityContext context, List<String> values,
+          Object entity) {
+        if (isMissingAndOptional(values, columnIndex))
+          return;
+        setter.setValue(entity, convertCsvValue(values.get(columnIndex)));
+      }
+    };
+  }
+
+  @Override
+  public FieldFormatter compileFormatter(Class<?> entityClass) {
+
+    if (!isWritePathInheritedFrom(DefaultFieldMapping.class))
+      return null;
+
+    final PropertyAccessor getter = findGetter(entityClass);
+    if (getter == null)
+      return null;
+
+    return new FieldFormatter() {
+      @Override
+      public void format(CsvEntityContext context, Object entity,
+          CsvRowWriter row) {
+        Object value = getter.getValue(entity);
+        if (isMissingAndOptional(entity, value))
+          return;
+        row.appendValue(value);
+      }
+    };
+  }
+
   private Object convertCsvValue(Object csvValue) {
     if (_converter != null) {
       return _converter.convert(_objFieldType, csvValue);
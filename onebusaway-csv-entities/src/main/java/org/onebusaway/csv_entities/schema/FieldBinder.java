@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities.schema;
+
+import java.util.List;
+
+import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.exceptions.CsvEntityException;
+
+/**
+ * Positional equivalent of
+ * {@link FieldMapping#translateFromCSVToObject(CsvEntityContext, java.util.Map, BeanWrapper)}
+ * compiled for a specific CSV header by a {@link CompilableFieldMapping}.
+ */
+public interface FieldBinder {
+
+  /**
+   * @param context the reader context
+   * @param values the CSV values of the current row, in header order
+   * @param entity the entity instance to populate
+   */
+  public void bind(CsvEntityContext context, List<String> values, Object entity)
+      throws CsvEntityException;
+}
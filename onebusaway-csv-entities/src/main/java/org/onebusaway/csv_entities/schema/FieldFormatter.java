@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities.schema;
+
+import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.CsvRowWriter;
+import org.onebusaway.csv_entities.exceptions.CsvEntityException;
+
+/**
+ * Streaming equivalent of
+ * {@link FieldMapping#translateFromObjectToCSV(CsvEntityContext, BeanWrapper, java.util.Map)}
+ * compiled for a specific entity class by a {@link FormattableFieldMapping}.
+ */
+public interface FieldFormatter {
+
+  /**
+   * Appends the value of the mapped field to the current field of the row,
+   * appending nothing if the value is missing.
+   *
+   * @param context the writer context
+   * @param entity the entity being written
+   * @param row the row being written
+   */
+  public void format(CsvEntityContext context, Object entity, CsvRowWriter row)
+      throws CsvEntityException;
+}
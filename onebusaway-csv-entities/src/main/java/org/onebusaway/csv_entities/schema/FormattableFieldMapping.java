@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities.schema;
+
+import java.util.Map;
+
+/**
+ * A {@link SingleFieldMapping} that can be compiled, once per entity class,
+ * into a {@link FieldFormatter} that writes its value straight into a
+ * {@link org.onebusaway.csv_entities.CsvRowWriter} instead of going through a
+ * per-row map of CSV values.
+ */
+public interface FormattableFieldMapping extends SingleFieldMapping {
+
+  /**
+   * @param entityClass the class of the entities that will be written
+   * @return a formatter for the specified class, or null if this mapping cannot
+   *         be compiled, in which case
+   *         {@link #translateFromObjectToCSV(org.onebusaway.csv_entities.CsvEntityContext, BeanWrapper, Map)}
+   *         will be used instead
+   */
+  public FieldFormatter compileFormatter(Class<?> entityClass);
+}
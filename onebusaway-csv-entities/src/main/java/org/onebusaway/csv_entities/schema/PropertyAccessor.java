@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities.schema;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import org.onebusaway.csv_entities.exceptions.MethodInvocationException;
+import org.onebusaway.csv_entities.exceptions.NoSuchPropertyException;
+
+/**
+ * Pre-resolved read and write access to a single bean property of a specific
+ * class. The underlying methods are invoked through {@link MethodHandle}s
+ * adapted to generic (Object) signatures, falling back to
+ * {@link Method#invoke(Object, Object...)} only when a method handle cannot be
+ * obtained. Instances are immutable, shared across threads and cached by
+ * {@link BeanWrapperFactory#getPropertyAccessor(Class, String)}.
+ */
+public final class PropertyAccessor {
+
+  private static final MethodType GENERIC_GETTER_TYPE = MethodType.methodType(
+      Object.class, Object.class);
+
+  private static final MethodType GENERIC_SETTER_TYPE = MethodType.methodType(
+      void.class, Object.class, Object.class);
+
+  private final Class<?> _beanType;
+
+  private final String _name;
+
+  private final Method _readMethod;
+
+  private final Method _writeMethod;
+
+  private final MethodHandle _getter;
+
+  private final MethodHandle _setter;
+
+  PropertyAccessor(Class<?> beanType, String name, Method readMethod,
+      Method writeMethod) {
+    _beanType = beanType;
+    _name = name;
+    _readMethod = readMethod;
+    _writeMethod = writeMethod;
+    _getter = unreflect(readMethod, GENERIC_GETTER_TYPE);
+    _setter = unreflect(writeMethod, GENERIC_SETTER_TYPE);
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  public boolean isReadable() {
+    return _readMethod != null;
+  }
+
+  public boolean isWritable() {
+    return _writeMethod != null;
+  }
+
+  /**
+   * @return the property type, as determined by the read method
+   */
+  public Class<?> getPropertyType() {
+    if (_readMethod == null)
+      throw new NoSuchPropertyException(_beanType, _name);
+    return _readMethod.getReturnType();
+  }
+
+  public Object getValue(Object bean) {
+    if (_readMethod == null)
+      throw new NoSuchPropertyException(_beanType, _name);
+    try {
+      if (_getter != null)
+        return (Object) _getter.invokeExact(bean);
+      return _readMethod.invoke(bean);
+    } catch (Error err) {
+      throw err;
+    } catch (Throwable ex) {
+      throw new MethodInvocationException(_beanType, _readMethod,
+          (Exception) ex);
+    }
+  }
+
+  public void setValue(Object bean, Object value) {
+    if (_writeMethod == null)
+      throw new NoSuchPropertyException(_beanType, _name);
+    try {
+      if (_setter != null)
+        _setter.invokeExact(bean, value);
+      else
+        _writeMethod.invoke(bean, value);
+    } catch (Error err) {
+      throw err;
+    } catch (Throwable ex) {
+      throw new MethodInvocationException(_beanType, _writeMethod,
+          (Exception) ex);
+    }
+  }
+
+  private static MethodHandle unreflect(Method method, MethodType type) {
+    if (method == null)
+      return null;
+    try {
+      return MethodHandles.publicLookup().unreflect(method).asType(type);
+    } catch (IllegalAccessException ex) {
+      // Public method on a non-public class, so try again below
+    }
+    try {
+      if (method.trySetAccessible())
+        return MethodHandles.lookup().unreflect(method).asType(type);
+    } catch (IllegalAccessException | SecurityException ex) {
+      // Fall back to reflection
+    }
+    return null;
+  }
+}
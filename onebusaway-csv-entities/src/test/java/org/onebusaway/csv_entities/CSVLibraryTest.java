@@ -18,6 +18,8 @@ package org.onebusaway.csv_entities;
 
 import static org.junit.Assert.assertEquals;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import org.junit.Before;
@@ -133,4 +135,35 @@ public class CSVLibraryTest {
     assertEquals("c", tokens.get(1));
     assertEquals("d", tokens.get(2));
   }
+
+  @Test
+  public void testParseBytes() {
+
+    String[] lines = {
+        "a,b,c", "a,\"b b\",\"c,c\"", "b\"b", "\"\"\"x\"\"\",y\"z",
+        "\u00e9,\"\u65e5,\u672c\",\ud83d\ude8c", " \"g\" ", ",,"};
+    CsvRowCursor row = new CsvRowCursor();
+
+    for (boolean trim : new boolean[] {false, true}) {
+      _csv.setTrimInitialWhitespace(trim);
+      for (String line : lines) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        _csv.parse(ByteBuffer.wrap(bytes), 0, bytes.length, row);
+        assertEquals(line, _csv.parse(line), row.toList());
+      }
+    }
+  }
+
+  @Test
+  public void testFindRecordEnd() {
+
+    byte[] bytes = "a,\"b\nc\"\nd,e\"f\r\n\"\"\"\n\"".getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    // Records end with their line, even inside quotes
+    assertEquals(4, _csv.findRecordEnd(buffer, 0, bytes.length));
+    assertEquals(7, _csv.findRecordEnd(buffer, 5, bytes.length));
+    assertEquals(13, _csv.findRecordEnd(buffer, 8, bytes.length));
+    assertEquals(18, _csv.findRecordEnd(buffer, 15, bytes.length));
+    assertEquals(bytes.length, _csv.findRecordEnd(buffer, 19, bytes.length));
+  }
 }
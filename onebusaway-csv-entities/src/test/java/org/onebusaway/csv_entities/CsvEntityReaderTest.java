@@ -16,16 +16,29 @@
 package org.onebusaway.csv_entities;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.onebusaway.csv_entities.exceptions.CsvEntityIOException;
+import org.onebusaway.csv_entities.exceptions.CsvException;
+import org.onebusaway.csv_entities.exceptions.FieldCountMismatchException;
+import org.onebusaway.csv_entities.exceptions.MissingRequiredFieldException;
 import org.onebusaway.csv_entities.schema.AnnotationDrivenEntitySchemaFactory;
+import org.onebusaway.csv_entities.schema.EntitySchema;
 
 public class CsvEntityReaderTest {
 
@@ -72,4 +85,321 @@ public class CsvEntityReaderTest {
     assertSame(a.getValue(), b.getValue());
   }
 
+  @Test
+  public void testStringPool() throws CsvEntityIOException, IOException {
+
+    CsvStringPool pool = new CsvStringPool(Arrays.asList("name", "value"));
+    pool.setSampleSize(4);
+
+    ListEntityHandler<AnnotatedTestBean> handler = new ListEntityHandler<AnnotatedTestBean>();
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setStringPool(pool);
+    reader.addEntityHandler(handler);
+
+    StringBuilder b = new StringBuilder("name,value\n");
+    for (int i = 0; i < 10; i++)
+      b.append("n").append(i).append(",v\n");
+    reader.readEntities(AnnotatedTestBean.class, new StringReader(
+        b.toString()));
+
+    List<AnnotatedTestBean> values = handler.getValues();
+    assertEquals(10, values.size());
+    assertSame(values.get(0).getValue(), values.get(9).getValue());
+    assertEquals(1, pool.size("value"));
+    // Pooling of the unique names stops once the sample is complete
+    assertEquals(4, pool.size("name"));
+    assertSame(values.get(0).getValue(), pool.intern("value", "v"));
+  }
+
+  @Test
+  public void testStreamingTokenizer() throws CsvEntityIOException,
+      IOException {
+
+    ListEntityHandler<AnnotatedTestBean> handler = new ListEntityHandler<AnnotatedTestBean>();
+
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setStreamingTokenizer(true);
+    reader.addEntityHandler(handler);
+
+    String content = "\uFEFFname,value\r\na,\"b, \"\"c\"\"\"\r\n\r\n \"d\" ,e";
+    reader.readEntities(AnnotatedTestBean.class, new StringReader(content));
+
+    List<AnnotatedTestBean> values = handler.getValues();
+    assertEquals(2, values.size());
+    assertEquals("a", values.get(0).getName());
+    assertEquals("b, \"c\"", values.get(0).getValue());
+    assertEquals(" \"d\" ", values.get(1).getName());
+    assertEquals("e", values.get(1).getValue());
+  }
+
+  @Test
+  public void testStreamingTokenizerBadLine() {
+
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setStreamingTokenizer(true);
+
+    String content = "name,value\na,b\n,d\n";
+    try {
+      reader.readEntities(AnnotatedTestBean.class, new StringReader(content));
+      fail();
+    } catch (CsvEntityIOException e) {
+      assertEquals(3, e.getLineNumber());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  public void testChunkedParsing() throws CsvEntityIOException, IOException {
+
+    StringBuilder b = new StringBuilder("\uFEFFname,value\r\n");
+    for (int i = 0; i < 200; i++) {
+      if (i % 7 == 0)
+        b.append("n").append(i).append(",\"quoted, \"\"").append(i).append(
+            "\"\"\"\n");
+      else if (i % 11 == 0)
+        b.append("\n");
+      else
+        b.append("n").append(i).append(",v").append(i).append("\r\n");
+    }
+    String content = b.toString();
+
+    ListEntityHandler<AnnotatedTestBean> handler = new ListEntityHandler<AnnotatedTestBean>();
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setChunkParallelism(4);
+    reader.setChunkSize(64);
+    reader.addEntityHandler(handler);
+    CsvInputSource source = new BufferInputSource("test_beans", content);
+    reader.setInputSource(source);
+    reader.readEntities(AnnotatedTestBean.class, source);
+
+    List<AnnotatedTestBean> values = handler.getValues();
+    int index = 0;
+    for (int i = 0; i < 200; i++) {
+      if (i % 7 != 0 && i % 11 == 0)
+        continue;
+      AnnotatedTestBean bean = values.get(index++);
+      assertEquals("n" + i, bean.getName());
+      if (i % 7 == 0)
+        assertEquals("quoted, \"" + i + "\"", bean.getValue());
+      else
+        assertEquals("v" + i, bean.getValue());
+    }
+    assertEquals(index, values.size());
+  }
+
+  @Test
+  public void testChunksAreHandledAsTheyComplete() throws IOException {
+
+    StringBuilder b = new StringBuilder("name,value\n");
+    for (int i = 0; i < 200; i++)
+      b.append("n").append(i).append(",v").append(i).append("\n");
+
+    final AtomicInteger chunksStarted = new AtomicInteger();
+    final List<Integer> startedWhenHandled = new ArrayList<Integer>();
+    CsvEntityReader reader = new CsvEntityReader() {
+      @Override
+      protected IndividualCsvEntityReader createIndividualCsvEntityReader(
+          CsvEntityContext context, EntitySchema schema, EntityHandler handler) {
+        chunksStarted.incrementAndGet();
+        return super.createIndividualCsvEntityReader(context, schema, handler);
+      }
+    };
+    reader.setChunkParallelism(2);
+    reader.setChunkSize(64);
+    reader.addEntityHandler(new EntityHandler() {
+      @Override
+      public void handleEntity(Object bean) {
+        startedWhenHandled.add(chunksStarted.get());
+      }
+    });
+    CsvInputSource source = new BufferInputSource("test_beans", b.toString());
+    reader.setInputSource(source);
+    reader.readEntities(AnnotatedTestBean.class, source);
+
+    assertEquals(200, startedWhenHandled.size());
+    // No more than twice the parallelism chunks are in flight
+    assertTrue(startedWhenHandled.get(0) <= 4);
+    assertTrue(chunksStarted.get() > 20);
+  }
+
+  @Test
+  public void testChunkedParsingBadLine() throws IOException {
+
+    StringBuilder b = new StringBuilder("name,value\n");
+    for (int i = 0; i < 100; i++) {
+      if (i % 10 == 5)
+        b.append("\n");
+      if (i == 60)
+        b.append("n60,v60,x\n");
+      else
+        b.append("n").append(i).append(",v").append(i).append("\n");
+    }
+
+    ListEntityHandler<AnnotatedTestBean> handler = new ListEntityHandler<AnnotatedTestBean>();
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setChunkParallelism(4);
+    reader.setChunkSize(32);
+    reader.addEntityHandler(handler);
+    CsvInputSource source = new BufferInputSource("test_beans", b.toString());
+    reader.setInputSource(source);
+    try {
+      reader.readEntities(AnnotatedTestBean.class, source);
+      fail();
+    } catch (CsvEntityIOException e) {
+      // The header, 60 records and 6 empty lines precede the bad record
+      assertEquals(68, e.getLineNumber());
+      FieldCountMismatchException ex = (FieldCountMismatchException) e.getCause();
+      assertEquals(68, ex.getLineNumber());
+    }
+    assertEquals(60, handler.getValues().size());
+  }
+
+  @Test
+  public void testRecordsEndWithTheirLineInEveryMode() throws IOException {
+
+    String content = "name,value\na,\"b\nc\"\nd,\"e\nf,g\n";
+    List<String> expected = Arrays.asList("a=b", "c\"=null", "d=e", "f=g");
+
+    assertEquals(expected, toStrings(readRecords(content, false, false)));
+    assertEquals(expected, toStrings(readRecords(content, true, false)));
+    assertEquals(expected, toStrings(readRecords(content, true, true)));
+
+    // Reading in chunks rejects a quoted value left open at the end of a line
+    ListEntityHandler<AnnotatedTestBean> handler = new ListEntityHandler<AnnotatedTestBean>();
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setChunkParallelism(3);
+    reader.setChunkSize(4);
+    reader.addEntityHandler(handler);
+    CsvInputSource source = new BufferInputSource("test_beans", content);
+    reader.setInputSource(source);
+    try {
+      reader.readEntities(AnnotatedTestBean.class, source);
+      fail();
+    } catch (CsvEntityIOException e) {
+      assertEquals(2, e.getLineNumber());
+      assertTrue(e.getCause() instanceof CsvException);
+    }
+    assertTrue(handler.getValues().isEmpty());
+  }
+
+  @Test
+  public void testPositionalBinding() throws CsvEntityIOException,
+      IOException {
+
+    ListEntityHandler<AnnotatedTestBean> handler = new ListEntityHandler<AnnotatedTestBean>();
+
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.addEntityHandler(handler);
+
+    reader.readEntities(AnnotatedTestBean.class, new StringReader(
+        "value,name\nb,a\n,c\n"));
+    reader.readEntities(AnnotatedTestBean.class, new StringReader("name\ne\n"));
+
+    List<AnnotatedTestBean> values = handler.getValues();
+    assertEquals(3, values.size());
+    assertEquals("a", values.get(0).getName());
+    assertEquals("b", values.get(0).getValue());
+    assertEquals("c", values.get(1).getName());
+    assertNull(values.get(1).getValue());
+    assertEquals("e", values.get(2).getName());
+    assertNull(values.get(2).getValue());
+  }
+
+  @Test
+  public void testPositionalBindingMissingRequiredValue() {
+
+    CsvEntityReader reader = new CsvEntityReader();
+
+    try {
+      reader.readEntities(AnnotatedTestBean.class, new StringReader(
+          "value,name\nb,a\nd\n"));
+      fail();
+    } catch (CsvEntityIOException e) {
+      assertEquals(3, e.getLineNumber());
+      assertTrue(e.getCause() instanceof MissingRequiredFieldException);
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  public void testTooManyFields() {
+
+    CsvEntityReader reader = new CsvEntityReader();
+
+    try {
+      reader.readEntities(AnnotatedTestBean.class, new StringReader(
+          "value,name\nb,a\nc,d,e\n"));
+      fail();
+    } catch (CsvEntityIOException e) {
+      assertEquals(3, e.getLineNumber());
+      FieldCountMismatchException ex = (FieldCountMismatchException) e.getCause();
+      assertEquals(AnnotatedTestBean.class, ex.getEntityType());
+      assertEquals(3, ex.getLineNumber());
+      assertEquals(2, ex.getExpectedFieldCount());
+      assertEquals(3, ex.getActualFieldCount());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  /**
+   * Reads the content in the default line mode, with the streaming tokenizer
+   * or, with a buffer source, straight from the content's bytes
+   */
+  private static List<AnnotatedTestBean> readRecords(String content,
+      boolean streaming, boolean fromBuffer) throws IOException {
+    ListEntityHandler<AnnotatedTestBean> handler = new ListEntityHandler<AnnotatedTestBean>();
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setStreamingTokenizer(streaming);
+    reader.addEntityHandler(handler);
+    if (fromBuffer) {
+      CsvInputSource source = new BufferInputSource("test_beans", content);
+      reader.setInputSource(source);
+      reader.readEntities(AnnotatedTestBean.class, source);
+    } else {
+      reader.readEntities(AnnotatedTestBean.class, new StringReader(content));
+    }
+    return handler.getValues();
+  }
+
+  private static List<String> toStrings(List<AnnotatedTestBean> beans) {
+    List<String> values = new ArrayList<String>();
+    for (AnnotatedTestBean bean : beans)
+      values.add(bean.getName() + "=" + bean.getValue());
+    return values;
+  }
+
+  private static class BufferInputSource implements RandomAccessCsvInputSource {
+
+    private final String _name;
+
+    private final byte[] _data;
+
+    public BufferInputSource(String name, String content) {
+      _name = name;
+      _data = content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean hasResource(String name) {
+      return _name.equals(name);
+    }
+
+    @Override
+    public InputStream getResource(String name) {
+      return new ByteArrayInputStream(_data);
+    }
+
+    @Override
+    public ByteBuffer getResourceBuffer(String name) {
+      return ByteBuffer.wrap(_data);
+    }
+
+    @Override
+    public void close() {
+
+    }
+  }
 }
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CsvLineReaderTest {
+
+  @Test
+  public void testLineTerminators() throws IOException {
+    assertLines("a\nb\r\nc\rd");
+    assertLines("a\n\nb\r\n\r\n");
+    assertLines("\r\n\n\r");
+    assertLines("");
+    assertLines("\uFEFFa,b\nc,d\n");
+  }
+
+  @Test
+  public void testSmallBuffer() throws IOException {
+    String content = "route_id,route_short_name\n1,\"The long, long name\"\r\n22,b\r";
+    assertEquals(readLines(new BufferedReader(new StringReader(content))),
+        readLines(new CsvLineReader(new StringReader(content), 4)));
+  }
+
+  @Test
+  public void testTokenizeIntoCursor() throws IOException {
+    CsvLineReader reader = new CsvLineReader(new StringReader(
+        "a,\"b b\",\"c,c\"\n1997,Ford,E350,\"Super \"\"luxurious\"\" truck\"\n"));
+    DelimitedTextParser parser = new DelimitedTextParser(',');
+    CsvRowCursor row = new CsvRowCursor();
+
+    reader.next();
+    parser.parse(reader.getBuffer(), reader.getLineOffset(),
+        reader.getLineLength(), row);
+    assertEquals(3, row.size());
+    assertEquals("a", row.getString(0));
+    assertEquals("b b", row.getString(1));
+    assertEquals("c,c", row.getString(2));
+
+    reader.next();
+    parser.parse(reader.getBuffer(), reader.getLineOffset(),
+        reader.getLineLength(), row);
+    assertEquals(4, row.size());
+    assertEquals("Super \"luxurious\" truck", row.getString(3));
+  }
+
+  private void assertLines(String content) throws IOException {
+    List<String> expected = readLines(new BufferedReader(new StringReader(
+        content)));
+    if (!expected.isEmpty() && expected.get(0).startsWith("\uFEFF"))
+      expected.set(0, expected.get(0).substring(1));
+    assertEquals(expected, readLines(new CsvLineReader(new StringReader(
+        content))));
+  }
+
+  private List<String> readLines(BufferedReader reader) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    String line = null;
+    while ((line = reader.readLine()) != null)
+      lines.add(line);
+    return lines;
+  }
+
+  private List<String> readLines(CsvLineReader reader) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    while (reader.next())
+      lines.add(new String(reader.getBuffer(), reader.getLineOffset(),
+          reader.getLineLength()));
+    return lines;
+  }
+}
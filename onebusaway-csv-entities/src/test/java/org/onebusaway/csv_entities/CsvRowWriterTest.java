@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CsvRowWriterTest {
+
+  @Test
+  public void testFields() throws IOException {
+    StringWriter output = new StringWriter();
+    CsvRowWriter writer = new CsvRowWriter(output);
+
+    writer.startField();
+    writer.appendValue(-42);
+    writer.startField();
+    writer.appendValue(Long.MIN_VALUE);
+    writer.startField();
+    writer.appendZeroPadded(7, 2);
+    writer.startField();
+    writer.appendZeroPadded(123, 2);
+    writer.startField();
+    writer.appendValue((Object) null);
+    writer.startField();
+    writer.appendValue("x\"y");
+    writer.endRow();
+    writer.close();
+
+    assertEquals("-42," + Long.MIN_VALUE + ",07,123,,\"x\"\"y\""
+        + System.lineSeparator(), output.toString());
+  }
+
+  @Test
+  public void testDoubles() throws IOException {
+    double[] values = {
+        0.0, -0.0, 1.0, -1.0, 0.1, 0.3, 0.001, 0.002, 0.00099, 47.6062095,
+        -122.3320708, 9999999.0, 1e7, 1234.5678, 1e-9, Double.NaN,
+        Double.POSITIVE_INFINITY, Double.MAX_VALUE, Double.MIN_VALUE};
+    for (double value : values)
+      assertDouble(value);
+
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      assertDouble(Math.round((random.nextDouble() * 360 - 180) * 1e6) / 1e6);
+      assertDouble(Math.round(random.nextDouble() * 1e7) / 1e2);
+      assertDouble(random.nextDouble() * 100);
+    }
+  }
+
+  private static void assertDouble(double value) throws IOException {
+    StringWriter output = new StringWriter();
+    CsvRowWriter writer = new CsvRowWriter(output);
+    writer.startField();
+    writer.appendValue(value);
+    writer.endRow();
+    assertEquals(Double.toString(value) + System.lineSeparator(),
+        output.toString());
+  }
+}
@@ -17,8 +17,10 @@ package org.onebusaway.csv_entities;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
 import org.onebusaway.csv_entities.schema.DefaultEntitySchemaFactory;
@@ -89,6 +91,40 @@ public class IndividualCsvEntityWriterTest {
     assertEquals("value,name\na,alice\nb,bob\n", content);
   }
 
+  @Test
+  public void testEscapingToByteChannel() {
+
+    DefaultEntitySchemaFactory factory = new DefaultEntitySchemaFactory();
+    EntitySchemaFactoryHelper helper = new EntitySchemaFactoryHelper(factory);
+
+    CsvEntityMappingBean mapping = helper.addEntity(TestBean.class);
+    helper.addField(mapping, "name");
+    helper.addField(mapping, "value");
+
+    CsvEntityContextImpl context = new CsvEntityContextImpl();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    IndividualCsvEntityWriter writer = new IndividualCsvEntityWriter(context,
+        factory.getSchema(TestBean.class), new CsvRowWriter(output));
+
+    TestBean bean = new TestBean();
+    bean.setName("a,b");
+    bean.setValue("say \"\u00e9t\u00e9\" \uD83D\uDE8C");
+    writer.handleEntity(bean);
+
+    bean.setName("b");
+    bean.setValue("c");
+    writer.handleEntity(bean);
+
+    writer.close();
+
+    String nl = System.lineSeparator();
+    String content = new String(output.toByteArray(), StandardCharsets.UTF_8);
+    assertEquals("name,value" + nl
+        + "\"a,b\",\"say \"\"\u00e9t\u00e9\"\" \uD83D\uDE8C\"" + nl + "b,c" + nl,
+        content);
+  }
+
   @Test
   public void testDefaultValues() {
     DefaultEntitySchemaFactory factory = new DefaultEntitySchemaFactory();
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCsvInputSourceTest {
+
+  private static final String CONTENT = "\uFEFFname,value\r\na,\"b, c\"\r\nd,\u00e9t\u00e9 \u65e5\u672c\n";
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Test
+  public void testDirectory() throws IOException {
+    File directory = _folder.newFolder();
+    FileOutputStream out = new FileOutputStream(new File(directory,
+        "test_beans"));
+    out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+    out.close();
+
+    MappedCsvInputSource source = new MappedCsvInputSource(directory);
+    assertTrue(source.hasResource("test_beans"));
+    assertFalse(source.hasResource("missing"));
+    assertEquals(CONTENT, toString(source.getResourceBuffer("test_beans")));
+    assertEntities(source);
+    source.close();
+  }
+
+  @Test
+  public void testZipFile() throws IOException {
+    File path = _folder.newFile("feed.zip");
+    byte[] data = CONTENT.getBytes(StandardCharsets.UTF_8);
+
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(path));
+    out.putNextEntry(new ZipEntry("deflated"));
+    out.write(data);
+    out.closeEntry();
+    ZipEntry stored = new ZipEntry("test_beans");
+    stored.setMethod(ZipEntry.STORED);
+    stored.setSize(data.length);
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    stored.setCrc(crc.getValue());
+    stored.setExtra(new byte[] {(byte) 0xCA, (byte) 0xFE, 0, 0});
+    out.putNextEntry(stored);
+    out.write(data);
+    out.closeEntry();
+    out.close();
+
+    MappedCsvInputSource source = new MappedCsvInputSource(path);
+    assertTrue(source.hasResource("deflated"));
+    assertNull(source.getResourceBuffer("deflated"));
+    assertEquals(CONTENT, toString(source.getResource("deflated")));
+    assertEquals(CONTENT, toString(source.getResourceBuffer("test_beans")));
+    assertEntities(source);
+    source.close();
+  }
+
+  private void assertEntities(CsvInputSource source) throws IOException {
+    ListEntityHandler<AnnotatedTestBean> handler = new ListEntityHandler<AnnotatedTestBean>();
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setStreamingTokenizer(true);
+    reader.setInputSource(source);
+    reader.addEntityHandler(handler);
+    reader.readEntities(AnnotatedTestBean.class, source);
+
+    List<AnnotatedTestBean> values = handler.getValues();
+    assertEquals(2, values.size());
+    assertEquals("a", values.get(0).getName());
+    assertEquals("b, c", values.get(0).getValue());
+    assertEquals("d", values.get(1).getName());
+    assertEquals("\u00e9t\u00e9 \u65e5\u672c", values.get(1).getValue());
+  }
+
+  private static String toString(ByteBuffer buffer) {
+    byte[] data = new byte[buffer.remaining()];
+    buffer.get(data);
+    return new String(data, StandardCharsets.UTF_8);
+  }
+
+  private static String toString(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int n;
+    while ((n = in.read(buffer)) != -1)
+      out.write(buffer, 0, n);
+    in.close();
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.csv_entities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onebusaway.csv_entities.schema.DefaultEntitySchemaFactory;
+import org.onebusaway.csv_entities.schema.EntitySchemaFactoryHelper;
+import org.onebusaway.csv_entities.schema.beans.CsvEntityMappingBean;
+
+public class ParallelZipOutputStrategyTest {
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Test
+  public void testDeflated() throws IOException {
+    File expected = write("expected.zip", 1, ZipEntry.DEFLATED, false);
+    File actual = write("actual.zip", 3, ZipEntry.DEFLATED, true);
+    assertEquals(readEntries(expected), readEntries(actual));
+    assertEquals(2, _folder.getRoot().list().length);
+  }
+
+  @Test
+  public void testStored() throws IOException {
+    File expected = write("expected.zip", 1, ZipEntry.DEFLATED, false);
+    File actual = write("actual.zip", 1, ZipEntry.STORED, true);
+    Map<String, String> entries = readEntries(actual);
+    assertEquals(readEntries(expected), entries);
+
+    MappedCsvInputSource source = new MappedCsvInputSource(actual);
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      ByteBuffer buffer = source.getResourceBuffer(entry.getKey());
+      assertNotNull(buffer);
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      assertEquals(entry.getValue(), new String(bytes, "UTF-8"));
+    }
+    source.close();
+  }
+
+  private File write(String name, int parallelism, int compressionMethod,
+      boolean interleave) throws IOException {
+
+    DefaultEntitySchemaFactory factory = new DefaultEntitySchemaFactory();
+    EntitySchemaFactoryHelper helper = new EntitySchemaFactoryHelper(factory);
+    CsvEntityMappingBean mapping = helper.addEntity(TestBean.class,
+        "names.txt");
+    helper.addField(mapping, "name");
+    helper.addField(mapping, "value");
+
+    File path = new File(_folder.getRoot(), name);
+    CsvEntityWriter writer = new CsvEntityWriter();
+    writer.setEntitySchemaFactory(factory);
+    writer.setOutputParallelism(parallelism);
+    writer.setCompressionMethod(compressionMethod);
+    writer.setCompressionLevel(Deflater.BEST_SPEED);
+    writer.setOutputLocation(path);
+
+    List<Object> names = new ArrayList<Object>();
+    List<Object> annotated = new ArrayList<Object>();
+    for (int i = 0; i < 10000; i++) {
+      TestBean bean = new TestBean();
+      bean.setName("name " + i);
+      bean.setValue("\"value\", \u00e9t\u00e9 " + (i * 7));
+      names.add(bean);
+      AnnotatedTestBean other = new AnnotatedTestBean();
+      other.setName("other " + i);
+      annotated.add(other);
+    }
+
+    if (interleave) {
+      for (int i = 0; i < names.size(); i++) {
+        writer.handleEntity(names.get(i));
+        writer.handleEntity(annotated.get(i));
+        if (i % 1000 == 0)
+          writer.flush();
+      }
+    } else {
+      for (Object bean : names)
+        writer.handleEntity(bean);
+      for (Object bean : annotated)
+        writer.handleEntity(bean);
+    }
+    writer.close();
+    return path;
+  }
+
+  private static Map<String, String> readEntries(File path) throws IOException {
+    Map<String, String> entries = new LinkedHashMap<String, String>();
+    ZipInputStream in = new ZipInputStream(new FileInputStream(path));
+    ZipEntry entry;
+    while ((entry = in.getNextEntry()) != null) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) != -1)
+        out.write(buffer, 0, n);
+      entries.put(entry.getName(), out.toString("UTF-8"));
+    }
+    in.close();
+    return entries;
+  }
+}
@@ -16,8 +16,11 @@
 package org.onebusaway.csv_entities.schema;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
+import org.onebusaway.csv_entities.exceptions.NoSuchPropertyException;
 import org.onebusaway.csv_entities.schema.BeanWrapper;
 import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
 
@@ -51,6 +54,32 @@ public class BeanWrapperFactoryTest {
     assertEquals("f", wrapper.getPropertyValue("b"));
   }
 
+  @Test
+  public void testReuseAndAccessor() {
+    AB ab = new AB();
+    ab.setA("a");
+    BeanWrapper wrapper = BeanWrapperFactory.wrap(ab);
+
+    AB other = new AB();
+    other.setA("b");
+    assertSame(wrapper, BeanWrapperFactory.wrap(other, wrapper));
+    assertEquals("b", wrapper.getPropertyValue("a"));
+    assertEquals(String.class, wrapper.getPropertyType("a"));
+
+    PropertyAccessor accessor = BeanWrapperFactory.getPropertyAccessor(
+        AB.class, "b");
+    assertSame(accessor, BeanWrapperFactory.getPropertyAccessor(AB.class, "b"));
+    accessor.setValue(ab, "c");
+    assertEquals("c", ab.getB());
+    assertEquals("c", accessor.getValue(ab));
+    assertNull(BeanWrapperFactory.getPropertyAccessor(AB.class, "z"));
+  }
+
+  @Test(expected = NoSuchPropertyException.class)
+  public void testNoSuchProperty() {
+    BeanWrapperFactory.wrap(new AB()).getPropertyValue("z");
+  }
+
   private static class AB {
 
     private String a;
@@ -43,8 +43,8 @@ public class ReplaceValueSetter implements ValueSetter {
     if (!stringValue.equals(updatedValue)) {
       if (bean.getPropertyType(propertyName) == AgencyAndId.class) {
         AgencyAndId aid = (AgencyAndId)bean.getPropertyValue(propertyName);
-        aid.setId(updatedValue);
-        bean.setPropertyValue(propertyName, aid);
+        bean.setPropertyValue(propertyName,
+            new AgencyAndId(aid.getAgencyId(), updatedValue));
       } else {
         bean.setPropertyValue(propertyName, updatedValue);
       }
@@ -49,7 +49,7 @@ public class SanitizeForApiAccess implements GtfsTransformStrategy {
                 for (Trip trip : trips) {
                     String newId = trip.getId().getId().replaceAll(regex, "");
                     if (!newId.equals(trip.getId().getId())) {
-                        trip.getId().setId(newId);
+                        trip.setId(new AgencyAndId(trip.getId().getAgencyId(), newId));
                         output += trip.getId().getId() + ", ";
                     }
                 }
@@ -61,7 +61,7 @@ public class SanitizeForApiAccess implements GtfsTransformStrategy {
                 for (Stop stop : stops) {
                     String newId = stop.getId().getId().replaceAll(regex, "");
                     if (!newId.equals(stop.getId().getId())) {
-                        stop.getId().setId(newId);
+                        stop.setId(new AgencyAndId(stop.getId().getAgencyId(), newId));
                         output += stop.getId().getId() + ", ";
                     }
                 }
@@ -73,7 +73,7 @@ public class SanitizeForApiAccess implements GtfsTransformStrategy {
                 for (Route route : routes) {
                     String newId = route.getId().getId().replaceAll(regex, "");
                     if (!newId.equals(route.getId().getId())) {
-                        route.getId().setId(newId);
+                        route.setId(new AgencyAndId(route.getId().getAgencyId(), newId));
                         output += route.getId().getId() + ", ";
                     }
                 }
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A column of a packed entity array that stores each distinct value once and
+ * each row as a code into the distinct values, with code 0 standing for null.
+ * Codes start out one byte wide and are widened to two and then four bytes as
+ * the number of distinct values grows, so that a column of a few hundred
+ * headsigns costs a byte per row.
+ *
+ * Values that are themselves entities, such as routes, are told apart by
+ * identity rather than by id, so that the column always hands back the
+ * instance it was given, even if ids are changed or reused.
+ *
+ * Values are never dropped from the dictionary, even when no row refers to
+ * them any more. Reading is safe from concurrent threads as long as the column
+ * is not modified.
+ */
+final class DictionaryColumn<T> {
+
+  private static final int MAX_BYTE_CODE = 0xFF;
+
+  private static final int MAX_CHAR_CODE = 0xFFFF;
+
+  private final Map<T, Integer> codesByValue;
+
+  private Object[] values = new Object[8];
+
+  private int valueCount = 0;
+
+  private byte[] byteCodes = new byte[0];
+
+  private char[] charCodes = null;
+
+  private int[] intCodes = null;
+
+  private int length = 0;
+
+  private DictionaryColumn(Map<T, Integer> codesByValue) {
+    this.codesByValue = codesByValue;
+  }
+
+  /**
+   * @return a column for values, such as strings and ids, that are equal when
+   *         {@link Object#equals(Object)} says so
+   */
+  public static <T> DictionaryColumn<T> byValue() {
+    return new DictionaryColumn<T>(new HashMap<T, Integer>());
+  }
+
+  /**
+   * @return a column for entity values, which are only equal to themselves
+   */
+  public static <T> DictionaryColumn<T> byIdentity() {
+    return new DictionaryColumn<T>(new IdentityHashMap<T, Integer>());
+  }
+
+  @SuppressWarnings("unchecked")
+  public T get(int row) {
+    int code = getCode(row);
+    return code == 0 ? null : (T) values[code - 1];
+  }
+
+  public void set(int row, T value) {
+    int code = value == null ? 0 : getOrAddCode(value);
+    if (byteCodes != null) {
+      byteCodes[row] = (byte) code;
+    } else if (charCodes != null) {
+      charCodes[row] = (char) code;
+    } else {
+      intCodes[row] = code;
+    }
+  }
+
+  /**
+   * @return the number of distinct non-null values ever set
+   */
+  public int getDistinctCount() {
+    return valueCount;
+  }
+
+  /**
+   * @return the number of bytes used by the code of each row
+   */
+  public int getCodeWidth() {
+    if (byteCodes != null)
+      return 1;
+    return charCodes != null ? 2 : 4;
+  }
+
+  public void setLength(int newLength) {
+    if (byteCodes != null) {
+      byteCodes = Arrays.copyOf(byteCodes, newLength);
+    } else if (charCodes != null) {
+      charCodes = Arrays.copyOf(charCodes, newLength);
+    } else {
+      intCodes = Arrays.copyOf(intCodes, newLength);
+    }
+    length = newLength;
+  }
+
+  /**
+   * Moves the rows so that the new row i is the old row order[i], as
+   * {@link StopTimeArray#reorder(int[], int[], int)} does for plain columns.
+   */
+  public void reorder(int[] order, int count) {
+    if (byteCodes != null) {
+      byte[] codes = new byte[byteCodes.length];
+      for (int i = 0; i < count; i++)
+        codes[i] = byteCodes[order[i]];
+      byteCodes = codes;
+    } else if (charCodes != null) {
+      char[] codes = new char[charCodes.length];
+      for (int i = 0; i < count; i++)
+        codes[i] = charCodes[order[i]];
+      charCodes = codes;
+    } else {
+      intCodes = StopTimeArray.reorder(intCodes, order, count);
+    }
+  }
+
+  public void clear() {
+    codesByValue.clear();
+    values = new Object[8];
+    valueCount = 0;
+    byteCodes = new byte[0];
+    charCodes = null;
+    intCodes = null;
+    length = 0;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private int getCode(int row) {
+    if (byteCodes != null)
+      return byteCodes[row] & 0xFF;
+    if (charCodes != null)
+      return charCodes[row];
+    return intCodes[row];
+  }
+
+  private int getOrAddCode(T value) {
+    Integer code = codesByValue.get(value);
+    if (code != null)
+      return code;
+    if (valueCount == values.length)
+      values = Arrays.copyOf(values, valueCount << 1);
+    values[valueCount++] = value;
+    int newCode = valueCount;
+    codesByValue.put(value, newCode);
+    if (byteCodes != null && newCode > MAX_BYTE_CODE) {
+      charCodes = new char[length];
+      for (int i = 0; i < length; i++)
+        charCodes[i] = (char) (byteCodes[i] & 0xFF);
+      byteCodes = null;
+    } else if (charCodes != null && newCode > MAX_CHAR_CODE) {
+      intCodes = new int[length];
+      for (int i = 0; i < length; i++)
+        intCodes[i] = charCodes[i];
+      charCodes = null;
+    }
+    return newCode;
+  }
+}
@@ -0,0 +1,349 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.onebusaway.gtfs.model.Frequency;
+import org.onebusaway.gtfs.model.FrequencyProxy;
+import org.onebusaway.gtfs.model.Trip;
+
+/**
+ * Stores frequencies column by column, handing out {@link Frequency} proxies
+ * that read and write the columns in place. Frequencies are not referenced by
+ * other entities, so, as with {@link StopTimeArray}, each read creates a new
+ * proxy, and rows keep stable ids that the proxies report from
+ * {@link Frequency#getId()}.
+ */
+public class FrequencyArray extends AbstractList<Frequency> {
+
+  private final PackedRowIds ids = new PackedRowIds();
+
+  private Trip[] trips = new Trip[0];
+
+  private int[] startTimes = new int[0];
+
+  private int[] endTimes = new int[0];
+
+  private int[] headwaySecs = new int[0];
+
+  private int[] exactTimes = new int[0];
+
+  private int[] labelOnly = new int[0];
+
+  public void trimToSize() {
+    compact();
+    setLength(ids.getLength());
+    ids.trimToSize();
+  }
+
+  /**
+   * Reclaims the rows of removed frequencies, moving the remaining rows down
+   * while keeping their ids.
+   */
+  public void compact() {
+    if (ids.getRemovedCount() == 0)
+      return;
+    int[] order = ids.getLiveRows();
+    reorder(order, order.length);
+  }
+
+  /**
+   * @return the frequency with the specified id, or null if it has been
+   *         removed
+   * @throws NoSuchElementException if no frequency ever had the id
+   */
+  public Frequency getForId(int id) {
+    if (!ids.isAssigned(id)) {
+      throw new NoSuchElementException();
+    }
+    int row = ids.getLiveRow(id);
+    if (row == -1) {
+      return null;
+    }
+    return createProxy(row);
+  }
+
+  /**
+   * @return true if the row of the specified id was removed, false if there was
+   *         no such live row
+   */
+  public boolean removeForId(int id) {
+    return ids.remove(id);
+  }
+
+  /**
+   * @return true if the specified frequency is a live proxy of this array
+   */
+  public boolean isStored(Frequency frequency) {
+    FrequencyProxy proxy = frequency.getProxy();
+    if (!(proxy instanceof FrequencyProxyImpl)) {
+      return false;
+    }
+    FrequencyProxyImpl impl = (FrequencyProxyImpl) proxy;
+    return impl.getArray() == this && ids.getLiveRow(impl.getId()) != -1;
+  }
+
+  /****
+   * {@link List} Interface
+   ****/
+
+  /**
+   * Appends a row with the values of the specified frequency. A frequency
+   * that is not already a proxy becomes a proxy of the new row.
+   */
+  @Override
+  public boolean add(Frequency frequency) {
+    if (ids.getLength() == trips.length && ids.isCompactionDue()) {
+      compact();
+    }
+    int index = ids.addRow();
+    ensureCapacity(index + 1);
+    trips[index] = frequency.getTrip();
+    startTimes[index] = frequency.getStartTime();
+    endTimes[index] = frequency.getEndTime();
+    headwaySecs[index] = frequency.getHeadwaySecs();
+    exactTimes[index] = frequency.getExactTimes();
+    labelOnly[index] = frequency.getLabelOnly();
+    if (frequency.getProxy() == null) {
+      frequency.setProxy(new FrequencyProxyImpl(ids.getId(index), index));
+    }
+    return true;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (!(o instanceof Frequency)) {
+      return false;
+    }
+    Integer id = ((Frequency) o).getId();
+    return id != null && removeForId(id);
+  }
+
+  @Override
+  public void clear() {
+    ids.clear();
+    setLength(0);
+    modCount++;
+  }
+
+  @Override
+  public Iterator<Frequency> iterator() {
+    return new FrequencyIterator();
+  }
+
+  @Override
+  public Frequency get(int index) {
+    if (index < 0 || index >= ids.size()) {
+      throw new NoSuchElementException();
+    }
+    compact();
+    return createProxy(index);
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private Frequency createProxy(int row) {
+    Frequency frequency = new Frequency();
+    frequency.setProxy(new FrequencyProxyImpl(ids.getId(row), row));
+    return frequency;
+  }
+
+  /**
+   * Moves the rows so that the new row i is the old row order[i], dropping any
+   * row that is not listed.
+   */
+  private void reorder(int[] order, int count) {
+    this.trips = StopTimeArray.reorder(this.trips, order, count);
+    this.startTimes = StopTimeArray.reorder(this.startTimes, order, count);
+    this.endTimes = StopTimeArray.reorder(this.endTimes, order, count);
+    this.headwaySecs = StopTimeArray.reorder(this.headwaySecs, order, count);
+    this.exactTimes = StopTimeArray.reorder(this.exactTimes, order, count);
+    this.labelOnly = StopTimeArray.reorder(this.labelOnly, order, count);
+    ids.reorder(order, count);
+    modCount++;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (trips.length < capacity) {
+      int newLength = Math.max(8, trips.length << 2);
+      setLength(newLength);
+    }
+  }
+
+  private void setLength(int newLength) {
+    this.trips = Arrays.copyOf(this.trips, newLength);
+    this.startTimes = Arrays.copyOf(this.startTimes, newLength);
+    this.endTimes = Arrays.copyOf(this.endTimes, newLength);
+    this.headwaySecs = Arrays.copyOf(this.headwaySecs, newLength);
+    this.exactTimes = Arrays.copyOf(this.exactTimes, newLength);
+    this.labelOnly = Arrays.copyOf(this.labelOnly, newLength);
+  }
+
+  private class FrequencyIterator implements Iterator<Frequency> {
+
+    private int row = ids.nextLiveRow(0);
+
+    private int lastRow = -1;
+
+    private final int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return row < ids.getLength();
+    }
+
+    @Override
+    public Frequency next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      lastRow = row;
+      row = ids.nextLiveRow(row + 1);
+      return createProxy(lastRow);
+    }
+
+    @Override
+    public void remove() {
+      if (lastRow == -1) {
+        throw new IllegalStateException();
+      }
+      removeForId(ids.getId(lastRow));
+      lastRow = -1;
+    }
+  }
+
+  private class FrequencyProxyImpl implements FrequencyProxy {
+
+    private final int id;
+
+    private int row;
+
+    private int layout;
+
+    public FrequencyProxyImpl(int id, int row) {
+      this.id = id;
+      this.row = row;
+      this.layout = ids.getLayout();
+    }
+
+    public FrequencyArray getArray() {
+      return FrequencyArray.this;
+    }
+
+    @Override
+    public Integer getId() {
+      return id;
+    }
+
+    @Override
+    public void setId(Integer id) {
+      // ignored
+    }
+
+    @Override
+    public Trip getTrip() {
+      return trips[row()];
+    }
+
+    @Override
+    public void setTrip(Trip trip) {
+      trips[row()] = trip;
+    }
+
+    @Override
+    public int getStartTime() {
+      return startTimes[row()];
+    }
+
+    @Override
+    public void setStartTime(int startTime) {
+      startTimes[row()] = startTime;
+    }
+
+    @Override
+    public int getEndTime() {
+      return endTimes[row()];
+    }
+
+    @Override
+    public void setEndTime(int endTime) {
+      endTimes[row()] = endTime;
+    }
+
+    @Override
+    public int getHeadwaySecs() {
+      return headwaySecs[row()];
+    }
+
+    @Override
+    public void setHeadwaySecs(int headwaySecs) {
+      FrequencyArray.this.headwaySecs[row()] = headwaySecs;
+    }
+
+    @Override
+    public int getExactTimes() {
+      return exactTimes[row()];
+    }
+
+    @Override
+    public void setExactTimes(int exactTimes) {
+      FrequencyArray.this.exactTimes[row()] = exactTimes;
+    }
+
+    @Override
+    public int getLabelOnly() {
+      return labelOnly[row()];
+    }
+
+    @Override
+    public void setLabelOnly(int labelOnly) {
+      FrequencyArray.this.labelOnly[row()] = labelOnly;
+    }
+
+    /**
+     * @return the current row of this proxy's id, which changes when the
+     *         array is compacted
+     */
+    private int row() {
+      if (layout != ids.getLayout()) {
+        row = ids.isAssigned(id) ? ids.getRow(id) : -1;
+        layout = ids.getLayout();
+      }
+      if (row == -1) {
+        throw new IllegalStateException("frequency " + id
+            + " has been removed");
+      }
+      return row;
+    }
+  }
+
+}
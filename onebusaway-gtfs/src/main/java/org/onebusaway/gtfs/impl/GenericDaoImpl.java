@@ -19,9 +19,12 @@ import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.onebusaway.gtfs.model.IdentityBean;
 import org.onebusaway.gtfs.services.GenericMutableDao;
@@ -32,12 +35,27 @@ public class GenericDaoImpl implements GenericMutableDao {
 
   private final Logger _log = LoggerFactory.getLogger(GenericDaoImpl.class);
 
-  private Map<Class<?>, Map<Object, Object>> _entitiesByClassAndId = new HashMap<Class<?>, Map<Object, Object>>();
+  /**
+   * Concurrent, since a reader may look up entities of one class while the
+   * entities of another class are being saved, as when a file is read in
+   * chunks
+   */
+  private Map<Class<?>, Map<Object, Object>> _entitiesByClassAndId = new ConcurrentHashMap<Class<?>, Map<Object, Object>>();
+
+  /**
+   * The id that each entity of a class is stored under, for the classes whose
+   * entities have had their id changed, so that they are moved to their new id
+   * without a scan. Built on the first change of an id of the class, and then
+   * kept up to date.
+   */
+  private Map<Class<?>, Map<Object, Object>> _idsByClassAndEntity = new HashMap<Class<?>, Map<Object, Object>>();
 
   private Map<Class<?>, EntityHandler<Serializable>> _handlers = new HashMap<Class<?>, EntityHandler<Serializable>>();
 
   private boolean _generateIds = true;
 
+  private volatile boolean _frozen = false;
+
   public void setGenerateIds(boolean generateIds) {
     _generateIds = generateIds;
   }
@@ -47,7 +65,33 @@ public class GenericDaoImpl implements GenericMutableDao {
   }
 
   public void clear() {
+    checkNotFrozen();
     _entitiesByClassAndId.clear();
+    _idsByClassAndEntity.clear();
+  }
+
+  /**
+   * Makes the dao read-only. Once this returns, any attempt to modify the dao
+   * throws {@link UnsupportedOperationException}, and the dao can be read by
+   * any number of threads without locking, provided they obtain it after this
+   * returns through a safe publication, such as a final or volatile field or a
+   * thread started afterwards. The entities themselves must not be modified
+   * either. Freezing a frozen dao has no effect.
+   */
+  public void freeze() {
+    if (_frozen)
+      return;
+    Map<Class<?>, Map<Object, Object>> entitiesByClassAndId = new HashMap<Class<?>, Map<Object, Object>>();
+    for (Map.Entry<Class<?>, Map<Object, Object>> entry : _entitiesByClassAndId.entrySet())
+      entitiesByClassAndId.put(entry.getKey(),
+          Collections.unmodifiableMap(entry.getValue()));
+    _entitiesByClassAndId = Collections.unmodifiableMap(entitiesByClassAndId);
+    _idsByClassAndEntity.clear();
+    _frozen = true;
+  }
+
+  public boolean isFrozen() {
+    return _frozen;
   }
 
   @SuppressWarnings("unchecked")
@@ -86,6 +130,8 @@ public class GenericDaoImpl implements GenericMutableDao {
   @Override
   public void saveEntity(Object entity) {
 
+    checkNotFrozen();
+
     Class<?> c = entity.getClass();
 
     EntityHandler<Serializable> handler = _handlers.get(c);
@@ -107,11 +153,25 @@ public class GenericDaoImpl implements GenericMutableDao {
     if (prev != null)
       _log.warn("entity with id already exists: class=" + c + " id=" + id
           + " prev=" + prev + " new=" + entity);
+
+    Map<Object, Object> idsByEntity = _idsByClassAndEntity.get(c);
+    if (idsByEntity != null) {
+      if (prev != null)
+        idsByEntity.remove(prev);
+      idsByEntity.put(entity, id);
+    }
   }
 
+  /**
+   * The entity already resides in memory, so only an entity whose id has
+   * changed since it was saved needs to be moved to its new id. The first such
+   * change for a class indexes the ids of its entities, which later changes
+   * look up.
+   */
   @Override
   public void updateEntity(Object entity) {
-    // No-op required, since entity already resides in memory
+    checkNotFrozen();
+    moveToCurrentId(entity);
   }
 
   @Override
@@ -131,13 +191,17 @@ public class GenericDaoImpl implements GenericMutableDao {
 
   @Override
   public <T> void clearAllEntitiesForType(Class<T> type) {
+    checkNotFrozen();
     _entitiesByClassAndId.remove(type);
+    _idsByClassAndEntity.remove(type);
   }
 
   @Override
   public <K extends Serializable, T extends IdentityBean<K>> void removeEntity(
       T entity) {
 
+    checkNotFrozen();
+
     Class<?> type = entity.getClass();
     K id = entity.getId();
 
@@ -152,6 +216,10 @@ public class GenericDaoImpl implements GenericMutableDao {
 
     if (found == null)
       _log.warn("no stored entity with type " + type + " and id " + id);
+
+    Map<Object, Object> idsByEntity = _idsByClassAndEntity.get(type);
+    if (idsByEntity != null && found != null)
+      idsByEntity.remove(found);
   }
 
   @Override
@@ -169,10 +237,63 @@ public class GenericDaoImpl implements GenericMutableDao {
 
   }
 
+  /**
+   * @throws UnsupportedOperationException if the dao has been frozen
+   */
+  protected void checkNotFrozen() {
+    if (_frozen)
+      throw new UnsupportedOperationException("the dao is frozen");
+  }
+
+  /**
+   * Moves a stored entity whose id has changed since it was saved to its new
+   * id.
+   * 
+   * @return the id the entity was stored under, or null if it was not moved
+   */
+  Object moveToCurrentId(Object entity) {
+
+    Map<Object, Object> byId = _entitiesByClassAndId.get(entity.getClass());
+    if (byId == null)
+      return null;
+
+    Object id = ((IdentityBean<?>) entity).getId();
+    if (byId.get(id) == entity)
+      return null;
+
+    Map<Object, Object> idsByEntity = getIdsByEntity(entity.getClass(), byId);
+    Object previousId = idsByEntity.get(entity);
+    if (previousId == null)
+      return null;
+
+    if (byId.get(previousId) == entity)
+      byId.remove(previousId);
+    Object prev = byId.put(id, entity);
+    if (prev != null) {
+      _log.warn("entity with id already exists: class=" + entity.getClass()
+          + " id=" + id + " prev=" + prev + " new=" + entity);
+      idsByEntity.remove(prev);
+    }
+    idsByEntity.put(entity, id);
+    return previousId;
+  }
+
   /****
    * Private Methods
    ****/
 
+  private Map<Object, Object> getIdsByEntity(Class<?> type,
+      Map<Object, Object> byId) {
+    Map<Object, Object> idsByEntity = _idsByClassAndEntity.get(type);
+    if (idsByEntity == null) {
+      idsByEntity = new IdentityHashMap<Object, Object>(byId.size());
+      for (Map.Entry<Object, Object> entry : byId.entrySet())
+        idsByEntity.put(entry.getValue(), entry.getKey());
+      _idsByClassAndEntity.put(type, idsByEntity);
+    }
+    return idsByEntity;
+  }
+
   private EntityHandler<?> createEntityHandler(Class<?> entityType) {
 
     if (_generateIds) {
@@ -30,14 +30,28 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
 
   private ShapePointArray shapePoints = new ShapePointArray();
 
+  private TripArray trips = new TripArray();
+
+  private StopArray stops = new StopArray();
+
+  private FrequencyArray frequencies = new FrequencyArray();
+
   private boolean packStopTimes = false;
 
   private boolean packShapePoints = false;
 
+  private boolean packTrips = false;
+
+  private boolean packStops = false;
+
+  private boolean packFrequencies = false;
+
   private List<String> _optionalMetadataFilenames = null;
 
   private Map<String, String> metadataByFilename = new HashMap<>();
 
+  private AgencyAndIdPool agencyAndIdPool = new AgencyAndIdPool();
+
   public GtfsDaoImpl() {
     _optionalMetadataFilenames = new ArrayList<>();
     if (OPTIONAL_FILE_NAMES != null) {
@@ -63,6 +77,54 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
     this.packShapePoints = packShapePoints;
   }
 
+  public boolean isPackTrips() {
+    return packTrips;
+  }
+
+  /**
+   * When set, trips are stored in a {@link TripArray}. As with packed stop
+   * times, the trips read back are proxies of the array's rows, equal to the
+   * saved trip but not necessarily the same instance. While the dao is open,
+   * as it is while a feed is read into it, each row is read back as the same
+   * trip, so that the entities read with it reference a single instance.
+   */
+  public void setPackTrips(boolean packTrips) {
+    this.packTrips = packTrips;
+  }
+
+  public boolean isPackStops() {
+    return packStops;
+  }
+
+  /**
+   * When set, stops are stored in a {@link StopArray}, and read back as
+   * packed trips are.
+   */
+  public void setPackStops(boolean packStops) {
+    this.packStops = packStops;
+  }
+
+  public boolean isPackFrequencies() {
+    return packFrequencies;
+  }
+
+  public void setPackFrequencies(boolean packFrequencies) {
+    this.packFrequencies = packFrequencies;
+  }
+
+  /**
+   * @return the pool of canonical ids shared by the entities of this dao, used
+   *         by {@link org.onebusaway.gtfs.serialization.GtfsReader} when
+   *         loading into this dao and when building relational indexes
+   */
+  public AgencyAndIdPool getAgencyAndIdPool() {
+    return agencyAndIdPool;
+  }
+
+  public void setAgencyAndIdPool(AgencyAndIdPool agencyAndIdPool) {
+    this.agencyAndIdPool = agencyAndIdPool;
+  }
+
   /***
    * {@link GtfsDao} Interface
    ****/
@@ -101,6 +163,9 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
   }
 
   public Collection<Frequency> getAllFrequencies() {
+    if (packFrequencies) {
+      return packed(frequencies);
+    }
     return getAllEntitiesForType(Frequency.class);
   }
 
@@ -118,19 +183,22 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
 
   public Collection<ShapePoint> getAllShapePoints() {
     if (packShapePoints) {
-      return shapePoints;
+      return packed(shapePoints);
     }
     return getAllEntitiesForType(ShapePoint.class);
   }
 
   public Collection<StopTime> getAllStopTimes() {
     if (packStopTimes) {
-      return stopTimes;
+      return packed(stopTimes);
     }
     return getAllEntitiesForType(StopTime.class);
   }
 
   public Collection<Stop> getAllStops() {
+    if (packStops) {
+      return packed(stops);
+    }
     return getAllEntitiesForType(Stop.class);
   }
 
@@ -139,6 +207,9 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
   }
 
   public Collection<Trip> getAllTrips() {
+    if (packTrips) {
+      return packed(trips);
+    }
     return getAllEntitiesForType(Trip.class);
   }
 
@@ -208,6 +279,9 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
   }
 
   public Frequency getFrequencyForId(int id) {
+    if (packFrequencies) {
+      return frequencies.getForId(id);
+    }
     return getEntityForId(Frequency.class, id);
   }
 
@@ -225,18 +299,21 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
 
   public ShapePoint getShapePointForId(int id) {
     if (packShapePoints) {
-      return shapePoints.get(id);
+      return shapePoints.getForId(id);
     }
     return getEntityForId(ShapePoint.class, id);
   }
 
   public Stop getStopForId(AgencyAndId id) {
+    if (packStops) {
+      return stops.getForId(id);
+    }
     return getEntityForId(Stop.class, id);
   }
 
   public StopTime getStopTimeForId(int id) {
     if (packStopTimes) {
-      return stopTimes.get(id);
+      return stopTimes.getForId(id);
     }
     return getEntityForId(StopTime.class, id);
   }
@@ -246,6 +323,9 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
   }
 
   public Trip getTripForId(AgencyAndId id) {
+    if (packTrips) {
+      return trips.getForId(id);
+    }
     return getEntityForId(Trip.class, id);
   }
 
@@ -332,7 +412,7 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
   @Override
   public <K, V> Map<K, V> getEntitiesByIdForEntityType(Class<K> keyType,
       Class<V> entityType) {
-    noKeyCheck(keyType);
+    noKeyCheck(entityType);
     return super.getEntitiesByIdForEntityType(keyType, entityType);
   }
 
@@ -340,9 +420,15 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
   @Override
   public <T> Collection<T> getAllEntitiesForType(Class<T> type) {
     if (packStopTimes && type.equals(StopTime.class)) {
-      return (Collection<T>) stopTimes;
+      return (Collection<T>) packed(stopTimes);
     } else if (packShapePoints && type.equals(ShapePoint.class)) {
-      return (Collection<T>) shapePoints;
+      return (Collection<T>) packed(shapePoints);
+    } else if (packTrips && type.equals(Trip.class)) {
+      return (Collection<T>) packed(trips);
+    } else if (packStops && type.equals(Stop.class)) {
+      return (Collection<T>) packed(stops);
+    } else if (packFrequencies && type.equals(Frequency.class)) {
+      return (Collection<T>) packed(frequencies);
     }
     return super.getAllEntitiesForType(type);
   }
@@ -351,20 +437,55 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
   @Override
   public <T> T getEntityForId(Class<T> type, Serializable id) {
     if (packStopTimes && type.equals(StopTime.class)) {
-      return (T) stopTimes.get((Integer) id);
+      return (T) stopTimes.getForId((Integer) id);
     } else if (packShapePoints && type.equals(ShapePoint.class)) {
-      return (T) shapePoints.get((Integer) id);
+      return (T) shapePoints.getForId((Integer) id);
+    } else if (packTrips && type.equals(Trip.class)) {
+      return (T) trips.getForId((AgencyAndId) id);
+    } else if (packStops && type.equals(Stop.class)) {
+      return (T) stops.getForId((AgencyAndId) id);
+    } else if (packFrequencies && type.equals(Frequency.class)) {
+      return (T) frequencies.getForId((Integer) id);
     }
     return super.getEntityForId(type, id);
   }
 
+  /**
+   * When packed, an entity that is already stored, such as one read back from
+   * this dao, is left as is, since changes to it are stored in place.
+   */
   @Override
   public void saveEntity(Object entity) {
+    checkNotFrozen();
     if (packStopTimes && entity.getClass().equals(StopTime.class)) {
-      stopTimes.add((StopTime) entity);
+      StopTime stopTime = (StopTime) entity;
+      if (!stopTimes.isStored(stopTime)) {
+        stopTimes.add(stopTime);
+      }
       return;
     } else if (packShapePoints && entity.getClass().equals(ShapePoint.class)) {
-      shapePoints.add((ShapePoint) entity);
+      ShapePoint shapePoint = (ShapePoint) entity;
+      if (!shapePoints.isStored(shapePoint)) {
+        shapePoints.add(shapePoint);
+      }
+      return;
+    } else if (packTrips && entity.getClass().equals(Trip.class)) {
+      Trip trip = (Trip) entity;
+      if (!trips.isStored(trip)) {
+        trips.add(trip);
+      }
+      return;
+    } else if (packStops && entity.getClass().equals(Stop.class)) {
+      Stop stop = (Stop) entity;
+      if (!stops.isStored(stop)) {
+        stops.add(stop);
+      }
+      return;
+    } else if (packFrequencies && entity.getClass().equals(Frequency.class)) {
+      Frequency frequency = (Frequency) entity;
+      if (!frequencies.isStored(frequency)) {
+        frequencies.add(frequency);
+      }
       return;
     }
     super.saveEntity(entity);
@@ -372,12 +493,22 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
 
   @Override
   public <T> void clearAllEntitiesForType(Class<T> type) {
+    checkNotFrozen();
     if (packStopTimes && type.equals(StopTime.class)) {
       stopTimes.clear();
       return;
     } else if (packShapePoints && type.equals(ShapePoint.class)) {
       shapePoints.clear();
       return;
+    } else if (packTrips && type.equals(Trip.class)) {
+      trips.clear();
+      return;
+    } else if (packStops && type.equals(Stop.class)) {
+      stops.clear();
+      return;
+    } else if (packFrequencies && type.equals(Frequency.class)) {
+      frequencies.clear();
+      return;
     }
     super.clearAllEntitiesForType(type);
   }
@@ -385,25 +516,58 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
   @Override
   public <K extends Serializable, T extends IdentityBean<K>> void removeEntity(
       T entity) {
+    checkNotFrozen();
     if (packStopTimes && entity.getClass().equals(StopTime.class)) {
-      throw new UnsupportedOperationException();
+      stopTimes.remove(entity);
+      return;
     } else if (packShapePoints && entity.getClass().equals(ShapePoint.class)) {
-      throw new UnsupportedOperationException();
+      shapePoints.remove(entity);
+      return;
+    } else if (packTrips && entity.getClass().equals(Trip.class)) {
+      trips.remove(entity);
+      return;
+    } else if (packStops && entity.getClass().equals(Stop.class)) {
+      stops.remove(entity);
+      return;
+    } else if (packFrequencies && entity.getClass().equals(Frequency.class)) {
+      frequencies.remove(entity);
+      return;
     }
     super.removeEntity(entity);
   }
 
+  @Override
+  public void open() {
+    super.open();
+    setSharingProxies(true);
+  }
+
+  /**
+   * Also stops reading packed trips and stops back as a single instance per
+   * row, which releases the instances that nothing else references.
+   */
   @Override
   public void close() {
-    if (packStopTimes) {
-      stopTimes.trimToSize();
-    }
-    if (packShapePoints) {
-      shapePoints.trimToSize();
+    setSharingProxies(false);
+    if (!isFrozen()) {
+      trimPackedEntities();
     }
     super.close();
   }
 
+  /**
+   * Also clusters packed stop times by trip and trims packed arrays, as
+   * {@link #close()} does, so that reading them moves no rows.
+   */
+  @Override
+  public void freeze() {
+    if (isFrozen()) {
+      return;
+    }
+    trimPackedEntities();
+    super.freeze();
+  }
+
   @Override
   public List<String> getOptionalMetadataFilenames() {
     return _optionalMetadataFilenames;
@@ -418,21 +582,117 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
   }
   @Override
   public void addMetadata(String filename, String content) {
+    checkNotFrozen();
     metadataByFilename.put(filename, content);
     if (!_optionalMetadataFilenames.contains(filename))
       _optionalMetadataFilenames.add(filename);
   }
 
 
+  /**
+   * @return a view of the packed stop times of the specified trip, ordered by
+   *         stop sequence, or null if stop times are not packed or their rows
+   *         are not clustered by trip, as they are after {@link #close()}
+   *         until stop times are next added or removed
+   */
+  List<StopTime> getPackedStopTimesForTrip(Trip trip) {
+    if (!packStopTimes) {
+      return null;
+    }
+    return stopTimes.getStopTimesForTrip(trip);
+  }
+
+  /**
+   * @return the stored entity with the type and id of the specified entity,
+   *         which for packed entities is the entity itself if it is a live
+   *         proxy of the packed rows, or null if there is none
+   */
+  Object getStoredEntity(Object entity) {
+    Class<?> type = entity.getClass();
+    if (packTrips && type.equals(Trip.class) && trips.isStored((Trip) entity)) {
+      return entity;
+    }
+    if (packStops && type.equals(Stop.class) && stops.isStored((Stop) entity)) {
+      return entity;
+    }
+    if (packStopTimes && type.equals(StopTime.class)) {
+      return stopTimes.isStored((StopTime) entity) ? entity : null;
+    }
+    if (packShapePoints && type.equals(ShapePoint.class)) {
+      return shapePoints.isStored((ShapePoint) entity) ? entity : null;
+    }
+    if (packFrequencies && type.equals(Frequency.class)) {
+      return frequencies.isStored((Frequency) entity) ? entity : null;
+    }
+    return getEntityForId(type, ((IdentityBean<?>) entity).getId());
+  }
+
+  /**
+   * @return true if stop times are packed and their rows are clustered by trip
+   */
+  boolean isPackedStopTimesClusteredByTrip() {
+    return packStopTimes && stopTimes.isClusteredByTrip();
+  }
+
+  /**
+   * Clusters packed stop times by trip, unless they already are, and reclaims
+   * the unused capacity of packed arrays
+   */
+  void trimPackedEntities() {
+    if (packStopTimes) {
+      if (!stopTimes.isClusteredByTrip()) {
+        stopTimes.clusterByTrip();
+      }
+      stopTimes.trimToSize();
+    }
+    if (packShapePoints) {
+      shapePoints.trimToSize();
+    }
+    if (packTrips) {
+      trips.trimToSize();
+    }
+    if (packStops) {
+      stops.trimToSize();
+    }
+    if (packFrequencies) {
+      frequencies.trimToSize();
+    }
+  }
+
   /****
    * Private Methods
    ****/
 
-  private <K> void noKeyCheck(Class<K> keyType) {
-    if (packStopTimes && keyType.equals(StopTime.class)) {
+  private void setSharingProxies(boolean sharingProxies) {
+    if (packTrips) {
+      trips.setSharingProxies(sharingProxies);
+    }
+    if (packStops) {
+      stops.setSharingProxies(sharingProxies);
+    }
+  }
+
+  private <T> Collection<T> packed(Collection<T> values) {
+    if (isFrozen()) {
+      return Collections.unmodifiableCollection(values);
+    }
+    return values;
+  }
+
+  private <K> void noKeyCheck(Class<K> entityType) {
+    if (packStopTimes && entityType.equals(StopTime.class)) {
+      throw new UnsupportedOperationException();
+    }
+    if (packShapePoints && entityType.equals(ShapePoint.class)) {
+      throw new UnsupportedOperationException();
+    }
+    if (packTrips && entityType.equals(Trip.class)) {
+      throw new UnsupportedOperationException();
+    }
+    if (packStops && entityType.equals(Stop.class)) {
       throw new UnsupportedOperationException();
     }
-    if (packShapePoints && keyType.equals(ShapePoint.class)) {
+    if (packFrequencies && entityType.equals(Frequency.class)) {
       throw new UnsupportedOperationException();
     }
   }
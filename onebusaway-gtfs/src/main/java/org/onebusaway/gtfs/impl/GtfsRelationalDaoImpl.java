@@ -17,18 +17,25 @@
  */
 package org.onebusaway.gtfs.impl;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
-import org.onebusaway.csv_entities.exceptions.EntityInstantiationException;
-import org.onebusaway.csv_entities.schema.BeanWrapper;
-import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
 import org.onebusaway.gtfs.model.*;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 
@@ -37,245 +44,421 @@ import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
  * methods, but only if you have enough memory to load your entire GTFS into
  * memory.
  * 
+ * Relations are indexed lazily, the first time one is queried, in a
+ * {@link RelationIndex} per relation. Relations of the same entity type are
+ * indexed together, in a single pass over the entities, and
+ * {@link #prewarmIndices(int)} builds all of them up front, in parallel.
+ * 
+ * Once built, indices are kept up to date by {@link #saveEntity(Object)},
+ * {@link #removeEntity(IdentityBean)} and {@link #updateEntity(Object)}, so
+ * there is no need to call {@link #clearAllCaches()} after modifying the dao
+ * through them. An entity whose fields are modified in place must be passed to
+ * {@link #updateEntity(Object)} to be moved to its new keys.
+ * 
+ * Lazily built indices make the dao unsafe to share between threads, even if
+ * they only read it. {@link #freeze()} builds every index up front and makes
+ * the dao read-only, after which readers need no locking.
+ * 
  * @author bdferris
  * 
  */
 public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
     GtfsMutableRelationalDao {
 
-  private Map<AgencyAndId, List<String>> _tripAgencyIdsByServiceId = null;
+  private static final Comparator<StopTime> STOP_TIME_ORDER = Comparator.naturalOrder();
 
-  private Map<Agency, List<Route>> _routesByAgency = null;
+  private static final Comparator<ShapePoint> SHAPE_POINT_ORDER = Comparator.naturalOrder();
 
-  private Map<Stop, List<Stop>> _stopsByStation = null;
+  private final Map<Class<?>, RelationGroup<?>> _relationGroups = new LinkedHashMap<Class<?>, RelationGroup<?>>();
 
-  private Map<String, List<Stop>> _stopsByZoneId = null;
+  /**
+   * The relations keyed by entities, by the type of those entities
+   */
+  private final Map<Class<?>, List<Relation<?, ?>>> _relationsByKeyType = new HashMap<Class<?>, List<Relation<?, ?>>>();
 
-  private Map<Trip, List<StopTime>> _stopTimesByTrip = null;
+  private final RelationGroup<Route> _routeRelations = group(Route.class,
+      this::getAllRoutes);
 
-  private Map<Stop, List<StopTime>> _stopTimesByStop = null;
+  private final Relation<Agency, Route> _routesByAgency = keyedBy(
+      _routeRelations.relation(
+          (route, keys) -> keys.key(route.getAgency(), route)), Agency.class);
 
-  private Map<Route, List<Trip>> _tripsByRoute = null;
+  private final RelationGroup<Stop> _stopRelations = group(Stop.class,
+      this::getAllStops);
 
-  private Map<AgencyAndId, List<Trip>> _tripsByShapeId = null;
+  private final Relation<Stop, Stop> _stopsByStation = keyedBy(
+      _stopRelations.relation((stop, keys) -> {
+        if (stop.getLocationType() == 0 && stop.getParentStation() != null) {
+          Stop parentStation = getStopForId(new AgencyAndId(
+              stop.getId().getAgencyId(), stop.getParentStation()));
+          keys.key(parentStation, stop);
+        }
+      }), Stop.class);
 
-  private Map<AgencyAndId, List<Trip>> _tripsByServiceId = null;
+  private final Relation<String, Stop> _stopsByZoneId = _stopRelations.relation(
+      (stop, keys) -> keys.key(stop.getZoneId(), stop));
 
-  private Map<AgencyAndId, List<Trip>> _tripsByBlockId = null;
+  private final RelationGroup<StopTime> _stopTimeRelations = group(
+      StopTime.class, this::getAllStopTimes);
 
-  private Map<AgencyAndId, List<ShapePoint>> _shapePointsByShapeId = null;
+  /**
+   * Not built while packed stop times are clustered by trip, since
+   * {@link #getStopTimesForTrip(Trip)} reads them straight from the packed rows
+   * then
+   */
+  private final Relation<Trip, StopTime> _stopTimesByTrip = keyedBy(
+      _stopTimeRelations.relation(
+          (stopTime, keys) -> keys.key(stopTime.getTrip(), stopTime),
+          STOP_TIME_ORDER, false, this::isPackedStopTimesClusteredByTrip),
+      Trip.class);
 
-  private Map<Trip, List<Frequency>> _frequenciesByTrip = null;
+  private final Relation<StopLocation, StopTime> _stopTimesByStop = keyedBy(
+      _stopTimeRelations.relation(
+          (stopTime, keys) -> keys.key(stopTime.getStop(), stopTime)),
+      Stop.class, StopArea.class, Location.class, LocationGroup.class);
 
-  private Map<AgencyAndId, List<ServiceCalendarDate>> _calendarDatesByServiceId = null;
+  private final RelationGroup<Trip> _tripRelations = group(Trip.class,
+      this::getAllTrips);
 
-  private Map<AgencyAndId, List<ServiceCalendar>> _calendarsByServiceId = null;
+  private final Relation<Route, Trip> _tripsByRoute = keyedBy(
+      _tripRelations.relation((trip, keys) -> keys.key(trip.getRoute(), trip)),
+      Route.class);
 
-  private Map<FareAttribute, List<FareRule>> _fareRulesByFareAttribute = null;
+  private final Relation<AgencyAndId, Trip> _tripsByShapeId = _tripRelations.relation(
+      (trip, keys) -> keys.key(canonicalize(trip.getShapeId()), trip));
 
-  private Map<Route, List<FareRule>> _fareRulesByRoute = null;
+  private final Relation<AgencyAndId, Trip> _tripsByServiceId = _tripRelations.relation(
+      (trip, keys) -> keys.key(canonicalize(trip.getServiceId()), trip));
 
-  private Map<String, List<FareRule>> _fareRulesByZoneId = null;
+  private final Relation<AgencyAndId, Trip> _tripsByBlockId = _tripRelations.relation(
+      (trip, keys) -> {
+        if (trip.getBlockId() != null) {
+          AgencyAndId bid = getAgencyAndIdPool().getId(
+              trip.getId().getAgencyId(), trip.getBlockId());
+          keys.key(bid, trip);
+        }
+      });
+
+  private final RelationGroup<ShapePoint> _shapePointRelations = group(
+      ShapePoint.class, this::getAllShapePoints);
+
+  private final Relation<AgencyAndId, ShapePoint> _shapePointsByShapeId = _shapePointRelations.relation(
+      (shapePoint, keys) -> keys.key(canonicalize(shapePoint.getShapeId()),
+          shapePoint), SHAPE_POINT_ORDER, false, null);
+
+  private final Relation<Trip, Frequency> _frequenciesByTrip = keyedBy(
+      group(Frequency.class, this::getAllFrequencies).relation(
+          (frequency, keys) -> keys.key(frequency.getTrip(), frequency)),
+      Trip.class);
+
+  private final Relation<AgencyAndId, ServiceCalendarDate> _calendarDatesByServiceId = group(
+      ServiceCalendarDate.class, this::getAllCalendarDates).relation(
+      (calendarDate, keys) -> keys.key(
+          canonicalize(calendarDate.getServiceId()), calendarDate));
+
+  private final Relation<AgencyAndId, ServiceCalendar> _calendarsByServiceId = group(
+      ServiceCalendar.class, this::getAllCalendars).relation(
+      (calendar, keys) -> keys.key(canonicalize(calendar.getServiceId()),
+          calendar));
+
+  private final RelationGroup<FareRule> _fareRuleRelations = group(
+      FareRule.class, this::getAllFareRules);
+
+  private final Relation<FareAttribute, FareRule> _fareRulesByFareAttribute = keyedBy(
+      _fareRuleRelations.relation((rule, keys) -> keys.key(rule.getFare(), rule)),
+      FareAttribute.class);
+
+  private final Relation<Route, FareRule> _fareRulesByRoute = keyedBy(
+      _fareRuleRelations.relation((rule, keys) -> keys.key(rule.getRoute(), rule)),
+      Route.class);
+
+  private final Relation<String, FareRule> _fareRulesByZoneId = _fareRuleRelations.relation(
+      (rule, keys) -> {
+        Set<String> uniqueIds = getUniqueValues(rule.getOriginId(),
+            rule.getContainsId(), rule.getDestinationId());
+        for (String id : uniqueIds)
+          keys.key(id, rule);
+      }, null, true, null);
+
+  private final Relation<AgencyAndId, Ridership> _ridershipByTrip = group(
+      Ridership.class, this::getAllRiderships).relation(
+      (r, keys) -> keys.key(
+          getAgencyAndIdPool().getId(r.getAgencyId(), r.getTripId()), r));
+
+  /**
+   * The agency ids of the trips of each service id, computed from
+   * {@link #_tripsByServiceId} as they are queried
+   */
+  private Map<AgencyAndId, List<String>> _tripAgencyIdsByServiceId = new HashMap<AgencyAndId, List<String>>();
+
+  private int _indexPrewarmParallelism = 0;
+
+  /**
+   * Drops all relation indices, to be rebuilt on their next use. A frozen dao
+   * cannot be modified, so its indices are never stale and are kept.
+   */
+  public void clearAllCaches() {
+    if (isFrozen())
+      return;
+    for (RelationGroup<?> group : _relationGroups.values())
+      group.clear();
+    _tripAgencyIdsByServiceId.clear();
+  }
 
-  private Map<AgencyAndId, List<Ridership>> _ridershipByTrip = null;
+  /**
+   * @param parallelism if positive, {@link #close()} builds all relation
+   *          indices with {@link #prewarmIndices(int)}, using up to this many
+   *          threads. Zero, the default, leaves them to be built on first use.
+   */
+  public void setIndexPrewarmParallelism(int parallelism) {
+    _indexPrewarmParallelism = parallelism;
+  }
 
-  public void clearAllCaches() {
-    _tripAgencyIdsByServiceId = clearMap(_tripAgencyIdsByServiceId);
-    _routesByAgency = clearMap(_routesByAgency);
-    _stopsByStation = clearMap(_stopsByStation);
-    _stopTimesByTrip = clearMap(_stopTimesByTrip);
-    _stopTimesByStop = clearMap(_stopTimesByStop);
-    _tripsByRoute = clearMap(_tripsByRoute);
-    _tripsByShapeId = clearMap(_tripsByShapeId);
-    _tripsByServiceId = clearMap(_tripsByServiceId);
-    _tripsByBlockId = clearMap(_tripsByBlockId);
-    _shapePointsByShapeId = clearMap(_shapePointsByShapeId);
-    _frequenciesByTrip = clearMap(_frequenciesByTrip);
-    _calendarDatesByServiceId = clearMap(_calendarDatesByServiceId);
-    _calendarsByServiceId = clearMap(_calendarsByServiceId);
-    _fareRulesByFareAttribute = clearMap(_fareRulesByFareAttribute);
-    _fareRulesByRoute = clearMap(_fareRulesByRoute);
-    _fareRulesByZoneId = clearMap(_fareRulesByZoneId);
-    _ridershipByTrip = clearMap(_ridershipByTrip);
+  public int getIndexPrewarmParallelism() {
+    return _indexPrewarmParallelism;
   }
 
   @Override
-  public List<String> getTripAgencyIdsReferencingServiceId(AgencyAndId serviceId) {
-
-    if (_tripAgencyIdsByServiceId == null) {
+  public void close() {
+    super.close();
+    if (_indexPrewarmParallelism > 0)
+      prewarmIndices(_indexPrewarmParallelism);
+  }
 
-      Map<AgencyAndId, Set<String>> agencyIdsByServiceIds = new HashMap<AgencyAndId, Set<String>>();
+  /**
+   * Builds every relation index, using up to
+   * {@link #getIndexPrewarmParallelism()} threads, and the agency ids of the
+   * trips of every service id, before making the dao read-only. Indices that
+   * were modified since they were built are rebuilt, so that none is changed
+   * by a lookup.
+   */
+  @Override
+  public void freeze() {
+    if (isFrozen())
+      return;
+    trimPackedEntities();
+    for (RelationGroup<?> group : _relationGroups.values())
+      group.dropModified();
+    prewarmIndices(Math.max(_indexPrewarmParallelism, 1));
+    super.freeze();
+  }
 
-      for (Trip trip : getAllTrips()) {
-        AgencyAndId tripId = trip.getId();
-        String tripAgencyId = tripId.getAgencyId();
-        AgencyAndId tripServiceId = trip.getServiceId();
-        Set<String> agencyIds = agencyIdsByServiceIds.get(tripServiceId);
-        if (agencyIds == null) {
-          agencyIds = new HashSet<String>();
-          agencyIdsByServiceIds.put(tripServiceId, agencyIds);
-        }
-        agencyIds.add(tripAgencyId);
+  /**
+   * Builds every relation index that is not built yet, the relations of each
+   * entity type on its own thread. The dao must not be modified or queried
+   * while this runs. All indices of a frozen dao are already built.
+   * 
+   * @param parallelism the largest number of threads to use
+   */
+  public void prewarmIndices(int parallelism) {
+
+    if (isFrozen())
+      return;
+
+    List<Runnable> tasks = new ArrayList<Runnable>();
+    for (RelationGroup<?> group : _relationGroups.values()) {
+      if (group == _tripRelations) {
+        tasks.add(() -> {
+          group.build();
+          for (AgencyAndId serviceId : _tripsByServiceId.index.keys())
+            getTripAgencyIdsReferencingServiceId(serviceId);
+        });
+      } else {
+        tasks.add(group::build);
       }
+    }
 
-      _tripAgencyIdsByServiceId = new HashMap<AgencyAndId, List<String>>();
+    if (parallelism <= 1) {
+      for (Runnable task : tasks)
+        task.run();
+      return;
+    }
 
-      for (Map.Entry<AgencyAndId, Set<String>> entry : agencyIdsByServiceIds.entrySet()) {
-        AgencyAndId tripServiceId = entry.getKey();
-        List<String> agencyIds = new ArrayList<String>(entry.getValue());
-        Collections.sort(agencyIds);
-        _tripAgencyIdsByServiceId.put(tripServiceId, agencyIds);
-      }
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(parallelism, tasks.size()), new ThreadFactory() {
+
+          private int _index = 0;
+
+          @Override
+          public synchronized Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "gtfs-index-" + (_index++));
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+
+    try {
+      List<Future<?>> results = new ArrayList<Future<?>>();
+      for (Runnable task : tasks)
+        results.add(executor.submit(task));
+      for (Future<?> result : results)
+        getResult(result);
+    } finally {
+      executor.shutdownNow();
     }
+  }
+
+  /****
+   * {@link GenericMutableDao} Interface
+   ****/
+
+  @Override
+  public void saveEntity(Object entity) {
+    checkNotFrozen();
+    RelationGroup<?> group = _relationGroups.get(entity.getClass());
+    if (group == null) {
+      super.saveEntity(entity);
+      return;
+    }
+    Object existing = getStoredEntity(entity);
+    if (existing != null && existing != entity)
+      removeFromRelations(group, existing);
+    super.saveEntity(entity);
+    if (existing != entity) {
+      group.add(entity);
+      if (group == _tripRelations)
+        _tripAgencyIdsByServiceId.remove(((Trip) entity).getServiceId());
+    }
+  }
+
+  @Override
+  public <K extends Serializable, T extends IdentityBean<K>> void removeEntity(
+      T entity) {
+    checkNotFrozen();
+    RelationGroup<?> group = _relationGroups.get(entity.getClass());
+    if (group != null) {
+      Object existing = getStoredEntity(entity);
+      if (existing != null)
+        removeFromRelations(group, existing);
+    }
+    super.removeEntity(entity);
+  }
+
+  /**
+   * Moves the entity to its current keys in every relation index that is
+   * built. If its id has changed, it is moved to its new id in the indices of
+   * its type, and so are the values of the indices keyed by it.
+   */
+  @Override
+  public void updateEntity(Object entity) {
+    checkNotFrozen();
+    RelationGroup<?> group = _relationGroups.get(entity.getClass());
+    Object previousId = moveToCurrentId(entity);
+    if (previousId != null)
+      moveId((IdentityBean<?>) entity, previousId, group);
+    if (group == null || getStoredEntity(entity) != entity)
+      return;
+    group.update(entity);
+    if (group == _tripRelations)
+      _tripAgencyIdsByServiceId.clear();
+  }
+
+  /****
+   * {@link GtfsMutableRelationalDao} Interface
+   ****/
+
+  @Override
+  public List<String> getTripAgencyIdsReferencingServiceId(AgencyAndId serviceId) {
 
     List<String> agencyIds = _tripAgencyIdsByServiceId.get(serviceId);
-    if (agencyIds == null)
-      agencyIds = new ArrayList<String>();
-    return agencyIds;
+    if (agencyIds == null) {
+      Set<String> uniqueAgencyIds = new HashSet<String>();
+      for (Trip trip : list(get(_tripsByServiceId, serviceId)))
+        uniqueAgencyIds.add(trip.getId().getAgencyId());
+      agencyIds = new ArrayList<String>(uniqueAgencyIds);
+      Collections.sort(agencyIds);
+      if (!isFrozen())
+        _tripAgencyIdsByServiceId.put(canonicalize(serviceId), agencyIds);
+    }
+    return new ArrayList<String>(agencyIds);
   }
 
   @Override
   public List<Route> getRoutesForAgency(Agency agency) {
-    if (_routesByAgency == null)
-      _routesByAgency = mapToValueList(getAllRoutes(), "agency", Agency.class);
-    return list(_routesByAgency.get(agency));
+    return list(get(_routesByAgency, agency));
   }
 
   @Override
   public List<Stop> getStopsForStation(Stop station) {
-    if (_stopsByStation == null) {
-      _stopsByStation = new HashMap<Stop, List<Stop>>();
-      for (Stop stop : getAllStops()) {
-        if (stop.getLocationType() == 0 && stop.getParentStation() != null) {
-          Stop parentStation = getStopForId(new AgencyAndId(
-              stop.getId().getAgencyId(), stop.getParentStation()));
-          List<Stop> subStops = _stopsByStation.get(parentStation);
-          if (subStops == null) {
-            subStops = new ArrayList<Stop>(2);
-            _stopsByStation.put(parentStation, subStops);
-          }
-          subStops.add(stop);
-        }
-      }
-    }
-    return list(_stopsByStation.get(station));
+    return list(get(_stopsByStation, station));
   }
 
   @Override
   public List<Stop> getStopsForZoneId(String zoneId) {
-    if (_stopsByZoneId == null) {
-      _stopsByZoneId = mapToValueList(getAllStops(), "zoneId", String.class);
-    }
-    return list(_stopsByZoneId.get(zoneId));
+    return list(get(_stopsByZoneId, zoneId));
   }
 
   @Override
   public List<AgencyAndId> getAllShapeIds() {
-    ensureShapePointRelation();
-    return new ArrayList<AgencyAndId>(_shapePointsByShapeId.keySet());
+    _shapePointsByShapeId.ensure();
+    return _shapePointsByShapeId.index.keys();
   }
 
   @Override
   public List<ShapePoint> getShapePointsForShapeId(AgencyAndId shapeId) {
-    ensureShapePointRelation();
-    return list(_shapePointsByShapeId.get(shapeId));
+    return list(get(_shapePointsByShapeId, shapeId));
   }
 
   @Override
   public List<StopTime> getStopTimesForTrip(Trip trip) {
 
-    if (_stopTimesByTrip == null) {
-      _stopTimesByTrip = mapToValueList(getAllStopTimes(), "trip", Trip.class);
-      for (List<StopTime> stopTimes : _stopTimesByTrip.values())
-        Collections.sort(stopTimes);
-    }
+    List<StopTime> packed = getPackedStopTimesForTrip(trip);
+    if (packed != null)
+      return Collections.unmodifiableList(packed);
 
-    return list(_stopTimesByTrip.get(trip));
+    return list(get(_stopTimesByTrip, trip));
   }
 
   @Override
   public List<StopTime> getStopTimesForStop(Stop stop) {
-    if (_stopTimesByStop == null)
-      _stopTimesByStop = mapToValueList(getAllStopTimes(), "stop", Stop.class);
-    return list(_stopTimesByStop.get(stop));
+    return list(get(_stopTimesByStop, stop));
   }
 
   @Override
   public List<Trip> getTripsForRoute(Route route) {
-    if (_tripsByRoute == null)
-      _tripsByRoute = mapToValueList(getAllTrips(), "route", Route.class);
-    return list(_tripsByRoute.get(route));
+    return list(get(_tripsByRoute, route));
   }
 
   @Override
   public List<Trip> getTripsForShapeId(AgencyAndId shapeId) {
-    if (_tripsByShapeId == null) {
-      _tripsByShapeId = mapToValueList(getAllTrips(), "shapeId",
-          AgencyAndId.class);
-    }
-    return list(_tripsByShapeId.get(shapeId));
+    return list(get(_tripsByShapeId, shapeId));
   }
 
   @Override
   public List<Trip> getTripsForServiceId(AgencyAndId serviceId) {
-    if (_tripsByServiceId == null) {
-      _tripsByServiceId = mapToValueList(getAllTrips(), "serviceId",
-          AgencyAndId.class);
-    }
-    return list(_tripsByServiceId.get(serviceId));
+    return list(get(_tripsByServiceId, serviceId));
   }
 
   @Override
   public List<Trip> getTripsForBlockId(AgencyAndId blockId) {
-
-    if (_tripsByBlockId == null) {
-      _tripsByBlockId = new HashMap<AgencyAndId, List<Trip>>();
-      for (Trip trip : getAllTrips()) {
-        if (trip.getBlockId() != null) {
-          AgencyAndId bid = new AgencyAndId(trip.getId().getAgencyId(),
-              trip.getBlockId());
-          List<Trip> trips = _tripsByBlockId.get(bid);
-          if (trips == null) {
-            trips = new ArrayList<Trip>();
-            _tripsByBlockId.put(bid, trips);
-          }
-          trips.add(trip);
-        }
-      }
-    }
-
-    return list(_tripsByBlockId.get(blockId));
+    return list(get(_tripsByBlockId, blockId));
   }
 
   @Override
   public List<Frequency> getFrequenciesForTrip(Trip trip) {
-    if (_frequenciesByTrip == null)
-      _frequenciesByTrip = mapToValueList(getAllFrequencies(), "trip",
-          Trip.class);
-    return list(_frequenciesByTrip.get(trip));
+    return list(get(_frequenciesByTrip, trip));
   }
 
   @Override
   public List<AgencyAndId> getAllServiceIds() {
-    ensureCalendarDatesByServiceIdRelation();
-    ensureCalendarsByServiceIdRelation();
+    _calendarDatesByServiceId.ensure();
+    _calendarsByServiceId.ensure();
     Set<AgencyAndId> serviceIds = new HashSet<AgencyAndId>();
-    serviceIds.addAll(_calendarDatesByServiceId.keySet());
-    serviceIds.addAll(_calendarsByServiceId.keySet());
+    serviceIds.addAll(_calendarDatesByServiceId.index.keys());
+    serviceIds.addAll(_calendarsByServiceId.index.keys());
     return new ArrayList<AgencyAndId>(serviceIds);
   }
 
   @Override
   public List<ServiceCalendarDate> getCalendarDatesForServiceId(
       AgencyAndId serviceId) {
-    ensureCalendarDatesByServiceIdRelation();
-    return list(_calendarDatesByServiceId.get(serviceId));
+    return list(get(_calendarDatesByServiceId, serviceId));
   }
 
   @Override
   public ServiceCalendar getCalendarForServiceId(AgencyAndId serviceId) {
-    ensureCalendarsByServiceIdRelation();
-    List<ServiceCalendar> calendars = list(_calendarsByServiceId.get(serviceId));
+    List<ServiceCalendar> calendars = list(get(_calendarsByServiceId,
+        serviceId));
     switch (calendars.size()) {
       case 0:
         return null;
@@ -287,20 +470,12 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
 
   @Override
   public List<FareRule> getFareRulesForFareAttribute(FareAttribute fareAttribute) {
-    if (_fareRulesByFareAttribute == null) {
-      _fareRulesByFareAttribute = mapToValueList(getAllFareRules(), "fare",
-          FareAttribute.class);
-    }
-    return list(_fareRulesByFareAttribute.get(fareAttribute));
+    return list(get(_fareRulesByFareAttribute, fareAttribute));
   }
 
   @Override
   public List<FareRule> getFareRulesForRoute(Route route) {
-    if (_fareRulesByRoute == null) {
-      _fareRulesByRoute = mapToValueList(getAllFareRules(), "route",
-              Route.class);
-    }
-    return list(_fareRulesByRoute.get(route));
+    return list(get(_fareRulesByRoute, route));
   }
 
   private static Set<String> getUniqueValues(String... values) {
@@ -315,39 +490,12 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
 
   @Override
   public List<FareRule> getFareRulesForZoneId(String zoneId) {
-    if (_fareRulesByZoneId == null) {
-      _fareRulesByZoneId = new HashMap<>();
-      for (FareRule rule : getAllFareRules()) {
-        Set<String> uniqueIds = getUniqueValues(rule.getOriginId(), rule.getContainsId(), rule.getDestinationId());
-        for (String id : uniqueIds) {
-          List<FareRule> fareRules = _fareRulesByZoneId.get(id);
-          if (fareRules == null) {
-            fareRules = new ArrayList<>();
-            _fareRulesByZoneId.put(id, fareRules);
-          }
-          fareRules.add(rule);
-        }
-      }
-    }
-    return list(_fareRulesByZoneId.get(zoneId));
+    return list(get(_fareRulesByZoneId, zoneId));
   }
 
   @Override
   public List<Ridership> getRidershipForTrip(AgencyAndId tripId) {
-    if (_ridershipByTrip == null) {
-      _ridershipByTrip = new HashMap<>();
-      for (Ridership r : getAllRiderships()) {
-        AgencyAndId aid = new AgencyAndId(r.getAgencyId(), r.getTripId());
-        if (_ridershipByTrip.containsKey(aid)) {
-          _ridershipByTrip.get(aid).add(r);
-        } else {
-          List<Ridership> list = new ArrayList<>();
-          list.add(r);
-          _ridershipByTrip.put(aid, list);
-        }
-      }
-    }
-    return _ridershipByTrip.get(tripId);
+    return get(_ridershipByTrip, tripId);
   }
 
 
@@ -355,91 +503,308 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
    * Private Methods
    ****/
 
-  private void ensureCalendarDatesByServiceIdRelation() {
-    if (_calendarDatesByServiceId == null) {
-      _calendarDatesByServiceId = mapToValueList(getAllCalendarDates(),
-          "serviceId", AgencyAndId.class);
-    }
+  private <V> RelationGroup<V> group(Class<V> type,
+      Supplier<Collection<V>> values) {
+    RelationGroup<V> group = new RelationGroup<V>(values);
+    _relationGroups.put(type, group);
+    return group;
   }
 
-  private void ensureCalendarsByServiceIdRelation() {
-    if (_calendarsByServiceId == null) {
-      _calendarsByServiceId = mapToValueList(getAllCalendars(), "serviceId",
-          AgencyAndId.class);
-    }
+  private <K, V> Relation<K, V> keyedBy(Relation<K, V> relation,
+      Class<?>... keyTypes) {
+    for (Class<?> keyType : keyTypes)
+      _relationsByKeyType.computeIfAbsent(keyType,
+          type -> new ArrayList<Relation<?, ?>>()).add(relation);
+    return relation;
   }
 
-  private void ensureShapePointRelation() {
-    if (_shapePointsByShapeId == null) {
-      _shapePointsByShapeId = mapToValueList(getAllShapePoints(), "shapeId",
-          AgencyAndId.class);
-      for (List<ShapePoint> shapePoints : _shapePointsByShapeId.values())
-        Collections.sort(shapePoints);
+  /**
+   * Removes an entity whose id has changed from the built indices of its
+   * group, to be added back under its new id by
+   * {@link RelationGroup#update(Object)}, and moves the values of the built
+   * indices keyed by it to its new id. Indices find values and keys by
+   * equality, so the entity's previous id is restored while they are removed.
+   */
+  @SuppressWarnings("unchecked")
+  private void moveId(IdentityBean<?> entity, Object previousId,
+      RelationGroup<?> group) {
+    List<Relation<?, ?>> relations = _relationsByKeyType.getOrDefault(
+        entity.getClass(), Collections.emptyList());
+    IdentityBean<Serializable> bean = (IdentityBean<Serializable>) entity;
+    Serializable id = bean.getId();
+    List<List<?>> values = new ArrayList<List<?>>(relations.size());
+    bean.setId((Serializable) previousId);
+    try {
+      if (group != null)
+        group.removeValue(entity);
+      for (Relation<?, ?> relation : relations)
+        values.add(relation.removeKey(entity));
+    } finally {
+      bean.setId(id);
     }
+    for (int i = 0; i < relations.size(); i++)
+      relations.get(i).addAll(entity, values.get(i));
+  }
+
+  private void removeFromRelations(RelationGroup<?> group, Object entity) {
+    group.remove(entity);
+    if (group == _tripRelations)
+      _tripAgencyIdsByServiceId.remove(((Trip) entity).getServiceId());
+  }
+
+  private static <K, V> List<V> get(Relation<K, V> relation, Object key) {
+    relation.ensure();
+    return relation.index.get(key);
   }
 
   private static <T> List<T> list(List<T> list) {
     if (list == null)
-      list = new ArrayList<T>();
-    return Collections.unmodifiableList(list);
+      return Collections.emptyList();
+    return list;
   }
 
-  @SuppressWarnings("unchecked")
-  private static <K, V> Map<K, List<V>> mapToValueList(Iterable<V> values,
-      String property, Class<K> keyType) {
-    return mapToValueCollection(values, property, keyType,
-        new ArrayList<V>().getClass());
+  /**
+   * Index keys share the canonical id instances of the dao's
+   * {@link AgencyAndIdPool}, so that lookups with ids read by the same reader
+   * match on identity
+   */
+  private AgencyAndId canonicalize(AgencyAndId id) {
+    return getAgencyAndIdPool().canonicalize(id);
   }
 
-  @SuppressWarnings("unchecked")
-  private static <K, V, C extends Collection<V>, CIMPL extends C> Map<K, C> mapToValueCollection(
-      Iterable<V> values, String property, Class<K> keyType,
-      Class<CIMPL> collectionType) {
+  private static void getResult(Future<?> result) {
+    try {
+      result.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while building indices", ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
 
-    Map<K, C> byKey = new HashMap<K, C>();
-    SimplePropertyQuery query = new SimplePropertyQuery(property);
+  /**
+   * Reports the keys an entity is indexed by in a relation
+   */
+  private interface KeyFunction<K, V> {
+    void keys(V value, KeyVisitor<K, V> visitor);
+  }
 
-    for (V value : values) {
+  private interface KeyVisitor<K, V> {
+    void key(K key, V value);
+  }
 
-      K key = (K) query.invoke(value);
-      C valuesForKey = byKey.get(key);
-      if (valuesForKey == null) {
+  /**
+   * The relations over one entity type, which are built together in a single
+   * pass over the entities
+   */
+  private static final class RelationGroup<V> {
 
-        try {
-          valuesForKey = collectionType.newInstance();
-        } catch (Exception ex) {
-          throw new EntityInstantiationException(collectionType, ex);
-        }
+    private final Supplier<Collection<V>> values;
+
+    private final List<Relation<?, V>> relations = new ArrayList<Relation<?, V>>();
+
+    public RelationGroup(Supplier<Collection<V>> values) {
+      this.values = values;
+    }
+
+    public <K> Relation<K, V> relation(KeyFunction<K, V> keyFunction) {
+      return relation(keyFunction, null, false, null);
+    }
+
+    /**
+     * @param order the order of the values of each key, if any
+     * @param multipleKeys true if a value can have more than one key
+     * @param deferred if not null, the relation is not built while it is true
+     */
+    public <K> Relation<K, V> relation(KeyFunction<K, V> keyFunction,
+        Comparator<? super V> order, boolean multipleKeys,
+        BooleanSupplier deferred) {
+      Relation<K, V> relation = new Relation<K, V>(this, keyFunction, order,
+          multipleKeys, deferred);
+      relations.add(relation);
+      return relation;
+    }
 
-        byKey.put(key, valuesForKey);
+    /**
+     * Builds every relation of the group that is not built yet
+     */
+    public void build() {
+
+      List<Relation<?, V>> pending = new ArrayList<Relation<?, V>>();
+      for (Relation<?, V> relation : relations) {
+        if (relation.index == null && !relation.isDeferred())
+          pending.add(relation);
+      }
+      if (pending.isEmpty())
+        return;
+
+      List<RelationIndex.Builder<?, V>> builders = new ArrayList<RelationIndex.Builder<?, V>>();
+      for (int i = 0; i < pending.size(); i++)
+        builders.add(RelationIndex.builder());
+
+      for (V value : values.get()) {
+        for (int i = 0; i < pending.size(); i++)
+          pending.get(i).keys(value, builders.get(i));
       }
-      valuesForKey.add(value);
+
+      for (int i = 0; i < pending.size(); i++)
+        pending.get(i).setIndex(builders.get(i));
     }
 
-    return byKey;
-  }
+    public void add(Object value) {
+      for (Relation<?, V> relation : relations)
+        relation.add(value);
+    }
 
-  private <K, V> Map<K, V> clearMap(Map<K, V> map) {
-    if (map != null)
-      map.clear();
-    return null;
-  }
+    public void remove(Object value) {
+      for (Relation<?, V> relation : relations)
+        relation.remove(value);
+    }
 
-  private static final class SimplePropertyQuery {
+    public void update(Object value) {
+      for (Relation<?, V> relation : relations)
+        relation.update(value);
+    }
 
-    private String[] _properties;
+    public void removeValue(Object value) {
+      for (Relation<?, V> relation : relations)
+        relation.removeValue(value);
+    }
 
-    public SimplePropertyQuery(String query) {
-      _properties = query.split("\\.");
+    public void clear() {
+      for (Relation<?, V> relation : relations)
+        relation.index = null;
     }
 
-    public Object invoke(Object value) {
-      for (String property : _properties) {
-        BeanWrapper wrapper = BeanWrapperFactory.wrap(value);
-        value = wrapper.getPropertyValue(property);
+    /**
+     * Drops the indices that were modified since they were built
+     */
+    public void dropModified() {
+      for (Relation<?, V> relation : relations) {
+        if (relation.index != null && relation.index.isModified())
+          relation.index = null;
       }
-      return value;
     }
   }
 
+  /**
+   * A relation from keys to the entities of one type, and its index, which is
+   * null until the relation is first used
+   */
+  private static final class Relation<K, V> {
+
+    private final RelationGroup<V> group;
+
+    private final KeyFunction<K, V> keyFunction;
+
+    private final Comparator<? super V> order;
+
+    private final boolean multipleKeys;
+
+    private final BooleanSupplier deferred;
+
+    private RelationIndex<K, V> index = null;
+
+    public Relation(RelationGroup<V> group, KeyFunction<K, V> keyFunction,
+        Comparator<? super V> order, boolean multipleKeys,
+        BooleanSupplier deferred) {
+      this.group = group;
+      this.keyFunction = keyFunction;
+      this.order = order;
+      this.multipleKeys = multipleKeys;
+      this.deferred = deferred;
+    }
+
+    public void ensure() {
+      if (index == null)
+        group.build();
+    }
+
+    public boolean isDeferred() {
+      return deferred != null && deferred.getAsBoolean();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void keys(V value, RelationIndex.Builder<?, V> builder) {
+      keyFunction.keys(value, ((RelationIndex.Builder<K, V>) builder)::add);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void setIndex(RelationIndex.Builder<?, V> builder) {
+      index = ((RelationIndex.Builder<K, V>) builder).build(order);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void add(Object value) {
+      if (index != null)
+        keyFunction.keys((V) value, index::add);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void remove(Object value) {
+      if (index != null)
+        keyFunction.keys((V) value, index::remove);
+    }
+
+    /**
+     * @return the values of the key, which are removed from the index if it is
+     *         built
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> removeKey(Object key) {
+      if (index == null)
+        return Collections.emptyList();
+      return index.removeKey((K) key);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void addAll(Object key, List<?> values) {
+      if (index != null) {
+        for (Object value : values)
+          index.add((K) key, (V) value);
+      }
+    }
+
+    /**
+     * Removes the value from whichever key it is a value of. A value that can
+     * have several keys drops the index instead, since its keys are not known.
+     */
+    @SuppressWarnings("unchecked")
+    public void removeValue(Object value) {
+      if (index == null)
+        return;
+      if (multipleKeys)
+        index = null;
+      else
+        index.removeValue((V) value);
+    }
+
+    /**
+     * Moves the value to its current key, if it is not already there, or to
+     * its place among the values of its key if they are ordered. A value that
+     * can have several keys drops the index instead, since its previous keys
+     * are not known.
+     */
+    @SuppressWarnings("unchecked")
+    public void update(Object value) {
+      if (index == null)
+        return;
+      if (multipleKeys) {
+        index = null;
+        return;
+      }
+      List<K> keys = new ArrayList<K>(1);
+      keyFunction.keys((V) value, (key, v) -> keys.add(key));
+      if (keys.isEmpty())
+        index.removeValue((V) value);
+      else
+        index.put(keys.get(0), (V) value);
+    }
+  }
 }
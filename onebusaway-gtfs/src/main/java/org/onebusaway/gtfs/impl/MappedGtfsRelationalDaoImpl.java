@@ -0,0 +1,2125 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+
+import org.onebusaway.gtfs.model.*;
+import org.onebusaway.gtfs.serialization.GtfsReader;
+import org.onebusaway.gtfs.services.GtfsDao;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
+
+/**
+ * A read-only {@link GtfsRelationalDao} that keeps trips, stop times, shape
+ * points and their relation indices in a memory-mapped file rather than on
+ * the heap, so that the heap used by a feed hardly grows with its number of
+ * trips, stop times and shape points. Every other entity is kept on the heap,
+ * in a frozen {@link GtfsRelationalDaoImpl}.
+ * 
+ * Trips, stop times and shape points are flyweights: each read creates a new
+ * entity whose proxy reads its values from the mapped columns, so entities
+ * read twice are equal but not identical. Strings and ids are decoded as they
+ * are read. Every value covered by {@link TripProxy}, {@link StopTimeProxy}
+ * and {@link ShapePointProxy} is kept, as with the packed arrays of
+ * {@link GtfsDaoImpl}. The extensions of the few trips and stop times that
+ * have any are kept on the heap, and a shape point with extensions cannot be
+ * stored.
+ * 
+ * Trips are ordered by id, stop times by trip and stop sequence, and shape
+ * points by shape id and sequence. Trips returned for a route, shape, service
+ * or block are in trip order, and stop times for a stop are in stop time
+ * order.
+ * 
+ * The dao cannot be modified once constructed, and can be read by any number
+ * of threads without locking, as with a frozen {@link GtfsRelationalDaoImpl}.
+ * The mapped file is not deleted by the dao.
+ */
+public class MappedGtfsRelationalDaoImpl implements GtfsRelationalDao {
+
+  private final GtfsRelationalDaoImpl _dao = new GtfsRelationalDaoImpl();
+
+  private MappedStringTable _strings;
+
+  private Route[] _routes;
+
+  private Map<Route, Integer> _routeIndices;
+
+  private StopLocation[] _stopLocations;
+
+  private Map<StopLocation, Integer> _stopLocationIndices;
+
+  private Area[] _areas;
+
+  private BookingRule[] _bookingRules;
+
+  private Note[] _notes;
+
+  /****
+   * Trips, ordered by id
+   ****/
+
+  private int _tripCount;
+
+  private IdKeys _tripIds;
+
+  private IntBuffer _tripRoutes;
+
+  private IntBuffer _tripServiceIds;
+
+  private IntBuffer _tripShortNames;
+
+  private IntBuffer _tripHeadsigns;
+
+  private IntBuffer _tripDirectionIds;
+
+  private IntBuffer _tripBlockIds;
+
+  private IntBuffer _tripShapeIds;
+
+  private IntBuffer _tripWheelchairAccessible;
+
+  private IntBuffer _tripBikesAllowed;
+
+  private IntBuffer _tripCarsAllowed;
+
+  /**
+   * Which of the trip's duration factors and offsets are set, as bits in the
+   * order of the {@link #_tripDurations} columns
+   */
+  private ByteBuffer _tripDurationsSet;
+
+  private DoubleBuffer[] _tripDurations;
+
+  private IntBuffer _tripNotes;
+
+  private IntBuffer _tripPeakOffpeaks;
+
+  private IntBuffer _tripMtaTripIds;
+
+  private IntBuffer _tripBoardingTypes;
+
+  /**
+   * The extensions of the few trips that have any, by row, which are kept on
+   * the heap
+   */
+  private Map<Integer, Map<Class<?>, Object>> _tripExtensions;
+
+  private IdKeys _serviceIds;
+
+  private IdKeys _shapeIds;
+
+  private IdKeys _blockIds;
+
+  private RowIndex _tripsByRoute;
+
+  private RowIndex _tripsByServiceId;
+
+  private RowIndex _tripsByShapeId;
+
+  private RowIndex _tripsByBlockId;
+
+  /****
+   * Stop times, ordered by trip and stop sequence
+   ****/
+
+  private int _stopTimeCount;
+
+  private IntBuffer _stopTimeIds;
+
+  private IntKeys _stopTimeRowsById;
+
+  private IntBuffer _stopTimeTrips;
+
+  private IntBuffer _stopTimeStops;
+
+  private IntBuffer _stopTimeLocations;
+
+  private IntBuffer _stopTimeLocationGroups;
+
+  private IntBuffer _stopTimeStartServiceAreas;
+
+  private IntBuffer _stopTimeEndServiceAreas;
+
+  private IntBuffer _arrivalTimes;
+
+  private IntBuffer _departureTimes;
+
+  private IntBuffer _timepoints;
+
+  private IntBuffer _stopSequences;
+
+  private IntBuffer _stopHeadsigns;
+
+  private IntBuffer _routeShortNames;
+
+  private IntBuffer _pickupTypes;
+
+  private IntBuffer _dropOffTypes;
+
+  private DoubleBuffer _shapeDistTraveled;
+
+  private IntBuffer _pickupBookingRules;
+
+  private IntBuffer _dropOffBookingRules;
+
+  private DoubleBuffer _meanDurationFactors;
+
+  private DoubleBuffer _meanDurationOffsets;
+
+  private DoubleBuffer _safeDurationFactors;
+
+  private DoubleBuffer _safeDurationOffsets;
+
+  private IntBuffer _freeRunningFlags;
+
+  /**
+   * The stop time's to_stop_sequence, or {@link Integer#MIN_VALUE} if it has
+   * none
+   */
+  private IntBuffer _toStopSequences;
+
+  private IntBuffer _startPickupDropOffWindows;
+
+  private IntBuffer _endPickupDropOffWindows;
+
+  private IntBuffer _continuousPickups;
+
+  private IntBuffer _continuousDropOffs;
+
+  private IntBuffer _farePeriodIds;
+
+  private DoubleBuffer _startServiceAreaRadii;
+
+  private DoubleBuffer _endServiceAreaRadii;
+
+  private IntBuffer _departureBuffers;
+
+  private IntBuffer _tracks;
+
+  private IntBuffer _stopTimeNotes;
+
+  /**
+   * The extensions of the few stop times that have any, by row, which are
+   * kept on the heap
+   */
+  private Map<Integer, Map<Class<?>, Object>> _stopTimeExtensions;
+
+  private RowIndex _stopTimesByTrip;
+
+  private RowIndex _stopTimesByStop;
+
+  /****
+   * Shape points, ordered by shape id and sequence
+   ****/
+
+  private int _shapePointCount;
+
+  private IntBuffer _shapePointIds;
+
+  private IntKeys _shapePointRowsById;
+
+  private IntBuffer _shapePointShapeIds;
+
+  private IntBuffer _shapePointSequences;
+
+  private DoubleBuffer _shapePointLats;
+
+  private DoubleBuffer _shapePointLons;
+
+  private DoubleBuffer _shapePointDistTraveled;
+
+  private RowIndex _shapePointsByShapeId;
+
+  /**
+   * Copies the entities and metadata of the source dao, writing its trips,
+   * stop times and shape points to the specified file, which is created or
+   * replaced. The source is no longer needed afterwards, although the dao
+   * keeps the source's instances of the entities it keeps on the heap.
+   * 
+   * @throws IllegalArgumentException if a stop time or trip refers to an
+   *           entity that the source dao does not store, or a shape point has
+   *           extensions
+   */
+  public MappedGtfsRelationalDaoImpl(GtfsDao source, File path)
+      throws IOException {
+
+    List<Class<?>> entityClasses = new ArrayList<Class<?>>(
+        new GtfsReader().getEntityClasses());
+    entityClasses.add(StopArea.class);
+    for (Class<?> entityClass : new LinkedHashSet<Class<?>>(entityClasses)) {
+      if (entityClass == Trip.class || entityClass == StopTime.class
+          || entityClass == ShapePoint.class || entityClass == Frequency.class
+          || entityClass == Transfer.class)
+        continue;
+      for (Object entity : source.getAllEntitiesForType(entityClass))
+        _dao.saveEntity(entity);
+    }
+
+    _routes = _dao.getAllRoutes().toArray(new Route[0]);
+    _routeIndices = indicesOf(_routes);
+    List<StopLocation> stopLocations = new ArrayList<StopLocation>();
+    stopLocations.addAll(_dao.getAllStops());
+    stopLocations.addAll(_dao.getAllLocations());
+    stopLocations.addAll(_dao.getAllLocationGroups());
+    stopLocations.addAll(_dao.getAllStopAreas());
+    _stopLocations = stopLocations.toArray(new StopLocation[0]);
+    _stopLocationIndices = indicesOf(_stopLocations);
+    _areas = _dao.getAllAreas().toArray(new Area[0]);
+    _bookingRules = _dao.getAllBookingRules().toArray(new BookingRule[0]);
+    _notes = _dao.getAllEntitiesForType(Note.class).toArray(new Note[0]);
+
+    try (MappedSections sections = new MappedSections(path)) {
+      MappedStringTable.Builder strings = new MappedStringTable.Builder();
+      Collection<ShapePoint> shapePoints = source.getAllShapePoints();
+      Map<AgencyAndId, Integer> shapeIndices = new HashMap<AgencyAndId, Integer>();
+      Map<AgencyAndId, Integer> tripIndices = putTrips(source.getAllTrips(),
+          shapePoints, shapeIndices, strings, sections);
+      putStopTimes(source.getAllStopTimes(), tripIndices, strings, sections);
+      putShapePoints(shapePoints, shapeIndices, sections);
+      _strings = strings.build(sections);
+    }
+
+    for (Frequency frequency : source.getAllFrequencies()) {
+      Frequency copy = new Frequency(frequency);
+      copy.setTrip(getTripFor(frequency.getTrip()));
+      copyExtensions(frequency, copy);
+      _dao.saveEntity(copy);
+    }
+    for (Transfer transfer : source.getAllTransfers()) {
+      Transfer copy = new Transfer(transfer);
+      copy.setFromTrip(getTripFor(transfer.getFromTrip()));
+      copy.setToTrip(getTripFor(transfer.getToTrip()));
+      copyExtensions(transfer, copy);
+      _dao.saveEntity(copy);
+    }
+
+    for (String filename : source.getOptionalMetadataFilenames()) {
+      if (source.hasMetadata(filename))
+        _dao.addMetadata(filename, source.getMetadata(filename));
+    }
+
+    _dao.freeze();
+  }
+
+  /****
+   * {@link GenericDao} Interface
+   ****/
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> Collection<T> getAllEntitiesForType(Class<T> type) {
+    if (type == Trip.class)
+      return (Collection<T>) getAllTrips();
+    if (type == StopTime.class)
+      return (Collection<T>) getAllStopTimes();
+    if (type == ShapePoint.class)
+      return (Collection<T>) getAllShapePoints();
+    return _dao.getAllEntitiesForType(type);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T getEntityForId(Class<T> type, Serializable id) {
+    if (type == Trip.class)
+      return (T) getTripForId((AgencyAndId) id);
+    if (type == StopTime.class)
+      return (T) getStopTimeForId((Integer) id);
+    if (type == ShapePoint.class)
+      return (T) getShapePointForId((Integer) id);
+    return _dao.getEntityForId(type, id);
+  }
+
+  /****
+   * {@link GtfsDao} Interface
+   ****/
+
+  @Override
+  public Collection<Trip> getAllTrips() {
+    return new RowList<Trip>(0, _tripCount, null, this::createTrip);
+  }
+
+  @Override
+  public Trip getTripForId(AgencyAndId id) {
+    int row = _tripIds.find(id);
+    return row == -1 ? null : createTrip(row);
+  }
+
+  @Override
+  public Collection<StopTime> getAllStopTimes() {
+    return new RowList<StopTime>(0, _stopTimeCount, null,
+        this::createStopTime);
+  }
+
+  @Override
+  public StopTime getStopTimeForId(int id) {
+    int row = _stopTimeRowsById.find(id);
+    return row == -1 ? null : createStopTime(row);
+  }
+
+  @Override
+  public Collection<ShapePoint> getAllShapePoints() {
+    return new RowList<ShapePoint>(0, _shapePointCount, null,
+        this::createShapePoint);
+  }
+
+  @Override
+  public ShapePoint getShapePointForId(int id) {
+    int row = _shapePointRowsById.find(id);
+    return row == -1 ? null : createShapePoint(row);
+  }
+
+  @Override
+  public Collection<Agency> getAllAgencies() {
+    return _dao.getAllAgencies();
+  }
+
+  @Override
+  public Agency getAgencyForId(String id) {
+    return _dao.getAgencyForId(id);
+  }
+
+  @Override
+  public Collection<ServiceCalendar> getAllCalendars() {
+    return _dao.getAllCalendars();
+  }
+
+  @Override
+  public ServiceCalendar getCalendarForId(int id) {
+    return _dao.getCalendarForId(id);
+  }
+
+  @Override
+  public Collection<ServiceCalendarDate> getAllCalendarDates() {
+    return _dao.getAllCalendarDates();
+  }
+
+  @Override
+  public ServiceCalendarDate getCalendarDateForId(int id) {
+    return _dao.getCalendarDateForId(id);
+  }
+
+  @Override
+  public Collection<FareAttribute> getAllFareAttributes() {
+    return _dao.getAllFareAttributes();
+  }
+
+  @Override
+  public FareAttribute getFareAttributeForId(AgencyAndId id) {
+    return _dao.getFareAttributeForId(id);
+  }
+
+  @Override
+  public Collection<FareLegRule> getAllFareLegRules() {
+    return _dao.getAllFareLegRules();
+  }
+
+  @Override
+  public Collection<FareProduct> getAllFareProducts() {
+    return _dao.getAllFareProducts();
+  }
+
+  @Override
+  public FareProduct getFareProductForId(AgencyAndId id) {
+    return _dao.getFareProductForId(id);
+  }
+
+  @Override
+  public Collection<FareMedium> getAllFareMedia() {
+    return _dao.getAllFareMedia();
+  }
+
+  @Override
+  public Collection<RiderCategory> getAllRiderCategories() {
+    return _dao.getAllRiderCategories();
+  }
+
+  @Override
+  public Collection<FareRule> getAllFareRules() {
+    return _dao.getAllFareRules();
+  }
+
+  @Override
+  public FareRule getFareRuleForId(int id) {
+    return _dao.getFareRuleForId(id);
+  }
+
+  @Override
+  public Collection<FareTransferRule> getAllFareTransferRules() {
+    return _dao.getAllFareTransferRules();
+  }
+
+  @Override
+  public Collection<FeedInfo> getAllFeedInfos() {
+    return _dao.getAllFeedInfos();
+  }
+
+  @Override
+  public FeedInfo getFeedInfoForId(String id) {
+    return _dao.getFeedInfoForId(id);
+  }
+
+  @Override
+  public Collection<Frequency> getAllFrequencies() {
+    return _dao.getAllFrequencies();
+  }
+
+  @Override
+  public Frequency getFrequencyForId(int id) {
+    return _dao.getFrequencyForId(id);
+  }
+
+  @Override
+  public Collection<Pathway> getAllPathways() {
+    return _dao.getAllPathways();
+  }
+
+  @Override
+  public Pathway getPathwayForId(AgencyAndId id) {
+    return _dao.getPathwayForId(id);
+  }
+
+  @Override
+  public Collection<Level> getAllLevels() {
+    return _dao.getAllLevels();
+  }
+
+  @Override
+  public Level getLevelForId(AgencyAndId id) {
+    return _dao.getLevelForId(id);
+  }
+
+  @Override
+  public Collection<Route> getAllRoutes() {
+    return _dao.getAllRoutes();
+  }
+
+  @Override
+  public Collection<RouteStop> getAllRouteStops() {
+    return _dao.getAllRouteStops();
+  }
+
+  @Override
+  public Collection<RouteShape> getAllRouteShapes() {
+    return _dao.getAllRouteShapes();
+  }
+
+  @Override
+  public Route getRouteForId(AgencyAndId id) {
+    return _dao.getRouteForId(id);
+  }
+
+  @Override
+  public Collection<Stop> getAllStops() {
+    return _dao.getAllStops();
+  }
+
+  @Override
+  public Stop getStopForId(AgencyAndId id) {
+    return _dao.getStopForId(id);
+  }
+
+  @Override
+  public Collection<Transfer> getAllTransfers() {
+    return _dao.getAllTransfers();
+  }
+
+  @Override
+  public Transfer getTransferForId(int id) {
+    return _dao.getTransferForId(id);
+  }
+
+  @Override
+  public Collection<Block> getAllBlocks() {
+    return _dao.getAllBlocks();
+  }
+
+  @Override
+  public Block getBlockForId(int id) {
+    return _dao.getBlockForId(id);
+  }
+
+  @Override
+  public Collection<Ridership> getAllRiderships() {
+    return _dao.getAllRiderships();
+  }
+
+  @Override
+  public Collection<Vehicle> getAllVehicles() {
+    return _dao.getAllVehicles();
+  }
+
+  @Override
+  public Vehicle getVehicleForId(AgencyAndId id) {
+    return _dao.getVehicleForId(id);
+  }
+
+  @Override
+  public Collection<Area> getAllAreas() {
+    return _dao.getAllAreas();
+  }
+
+  @Override
+  public Collection<LocationGroupElement> getAllLocationGroupElements() {
+    return _dao.getAllLocationGroupElements();
+  }
+
+  @Override
+  public Collection<LocationGroup> getAllLocationGroups() {
+    return _dao.getAllLocationGroups();
+  }
+
+  @Override
+  public Collection<StopAreaElement> getAllStopAreaElements() {
+    return _dao.getAllStopAreaElements();
+  }
+
+  @Override
+  public Collection<StopArea> getAllStopAreas() {
+    return _dao.getAllStopAreas();
+  }
+
+  @Override
+  public Collection<Location> getAllLocations() {
+    return _dao.getAllLocations();
+  }
+
+  @Override
+  public Collection<BookingRule> getAllBookingRules() {
+    return _dao.getAllBookingRules();
+  }
+
+  @Override
+  public Collection<Translation> getAllTranslations() {
+    return _dao.getAllTranslations();
+  }
+
+  @Override
+  public Collection<DirectionEntry> getAllDirectionEntries() {
+    return _dao.getAllDirectionEntries();
+  }
+
+  @Override
+  public Collection<WrongWayConcurrency> getAllWrongWayConcurrencies() {
+    return _dao.getAllWrongWayConcurrencies();
+  }
+
+  @Override
+  public List<String> getOptionalMetadataFilenames() {
+    return _dao.getOptionalMetadataFilenames();
+  }
+
+  @Override
+  public boolean hasMetadata(String filename) {
+    return _dao.hasMetadata(filename);
+  }
+
+  @Override
+  public String getMetadata(String filename) {
+    return _dao.getMetadata(filename);
+  }
+
+  /**
+   * @throws UnsupportedOperationException always, as the dao is read-only
+   */
+  @Override
+  public void addMetadata(String filename, String content) {
+    _dao.addMetadata(filename, content);
+  }
+
+  /****
+   * {@link GtfsRelationalDao} Interface
+   ****/
+
+  @Override
+  public List<String> getTripAgencyIdsReferencingServiceId(
+      AgencyAndId serviceId) {
+    Set<String> agencyIds = new TreeSet<String>();
+    int key = _serviceIds.find(serviceId);
+    if (key != -1) {
+      Set<Integer> agencyIndices = new LinkedHashSet<Integer>();
+      for (int i = _tripsByServiceId.start(key); i < _tripsByServiceId.end(key); i++)
+        agencyIndices.add(_tripIds.agencyIds.get(_tripsByServiceId.row(i)));
+      for (int agencyIndex : agencyIndices)
+        agencyIds.add(_strings.get(agencyIndex));
+    }
+    return new ArrayList<String>(agencyIds);
+  }
+
+  @Override
+  public List<Route> getRoutesForAgency(Agency agency) {
+    return _dao.getRoutesForAgency(agency);
+  }
+
+  @Override
+  public List<Stop> getStopsForStation(Stop station) {
+    return _dao.getStopsForStation(station);
+  }
+
+  @Override
+  public List<Stop> getStopsForZoneId(String zoneId) {
+    return _dao.getStopsForZoneId(zoneId);
+  }
+
+  @Override
+  public List<Trip> getTripsForRoute(Route route) {
+    return _tripsByRoute.get(indexOf(_routeIndices, route), this::createTrip);
+  }
+
+  @Override
+  public List<Trip> getTripsForShapeId(AgencyAndId shapeId) {
+    return _tripsByShapeId.get(_shapeIds.find(shapeId), this::createTrip);
+  }
+
+  @Override
+  public List<Trip> getTripsForServiceId(AgencyAndId serviceId) {
+    return _tripsByServiceId.get(_serviceIds.find(serviceId),
+        this::createTrip);
+  }
+
+  @Override
+  public List<Trip> getTripsForBlockId(AgencyAndId blockId) {
+    return _tripsByBlockId.get(_blockIds.find(blockId), this::createTrip);
+  }
+
+  @Override
+  public List<StopTime> getStopTimesForTrip(Trip trip) {
+    int row = trip == null ? -1 : _tripIds.find(trip.getId());
+    return _stopTimesByTrip.get(row, this::createStopTime);
+  }
+
+  @Override
+  public List<StopTime> getStopTimesForStop(Stop stop) {
+    return _stopTimesByStop.get(indexOf(_stopLocationIndices, stop),
+        this::createStopTime);
+  }
+
+  @Override
+  public List<AgencyAndId> getAllShapeIds() {
+    List<AgencyAndId> shapeIds = new ArrayList<AgencyAndId>();
+    for (int key = 0; key < _shapeIds.size(); key++) {
+      if (_shapePointsByShapeId.start(key) < _shapePointsByShapeId.end(key))
+        shapeIds.add(_shapeIds.get(key));
+    }
+    return shapeIds;
+  }
+
+  @Override
+  public List<ShapePoint> getShapePointsForShapeId(AgencyAndId shapeId) {
+    return _shapePointsByShapeId.get(_shapeIds.find(shapeId),
+        this::createShapePoint);
+  }
+
+  @Override
+  public List<Frequency> getFrequenciesForTrip(Trip trip) {
+    return _dao.getFrequenciesForTrip(trip);
+  }
+
+  @Override
+  public List<AgencyAndId> getAllServiceIds() {
+    return _dao.getAllServiceIds();
+  }
+
+  @Override
+  public ServiceCalendar getCalendarForServiceId(AgencyAndId serviceId) {
+    return _dao.getCalendarForServiceId(serviceId);
+  }
+
+  @Override
+  public List<ServiceCalendarDate> getCalendarDatesForServiceId(
+      AgencyAndId serviceId) {
+    return _dao.getCalendarDatesForServiceId(serviceId);
+  }
+
+  @Override
+  public List<FareRule> getFareRulesForFareAttribute(
+      FareAttribute fareAttribute) {
+    return _dao.getFareRulesForFareAttribute(fareAttribute);
+  }
+
+  @Override
+  public List<FareRule> getFareRulesForRoute(Route route) {
+    return _dao.getFareRulesForRoute(route);
+  }
+
+  @Override
+  public List<FareRule> getFareRulesForZoneId(String zoneId) {
+    return _dao.getFareRulesForZoneId(zoneId);
+  }
+
+  @Override
+  public List<Ridership> getRidershipForTrip(AgencyAndId tripId) {
+    return _dao.getRidershipForTrip(tripId);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * @param shapeIndices filled with the key of each shape id of the trips and
+   *          shape points
+   * @return the row of each trip id
+   */
+  private Map<AgencyAndId, Integer> putTrips(Collection<Trip> source,
+      Collection<ShapePoint> shapePoints,
+      Map<AgencyAndId, Integer> shapeIndices,
+      MappedStringTable.Builder strings, MappedSections sections)
+      throws IOException {
+
+    List<AgencyAndId> tripIds = new ArrayList<AgencyAndId>();
+    Set<AgencyAndId> serviceIds = new LinkedHashSet<AgencyAndId>();
+    Set<AgencyAndId> shapeIds = new LinkedHashSet<AgencyAndId>();
+    Set<AgencyAndId> blockIds = new LinkedHashSet<AgencyAndId>();
+    for (Trip trip : source) {
+      tripIds.add(trip.getId());
+      addIfNotNull(serviceIds, trip.getServiceId());
+      addIfNotNull(shapeIds, trip.getShapeId());
+      addIfNotNull(blockIds, getBlockId(trip));
+    }
+    for (ShapePoint shapePoint : shapePoints)
+      addIfNotNull(shapeIds, shapePoint.getShapeId());
+
+    tripIds = sortIds(tripIds);
+    Map<AgencyAndId, Integer> tripIndices = indicesOf(tripIds);
+    if (tripIndices.size() != tripIds.size())
+      throw new IllegalArgumentException("duplicate trip ids");
+    List<AgencyAndId> sortedServiceIds = sortIds(serviceIds);
+    Map<AgencyAndId, Integer> serviceIndices = indicesOf(sortedServiceIds);
+    List<AgencyAndId> sortedShapeIds = sortIds(shapeIds);
+    shapeIndices.putAll(indicesOf(sortedShapeIds));
+    List<AgencyAndId> sortedBlockIds = sortIds(blockIds);
+    Map<AgencyAndId, Integer> blockIndices = indicesOf(sortedBlockIds);
+
+    int n = tripIds.size();
+    int[] routes = new int[n];
+    int[] services = new int[n];
+    int[] shortNames = new int[n];
+    int[] headsigns = new int[n];
+    int[] directionIds = new int[n];
+    int[] blocks = new int[n];
+    int[] blockKeys = new int[n];
+    int[] shapes = new int[n];
+    int[] wheelchairAccessible = new int[n];
+    int[] bikesAllowed = new int[n];
+    int[] carsAllowed = new int[n];
+    byte[] durationsSet = new byte[n];
+    double[][] durations = new double[4][n];
+    int[] notes = new int[n];
+    int[] peakOffpeaks = new int[n];
+    int[] mtaTripIds = new int[n];
+    int[] boardingTypes = new int[n];
+    Map<Note, Integer> noteIndices = indicesOf(_notes);
+    _tripExtensions = new HashMap<Integer, Map<Class<?>, Object>>();
+
+    for (Trip trip : source) {
+      int row = tripIndices.get(trip.getId());
+      routes[row] = trip.getRoute() == null ? -1 : indexOfStored(
+          _routeIndices, trip.getRoute());
+      services[row] = indexOf(serviceIndices, trip.getServiceId());
+      shortNames[row] = strings.add(trip.getTripShortName());
+      headsigns[row] = strings.add(trip.getTripHeadsign());
+      directionIds[row] = strings.add(trip.getDirectionId());
+      blocks[row] = strings.add(trip.getBlockId());
+      blockKeys[row] = indexOf(blockIndices, getBlockId(trip));
+      shapes[row] = indexOf(shapeIndices, trip.getShapeId());
+      wheelchairAccessible[row] = trip.getWheelchairAccessible();
+      bikesAllowed[row] = trip.getBikesAllowed();
+      carsAllowed[row] = trip.getCarsAllowed();
+      Double[] values = {
+          trip.getMeanDurationFactor(), trip.getMeanDurationOffset(),
+          trip.getSafeDurationFactor(), trip.getSafeDurationOffset()};
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] != null) {
+          durationsSet[row] |= 1 << i;
+          durations[i][row] = values[i];
+        }
+      }
+      notes[row] = indexOfStored(noteIndices, trip.getNote());
+      peakOffpeaks[row] = trip.getPeakOffpeak();
+      mtaTripIds[row] = strings.add(trip.getMtaTripId());
+      boardingTypes[row] = trip.getBoardingType();
+      if (!trip.getExtensions().isEmpty())
+        _tripExtensions.put(row, new HashMap<Class<?>, Object>(
+            trip.getExtensions()));
+    }
+
+    _tripCount = n;
+    _tripIds = putIds(tripIds, strings, sections);
+    _serviceIds = putIds(sortedServiceIds, strings, sections);
+    _shapeIds = putIds(sortedShapeIds, strings, sections);
+    _blockIds = putIds(sortedBlockIds, strings, sections);
+    _tripRoutes = sections.putInts(routes);
+    _tripServiceIds = sections.putInts(services);
+    _tripShortNames = sections.putInts(shortNames);
+    _tripHeadsigns = sections.putInts(headsigns);
+    _tripDirectionIds = sections.putInts(directionIds);
+    _tripBlockIds = sections.putInts(blocks);
+    _tripShapeIds = sections.putInts(shapes);
+    _tripWheelchairAccessible = sections.putInts(wheelchairAccessible);
+    _tripBikesAllowed = sections.putInts(bikesAllowed);
+    _tripCarsAllowed = sections.putInts(carsAllowed);
+    _tripDurationsSet = sections.putBytes(durationsSet);
+    _tripDurations = new DoubleBuffer[durations.length];
+    for (int i = 0; i < durations.length; i++)
+      _tripDurations[i] = sections.putDoubles(durations[i]);
+    _tripNotes = sections.putInts(notes);
+    _tripPeakOffpeaks = sections.putInts(peakOffpeaks);
+    _tripMtaTripIds = sections.putInts(mtaTripIds);
+    _tripBoardingTypes = sections.putInts(boardingTypes);
+
+    _tripsByRoute = putRowIndex(routes, _routes.length, sections);
+    _tripsByServiceId = putRowIndex(services, sortedServiceIds.size(),
+        sections);
+    _tripsByShapeId = putRowIndex(shapes, sortedShapeIds.size(), sections);
+    _tripsByBlockId = putRowIndex(blockKeys, sortedBlockIds.size(), sections);
+
+    return tripIndices;
+  }
+
+  private void putStopTimes(Collection<StopTime> source,
+      Map<AgencyAndId, Integer> tripIndices, MappedStringTable.Builder strings,
+      MappedSections sections) throws IOException {
+
+    /**
+     * Sorting by stop sequence and then grouping by trip, which keeps the
+     * order within each trip, orders the stop times by trip and stop sequence
+     */
+    List<StopTime> stopTimes = new ArrayList<StopTime>(source);
+    stopTimes.sort(Comparator.comparingInt(StopTime::getStopSequence));
+    int n = stopTimes.size();
+    int[] tripKeys = new int[n];
+    for (int i = 0; i < n; i++) {
+      Trip trip = stopTimes.get(i).getTrip();
+      Integer index = trip == null ? null : tripIndices.get(trip.getId());
+      if (index == null)
+        throw new IllegalArgumentException("stop time "
+            + stopTimes.get(i).getId() + " has a trip that is not stored");
+      tripKeys[i] = index;
+    }
+    int[][] byTrip = group(tripKeys, _tripCount);
+    int[] order = byTrip[1];
+
+    Map<Area, Integer> areaIndices = indicesOf(_areas);
+    Map<BookingRule, Integer> bookingRuleIndices = indicesOf(_bookingRules);
+
+    int[] ids = new int[n];
+    int[] trips = new int[n];
+    int[] stops = new int[n];
+    int[] locations = new int[n];
+    int[] locationGroups = new int[n];
+    int[] startServiceAreas = new int[n];
+    int[] endServiceAreas = new int[n];
+    int[] arrivalTimes = new int[n];
+    int[] departureTimes = new int[n];
+    int[] timepoints = new int[n];
+    int[] stopSequences = new int[n];
+    int[] stopHeadsigns = new int[n];
+    int[] routeShortNames = new int[n];
+    int[] pickupTypes = new int[n];
+    int[] dropOffTypes = new int[n];
+    double[] shapeDistTraveled = new double[n];
+    int[] pickupBookingRules = new int[n];
+    int[] dropOffBookingRules = new int[n];
+    double[] meanDurationFactors = new double[n];
+    double[] meanDurationOffsets = new double[n];
+    double[] safeDurationFactors = new double[n];
+    double[] safeDurationOffsets = new double[n];
+    int[] freeRunningFlags = new int[n];
+    int[] toStopSequences = new int[n];
+    int[] startPickupDropOffWindows = new int[n];
+    int[] endPickupDropOffWindows = new int[n];
+    int[] continuousPickups = new int[n];
+    int[] continuousDropOffs = new int[n];
+    int[] farePeriodIds = new int[n];
+    double[] startServiceAreaRadii = new double[n];
+    double[] endServiceAreaRadii = new double[n];
+    int[] departureBuffers = new int[n];
+    int[] tracks = new int[n];
+    int[] notes = new int[n];
+    Map<Note, Integer> noteIndices = indicesOf(_notes);
+    _stopTimeExtensions = new HashMap<Integer, Map<Class<?>, Object>>();
+
+    for (int row = 0; row < n; row++) {
+      StopTime stopTime = stopTimes.get(order[row]);
+      ids[row] = stopTime.getId();
+      trips[row] = tripKeys[order[row]];
+      stops[row] = indexOfStored(_stopLocationIndices, stopTime.getStop());
+      locations[row] = indexOfStored(_stopLocationIndices,
+          stopTime.getLocation());
+      locationGroups[row] = indexOfStored(_stopLocationIndices,
+          stopTime.getLocationGroup());
+      startServiceAreas[row] = indexOfStored(areaIndices,
+          stopTime.getStartServiceArea());
+      endServiceAreas[row] = indexOfStored(areaIndices,
+          stopTime.getEndServiceArea());
+      arrivalTimes[row] = stopTime.getArrivalTime();
+      departureTimes[row] = stopTime.getDepartureTime();
+      timepoints[row] = stopTime.getTimepoint();
+      stopSequences[row] = stopTime.getStopSequence();
+      stopHeadsigns[row] = strings.add(stopTime.getStopHeadsign());
+      routeShortNames[row] = strings.add(stopTime.getRouteShortName());
+      pickupTypes[row] = stopTime.getPickupType();
+      dropOffTypes[row] = stopTime.getDropOffType();
+      shapeDistTraveled[row] = stopTime.getShapeDistTraveled();
+      pickupBookingRules[row] = indexOfStored(bookingRuleIndices,
+          stopTime.getPickupBookingRule());
+      dropOffBookingRules[row] = indexOfStored(bookingRuleIndices,
+          stopTime.getDropOffBookingRule());
+      meanDurationFactors[row] = stopTime.getMeanDurationFactor();
+      meanDurationOffsets[row] = stopTime.getMeanDurationOffset();
+      safeDurationFactors[row] = stopTime.getSafeDurationFactor();
+      safeDurationOffsets[row] = stopTime.getSafeDurationOffset();
+      freeRunningFlags[row] = strings.add(stopTime.getFreeRunningFlag());
+      Integer toStopSequence = stopTime.getToStopSequence();
+      toStopSequences[row] = toStopSequence == null ? Integer.MIN_VALUE
+          : toStopSequence;
+      startPickupDropOffWindows[row] = stopTime.getStartPickupDropOffWindow();
+      endPickupDropOffWindows[row] = stopTime.getEndPickupDropOffWindow();
+      continuousPickups[row] = stopTime.getContinuousPickup();
+      continuousDropOffs[row] = stopTime.getContinuousDropOff();
+      farePeriodIds[row] = strings.add(stopTime.getFarePeriodId());
+      startServiceAreaRadii[row] = stopTime.getStartServiceAreaRadius();
+      endServiceAreaRadii[row] = stopTime.getEndServiceAreaRadius();
+      departureBuffers[row] = stopTime.getDepartureBuffer();
+      tracks[row] = strings.add(stopTime.getTrack());
+      notes[row] = indexOfStored(noteIndices, stopTime.getNote());
+      if (!stopTime.getExtensions().isEmpty())
+        _stopTimeExtensions.put(row, new HashMap<Class<?>, Object>(
+            stopTime.getExtensions()));
+    }
+
+    _stopTimeCount = n;
+    _stopTimeIds = sections.putInts(ids);
+    _stopTimeRowsById = putIntKeys(ids, n, sections);
+    _stopTimeTrips = sections.putInts(trips);
+    _stopTimeStops = sections.putInts(stops);
+    _stopTimeLocations = sections.putInts(locations);
+    _stopTimeLocationGroups = sections.putInts(locationGroups);
+    _stopTimeStartServiceAreas = sections.putInts(startServiceAreas);
+    _stopTimeEndServiceAreas = sections.putInts(endServiceAreas);
+    _arrivalTimes = sections.putInts(arrivalTimes);
+    _departureTimes = sections.putInts(departureTimes);
+    _timepoints = sections.putInts(timepoints);
+    _stopSequences = sections.putInts(stopSequences);
+    _stopHeadsigns = sections.putInts(stopHeadsigns);
+    _routeShortNames = sections.putInts(routeShortNames);
+    _pickupTypes = sections.putInts(pickupTypes);
+    _dropOffTypes = sections.putInts(dropOffTypes);
+    _shapeDistTraveled = sections.putDoubles(shapeDistTraveled);
+    _pickupBookingRules = sections.putInts(pickupBookingRules);
+    _dropOffBookingRules = sections.putInts(dropOffBookingRules);
+    _meanDurationFactors = sections.putDoubles(meanDurationFactors);
+    _meanDurationOffsets = sections.putDoubles(meanDurationOffsets);
+    _safeDurationFactors = sections.putDoubles(safeDurationFactors);
+    _safeDurationOffsets = sections.putDoubles(safeDurationOffsets);
+    _freeRunningFlags = sections.putInts(freeRunningFlags);
+    _toStopSequences = sections.putInts(toStopSequences);
+    _startPickupDropOffWindows = sections.putInts(startPickupDropOffWindows);
+    _endPickupDropOffWindows = sections.putInts(endPickupDropOffWindows);
+    _continuousPickups = sections.putInts(continuousPickups);
+    _continuousDropOffs = sections.putInts(continuousDropOffs);
+    _farePeriodIds = sections.putInts(farePeriodIds);
+    _startServiceAreaRadii = sections.putDoubles(startServiceAreaRadii);
+    _endServiceAreaRadii = sections.putDoubles(endServiceAreaRadii);
+    _departureBuffers = sections.putInts(departureBuffers);
+    _tracks = sections.putInts(tracks);
+    _stopTimeNotes = sections.putInts(notes);
+
+    _stopTimesByTrip = new RowIndex(sections.putInts(byTrip[0]), null);
+    _stopTimesByStop = putRowIndex(stops, _stopLocations.length, sections);
+  }
+
+  private void putShapePoints(Collection<ShapePoint> source,
+      Map<AgencyAndId, Integer> shapeIndices, MappedSections sections)
+      throws IOException {
+
+    List<ShapePoint> shapePoints = new ArrayList<ShapePoint>(source);
+    shapePoints.sort(Comparator.comparingInt(ShapePoint::getSequence));
+    int n = shapePoints.size();
+    int[] shapeKeys = new int[n];
+    for (int i = 0; i < n; i++)
+      shapeKeys[i] = indexOf(shapeIndices, shapePoints.get(i).getShapeId());
+    int[][] byShape = group(shapeKeys, shapeIndices.size());
+    int[] order = byShape[1];
+    n = order.length;
+
+    int[] ids = new int[n];
+    int[] shapeIds = new int[n];
+    int[] sequences = new int[n];
+    double[] lats = new double[n];
+    double[] lons = new double[n];
+    double[] distTraveled = new double[n];
+    for (int row = 0; row < n; row++) {
+      ShapePoint shapePoint = shapePoints.get(order[row]);
+      if (!shapePoint.getExtensions().isEmpty())
+        throw new IllegalArgumentException("shape point "
+            + shapePoint.getId() + " has extensions, which are not stored");
+      ids[row] = shapePoint.getId();
+      shapeIds[row] = shapeKeys[order[row]];
+      sequences[row] = shapePoint.getSequence();
+      lats[row] = shapePoint.getLat();
+      lons[row] = shapePoint.getLon();
+      distTraveled[row] = shapePoint.getDistTraveled();
+    }
+
+    _shapePointCount = n;
+    _shapePointIds = sections.putInts(ids);
+    _shapePointRowsById = putIntKeys(ids, n, sections);
+    _shapePointShapeIds = sections.putInts(shapeIds);
+    _shapePointSequences = sections.putInts(sequences);
+    _shapePointLats = sections.putDoubles(lats);
+    _shapePointLons = sections.putDoubles(lons);
+    _shapePointDistTraveled = sections.putDoubles(distTraveled);
+    _shapePointsByShapeId = new RowIndex(sections.putInts(byShape[0]), null);
+  }
+
+  /**
+   * @return the trip of this dao with the id of the specified trip, or null
+   */
+  private Trip getTripFor(Trip trip) {
+    if (trip == null)
+      return null;
+    Trip stored = getTripForId(trip.getId());
+    if (stored == null)
+      throw new IllegalArgumentException("trip " + trip.getId()
+          + " is not stored");
+    return stored;
+  }
+
+  private static void copyExtensions(IdentityBean<?> from, IdentityBean<?> to) {
+    for (Map.Entry<Class<?>, Object> entry : from.getExtensions().entrySet())
+      to.putExtension(entry.getKey(), entry.getValue());
+  }
+
+  private Trip createTrip(int row) {
+    Trip trip = new Trip();
+    trip.setProxy(new TripProxyImpl(row));
+    return trip;
+  }
+
+  private StopTime createStopTime(int row) {
+    StopTime stopTime = new StopTime();
+    stopTime.setProxy(new StopTimeProxyImpl(row));
+    return stopTime;
+  }
+
+  private ShapePoint createShapePoint(int row) {
+    ShapePoint shapePoint = new ShapePoint();
+    shapePoint.setProxy(new ShapePointProxyImpl(row));
+    return shapePoint;
+  }
+
+  private StopLocation getStopLocation(int index) {
+    return index == -1 ? null : _stopLocations[index];
+  }
+
+  private static AgencyAndId getBlockId(Trip trip) {
+    if (trip.getBlockId() == null)
+      return null;
+    return new AgencyAndId(trip.getId().getAgencyId(), trip.getBlockId());
+  }
+
+  private static <T> void addIfNotNull(Collection<T> values, T value) {
+    if (value != null)
+      values.add(value);
+  }
+
+  private static List<AgencyAndId> sortIds(Collection<AgencyAndId> ids) {
+    Map<AgencyAndId, byte[][]> keys = new HashMap<AgencyAndId, byte[][]>();
+    for (AgencyAndId id : ids)
+      keys.put(id, new byte[][] {
+          MappedStringTable.encode(id.getAgencyId()),
+          MappedStringTable.encode(id.getId())});
+    List<AgencyAndId> sorted = new ArrayList<AgencyAndId>(ids);
+    sorted.sort((a, b) -> {
+      byte[][] ka = keys.get(a);
+      byte[][] kb = keys.get(b);
+      int c = MappedStringTable.compare(ka[0], kb[0]);
+      return c != 0 ? c : MappedStringTable.compare(ka[1], kb[1]);
+    });
+    return sorted;
+  }
+
+  private static <T> Map<T, Integer> indicesOf(List<T> values) {
+    Map<T, Integer> indices = new HashMap<T, Integer>();
+    for (int i = 0; i < values.size(); i++)
+      indices.put(values.get(i), i);
+    return indices;
+  }
+
+  private static <T> Map<T, Integer> indicesOf(T[] values) {
+    return indicesOf(Arrays.asList(values));
+  }
+
+  private static int indexOf(Map<?, Integer> indices, Object value) {
+    Integer index = value == null ? null : indices.get(value);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the value is not null and has no
+   *           index
+   */
+  private static int indexOfStored(Map<?, Integer> indices, Object value) {
+    int index = indexOf(indices, value);
+    if (index == -1 && value != null)
+      throw new IllegalArgumentException("entity is not stored: " + value);
+    return index;
+  }
+
+  /**
+   * Groups rows by key, keeping their order within each key.
+   * 
+   * @param keys the key of each row, or -1 for none
+   * @return the offset of each key's rows, followed by the end of the last
+   *         one, and the rows in order of their keys
+   */
+  private static int[][] group(int[] keys, int keyCount) {
+    int[] offsets = new int[keyCount + 1];
+    for (int key : keys) {
+      if (key != -1)
+        offsets[key + 1]++;
+    }
+    for (int i = 0; i < keyCount; i++)
+      offsets[i + 1] += offsets[i];
+    int[] next = Arrays.copyOf(offsets, keyCount);
+    int[] rows = new int[offsets[keyCount]];
+    for (int row = 0; row < keys.length; row++) {
+      if (keys[row] != -1)
+        rows[next[keys[row]]++] = row;
+    }
+    return new int[][] {offsets, rows};
+  }
+
+  private static RowIndex putRowIndex(int[] keys, int keyCount,
+      MappedSections sections) throws IOException {
+    int[][] grouped = group(keys, keyCount);
+    return new RowIndex(sections.putInts(grouped[0]),
+        sections.putInts(grouped[1]));
+  }
+
+  private IdKeys putIds(List<AgencyAndId> sortedIds,
+      MappedStringTable.Builder strings, MappedSections sections)
+      throws IOException {
+    int[] agencyIds = new int[sortedIds.size()];
+    int[] ids = new int[sortedIds.size()];
+    for (int i = 0; i < ids.length; i++) {
+      agencyIds[i] = strings.add(sortedIds.get(i).getAgencyId());
+      ids[i] = strings.add(sortedIds.get(i).getId());
+    }
+    return new IdKeys(sections.putInts(agencyIds), sections.putInts(ids));
+  }
+
+  private static IntKeys putIntKeys(int[] keys, int count,
+      MappedSections sections) throws IOException {
+    long[] pairs = new long[count];
+    for (int row = 0; row < count; row++)
+      pairs[row] = ((long) keys[row] << 32) | row;
+    Arrays.sort(pairs);
+    int[] sortedKeys = new int[count];
+    int[] rows = new int[count];
+    for (int i = 0; i < pairs.length; i++) {
+      sortedKeys[i] = (int) (pairs[i] >> 32);
+      rows[i] = (int) pairs[i];
+    }
+    return new IntKeys(sections.putInts(sortedKeys), sections.putInts(rows));
+  }
+
+  private static UnsupportedOperationException readOnly() {
+    return new UnsupportedOperationException("the dao is read-only");
+  }
+
+  /**
+   * Ids sorted by agency id and id, in the order of
+   * {@link MappedStringTable#compare(int, byte[])}
+   */
+  private final class IdKeys {
+
+    private final IntBuffer agencyIds;
+
+    private final IntBuffer ids;
+
+    public IdKeys(IntBuffer agencyIds, IntBuffer ids) {
+      this.agencyIds = agencyIds;
+      this.ids = ids;
+    }
+
+    public int size() {
+      return ids.limit();
+    }
+
+    public AgencyAndId get(int index) {
+      if (index == -1)
+        return null;
+      return new AgencyAndId(_strings.get(agencyIds.get(index)),
+          _strings.get(ids.get(index)));
+    }
+
+    /**
+     * @return the index of the id, or -1 if there is none
+     */
+    public int find(AgencyAndId id) {
+      if (id == null)
+        return -1;
+      byte[] agencyId = MappedStringTable.encode(id.getAgencyId());
+      byte[] value = MappedStringTable.encode(id.getId());
+      int low = 0;
+      int high = size() - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int c = _strings.compare(agencyIds.get(mid), agencyId);
+        if (c == 0)
+          c = _strings.compare(ids.get(mid), value);
+        if (c < 0)
+          low = mid + 1;
+        else if (c > 0)
+          high = mid - 1;
+        else
+          return mid;
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Int keys in ascending order, with the row of each
+   */
+  private static final class IntKeys {
+
+    private final IntBuffer keys;
+
+    private final IntBuffer rows;
+
+    public IntKeys(IntBuffer keys, IntBuffer rows) {
+      this.keys = keys;
+      this.rows = rows;
+    }
+
+    /**
+     * @return the row of the key, or -1 if there is none
+     */
+    public int find(int key) {
+      int low = 0;
+      int high = keys.limit() - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int value = keys.get(mid);
+        if (value < key)
+          low = mid + 1;
+        else if (value > key)
+          high = mid - 1;
+        else
+          return rows.get(mid);
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * The rows of each key, from offsets into either a list of rows or, when
+   * the rows are ordered by key, the rows themselves
+   */
+  private static final class RowIndex {
+
+    private final IntBuffer offsets;
+
+    private final IntBuffer rows;
+
+    public RowIndex(IntBuffer offsets, IntBuffer rows) {
+      this.offsets = offsets;
+      this.rows = rows;
+    }
+
+    public int start(int key) {
+      return offsets.get(key);
+    }
+
+    public int end(int key) {
+      return offsets.get(key + 1);
+    }
+
+    public int row(int i) {
+      return rows == null ? i : rows.get(i);
+    }
+
+    public <T> List<T> get(int key, IntFunction<T> factory) {
+      if (key == -1)
+        return Collections.emptyList();
+      return new RowList<T>(start(key), end(key), rows, factory);
+    }
+  }
+
+  /**
+   * A read-only list of the flyweights of a range of rows
+   */
+  private static final class RowList<T> extends AbstractList<T> implements
+      RandomAccess {
+
+    private final int start;
+
+    private final int end;
+
+    private final IntBuffer rows;
+
+    private final IntFunction<T> factory;
+
+    public RowList(int start, int end, IntBuffer rows, IntFunction<T> factory) {
+      this.start = start;
+      this.end = end;
+      this.rows = rows;
+      this.factory = factory;
+    }
+
+    @Override
+    public T get(int index) {
+      if (index < 0 || index >= end - start)
+        throw new IndexOutOfBoundsException(Integer.toString(index));
+      int i = start + index;
+      return factory.apply(rows == null ? i : rows.get(i));
+    }
+
+    @Override
+    public int size() {
+      return end - start;
+    }
+  }
+
+  private class TripProxyImpl implements TripProxy {
+
+    private final int row;
+
+    public TripProxyImpl(int row) {
+      this.row = row;
+    }
+
+    @Override
+    public AgencyAndId getId() {
+      return _tripIds.get(row);
+    }
+
+    @Override
+    public void setId(AgencyAndId id) {
+      throw readOnly();
+    }
+
+    @Override
+    public Route getRoute() {
+      int index = _tripRoutes.get(row);
+      return index == -1 ? null : _routes[index];
+    }
+
+    @Override
+    public void setRoute(Route route) {
+      throw readOnly();
+    }
+
+    @Override
+    public AgencyAndId getServiceId() {
+      return _serviceIds.get(_tripServiceIds.get(row));
+    }
+
+    @Override
+    public void setServiceId(AgencyAndId serviceId) {
+      throw readOnly();
+    }
+
+    @Override
+    public String getTripShortName() {
+      return _strings.get(_tripShortNames.get(row));
+    }
+
+    @Override
+    public void setTripShortName(String tripShortName) {
+      throw readOnly();
+    }
+
+    @Override
+    public String getTripHeadsign() {
+      return _strings.get(_tripHeadsigns.get(row));
+    }
+
+    @Override
+    public void setTripHeadsign(String tripHeadsign) {
+      throw readOnly();
+    }
+
+    @Override
+    public String getDirectionId() {
+      return _strings.get(_tripDirectionIds.get(row));
+    }
+
+    @Override
+    public void setDirectionId(String directionId) {
+      throw readOnly();
+    }
+
+    @Override
+    public String getBlockId() {
+      return _strings.get(_tripBlockIds.get(row));
+    }
+
+    @Override
+    public void setBlockId(String blockId) {
+      throw readOnly();
+    }
+
+    @Override
+    public AgencyAndId getShapeId() {
+      return _shapeIds.get(_tripShapeIds.get(row));
+    }
+
+    @Override
+    public void setShapeId(AgencyAndId shapeId) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getWheelchairAccessible() {
+      return _tripWheelchairAccessible.get(row);
+    }
+
+    @Override
+    public void setWheelchairAccessible(int wheelchairAccessible) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getBikesAllowed() {
+      return _tripBikesAllowed.get(row);
+    }
+
+    @Override
+    public void setBikesAllowed(int bikesAllowed) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getCarsAllowed() {
+      return _tripCarsAllowed.get(row);
+    }
+
+    @Override
+    public void setCarsAllowed(int carsAllowed) {
+      throw readOnly();
+    }
+
+    @Override
+    public Double getMeanDurationFactor() {
+      return getDuration(0);
+    }
+
+    @Override
+    public void setMeanDurationFactor(Double meanDurationFactor) {
+      throw readOnly();
+    }
+
+    @Override
+    public Double getMeanDurationOffset() {
+      return getDuration(1);
+    }
+
+    @Override
+    public void setMeanDurationOffset(Double meanDurationOffset) {
+      throw readOnly();
+    }
+
+    @Override
+    public Double getSafeDurationFactor() {
+      return getDuration(2);
+    }
+
+    @Override
+    public void setSafeDurationFactor(Double safeDurationFactor) {
+      throw readOnly();
+    }
+
+    @Override
+    public Double getSafeDurationOffset() {
+      return getDuration(3);
+    }
+
+    @Override
+    public void setSafeDurationOffset(Double safeDurationOffset) {
+      throw readOnly();
+    }
+
+    @Override
+    public Note getNote() {
+      int index = _tripNotes.get(row);
+      return index == -1 ? null : _notes[index];
+    }
+
+    @Override
+    public void setNote(Note note) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getPeakOffpeak() {
+      return _tripPeakOffpeaks.get(row);
+    }
+
+    @Override
+    public void setPeakOffpeak(int peakOffpeak) {
+      throw readOnly();
+    }
+
+    @Override
+    public String getMtaTripId() {
+      return _strings.get(_tripMtaTripIds.get(row));
+    }
+
+    @Override
+    public void setMtaTripId(String mtaTripId) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getBoardingType() {
+      return _tripBoardingTypes.get(row);
+    }
+
+    @Override
+    public void setBoardingType(int boardingType) {
+      throw readOnly();
+    }
+
+    @Override
+    public Map<Class<?>, Object> getExtensions() {
+      Map<Class<?>, Object> extensions = _tripExtensions.get(row);
+      if (extensions == null)
+        return Collections.emptyMap();
+      return Collections.unmodifiableMap(extensions);
+    }
+
+    @Override
+    public void putExtension(Class<?> type, Object extension) {
+      throw readOnly();
+    }
+
+    private Double getDuration(int column) {
+      if ((_tripDurationsSet.get(row) & (1 << column)) == 0)
+        return null;
+      return _tripDurations[column].get(row);
+    }
+  }
+
+  private class StopTimeProxyImpl implements StopTimeProxy {
+
+    private final int row;
+
+    public StopTimeProxyImpl(int row) {
+      this.row = row;
+    }
+
+    @Override
+    public Integer getId() {
+      return _stopTimeIds.get(row);
+    }
+
+    @Override
+    public void setId(Integer id) {
+      throw readOnly();
+    }
+
+    @Override
+    public Trip getTrip() {
+      return createTrip(_stopTimeTrips.get(row));
+    }
+
+    @Override
+    public void setTrip(Trip trip) {
+      throw readOnly();
+    }
+
+    @Override
+    public Area getStartServiceArea() {
+      int index = _stopTimeStartServiceAreas.get(row);
+      return index == -1 ? null : _areas[index];
+    }
+
+    @Override
+    public void setStartServiceArea(Area area) {
+      throw readOnly();
+    }
+
+    @Override
+    public Area getEndServiceArea() {
+      int index = _stopTimeEndServiceAreas.get(row);
+      return index == -1 ? null : _areas[index];
+    }
+
+    @Override
+    public void setEndServiceArea(Area area) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getStopSequence() {
+      return _stopSequences.get(row);
+    }
+
+    @Override
+    public void setStopSequence(int stopSequence) {
+      throw readOnly();
+    }
+
+    @Override
+    public StopLocation getStop() {
+      return getStopLocation(_stopTimeStops.get(row));
+    }
+
+    @Override
+    public StopLocation getLocation() {
+      return getStopLocation(_stopTimeLocations.get(row));
+    }
+
+    @Override
+    public StopLocation getLocationGroup() {
+      return getStopLocation(_stopTimeLocationGroups.get(row));
+    }
+
+    @Override
+    public void setStop(StopLocation stop) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setLocation(StopLocation stop) {
+      throw readOnly();
+    }
+
+    @Override
+    public void setLocationGroup(StopLocation stop) {
+      throw readOnly();
+    }
+
+    @Override
+    public boolean isArrivalTimeSet() {
+      return _arrivalTimes.get(row) != StopTime.MISSING_VALUE;
+    }
+
+    @Override
+    public int getArrivalTime() {
+      return _arrivalTimes.get(row);
+    }
+
+    @Override
+    public void setArrivalTime(int arrivalTime) {
+      throw readOnly();
+    }
+
+    @Override
+    public void clearArrivalTime() {
+      throw readOnly();
+    }
+
+    @Override
+    public boolean isDepartureTimeSet() {
+      return _departureTimes.get(row) != StopTime.MISSING_VALUE;
+    }
+
+    @Override
+    public int getDepartureTime() {
+      return _departureTimes.get(row);
+    }
+
+    @Override
+    public void setDepartureTime(int departureTime) {
+      throw readOnly();
+    }
+
+    @Override
+    public void clearDepartureTime() {
+      throw readOnly();
+    }
+
+    @Override
+    public boolean isTimepointSet() {
+      return _timepoints.get(row) != StopTime.MISSING_VALUE;
+    }
+
+    @Override
+    public int getTimepoint() {
+      return _timepoints.get(row);
+    }
+
+    @Override
+    public void setTimepoint(int timepoint) {
+      throw readOnly();
+    }
+
+    @Override
+    public void clearTimepoint() {
+      throw readOnly();
+    }
+
+    @Override
+    public String getStopHeadsign() {
+      return _strings.get(_stopHeadsigns.get(row));
+    }
+
+    @Override
+    public void setStopHeadsign(String headSign) {
+      throw readOnly();
+    }
+
+    @Override
+    public String getRouteShortName() {
+      return _strings.get(_routeShortNames.get(row));
+    }
+
+    @Override
+    public void setRouteShortName(String routeShortName) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getPickupType() {
+      return _pickupTypes.get(row);
+    }
+
+    @Override
+    public void setPickupType(int pickupType) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getDropOffType() {
+      return _dropOffTypes.get(row);
+    }
+
+    @Override
+    public void setDropOffType(int dropOffType) {
+      throw readOnly();
+    }
+
+    @Override
+    public boolean isShapeDistTraveledSet() {
+      return _shapeDistTraveled.get(row) != StopTime.MISSING_VALUE;
+    }
+
+    @Override
+    public double getShapeDistTraveled() {
+      return _shapeDistTraveled.get(row);
+    }
+
+    @Override
+    public void setShapeDistTraveled(double shapeDistTraveled) {
+      throw readOnly();
+    }
+
+    @Override
+    public void clearShapeDistTraveled() {
+      throw readOnly();
+    }
+
+    @Override
+    public BookingRule getPickupBookingRule() {
+      int index = _pickupBookingRules.get(row);
+      return index == -1 ? null : _bookingRules[index];
+    }
+
+    @Override
+    public void setPickupBookingRule(BookingRule pickupBookingRule) {
+      throw readOnly();
+    }
+
+    @Override
+    public BookingRule getDropOffBookingRule() {
+      int index = _dropOffBookingRules.get(row);
+      return index == -1 ? null : _bookingRules[index];
+    }
+
+    @Override
+    public void setDropOffBookingRule(BookingRule dropOffBookingRule) {
+      throw readOnly();
+    }
+
+    @Override
+    public double getMeanDurationFactor() {
+      return _meanDurationFactors.get(row);
+    }
+
+    @Override
+    public void setMeanDurationFactor(double meanDurationFactor) {
+      throw readOnly();
+    }
+
+    @Override
+    public double getMeanDurationOffset() {
+      return _meanDurationOffsets.get(row);
+    }
+
+    @Override
+    public void setMeanDurationOffset(double meanDurationOffset) {
+      throw readOnly();
+    }
+
+    @Override
+    public double getSafeDurationFactor() {
+      return _safeDurationFactors.get(row);
+    }
+
+    @Override
+    public void setSafeDurationFactor(double safeDurationFactor) {
+      throw readOnly();
+    }
+
+    @Override
+    public double getSafeDurationOffset() {
+      return _safeDurationOffsets.get(row);
+    }
+
+    @Override
+    public void setSafeDurationOffset(double safeDurationOffset) {
+      throw readOnly();
+    }
+
+    @Override
+    public String getFreeRunningFlag() {
+      return _strings.get(_freeRunningFlags.get(row));
+    }
+
+    @Override
+    public void setFreeRunningFlag(String freeRunningFlag) {
+      throw readOnly();
+    }
+
+    @Override
+    public Integer getToStopSequence() {
+      int value = _toStopSequences.get(row);
+      return value == Integer.MIN_VALUE ? null : value;
+    }
+
+    @Override
+    public void setToStopSequence(Integer toStopSequence) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getStartPickupDropOffWindow() {
+      return _startPickupDropOffWindows.get(row);
+    }
+
+    @Override
+    public void setStartPickupDropOffWindow(int startPickupDropOffWindow) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getEndPickupDropOffWindow() {
+      return _endPickupDropOffWindows.get(row);
+    }
+
+    @Override
+    public void setEndPickupDropOffWindow(int endPickupDropOffWindow) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getContinuousPickup() {
+      return _continuousPickups.get(row);
+    }
+
+    @Override
+    public void setContinuousPickup(int continuousPickup) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getContinuousDropOff() {
+      return _continuousDropOffs.get(row);
+    }
+
+    @Override
+    public void setContinuousDropOff(int continuousDropOff) {
+      throw readOnly();
+    }
+
+    @Override
+    public String getFarePeriodId() {
+      return _strings.get(_farePeriodIds.get(row));
+    }
+
+    @Override
+    public void setFarePeriodId(String farePeriodId) {
+      throw readOnly();
+    }
+
+    @Override
+    public double getStartServiceAreaRadius() {
+      return _startServiceAreaRadii.get(row);
+    }
+
+    @Override
+    public void setStartServiceAreaRadius(double startServiceAreaRadius) {
+      throw readOnly();
+    }
+
+    @Override
+    public double getEndServiceAreaRadius() {
+      return _endServiceAreaRadii.get(row);
+    }
+
+    @Override
+    public void setEndServiceAreaRadius(double endServiceAreaRadius) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getDepartureBuffer() {
+      return _departureBuffers.get(row);
+    }
+
+    @Override
+    public void setDepartureBuffer(int departureBuffer) {
+      throw readOnly();
+    }
+
+    @Override
+    public String getTrack() {
+      return _strings.get(_tracks.get(row));
+    }
+
+    @Override
+    public void setTrack(String track) {
+      throw readOnly();
+    }
+
+    @Override
+    public Note getNote() {
+      int index = _stopTimeNotes.get(row);
+      return index == -1 ? null : _notes[index];
+    }
+
+    @Override
+    public void setNote(Note note) {
+      throw readOnly();
+    }
+
+    @Override
+    public Map<Class<?>, Object> getExtensions() {
+      Map<Class<?>, Object> extensions = _stopTimeExtensions.get(row);
+      if (extensions == null)
+        return Collections.emptyMap();
+      return Collections.unmodifiableMap(extensions);
+    }
+
+    @Override
+    public void putExtension(Class<?> type, Object extension) {
+      throw readOnly();
+    }
+  }
+
+  private class ShapePointProxyImpl implements ShapePointProxy {
+
+    private final int row;
+
+    public ShapePointProxyImpl(int row) {
+      this.row = row;
+    }
+
+    @Override
+    public Integer getId() {
+      return _shapePointIds.get(row);
+    }
+
+    @Override
+    public void setId(Integer id) {
+      throw readOnly();
+    }
+
+    @Override
+    public AgencyAndId getShapeId() {
+      return _shapeIds.get(_shapePointShapeIds.get(row));
+    }
+
+    @Override
+    public void setShapeId(AgencyAndId shapeId) {
+      throw readOnly();
+    }
+
+    @Override
+    public int getSequence() {
+      return _shapePointSequences.get(row);
+    }
+
+    @Override
+    public void setSequence(int sequence) {
+      throw readOnly();
+    }
+
+    @Override
+    public boolean isDistTraveledSet() {
+      return _shapePointDistTraveled.get(row) != ShapePoint.MISSING_VALUE;
+    }
+
+    @Override
+    public double getDistTraveled() {
+      return _shapePointDistTraveled.get(row);
+    }
+
+    @Override
+    public void setDistTraveled(double distTraveled) {
+      throw readOnly();
+    }
+
+    @Override
+    public void clearDistTraveled() {
+      throw readOnly();
+    }
+
+    @Override
+    public double getLat() {
+      return _shapePointLats.get(row);
+    }
+
+    @Override
+    public void setLat(double lat) {
+      throw readOnly();
+    }
+
+    @Override
+    public double getLon() {
+      return _shapePointLons.get(row);
+    }
+
+    @Override
+    public void setLon(double lon) {
+      throw readOnly();
+    }
+  }
+}
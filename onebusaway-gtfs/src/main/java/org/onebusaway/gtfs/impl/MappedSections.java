@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes sections of primitive values to a file, mapping each back read-only
+ * as soon as it is written, so that the values live in the page cache rather
+ * than on the heap. Values are stored in native byte order, and each section
+ * starts on an eight byte boundary. A section cannot exceed 2GB.
+ * 
+ * The mapped buffers stay valid after the file is closed, and are only
+ * unmapped once they are garbage collected.
+ */
+final class MappedSections implements Closeable {
+
+  private static final int CHUNK_SIZE = 1 << 20;
+
+  private final FileChannel channel;
+
+  private final ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE).order(
+      ByteOrder.nativeOrder());
+
+  private long position = 0;
+
+  public MappedSections(File path) throws IOException {
+    channel = FileChannel.open(path.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  public IntBuffer putInts(int[] values, int count) throws IOException {
+    long start = begin();
+    for (int i = 0; i < count; i++) {
+      if (chunk.remaining() < Integer.BYTES)
+        drain();
+      chunk.putInt(values[i]);
+    }
+    return map(start).asIntBuffer();
+  }
+
+  public IntBuffer putInts(int[] values) throws IOException {
+    return putInts(values, values.length);
+  }
+
+  public DoubleBuffer putDoubles(double[] values) throws IOException {
+    long start = begin();
+    for (double value : values) {
+      if (chunk.remaining() < Double.BYTES)
+        drain();
+      chunk.putDouble(value);
+    }
+    return map(start).asDoubleBuffer();
+  }
+
+  public ByteBuffer putBytes(byte[] values, int count) throws IOException {
+    long start = begin();
+    for (int offset = 0; offset < count;) {
+      if (!chunk.hasRemaining())
+        drain();
+      int length = Math.min(chunk.remaining(), count - offset);
+      chunk.put(values, offset, length);
+      offset += length;
+    }
+    return map(start);
+  }
+
+  public ByteBuffer putBytes(byte[] values) throws IOException {
+    return putBytes(values, values.length);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private long begin() {
+    position = (position + 7) & ~7L;
+    return position;
+  }
+
+  private ByteBuffer map(long start) throws IOException {
+    drain();
+    long length = position - start;
+    if (length > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("a mapped section cannot exceed 2GB");
+    return channel.map(FileChannel.MapMode.READ_ONLY, start, length).order(
+        ByteOrder.nativeOrder());
+  }
+
+  private void drain() throws IOException {
+    chunk.flip();
+    while (chunk.hasRemaining())
+      position += channel.write(chunk, position);
+    chunk.clear();
+  }
+}
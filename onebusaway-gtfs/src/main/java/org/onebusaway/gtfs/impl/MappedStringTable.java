@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distinct strings stored as UTF-8 in a {@link MappedSections} file, and
+ * referred to by index, with -1 standing for null. Each read decodes a new
+ * string, so none of them is retained on the heap.
+ */
+final class MappedStringTable {
+
+  private final ByteBuffer bytes;
+
+  private final IntBuffer offsets;
+
+  private MappedStringTable(ByteBuffer bytes, IntBuffer offsets) {
+    this.bytes = bytes;
+    this.offsets = offsets;
+  }
+
+  public int size() {
+    return offsets.limit() - 1;
+  }
+
+  /**
+   * @return the string with the specified index, or null for -1
+   */
+  public String get(int index) {
+    if (index == -1)
+      return null;
+    int offset = offsets.get(index);
+    byte[] value = new byte[offsets.get(index + 1) - offset];
+    bytes.get(offset, value);
+    return new String(value, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Compares the UTF-8 bytes of a string of the table with the specified
+   * bytes, without decoding it. As with {@link #compare(byte[], byte[])},
+   * this orders strings by code point, and null before any string.
+   * 
+   * @param index the index of the string, or -1 for null
+   * @param value the UTF-8 bytes to compare with, or null
+   */
+  public int compare(int index, byte[] value) {
+    if (index == -1 || value == null)
+      return index == -1 ? (value == null ? 0 : -1) : 1;
+    int offset = offsets.get(index);
+    int length = offsets.get(index + 1) - offset;
+    int n = Math.min(length, value.length);
+    for (int i = 0; i < n; i++) {
+      int c = Byte.compareUnsigned(bytes.get(offset + i), value[i]);
+      if (c != 0)
+        return c;
+    }
+    return Integer.compare(length, value.length);
+  }
+
+  /**
+   * @return the UTF-8 bytes of the string, or null for null
+   */
+  public static byte[] encode(String value) {
+    return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Orders UTF-8 bytes as {@link #compare(int, byte[])} does
+   */
+  public static int compare(byte[] a, byte[] b) {
+    if (a == null || b == null)
+      return a == null ? (b == null ? 0 : -1) : 1;
+    return Arrays.compareUnsigned(a, b);
+  }
+
+  public static class Builder {
+
+    private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+    private final List<String> values = new ArrayList<String>();
+
+    /**
+     * @return the index of the string, which is added if it is new, or -1 for
+     *         null
+     */
+    public int add(String value) {
+      if (value == null)
+        return -1;
+      Integer index = indices.get(value);
+      if (index == null) {
+        index = values.size();
+        indices.put(value, index);
+        values.add(value);
+      }
+      return index;
+    }
+
+    public MappedStringTable build(MappedSections sections) throws IOException {
+      int[] offsets = new int[values.size() + 1];
+      byte[] bytes = new byte[0];
+      int length = 0;
+      for (int i = 0; i < values.size(); i++) {
+        byte[] value = encode(values.get(i));
+        if ((long) length + value.length > Integer.MAX_VALUE)
+          throw new IllegalArgumentException("strings exceed 2GB");
+        if (length + value.length > bytes.length)
+          bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8,
+              Math.max((long) bytes.length << 1, length + value.length)));
+        System.arraycopy(value, 0, bytes, length, value.length);
+        length += value.length;
+        offsets[i + 1] = length;
+      }
+      return new MappedStringTable(sections.putBytes(bytes, length),
+          sections.putInts(offsets));
+    }
+  }
+}
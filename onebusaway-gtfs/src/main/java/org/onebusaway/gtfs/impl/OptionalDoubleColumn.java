@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A column of a packed entity array for an optional double value, such as
+ * {@link org.onebusaway.gtfs.model.Trip#getMeanDurationFactor()}, which is
+ * null for most rows of most feeds. Which rows have a value is kept in a
+ * {@link BitSet}, and the values themselves are only allocated once a row is
+ * given one.
+ *
+ * Columns of primitive values that use a marker for a missing value, such as
+ * {@link org.onebusaway.gtfs.model.StopTime#MISSING_VALUE}, are created with
+ * that marker and read and written with {@link #getDouble(int)} and
+ * {@link #setDouble(int, double)}, which treat the marker as no value.
+ */
+final class OptionalDoubleColumn {
+
+  private final BitSet present = new BitSet();
+
+  private double[] values = null;
+
+  private int length = 0;
+
+  private final double missingValue;
+
+  public OptionalDoubleColumn() {
+    this(Double.NaN);
+  }
+
+  /**
+   * @param missingValue the value read from rows without a value, which
+   *          clears a row's value when it is written
+   */
+  public OptionalDoubleColumn(double missingValue) {
+    this.missingValue = missingValue;
+  }
+
+  public boolean isSet(int row) {
+    return present.get(row);
+  }
+
+  /**
+   * @return the value of the row, or null if it has none
+   */
+  public Double get(int row) {
+    return present.get(row) ? values[row] : null;
+  }
+
+  public void set(int row, Double value) {
+    if (value == null) {
+      present.clear(row);
+      return;
+    }
+    if (values == null)
+      values = new double[length];
+    values[row] = value;
+    present.set(row);
+  }
+
+  /**
+   * @return the value of the row, or the missing value if it has none
+   */
+  public double getDouble(int row) {
+    return present.get(row) ? values[row] : missingValue;
+  }
+
+  public void setDouble(int row, double value) {
+    if (value == missingValue) {
+      present.clear(row);
+      return;
+    }
+    set(row, value);
+  }
+
+  public void setLength(int newLength) {
+    if (values != null)
+      values = Arrays.copyOf(values, newLength);
+    if (newLength < length)
+      present.clear(newLength, length);
+    length = newLength;
+  }
+
+  /**
+   * Moves the rows so that the new row i is the old row order[i], as
+   * {@link StopTimeArray#reorder(int[], int[], int)} does for plain columns.
+   */
+  public void reorder(int[] order, int count) {
+    if (values == null)
+      return;
+    BitSet moved = new BitSet(count);
+    for (int i = 0; i < count; i++) {
+      if (present.get(order[i]))
+        moved.set(i);
+    }
+    present.clear();
+    present.or(moved);
+    values = StopTimeArray.reorder(values, order, count);
+  }
+
+  public void clear() {
+    present.clear();
+    values = null;
+    length = 0;
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import org.onebusaway.gtfs.model.AgencyAndId;
+
+/**
+ * Finds the rows of {@link TripArray} and {@link StopArray} by entity id. It
+ * is an open-addressing hash table of rows rather than a map of boxed values:
+ * each slot holds a row plus one, zero marking an empty slot, and lookups
+ * compare against the array's own id column, so the table keeps no ids of its
+ * own.
+ *
+ * Entries are never removed. A lookup skips removed rows and rows whose id
+ * has changed since they were put, and the table is rebuilt over the live
+ * rows when it fills up and whenever the rows are moved.
+ */
+final class PackedIdIndex {
+
+  private int[] rows = new int[8];
+
+  private int entries = 0;
+
+  /**
+   * @return the live row with the specified id, or -1 if there is none
+   */
+  public int get(AgencyAndId id, AgencyAndId[] idColumn, PackedRowIds ids) {
+    if (id == null)
+      return -1;
+    int mask = rows.length - 1;
+    for (int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+      int entry = rows[slot];
+      if (entry == 0)
+        return -1;
+      int row = entry - 1;
+      if (!ids.isRemoved(row) && id.equals(idColumn[row]))
+        return row;
+    }
+  }
+
+  /**
+   * Adds the specified row, whose id in the column must already be set.
+   */
+  public void put(AgencyAndId id, int row, AgencyAndId[] idColumn,
+      PackedRowIds ids) {
+    if (2 * (entries + 1) > rows.length) {
+      // the rebuilt table includes the row
+      build(idColumn, ids, 4);
+      return;
+    }
+    insert(id, row);
+  }
+
+  /**
+   * Replaces the entries with the live rows, with room for as many again.
+   */
+  public void rebuild(AgencyAndId[] idColumn, PackedRowIds ids) {
+    build(idColumn, ids, 2);
+  }
+
+  public void clear() {
+    rows = new int[8];
+    entries = 0;
+  }
+
+  /**
+   * @return the number of slots of the table
+   */
+  public int getCapacity() {
+    return rows.length;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void build(AgencyAndId[] idColumn, PackedRowIds ids, int factor) {
+    int capacity = Integer.highestOneBit(Math.max(4, factor * ids.size() - 1)) << 1;
+    rows = new int[capacity];
+    entries = 0;
+    for (int row = ids.nextLiveRow(0); row < ids.getLength(); row = ids.nextLiveRow(row + 1)) {
+      if (idColumn[row] != null)
+        insert(idColumn[row], row);
+    }
+  }
+
+  private void insert(AgencyAndId id, int row) {
+    int mask = rows.length - 1;
+    int slot = hash(id) & mask;
+    while (rows[slot] != 0)
+      slot = (slot + 1) & mask;
+    rows[slot] = row + 1;
+    entries++;
+  }
+
+  private static int hash(AgencyAndId id) {
+    int h = id.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Row bookkeeping shared by the packed entity arrays, {@link StopTimeArray}
+ * and {@link ShapePointArray}. Each row is assigned a stable id when it is
+ * added, which is what the array's proxies report from getId() and what
+ * they use to find their row, so that ids stay valid while rows are moved.
+ *
+ * Removed rows are only marked as removed, and remain readable through
+ * existing proxies, until the array is compacted and the live rows are moved
+ * down over them. Ids are never reused, so compaction also rebuilds the map
+ * from ids to rows over the live ids only: an array offset by the lowest live
+ * id while the live ids are dense, or a hash table sized to the live rows once
+ * removals have left them sparse, so that its size stays proportional to the
+ * live rows however many rows have come and gone.
+ */
+final class PackedRowIds {
+
+  private static final int NO_ID = -1;
+
+  private int[] rowIds = new int[0];
+
+  /**
+   * The row of each id from {@link #idBase}, while ids are mapped densely, or
+   * null while they are hashed
+   */
+  private int[] rowsById = new int[0];
+
+  private int idBase = 0;
+
+  /**
+   * The ids and rows of an open-addressing hash table, used instead of
+   * {@link #rowsById} while the live ids are sparse
+   */
+  private int[] hashedIds = null;
+
+  private int[] hashedRows = null;
+
+  private int hashedCount = 0;
+
+  private final BitSet removedRows = new BitSet();
+
+  private int length = 0;
+
+  private int removedCount = 0;
+
+  private int nextId = 0;
+
+  private int layout = 0;
+
+  /**
+   * @return the number of rows in use, including removed rows
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * @return the number of live rows
+   */
+  public int size() {
+    return length - removedCount;
+  }
+
+  public int getRemovedCount() {
+    return removedCount;
+  }
+
+  /**
+   * @return a counter that changes whenever rows are moved, so that proxies
+   *         can cache their row until then
+   */
+  public int getLayout() {
+    return layout;
+  }
+
+  /**
+   * @return the number of slots of the map from ids to rows
+   */
+  public int getIdMapCapacity() {
+    return rowsById != null ? rowsById.length : hashedIds.length;
+  }
+
+  /**
+   * @return true if enough rows have been removed for compaction to be worth
+   *         its cost
+   */
+  public boolean isCompactionDue() {
+    return removedCount > 0 && removedCount >= length / 4;
+  }
+
+  /**
+   * Appends a row with a new id.
+   *
+   * @return the index of the new row
+   */
+  public int addRow() {
+    if (rowIds.length == length)
+      rowIds = Arrays.copyOf(rowIds, Math.max(8, length << 1));
+    rowIds[length] = nextId;
+    if (rowsById != null) {
+      int index = nextId - idBase;
+      if (rowsById.length == index)
+        rowsById = Arrays.copyOf(rowsById, Math.max(8, index << 1));
+      rowsById[index] = length;
+    } else {
+      putHashed(nextId, length);
+    }
+    nextId++;
+    return length++;
+  }
+
+  public int getId(int row) {
+    return rowIds[row];
+  }
+
+  /**
+   * @return true if the specified id was ever assigned to a row
+   */
+  public boolean isAssigned(int id) {
+    return id >= 0 && id < nextId;
+  }
+
+  /**
+   * @return the row of the specified id, which may have been removed but not
+   *         yet compacted, or -1 if the row no longer exists
+   */
+  public int getRow(int id) {
+    if (rowsById != null) {
+      int index = id - idBase;
+      return index < 0 || index >= nextId - idBase ? -1 : rowsById[index];
+    }
+    int mask = hashedIds.length - 1;
+    for (int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+      int entry = hashedIds[slot];
+      if (entry == id)
+        return hashedRows[slot];
+      if (entry == NO_ID)
+        return -1;
+    }
+  }
+
+  /**
+   * @return the row of the specified id, or -1 if it has been removed
+   */
+  public int getLiveRow(int id) {
+    if (!isAssigned(id))
+      return -1;
+    int row = getRow(id);
+    if (row == -1 || removedRows.get(row))
+      return -1;
+    return row;
+  }
+
+  public boolean isRemoved(int row) {
+    return removedRows.get(row);
+  }
+
+  /**
+   * @return the index of the first live row at or after the specified row, or
+   *         {@link #getLength()} if there is none
+   */
+  public int nextLiveRow(int row) {
+    if (removedCount == 0)
+      return row;
+    int next = removedRows.nextClearBit(row);
+    return Math.min(next, length);
+  }
+
+  /**
+   * Marks the row of the specified id as removed.
+   *
+   * @return true if the id referred to a live row
+   */
+  public boolean remove(int id) {
+    int row = getLiveRow(id);
+    if (row == -1)
+      return false;
+    removedRows.set(row);
+    removedCount++;
+    return true;
+  }
+
+  /**
+   * @return the indices of the live rows, in order, which is the order the
+   *         rows will have after {@link #reorder(int[], int)}
+   */
+  public int[] getLiveRows() {
+    int[] rows = new int[size()];
+    int count = 0;
+    for (int row = nextLiveRow(0); row < length; row = nextLiveRow(row + 1))
+      rows[count++] = row;
+    return rows;
+  }
+
+  /**
+   * Moves rows so that the new row i is the old row order[i], dropping every
+   * row that is not listed. Rows dropped this way can no longer be read
+   * through their proxies.
+   */
+  public void reorder(int[] order, int count) {
+    int[] ids = new int[rowIds.length];
+    int minId = nextId;
+    for (int i = 0; i < count; i++) {
+      int id = rowIds[order[i]];
+      ids[i] = id;
+      minId = Math.min(minId, id);
+    }
+    rowIds = ids;
+    length = count;
+    if (nextId - minId <= 2 * count + 8) {
+      idBase = minId;
+      rowsById = new int[nextId - minId];
+      Arrays.fill(rowsById, -1);
+      for (int row = 0; row < count; row++)
+        rowsById[ids[row] - idBase] = row;
+      hashedIds = null;
+      hashedRows = null;
+      hashedCount = 0;
+    } else {
+      rowsById = null;
+      rehash(count);
+      for (int row = 0; row < count; row++)
+        putHashed(ids[row], row);
+    }
+    removedRows.clear();
+    removedCount = 0;
+    layout++;
+  }
+
+  public void trimToSize() {
+    rowIds = Arrays.copyOf(rowIds, length);
+    if (rowsById != null)
+      rowsById = Arrays.copyOf(rowsById, nextId - idBase);
+  }
+
+  public void clear() {
+    rowIds = new int[0];
+    rowsById = new int[0];
+    idBase = 0;
+    hashedIds = null;
+    hashedRows = null;
+    hashedCount = 0;
+    removedRows.clear();
+    length = 0;
+    removedCount = 0;
+    nextId = 0;
+    layout++;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Replaces the hash table with an empty one with room for the specified
+   * number of ids
+   */
+  private void rehash(int count) {
+    int capacity = Integer.highestOneBit(Math.max(8, count * 2 - 1)) << 1;
+    hashedIds = new int[capacity];
+    hashedRows = new int[capacity];
+    Arrays.fill(hashedIds, NO_ID);
+    hashedCount = 0;
+  }
+
+  private void putHashed(int id, int row) {
+    if (2 * (hashedCount + 1) > hashedIds.length) {
+      int[] ids = hashedIds;
+      int[] rows = hashedRows;
+      rehash(hashedCount + 1);
+      for (int slot = 0; slot < ids.length; slot++) {
+        if (ids[slot] != NO_ID)
+          putHashed(ids[slot], rows[slot]);
+      }
+    }
+    int mask = hashedIds.length - 1;
+    int slot = hash(id) & mask;
+    while (hashedIds[slot] != NO_ID)
+      slot = (slot + 1) & mask;
+    hashedIds[slot] = id;
+    hashedRows[slot] = row;
+    hashedCount++;
+  }
+
+  private static int hash(int id) {
+    int h = id * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,714 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A one-to-many index, stored as a compressed sparse row: the values of all
+ * keys share one array, in which the values of each key occupy a contiguous
+ * range, and an open-addressing table maps each key to the start of its range.
+ * Compared to a {@link java.util.HashMap} of lists, this saves a map entry, a
+ * boxed list and its backing array per key.
+ *
+ * Values can be added and removed after the index is built. The values of a
+ * key that is modified move to an array of their own, which the lists returned
+ * for the key share. Appending to the array leaves those lists unchanged, since
+ * each only covers the values there were when it was returned, so appending a
+ * value takes constant time. Removing a value replaces it with a tombstone,
+ * found through a map from values to their positions once a key has many
+ * values, and the tombstones are compacted away when the key is next looked
+ * up. Inserting a value before others takes time in the number of values of
+ * its key, and modifying the values of a key in place copies the array first
+ * if a list was returned since it was last copied. The key of a value, which
+ * {@link #put(Object, Object)} and {@link #removeValue(Object)} look up, is
+ * found from the value's position in the array the index was built with, so
+ * only the values that moved to another key since then take a map entry.
+ *
+ * Keys and values are compared with {@link Object#equals(Object)}, and keys may
+ * be null. The lists returned by {@link #get(Object)} are read-only views. An
+ * index can be read by concurrent threads as long as it has not been modified
+ * since it was built.
+ */
+final class RelationIndex<K, V> {
+
+  private static final Object NULL_KEY = new Object();
+
+  private static final Object TOMBSTONE = new Object();
+
+  /**
+   * The number of values above which the values of a modified key are found
+   * through a map from values to positions rather than by a scan
+   */
+  private static final int POSITION_MAP_THRESHOLD = 4096;
+
+  /**
+   * The keys, in order of their first value
+   */
+  private final Object[] keys;
+
+  /**
+   * The start of the values of each key, followed by the end of the last one
+   */
+  private final int[] offsets;
+
+  private final Object[] values;
+
+  /**
+   * An open-addressing hash table of key indices plus one, zero marking an
+   * empty slot
+   */
+  private final int[] table;
+
+  private final Comparator<? super V> order;
+
+  /**
+   * The values of keys modified since the index was built, keyed like
+   * {@link #keys}
+   */
+  private Map<Object, Bucket> modifiedValues = null;
+
+  /**
+   * An open-addressing hash table of the positions in {@link #values} plus
+   * one, by value, built when the key of a value is first needed. The key of
+   * a position is found from {@link #offsets}, so the table costs an int or
+   * two per value rather than a map entry.
+   */
+  private int[] valuePositions = null;
+
+  /**
+   * The key of each value that is a value of a key other than the one it had
+   * when the index was built, maintained along with {@link #valuePositions}
+   */
+  private Map<Object, Object> movedValueKeys = null;
+
+  private int valueCount;
+
+  private RelationIndex(Object[] keys, int[] offsets, Object[] values,
+      int[] table, Comparator<? super V> order) {
+    this.keys = keys;
+    this.offsets = offsets;
+    this.values = values;
+    this.table = table;
+    this.order = order;
+    this.valueCount = values.length;
+  }
+
+  public static <K, V> Builder<K, V> builder() {
+    return new Builder<K, V>();
+  }
+
+  /**
+   * @return the values of the specified key, or null if it has none
+   */
+  public List<V> get(Object key) {
+    Object k = key == null ? NULL_KEY : key;
+    if (modifiedValues != null) {
+      Bucket bucket = modifiedValues.get(k);
+      if (bucket != null) {
+        if (bucket.live == 0) {
+          return null;
+        }
+        bucket.compact();
+        bucket.shared = true;
+        return new Range<V>(bucket.values, 0, bucket.live);
+      }
+    }
+    int index = indexOf(k);
+    if (index == -1) {
+      return null;
+    }
+    return new Range<V>(values, offsets[index], offsets[index + 1]);
+  }
+
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  /**
+   * @return the keys of the index that have values, those of the index as
+   *         built in order of their first value, followed by any others
+   */
+  @SuppressWarnings("unchecked")
+  public List<K> keys() {
+    List<Object> result = new ArrayList<Object>(keys.length);
+    for (int i = 0; i < keys.length; i++) {
+      Object key = keys[i];
+      if (indexOf(key) != i) {
+        // moved by removeKey after its equality changed
+        continue;
+      }
+      Bucket bucket = modifiedValues == null ? null : modifiedValues.get(key);
+      if (bucket == null || bucket.live > 0) {
+        result.add(key == NULL_KEY ? null : key);
+      }
+    }
+    if (modifiedValues != null) {
+      for (Map.Entry<Object, Bucket> entry : modifiedValues.entrySet()) {
+        Object key = entry.getKey();
+        if (entry.getValue().live > 0 && indexOf(key) == -1) {
+          result.add(key == NULL_KEY ? null : key);
+        }
+      }
+    }
+    return (List<K>) result;
+  }
+
+  public int getKeyCount() {
+    return keys().size();
+  }
+
+  public int getValueCount() {
+    return valueCount;
+  }
+
+  /**
+   * @return true if values were added or removed since the index was built.
+   *         Looking up a modified key may compact its values, so only an
+   *         unmodified index is safe to read from concurrent threads.
+   */
+  public boolean isModified() {
+    return modifiedValues != null;
+  }
+
+  /**
+   * Adds a value to the specified key, after any values that it is not
+   * ordered before if the index is ordered, or after all values otherwise.
+   */
+  @SuppressWarnings("unchecked")
+  public void add(K key, V value) {
+    Object k = key == null ? NULL_KEY : key;
+    Bucket bucket = getBucket(k);
+    int position = bucket.length;
+    if (order != null) {
+      bucket.compact();
+      int low = 0;
+      int high = bucket.live;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (order.compare((V) bucket.values[mid], value) <= 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      position = low;
+    }
+    bucket.insert(position, value);
+    valueCount++;
+    if (valuePositions != null && !k.equals(getBuiltKey(value))) {
+      movedValueKeys.put(value, k);
+    }
+  }
+
+  /**
+   * @return true if the value was one of the values of the specified key, and
+   *         has been removed from it
+   */
+  public boolean remove(K key, V value) {
+    Object k = key == null ? NULL_KEY : key;
+    Bucket bucket = getBucket(k);
+    int position = bucket.indexOf(value);
+    if (position == -1) {
+      return false;
+    }
+    bucket.delete(position);
+    valueCount--;
+    if (movedValueKeys != null) {
+      movedValueKeys.remove(value, k);
+    }
+    return true;
+  }
+
+  /**
+   * Makes the specified key the only key of the value, moving the value from
+   * any other key it is a value of, or to its place in the order of the key's
+   * values if the index is ordered. The key of the value is looked up by the
+   * value's position as the index was built, so this is meant for indices in
+   * which each value has a single key.
+   */
+  @SuppressWarnings("unchecked")
+  public void put(K key, V value) {
+    Object k = key == null ? NULL_KEY : key;
+    Object current = getKey(value);
+    if (current != null) {
+      if (current.equals(k) && order == null) {
+        return;
+      }
+      remove((K) (current == NULL_KEY ? null : current), value);
+    }
+    add(key, value);
+  }
+
+  /**
+   * Removes the specified value from whichever key it is a value of, like
+   * {@link #put(Object, Object)} for indices in which each value has a single
+   * key.
+   *
+   * @return true if the value was found and removed
+   */
+  @SuppressWarnings("unchecked")
+  public boolean removeValue(V value) {
+    Object current = getKey(value);
+    if (current == null) {
+      return false;
+    }
+    return remove((K) (current == NULL_KEY ? null : current), value);
+  }
+
+  /**
+   * Removes all values of the specified key, in order, so that they can be
+   * added again under a key whose equality has changed. The key must be
+   * equal to itself as it was when its values were added.
+   *
+   * @return the removed values
+   */
+  public List<V> removeKey(K key) {
+    List<V> current = get(key);
+    if (current == null) {
+      return new ArrayList<V>(0);
+    }
+    List<V> removed = new ArrayList<V>(current);
+    for (int i = removed.size() - 1; i >= 0; i--) {
+      remove(key, removed.get(i));
+    }
+    return removed;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private Bucket getBucket(Object k) {
+    if (modifiedValues == null) {
+      modifiedValues = new HashMap<Object, Bucket>();
+    }
+    Bucket bucket = modifiedValues.get(k);
+    if (bucket == null) {
+      int index = indexOf(k);
+      if (index != -1) {
+        int size = offsets[index + 1] - offsets[index];
+        Object[] copy = new Object[Math.max(size + (size >> 1), 4)];
+        System.arraycopy(values, offsets[index], copy, 0, size);
+        bucket = new Bucket(copy, size);
+      } else {
+        bucket = new Bucket(new Object[4], 0);
+      }
+      modifiedValues.put(k, bucket);
+    }
+    return bucket;
+  }
+
+  /**
+   * @return the key the value is a value of, with null replaced by
+   *         {@link #NULL_KEY}, or null if it is not a value of the index
+   */
+  private Object getKey(Object value) {
+    if (valuePositions == null) {
+      indexValuePositions();
+    }
+    Object moved = movedValueKeys.get(value);
+    if (moved != null) {
+      return moved;
+    }
+    Object key = getBuiltKey(value);
+    if (key == null) {
+      return null;
+    }
+    Bucket bucket = modifiedValues == null ? null : modifiedValues.get(key);
+    if (bucket != null && bucket.indexOf(value) == -1) {
+      return null;
+    }
+    return key;
+  }
+
+  /**
+   * @return the key the value had when the index was built, or null if it was
+   *         not a value then or the key's values were moved by
+   *         {@link #removeKey(Object)} after its equality changed
+   */
+  private Object getBuiltKey(Object value) {
+    int mask = valuePositions.length - 1;
+    for (int slot = hash(value) & mask;; slot = (slot + 1) & mask) {
+      int entry = valuePositions[slot];
+      if (entry == 0) {
+        return null;
+      }
+      if (values[entry - 1].equals(value)) {
+        int index = Arrays.binarySearch(offsets, entry - 1);
+        if (index < 0) {
+          index = -index - 2;
+        }
+        return indexOf(keys[index]) == index ? keys[index] : null;
+      }
+    }
+  }
+
+  private void indexValuePositions() {
+    int capacity = Integer.highestOneBit(Math.max(values.length, 2) * 2 - 1) << 1;
+    int[] table = new int[capacity];
+    int mask = capacity - 1;
+    for (int i = 0; i < values.length; i++) {
+      int slot = hash(values[i]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = i + 1;
+    }
+    valuePositions = table;
+    movedValueKeys = new HashMap<Object, Object>();
+    if (modifiedValues != null) {
+      for (Map.Entry<Object, Bucket> entry : modifiedValues.entrySet()) {
+        Bucket bucket = entry.getValue();
+        for (int i = 0; i < bucket.length; i++) {
+          Object value = bucket.values[i];
+          if (value != TOMBSTONE
+              && !entry.getKey().equals(getBuiltKey(value))) {
+            movedValueKeys.put(value, entry.getKey());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @param key a key, with null replaced by {@link #NULL_KEY}
+   */
+  private int indexOf(Object key) {
+    int mask = table.length - 1;
+    for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+      int entry = table[slot];
+      if (entry == 0) {
+        return -1;
+      }
+      if (keys[entry - 1].equals(key)) {
+        return entry - 1;
+      }
+    }
+  }
+
+  private static int[] rehash(Object[] keys, int keyCount, int capacity) {
+    int[] table = new int[capacity];
+    int mask = capacity - 1;
+    for (int i = 0; i < keyCount; i++) {
+      int slot = hash(keys[i]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = i + 1;
+    }
+    return table;
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Collects key-value pairs, in any order, and builds them into an index. A
+   * builder is not thread-safe.
+   */
+  public static final class Builder<K, V> {
+
+    private Object[] pairKeys = new Object[16];
+
+    private Object[] pairValues = new Object[16];
+
+    private int size = 0;
+
+    private Builder() {
+
+    }
+
+    public void add(K key, V value) {
+      if (size == pairKeys.length) {
+        pairKeys = Arrays.copyOf(pairKeys, size * 2);
+        pairValues = Arrays.copyOf(pairValues, size * 2);
+      }
+      pairKeys[size] = key == null ? NULL_KEY : key;
+      pairValues[size] = value;
+      size++;
+    }
+
+    public RelationIndex<K, V> build() {
+      return build(null);
+    }
+
+    /**
+     * @param order if not null, the order in which the values of each key are
+     *          sorted, otherwise values keep the order they were added in
+     */
+    @SuppressWarnings("unchecked")
+    public RelationIndex<K, V> build(Comparator<? super V> order) {
+
+      int[] table = new int[16];
+      Object[] keys = new Object[8];
+      int[] counts = new int[keys.length + 1];
+      int[] keyIndexOfPair = new int[size];
+      int keyCount = 0;
+
+      for (int i = 0; i < size; i++) {
+        Object key = pairKeys[i];
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        int index;
+        while (true) {
+          int entry = table[slot];
+          if (entry == 0) {
+            if (keyCount == keys.length) {
+              keys = Arrays.copyOf(keys, keyCount * 2);
+              counts = Arrays.copyOf(counts, keyCount * 2 + 1);
+            }
+            keys[keyCount] = key;
+            index = keyCount++;
+            table[slot] = keyCount;
+            if (keyCount * 2 > table.length) {
+              table = rehash(keys, keyCount, table.length * 2);
+            }
+            break;
+          }
+          if (keys[entry - 1].equals(key)) {
+            index = entry - 1;
+            break;
+          }
+          slot = (slot + 1) & mask;
+        }
+        keyIndexOfPair[i] = index;
+        counts[index + 1]++;
+      }
+
+      int[] offsets = new int[keyCount + 1];
+      for (int i = 0; i < keyCount; i++) {
+        offsets[i + 1] = offsets[i] + counts[i + 1];
+      }
+      int[] next = Arrays.copyOf(offsets, keyCount);
+      Object[] values = new Object[size];
+      for (int i = 0; i < size; i++) {
+        values[next[keyIndexOfPair[i]]++] = pairValues[i];
+      }
+
+      if (order != null) {
+        for (int i = 0; i < keyCount; i++) {
+          if (offsets[i + 1] - offsets[i] > 1) {
+            Arrays.sort((V[]) values, offsets[i], offsets[i + 1], order);
+          }
+        }
+      }
+
+      pairKeys = null;
+      pairValues = null;
+      return new RelationIndex<K, V>(Arrays.copyOf(keys, keyCount), offsets,
+          values, table, order);
+    }
+  }
+
+  /**
+   * The values of a modified key, in the first {@link #length} elements of an
+   * array in which removed values are replaced by {@link #TOMBSTONE} until the
+   * array is compacted. The array is shared with the lists returned for the key
+   * since {@link #shared} was last cleared, which only happens when it has no
+   * tombstones.
+   */
+  private static final class Bucket {
+
+    private Object[] values;
+
+    private int length;
+
+    private int live;
+
+    private boolean shared = false;
+
+    /**
+     * The position of each value instance, built when first needed for a large
+     * bucket and maintained until the values move. Values equal to a stored
+     * value but not identical to it are found by a scan.
+     */
+    private Map<Object, Integer> positions = null;
+
+    public Bucket(Object[] values, int size) {
+      this.values = values;
+      this.length = size;
+      this.live = size;
+    }
+
+    public int indexOf(Object value) {
+      if (live > POSITION_MAP_THRESHOLD) {
+        if (positions == null) {
+          positions = buildPositions();
+        }
+        if (positions != null) {
+          Integer position = positions.get(value);
+          if (position != null) {
+            return position;
+          }
+        }
+      } else {
+        for (int i = length - 1; i >= 0; i--) {
+          if (values[i] == value) {
+            return i;
+          }
+        }
+      }
+      for (int i = length - 1; i >= 0; i--) {
+        Object v = values[i];
+        if (v != TOMBSTONE && v.equals(value)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    public void insert(int position, Object value) {
+      if (position == length && length == values.length && live < length) {
+        compact();
+        position = length;
+      }
+      if (position == length && length < values.length) {
+        values[length++] = value;
+        live++;
+        putPosition(value, position);
+        return;
+      }
+      Object[] target = values;
+      if (shared || length == values.length) {
+        int capacity = length == values.length ? length + (length >> 1) + 1
+            : values.length;
+        target = new Object[capacity];
+        System.arraycopy(values, 0, target, 0, position);
+        shared = false;
+      }
+      System.arraycopy(values, position, target, position + 1, length
+          - position);
+      target[position] = value;
+      values = target;
+      length++;
+      live++;
+      if (position == length - 1) {
+        putPosition(value, position);
+      } else {
+        positions = null;
+      }
+    }
+
+    public void delete(int position) {
+      if (shared) {
+        values = Arrays.copyOf(values, values.length);
+        shared = false;
+      }
+      if (positions != null) {
+        positions.remove(values[position]);
+      }
+      live--;
+      if (position == length - 1) {
+        values[--length] = null;
+        while (length > 0 && values[length - 1] == TOMBSTONE) {
+          values[--length] = null;
+        }
+      } else {
+        values[position] = TOMBSTONE;
+        if (live < length >> 1 && length > 16) {
+          compact();
+        }
+      }
+    }
+
+    /**
+     * Moves the values to the front of the array, copying it if it is shared
+     */
+    public void compact() {
+      if (live == length) {
+        return;
+      }
+      Object[] target = shared ? new Object[Math.max(live + (live >> 1), 4)]
+          : values;
+      int n = 0;
+      for (int i = 0; i < length; i++) {
+        Object v = values[i];
+        if (v != TOMBSTONE) {
+          target[n++] = v;
+        }
+      }
+      if (target == values) {
+        Arrays.fill(values, n, length, null);
+      }
+      values = target;
+      length = n;
+      shared = false;
+      positions = null;
+    }
+
+    /**
+     * @return the position of each value, or null if a value occurs more than
+     *         once, in which case values are found by a scan
+     */
+    private Map<Object, Integer> buildPositions() {
+      Map<Object, Integer> result = new IdentityHashMap<Object, Integer>(live);
+      for (int i = 0; i < length; i++) {
+        Object v = values[i];
+        if (v != TOMBSTONE && result.put(v, i) != null) {
+          return null;
+        }
+      }
+      return result;
+    }
+
+    private void putPosition(Object value, int position) {
+      if (positions != null && positions.putIfAbsent(value, position) != null) {
+        positions = null;
+      }
+    }
+  }
+
+  private static final class Range<V> extends AbstractList<V> implements
+      RandomAccess {
+
+    private final Object[] values;
+
+    private final int start;
+
+    private final int end;
+
+    public Range(Object[] values, int start, int end) {
+      this.values = values;
+      this.start = start;
+      this.end = end;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(int index) {
+      if (index < 0 || index >= end - start) {
+        throw new IndexOutOfBoundsException(Integer.toString(index));
+      }
+      return (V) values[start + index];
+    }
+
+    @Override
+    public int size() {
+      return end - start;
+    }
+  }
+}
@@ -17,6 +17,7 @@ package org.onebusaway.gtfs.impl;
 
 import java.util.AbstractList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -25,9 +26,14 @@ import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.ShapePoint;
 import org.onebusaway.gtfs.model.ShapePointProxy;
 
+/**
+ * Stores shape points column by column, handing out {@link ShapePoint} proxies
+ * that read and write the columns in place. Rows keep stable ids and support
+ * removal and compaction in the same way as {@link StopTimeArray}.
+ */
 public class ShapePointArray extends AbstractList<ShapePoint> {
 
-  private int size = 0;
+  private final PackedRowIds ids = new PackedRowIds();
 
   private AgencyAndId[] shapeIds = new AgencyAndId[0];
 
@@ -40,30 +46,98 @@ public class ShapePointArray extends AbstractList<ShapePoint> {
   private double[] distTraveled = new double[0];
 
   public void trimToSize() {
-    setLength(size);
+    compact();
+    setLength(ids.getLength());
+    ids.trimToSize();
+  }
+
+  /**
+   * Reclaims the rows of removed shape points, moving the remaining rows down
+   * while keeping their ids.
+   */
+  public void compact() {
+    if (ids.getRemovedCount() == 0)
+      return;
+    int[] order = ids.getLiveRows();
+    reorder(order, order.length);
+  }
+
+  /**
+   * @return the shape point with the specified id, or null if it has been
+   *         removed
+   * @throws NoSuchElementException if no shape point ever had the id
+   */
+  public ShapePoint getForId(int id) {
+    if (!ids.isAssigned(id)) {
+      throw new NoSuchElementException();
+    }
+    int row = ids.getLiveRow(id);
+    if (row == -1) {
+      return null;
+    }
+    return createProxy(row);
+  }
+
+  /**
+   * @return true if the row of the specified id was removed, false if there was
+   *         no such live row
+   */
+  public boolean removeForId(int id) {
+    return ids.remove(id);
+  }
+
+  /**
+   * @return true if the specified shape point is a live proxy of this array
+   */
+  public boolean isStored(ShapePoint shapePoint) {
+    ShapePointProxy proxy = shapePoint.getProxy();
+    if (!(proxy instanceof ShapePointProxyImpl)) {
+      return false;
+    }
+    ShapePointProxyImpl impl = (ShapePointProxyImpl) proxy;
+    return impl.getArray() == this && ids.getLiveRow(impl.getId()) != -1;
   }
 
   /****
    * {@link List} Interface
    ****/
 
+  /**
+   * Appends a row with the values of the specified shape point. A shape point
+   * that is not already a proxy becomes a proxy of the new row.
+   */
   @Override
   public boolean add(ShapePoint shapePoint) {
-    int index = size;
-    size++;
-    ensureCapacity(size);
+    if (ids.getLength() == shapeIds.length && ids.isCompactionDue()) {
+      compact();
+    }
+    int index = ids.addRow();
+    ensureCapacity(index + 1);
     shapeIds[index] = shapePoint.getShapeId();
     sequences[index] = shapePoint.getSequence();
     lats[index] = shapePoint.getLat();
     lons[index] = shapePoint.getLon();
     distTraveled[index] = shapePoint.getDistTraveled();
+    if (shapePoint.getProxy() == null) {
+      shapePoint.setProxy(new ShapePointProxyImpl(ids.getId(index), index));
+    }
     return true;
   }
 
+  @Override
+  public boolean remove(Object o) {
+    if (!(o instanceof ShapePoint)) {
+      return false;
+    }
+    Integer id = ((ShapePoint) o).getId();
+    return id != null && removeForId(id);
+  }
+
   @Override
   public void clear() {
-    size = 0;
+    ids.clear();
     setLength(0);
+    modCount++;
   }
 
   @Override
@@ -73,23 +147,42 @@ public class ShapePointArray extends AbstractList<ShapePoint> {
 
   @Override
   public ShapePoint get(int index) {
-    if (index < 0 || index >= size) {
+    if (index < 0 || index >= ids.size()) {
       throw new NoSuchElementException();
     }
-    ShapePoint shapePoint = new ShapePoint();
-    shapePoint.setProxy(new ShapePointProxyImpl(index));
-    return shapePoint;
+    compact();
+    return createProxy(index);
   }
 
   @Override
   public int size() {
-    return size;
+    return ids.size();
   }
 
   /****
    * Private Methods
    ****/
 
+  private ShapePoint createProxy(int row) {
+    ShapePoint shapePoint = new ShapePoint();
+    shapePoint.setProxy(new ShapePointProxyImpl(ids.getId(row), row));
+    return shapePoint;
+  }
+
+  /**
+   * Moves the rows so that the new row i is the old row order[i], dropping any
+   * row that is not listed.
+   */
+  private void reorder(int[] order, int count) {
+    this.shapeIds = StopTimeArray.reorder(this.shapeIds, order, count);
+    this.sequences = StopTimeArray.reorder(this.sequences, order, count);
+    this.lats = StopTimeArray.reorder(this.lats, order, count);
+    this.lons = StopTimeArray.reorder(this.lons, order, count);
+    this.distTraveled = StopTimeArray.reorder(this.distTraveled, order, count);
+    ids.reorder(order, count);
+    modCount++;
+  }
+
   private void ensureCapacity(int capacity) {
     if (shapeIds.length < capacity) {
       int newLength = Math.max(8, shapeIds.length << 2);
@@ -107,41 +200,61 @@ public class ShapePointArray extends AbstractList<ShapePoint> {
 
   private class ShapePointIterator implements Iterator<ShapePoint> {
 
-    private int index = 0;
+    private int row = ids.nextLiveRow(0);
+
+    private int lastRow = -1;
+
+    private final int expectedModCount = modCount;
 
     @Override
     public boolean hasNext() {
-      return index < size;
+      return row < ids.getLength();
     }
 
     @Override
     public ShapePoint next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
       if (!hasNext()) {
         throw new NoSuchElementException();
       }
-      ShapePoint shapePoint = new ShapePoint();
-      shapePoint.setProxy(new ShapePointProxyImpl(index));
-      index++;
-      return shapePoint;
+      lastRow = row;
+      row = ids.nextLiveRow(row + 1);
+      return createProxy(lastRow);
     }
 
     @Override
     public void remove() {
-      throw new UnsupportedOperationException();
+      if (lastRow == -1) {
+        throw new IllegalStateException();
+      }
+      removeForId(ids.getId(lastRow));
+      lastRow = -1;
     }
   }
 
   private class ShapePointProxyImpl implements ShapePointProxy {
 
-    private final int index;
+    private final int id;
+
+    private int row;
+
+    private int layout;
+
+    public ShapePointProxyImpl(int id, int row) {
+      this.id = id;
+      this.row = row;
+      this.layout = ids.getLayout();
+    }
 
-    public ShapePointProxyImpl(int index) {
-      this.index = index;
+    public ShapePointArray getArray() {
+      return ShapePointArray.this;
     }
 
     @Override
     public Integer getId() {
-      return index;
+      return id;
     }
 
     @Override
@@ -151,62 +264,78 @@ public class ShapePointArray extends AbstractList<ShapePoint> {
 
     @Override
     public AgencyAndId getShapeId() {
-      return shapeIds[index];
+      return shapeIds[row()];
     }
 
     @Override
     public void setShapeId(AgencyAndId shapeId) {
-      shapeIds[index] = shapeId;
+      shapeIds[row()] = shapeId;
     }
 
     @Override
     public int getSequence() {
-      return sequences[index];
+      return sequences[row()];
     }
 
     @Override
     public void setSequence(int sequence) {
-      sequences[index] = sequence;
+      sequences[row()] = sequence;
     }
 
     @Override
     public boolean isDistTraveledSet() {
-      return distTraveled[index] != ShapePoint.MISSING_VALUE;
+      return distTraveled[row()] != ShapePoint.MISSING_VALUE;
     }
 
     @Override
     public double getDistTraveled() {
-      return distTraveled[index];
+      return distTraveled[row()];
     }
 
     @Override
     public void setDistTraveled(double distTraveled) {
-      ShapePointArray.this.distTraveled[index] = distTraveled;
+      ShapePointArray.this.distTraveled[row()] = distTraveled;
     }
 
     @Override
     public void clearDistTraveled() {
-      distTraveled[index] = ShapePoint.MISSING_VALUE;
+      distTraveled[row()] = ShapePoint.MISSING_VALUE;
     }
 
     @Override
     public double getLat() {
-      return lats[index];
+      return lats[row()];
     }
 
     @Override
     public void setLat(double lat) {
-      lats[index] = lat;
+      lats[row()] = lat;
     }
 
     @Override
     public double getLon() {
-      return lons[index];
+      return lons[row()];
     }
 
     @Override
     public void setLon(double lon) {
-      lons[index] = lon;
+      lons[row()] = lon;
+    }
+
+    /**
+     * @return the current row of this proxy's id, which changes when the
+     *         array is compacted
+     */
+    private int row() {
+      if (layout != ids.getLayout()) {
+        row = ids.isAssigned(id) ? ids.getRow(id) : -1;
+        layout = ids.getLayout();
+      }
+      if (row == -1) {
+        throw new IllegalStateException("shape point " + id
+            + " has been removed");
+      }
+      return row;
     }
   }
 
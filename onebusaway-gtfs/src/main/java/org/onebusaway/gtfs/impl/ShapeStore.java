@@ -0,0 +1,515 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.services.GtfsDao;
+
+/**
+ * Stores shape points compactly, grouped by shape id, for reading whole shapes
+ * or slices of them and exporting them as encoded polylines.
+ * 
+ * Each shape's points are ordered by sequence and stored as a stream of
+ * variable-length integers: latitudes and longitudes as fixed-point degrees
+ * with seven decimal places, and sequences and ids, each as the difference
+ * from the previous point. As consecutive points of a shape, and of GPS-traced
+ * shapes in particular, are close together, most points take a few bytes
+ * rather than the few dozen of a {@link ShapePointArray} row. The stream
+ * restarts from absolute values every {@link #BLOCK_SIZE} points, so that a
+ * slice is decoded from the nearest preceding block rather than from the
+ * start of the shape. Distances traveled are kept as doubles, and only for
+ * shapes that have any.
+ * 
+ * Coordinates with at most seven decimal places, which covers about a
+ * centimeter, are read back exactly, and others are rounded to seven decimal
+ * places, as are the coordinates of encoded polylines before they are rounded
+ * to the polyline's precision. The store cannot be modified once built, and
+ * can be read by any number of threads.
+ */
+public final class ShapeStore {
+
+  /**
+   * The number of points after which the encoding restarts from absolute
+   * values
+   */
+  public static final int BLOCK_SIZE = 64;
+
+  private static final double FIXED_POINT_SCALE = 1e7;
+
+  private static final int FIXED_POINT_DECIMALS = 7;
+
+  /**
+   * The shape ids, in ascending order
+   */
+  private final AgencyAndId[] shapeIds;
+
+  /**
+   * The first point of each shape, followed by the total number of points
+   */
+  private final int[] pointOffsets;
+
+  /**
+   * The first block of each shape, followed by the total number of blocks
+   */
+  private final int[] blockOffsets;
+
+  /**
+   * The offset of each block in {@link #bytes}
+   */
+  private final int[] blockByteOffsets;
+
+  private final byte[] bytes;
+
+  /**
+   * The offset of each shape's distances traveled in {@link #distTraveled},
+   * or -1 for a shape that has none
+   */
+  private final int[] distTraveledOffsets;
+
+  private final double[] distTraveled;
+
+  private ShapeStore(AgencyAndId[] shapeIds, int[] pointOffsets,
+      int[] blockOffsets, int[] blockByteOffsets, byte[] bytes,
+      int[] distTraveledOffsets, double[] distTraveled) {
+    this.shapeIds = shapeIds;
+    this.pointOffsets = pointOffsets;
+    this.blockOffsets = blockOffsets;
+    this.blockByteOffsets = blockByteOffsets;
+    this.bytes = bytes;
+    this.distTraveledOffsets = distTraveledOffsets;
+    this.distTraveled = distTraveled;
+  }
+
+  /**
+   * @return a store of the shape points of the dao
+   */
+  public static ShapeStore create(GtfsDao dao) {
+    return create(dao.getAllShapePoints());
+  }
+
+  /**
+   * Shape points without a shape id are skipped.
+   * 
+   * @return a store of the specified shape points
+   */
+  public static ShapeStore create(Collection<ShapePoint> shapePoints) {
+    Builder builder = new Builder();
+    for (ShapePoint shapePoint : shapePoints)
+      builder.add(shapePoint);
+    return builder.build();
+  }
+
+  /**
+   * @return the shape ids, in ascending order
+   */
+  public List<AgencyAndId> getShapeIds() {
+    return Collections.unmodifiableList(Arrays.asList(shapeIds));
+  }
+
+  /**
+   * @return the number of points of the shape, or 0 if there is no such shape
+   */
+  public int getPointCount(AgencyAndId shapeId) {
+    int shape = indexOf(shapeId);
+    return shape == -1 ? 0 : getPointCount(shape);
+  }
+
+  /**
+   * @return the total number of points of all shapes
+   */
+  public int getPointCount() {
+    return pointOffsets[shapeIds.length];
+  }
+
+  /**
+   * @return the number of bytes of encoded coordinates, sequences and ids,
+   *         which is most of the memory used by the store
+   */
+  public int getEncodedLength() {
+    return bytes.length;
+  }
+
+  /**
+   * @return new shape points with the values of the shape's points, ordered by
+   *         sequence, or an empty list if there is no such shape
+   */
+  public List<ShapePoint> getShapePointsForShapeId(AgencyAndId shapeId) {
+    int shape = indexOf(shapeId);
+    if (shape == -1)
+      return Collections.emptyList();
+    return getShapePoints(shape, 0, getPointCount(shape));
+  }
+
+  /**
+   * @param fromIndex the index of the first point, inclusive
+   * @param toIndex the index of the last point, exclusive
+   * @return new shape points with the values of a range of the shape's points
+   * @throws IllegalArgumentException if there is no such shape
+   * @throws IndexOutOfBoundsException if the range is out of the shape's
+   *           points
+   */
+  public List<ShapePoint> getShapePointsForShapeId(AgencyAndId shapeId,
+      int fromIndex, int toIndex) {
+    int shape = getShapeIndex(shapeId);
+    checkRange(shape, fromIndex, toIndex);
+    return getShapePoints(shape, fromIndex, toIndex);
+  }
+
+  /**
+   * Copies the coordinates of a range of the shape's points.
+   * 
+   * @param fromIndex the index of the first point, inclusive
+   * @param toIndex the index of the last point, exclusive
+   * @param lats receives the latitude of point fromIndex + i at index i
+   * @param lons receives the longitude of point fromIndex + i at index i
+   * @throws IllegalArgumentException if there is no such shape
+   * @throws IndexOutOfBoundsException if the range is out of the shape's
+   *           points or the arrays are too short
+   */
+  public void getCoordinates(AgencyAndId shapeId, int fromIndex, int toIndex,
+      double[] lats, double[] lons) {
+    int shape = getShapeIndex(shapeId);
+    checkRange(shape, fromIndex, toIndex);
+    if (lats.length < toIndex - fromIndex || lons.length < toIndex - fromIndex)
+      throw new IndexOutOfBoundsException("arrays too short");
+    PointReader reader = new PointReader(shape, fromIndex);
+    for (int i = 0; i < toIndex - fromIndex; i++) {
+      reader.next();
+      lats[i] = reader.lat / FIXED_POINT_SCALE;
+      lons[i] = reader.lon / FIXED_POINT_SCALE;
+    }
+  }
+
+  /**
+   * @return the shape in Google's encoded polyline format, with five decimal
+   *         places, or null if there is no such shape
+   */
+  public String getEncodedPolyline(AgencyAndId shapeId) {
+    int shape = indexOf(shapeId);
+    if (shape == -1)
+      return null;
+    return getEncodedPolyline(shape, 0, getPointCount(shape), 5);
+  }
+
+  /**
+   * Encodes a range of the shape's points in Google's encoded polyline format.
+   * 
+   * @param fromIndex the index of the first point, inclusive
+   * @param toIndex the index of the last point, exclusive
+   * @param precision the number of decimal places, from 0 to 7, which is 5
+   *          for the original format and 6 for some routing engines
+   * @throws IllegalArgumentException if there is no such shape or the
+   *           precision is out of range
+   * @throws IndexOutOfBoundsException if the range is out of the shape's
+   *           points
+   */
+  public String getEncodedPolyline(AgencyAndId shapeId, int fromIndex,
+      int toIndex, int precision) {
+    int shape = getShapeIndex(shapeId);
+    checkRange(shape, fromIndex, toIndex);
+    if (precision < 0 || precision > FIXED_POINT_DECIMALS)
+      throw new IllegalArgumentException("precision out of range: "
+          + precision);
+    return getEncodedPolyline(shape, fromIndex, toIndex, precision);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private int indexOf(AgencyAndId shapeId) {
+    if (shapeId == null)
+      return -1;
+    int index = Arrays.binarySearch(shapeIds, shapeId);
+    return index < 0 ? -1 : index;
+  }
+
+  private int getShapeIndex(AgencyAndId shapeId) {
+    int shape = indexOf(shapeId);
+    if (shape == -1)
+      throw new IllegalArgumentException("unknown shape id: " + shapeId);
+    return shape;
+  }
+
+  private int getPointCount(int shape) {
+    return pointOffsets[shape + 1] - pointOffsets[shape];
+  }
+
+  private void checkRange(int shape, int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > getPointCount(shape) || fromIndex > toIndex)
+      throw new IndexOutOfBoundsException("range [" + fromIndex + ", "
+          + toIndex + ") out of " + getPointCount(shape) + " points");
+  }
+
+  private List<ShapePoint> getShapePoints(int shape, int fromIndex,
+      int toIndex) {
+    List<ShapePoint> shapePoints = new ArrayList<ShapePoint>(toIndex
+        - fromIndex);
+    int distTraveledOffset = distTraveledOffsets[shape];
+    PointReader reader = new PointReader(shape, fromIndex);
+    for (int i = fromIndex; i < toIndex; i++) {
+      reader.next();
+      ShapePoint shapePoint = new ShapePoint();
+      shapePoint.setId(reader.id);
+      shapePoint.setShapeId(shapeIds[shape]);
+      shapePoint.setSequence(reader.sequence);
+      shapePoint.setLat(reader.lat / FIXED_POINT_SCALE);
+      shapePoint.setLon(reader.lon / FIXED_POINT_SCALE);
+      if (distTraveledOffset != -1)
+        shapePoint.setDistTraveled(distTraveled[distTraveledOffset + i]);
+      shapePoints.add(shapePoint);
+    }
+    return shapePoints;
+  }
+
+  private String getEncodedPolyline(int shape, int fromIndex, int toIndex,
+      int precision) {
+    long divisor = 1;
+    for (int i = precision; i < FIXED_POINT_DECIMALS; i++)
+      divisor *= 10;
+    StringBuilder b = new StringBuilder((toIndex - fromIndex) * 8);
+    PointReader reader = new PointReader(shape, fromIndex);
+    long prevLat = 0;
+    long prevLon = 0;
+    for (int i = fromIndex; i < toIndex; i++) {
+      reader.next();
+      long lat = roundDiv(reader.lat, divisor);
+      long lon = roundDiv(reader.lon, divisor);
+      appendPolylineValue(b, lat - prevLat);
+      appendPolylineValue(b, lon - prevLon);
+      prevLat = lat;
+      prevLon = lon;
+    }
+    return b.toString();
+  }
+
+  /**
+   * @return the value divided by the divisor, rounded half up as
+   *         {@link Math#round(double)} is
+   */
+  private static long roundDiv(long value, long divisor) {
+    return Math.floorDiv(value + divisor / 2, divisor);
+  }
+
+  private static void appendPolylineValue(StringBuilder b, long value) {
+    long v = value < 0 ? ~(value << 1) : value << 1;
+    while (v >= 0x20) {
+      b.append((char) ((0x20 | (v & 0x1f)) + 63));
+      v >>>= 5;
+    }
+    b.append((char) (v + 63));
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Decodes the points of a shape one at a time, starting from the block of a
+   * specified point
+   */
+  private final class PointReader {
+
+    private final int firstBlock;
+
+    private int index;
+
+    private int offset;
+
+    private int id;
+
+    private int sequence;
+
+    private long lat;
+
+    private long lon;
+
+    /**
+     * @param fromIndex the index of the point that the first call to
+     *          {@link #next()} reads
+     */
+    public PointReader(int shape, int fromIndex) {
+      this.firstBlock = blockOffsets[shape];
+      int block = fromIndex / BLOCK_SIZE;
+      this.index = block * BLOCK_SIZE;
+      this.offset = blockByteOffsets[firstBlock + block];
+      while (index < fromIndex)
+        next();
+    }
+
+    public void next() {
+      if (index % BLOCK_SIZE == 0) {
+        id = 0;
+        sequence = 0;
+        lat = 0;
+        lon = 0;
+      }
+      id += (int) unZigZag(readVarLong());
+      sequence += (int) unZigZag(readVarLong());
+      lat += unZigZag(readVarLong());
+      lon += unZigZag(readVarLong());
+      index++;
+    }
+
+    private long readVarLong() {
+      long value = 0;
+      int shift = 0;
+      while (true) {
+        byte b = bytes[offset++];
+        value |= (long) (b & 0x7f) << shift;
+        if (b >= 0)
+          return value;
+        shift += 7;
+      }
+    }
+  }
+
+  /**
+   * Collects shape points, which are grouped by shape id and ordered by
+   * sequence when the store is built
+   */
+  public static class Builder {
+
+    private static final Comparator<ShapePoint> ORDER = Comparator.comparing(
+        ShapePoint::getShapeId).thenComparingInt(ShapePoint::getSequence);
+
+    private final List<ShapePoint> shapePoints = new ArrayList<ShapePoint>();
+
+    /**
+     * Adds the shape point, whose values are read when the store is built. A
+     * shape point without a shape id is skipped.
+     */
+    public Builder add(ShapePoint shapePoint) {
+      if (shapePoint.getShapeId() != null)
+        shapePoints.add(shapePoint);
+      return this;
+    }
+
+    public ShapeStore build() {
+
+      shapePoints.sort(ORDER);
+
+      List<AgencyAndId> shapeIds = new ArrayList<AgencyAndId>();
+      int[] pointOffsets = new int[shapePoints.size() + 1];
+      for (int i = 0; i < shapePoints.size(); i++) {
+        AgencyAndId shapeId = shapePoints.get(i).getShapeId();
+        if (shapeIds.isEmpty() || !shapeIds.get(shapeIds.size() - 1).equals(
+            shapeId)) {
+          pointOffsets[shapeIds.size()] = i;
+          shapeIds.add(shapeId);
+        }
+      }
+      int shapeCount = shapeIds.size();
+      pointOffsets[shapeCount] = shapePoints.size();
+      pointOffsets = Arrays.copyOf(pointOffsets, shapeCount + 1);
+
+      int[] blockOffsets = new int[shapeCount + 1];
+      for (int shape = 0; shape < shapeCount; shape++) {
+        int points = pointOffsets[shape + 1] - pointOffsets[shape];
+        blockOffsets[shape + 1] = blockOffsets[shape]
+            + (points + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      }
+
+      int[] blockByteOffsets = new int[blockOffsets[shapeCount]];
+      int[] distTraveledOffsets = new int[shapeCount];
+      double[] distTraveled = new double[0];
+      int distTraveledLength = 0;
+      ByteWriter out = new ByteWriter();
+
+      for (int shape = 0; shape < shapeCount; shape++) {
+        int from = pointOffsets[shape];
+        int to = pointOffsets[shape + 1];
+        long prevId = 0;
+        long prevSequence = 0;
+        long prevLat = 0;
+        long prevLon = 0;
+        boolean hasDistTraveled = false;
+        for (int i = from; i < to; i++) {
+          int index = i - from;
+          if (index % BLOCK_SIZE == 0) {
+            blockByteOffsets[blockOffsets[shape] + index / BLOCK_SIZE] = out.length;
+            prevId = 0;
+            prevSequence = 0;
+            prevLat = 0;
+            prevLon = 0;
+          }
+          ShapePoint shapePoint = shapePoints.get(i);
+          long id = shapePoint.getId() == null ? 0 : shapePoint.getId();
+          long sequence = shapePoint.getSequence();
+          long lat = Math.round(shapePoint.getLat() * FIXED_POINT_SCALE);
+          long lon = Math.round(shapePoint.getLon() * FIXED_POINT_SCALE);
+          out.writeVarLong(zigZag(id - prevId));
+          out.writeVarLong(zigZag(sequence - prevSequence));
+          out.writeVarLong(zigZag(lat - prevLat));
+          out.writeVarLong(zigZag(lon - prevLon));
+          prevId = id;
+          prevSequence = sequence;
+          prevLat = lat;
+          prevLon = lon;
+          hasDistTraveled |= shapePoint.isDistTraveledSet();
+        }
+        if (hasDistTraveled) {
+          distTraveledOffsets[shape] = distTraveledLength;
+          if (distTraveledLength + to - from > distTraveled.length)
+            distTraveled = Arrays.copyOf(distTraveled, Math.max(
+                distTraveledLength + to - from, distTraveled.length << 1));
+          for (int i = from; i < to; i++)
+            distTraveled[distTraveledLength++] = shapePoints.get(i).getDistTraveled();
+        } else {
+          distTraveledOffsets[shape] = -1;
+        }
+      }
+
+      shapePoints.clear();
+      return new ShapeStore(shapeIds.toArray(new AgencyAndId[shapeCount]),
+          pointOffsets, blockOffsets, blockByteOffsets, out.toByteArray(),
+          distTraveledOffsets, Arrays.copyOf(distTraveled, distTraveledLength));
+    }
+  }
+
+  private static final class ByteWriter {
+
+    private byte[] bytes = new byte[1024];
+
+    private int length = 0;
+
+    public void writeVarLong(long value) {
+      if (length + 10 > bytes.length)
+        bytes = Arrays.copyOf(bytes, bytes.length << 1);
+      while ((value & ~0x7fL) != 0) {
+        bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      bytes[length++] = (byte) value;
+    }
+
+    public byte[] toByteArray() {
+      return Arrays.copyOf(bytes, length);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.Arrays;
+
+/**
+ * A column of a packed entity array for a value that most rows of most feeds
+ * leave unset, such as the feed-specific extension fields of
+ * {@link org.onebusaway.gtfs.model.Trip}. Unset rows read as null, and the
+ * values are only allocated once a row is given one.
+ */
+final class SparseColumn<T> {
+
+  private Object[] values = null;
+
+  private int length = 0;
+
+  @SuppressWarnings("unchecked")
+  public T get(int row) {
+    return values == null ? null : (T) values[row];
+  }
+
+  public void set(int row, T value) {
+    if (values == null) {
+      if (value == null)
+        return;
+      values = new Object[length];
+    }
+    values[row] = value;
+  }
+
+  public void setLength(int newLength) {
+    if (values != null)
+      values = Arrays.copyOf(values, newLength);
+    length = newLength;
+  }
+
+  /**
+   * Moves the rows so that the new row i is the old row order[i], as
+   * {@link StopTimeArray#reorder(Object[], int[], int)} does for plain columns.
+   */
+  public void reorder(int[] order, int count) {
+    if (values != null)
+      values = StopTimeArray.reorder(values, order, count);
+  }
+
+  public void clear() {
+    values = null;
+    length = 0;
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.Arrays;
+
+/**
+ * A column of a packed entity array for an int value that most rows of most
+ * feeds leave at its default, such as
+ * {@link org.onebusaway.gtfs.model.Stop#getVehicleType()}. Rows read as the
+ * default until the values are allocated, which happens once a row is given
+ * any other value.
+ */
+final class SparseIntColumn {
+
+  private final int defaultValue;
+
+  private int[] values = null;
+
+  private int length = 0;
+
+  public SparseIntColumn(int defaultValue) {
+    this.defaultValue = defaultValue;
+  }
+
+  public int get(int row) {
+    return values == null ? defaultValue : values[row];
+  }
+
+  public void set(int row, int value) {
+    if (values == null) {
+      if (value == defaultValue)
+        return;
+      values = new int[length];
+      Arrays.fill(values, defaultValue);
+    }
+    values[row] = value;
+  }
+
+  public void setLength(int newLength) {
+    if (values != null) {
+      int oldLength = values.length;
+      values = Arrays.copyOf(values, newLength);
+      if (newLength > oldLength)
+        Arrays.fill(values, oldLength, newLength, defaultValue);
+    }
+    length = newLength;
+  }
+
+  /**
+   * Moves the rows so that the new row i is the old row order[i], as
+   * {@link StopTimeArray#reorder(int[], int[], int)} does for plain columns.
+   */
+  public void reorder(int[] order, int count) {
+    if (values != null) {
+      values = StopTimeArray.reorder(values, order, count);
+      Arrays.fill(values, count, values.length, defaultValue);
+    }
+  }
+
+  public void clear() {
+    values = null;
+    length = 0;
+  }
+}
@@ -0,0 +1,672 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Level;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopProxy;
+
+/**
+ * Stores stops column by column, with the zone, parent station, timezone and
+ * other low-cardinality columns dictionary encoded, and the columns of the
+ * feed-specific fields and extensions only allocated once a stop has a value
+ * for them. As with
+ * {@link TripArray}, the array hands out {@link Stop} proxies created as rows
+ * are read, finds rows by stop id through a {@link PackedIdIndex}, and can
+ * share a single proxy per row while the stops are being referenced.
+ */
+public class StopArray extends AbstractList<Stop> {
+
+  private final PackedRowIds ids = new PackedRowIds();
+
+  private final PackedIdIndex index = new PackedIdIndex();
+
+  /**
+   * The proxy handed out for each row while proxies are shared, or null
+   */
+  private Stop[] sharedStops = null;
+
+  private AgencyAndId[] stopIds = new AgencyAndId[0];
+
+  private String[] codes = new String[0];
+
+  private String[] names = new String[0];
+
+  private double[] lats = new double[0];
+
+  private double[] lons = new double[0];
+
+  private int[] locationTypes = new int[0];
+
+  private int[] wheelchairBoardings = new int[0];
+
+  private final DictionaryColumn<String> descs = DictionaryColumn.byValue();
+
+  private final DictionaryColumn<String> zoneIds = DictionaryColumn.byValue();
+
+  private final DictionaryColumn<String> urls = DictionaryColumn.byValue();
+
+  private final DictionaryColumn<String> parentStations = DictionaryColumn.byValue();
+
+  private final DictionaryColumn<String> timezones = DictionaryColumn.byValue();
+
+  private final DictionaryColumn<String> platformCodes = DictionaryColumn.byValue();
+
+  private final DictionaryColumn<Level> levels = DictionaryColumn.byIdentity();
+
+  private final SparseColumn<String> directions = new SparseColumn<>();
+
+  private final SparseIntColumn vehicleTypes = new SparseIntColumn(
+      Stop.MISSING_VALUE);
+
+  private final SparseColumn<String> mtaStopIds = new SparseColumn<>();
+
+  private final SparseIntColumn regionalFareCardsAccepted = new SparseIntColumn(
+      0);
+
+  private final SparseColumn<String> ttsStopNames = new SparseColumn<>();
+
+  private final SparseColumn<Map<Class<?>, Object>> extensions = new SparseColumn<>();
+
+  public void trimToSize() {
+    compact();
+    setLength(ids.getLength());
+    ids.trimToSize();
+    index.rebuild(stopIds, ids);
+  }
+
+  /**
+   * Reclaims the rows of removed stops, moving the remaining rows down while
+   * keeping their ids.
+   */
+  public void compact() {
+    if (ids.getRemovedCount() == 0)
+      return;
+    int[] order = ids.getLiveRows();
+    reorder(order, order.length);
+  }
+
+  /**
+   * While set, each row is handed out as the same proxy, as
+   * {@link TripArray#setSharingProxies(boolean)} does for trips.
+   */
+  public void setSharingProxies(boolean sharingProxies) {
+    sharedStops = sharingProxies ? new Stop[stopIds.length] : null;
+  }
+
+  /**
+   * @return the stop with the specified id, or null if there is none
+   */
+  public Stop getForId(AgencyAndId stopId) {
+    int row = index.get(stopId, stopIds, ids);
+    return row == -1 ? null : getProxy(row);
+  }
+
+  /**
+   * @return true if there was a stop with the specified id, whose row is
+   *         removed
+   */
+  public boolean removeForId(AgencyAndId stopId) {
+    int row = index.get(stopId, stopIds, ids);
+    return row != -1 && ids.remove(ids.getId(row));
+  }
+
+  /**
+   * @return true if the specified stop is a proxy of a live row of this array
+   */
+  public boolean isStored(Stop stop) {
+    StopProxy proxy = stop.getProxy();
+    if (!(proxy instanceof StopProxyImpl)) {
+      return false;
+    }
+    StopProxyImpl impl = (StopProxyImpl) proxy;
+    return impl.getArray() == this && ids.getLiveRow(impl.id) != -1;
+  }
+
+  /****
+   * {@link List} Interface
+   ****/
+
+  /**
+   * Stores the values of the specified stop in the row of the live stop with
+   * the same id, or else in a new row. A stop that is not already a proxy
+   * becomes a proxy of the row, its own fields cleared.
+   */
+  @Override
+  public boolean add(Stop stop) {
+    int row = index.get(stop.getId(), stopIds, ids);
+    if (row == -1) {
+      if (ids.getLength() == stopIds.length && ids.isCompactionDue()) {
+        compact();
+      }
+      row = ids.addRow();
+      ensureCapacity(row + 1);
+      stopIds[row] = stop.getId();
+      if (stopIds[row] != null) {
+        index.put(stopIds[row], row, stopIds, ids);
+      }
+    }
+    codes[row] = stop.getCode();
+    names[row] = stop.getName();
+    lats[row] = stop.getLat();
+    lons[row] = stop.getLon();
+    locationTypes[row] = stop.getLocationType();
+    wheelchairBoardings[row] = stop.getWheelchairBoarding();
+    descs.set(row, stop.getDesc());
+    zoneIds.set(row, stop.getZoneId());
+    urls.set(row, stop.getUrl());
+    parentStations.set(row, stop.getParentStation());
+    timezones.set(row, stop.getTimezone());
+    platformCodes.set(row, stop.getPlatformCode());
+    levels.set(row, stop.getLevel());
+    directions.set(row, stop.getDirection());
+    vehicleTypes.set(row, stop.getVehicleType());
+    mtaStopIds.set(row, stop.getMtaStopId());
+    regionalFareCardsAccepted.set(row, stop.getRegionalFareCardAccepted());
+    ttsStopNames.set(row, stop.getTtsStopName());
+    Map<Class<?>, Object> stopExtensions = stop.getExtensions();
+    extensions.set(row, stopExtensions.isEmpty() ? null
+        : new HashMap<Class<?>, Object>(stopExtensions));
+
+    if (stop.getProxy() == null) {
+      clearFields(stop);
+      stop.setProxy(new StopProxyImpl(ids.getId(row), row));
+      if (sharedStops != null) {
+        sharedStops[row] = stop;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (!(o instanceof Stop)) {
+      return false;
+    }
+    AgencyAndId id = ((Stop) o).getId();
+    return id != null && removeForId(id);
+  }
+
+  @Override
+  public void clear() {
+    ids.clear();
+    index.clear();
+    descs.clear();
+    zoneIds.clear();
+    urls.clear();
+    parentStations.clear();
+    timezones.clear();
+    platformCodes.clear();
+    levels.clear();
+    directions.clear();
+    vehicleTypes.clear();
+    mtaStopIds.clear();
+    regionalFareCardsAccepted.clear();
+    ttsStopNames.clear();
+    extensions.clear();
+    setLength(0);
+    modCount++;
+  }
+
+  @Override
+  public Iterator<Stop> iterator() {
+    return new StopIterator();
+  }
+
+  @Override
+  public Stop get(int index) {
+    if (index < 0 || index >= ids.size()) {
+      throw new NoSuchElementException();
+    }
+    compact();
+    return getProxy(index);
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private Stop getProxy(int row) {
+    if (sharedStops == null) {
+      return createProxy(row);
+    }
+    synchronized (this) {
+      Stop stop = sharedStops[row];
+      if (stop == null) {
+        stop = createProxy(row);
+        sharedStops[row] = stop;
+      }
+      return stop;
+    }
+  }
+
+  private Stop createProxy(int row) {
+    Stop stop = new Stop();
+    stop.setProxy(new StopProxyImpl(ids.getId(row), row));
+    return stop;
+  }
+
+  /**
+   * Releases the values held by the fields of a stop that is about to be
+   * proxied, since they are stored in the columns from then on. The stop's
+   * own extensions are left in place, as they are only reachable through the
+   * proxy once it is set.
+   */
+  private static void clearFields(Stop stop) {
+    stop.setId(null);
+    stop.setCode(null);
+    stop.setName(null);
+    stop.setDesc(null);
+    stop.setZoneId(null);
+    stop.setUrl(null);
+    stop.setParentStation(null);
+    stop.setTimezone(null);
+    stop.setPlatformCode(null);
+    stop.setLevel(null);
+    stop.setDirection(null);
+    stop.setMtaStopId(null);
+    stop.setTtsStopName(null);
+  }
+
+  /**
+   * Moves the rows so that the new row i is the old row order[i], dropping any
+   * row that is not listed.
+   */
+  private void reorder(int[] order, int count) {
+    if (this.sharedStops != null) {
+      this.sharedStops = StopTimeArray.reorder(this.sharedStops, order, count);
+    }
+    this.stopIds = StopTimeArray.reorder(this.stopIds, order, count);
+    this.codes = StopTimeArray.reorder(this.codes, order, count);
+    this.names = StopTimeArray.reorder(this.names, order, count);
+    this.lats = StopTimeArray.reorder(this.lats, order, count);
+    this.lons = StopTimeArray.reorder(this.lons, order, count);
+    this.locationTypes = StopTimeArray.reorder(this.locationTypes, order,
+        count);
+    this.wheelchairBoardings = StopTimeArray.reorder(this.wheelchairBoardings,
+        order, count);
+    descs.reorder(order, count);
+    zoneIds.reorder(order, count);
+    urls.reorder(order, count);
+    parentStations.reorder(order, count);
+    timezones.reorder(order, count);
+    platformCodes.reorder(order, count);
+    levels.reorder(order, count);
+    directions.reorder(order, count);
+    vehicleTypes.reorder(order, count);
+    mtaStopIds.reorder(order, count);
+    regionalFareCardsAccepted.reorder(order, count);
+    ttsStopNames.reorder(order, count);
+    extensions.reorder(order, count);
+    ids.reorder(order, count);
+    index.rebuild(stopIds, ids);
+    modCount++;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (stopIds.length < capacity) {
+      int newLength = Math.max(8, stopIds.length << 2);
+      setLength(newLength);
+    }
+  }
+
+  private void setLength(int newLength) {
+    if (this.sharedStops != null) {
+      this.sharedStops = Arrays.copyOf(this.sharedStops, newLength);
+    }
+    this.stopIds = Arrays.copyOf(this.stopIds, newLength);
+    this.codes = Arrays.copyOf(this.codes, newLength);
+    this.names = Arrays.copyOf(this.names, newLength);
+    this.lats = Arrays.copyOf(this.lats, newLength);
+    this.lons = Arrays.copyOf(this.lons, newLength);
+    this.locationTypes = Arrays.copyOf(this.locationTypes, newLength);
+    this.wheelchairBoardings = Arrays.copyOf(this.wheelchairBoardings,
+        newLength);
+    descs.setLength(newLength);
+    zoneIds.setLength(newLength);
+    urls.setLength(newLength);
+    parentStations.setLength(newLength);
+    timezones.setLength(newLength);
+    platformCodes.setLength(newLength);
+    levels.setLength(newLength);
+    directions.setLength(newLength);
+    vehicleTypes.setLength(newLength);
+    mtaStopIds.setLength(newLength);
+    regionalFareCardsAccepted.setLength(newLength);
+    ttsStopNames.setLength(newLength);
+    extensions.setLength(newLength);
+  }
+
+  private class StopIterator implements Iterator<Stop> {
+
+    private int row = ids.nextLiveRow(0);
+
+    private int lastRow = -1;
+
+    private final int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return row < ids.getLength();
+    }
+
+    @Override
+    public Stop next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      lastRow = row;
+      row = ids.nextLiveRow(row + 1);
+      return getProxy(lastRow);
+    }
+
+    @Override
+    public void remove() {
+      if (lastRow == -1) {
+        throw new IllegalStateException();
+      }
+      ids.remove(ids.getId(lastRow));
+      lastRow = -1;
+    }
+  }
+
+  private class StopProxyImpl implements StopProxy {
+
+    private final int id;
+
+    private int row;
+
+    private int layout;
+
+    public StopProxyImpl(int id, int row) {
+      this.id = id;
+      this.row = row;
+      this.layout = ids.getLayout();
+    }
+
+    public StopArray getArray() {
+      return StopArray.this;
+    }
+
+    @Override
+    public AgencyAndId getId() {
+      return stopIds[row()];
+    }
+
+    /**
+     * Also re-keys the stop, so that it is found by its new id from then on.
+     */
+    @Override
+    public void setId(AgencyAndId stopId) {
+      int row = row();
+      stopIds[row] = stopId;
+      if (stopId != null) {
+        index.put(stopId, row, stopIds, ids);
+      }
+    }
+
+    @Override
+    public String getCode() {
+      return codes[row()];
+    }
+
+    @Override
+    public void setCode(String code) {
+      codes[row()] = code;
+    }
+
+    @Override
+    public String getName() {
+      return names[row()];
+    }
+
+    @Override
+    public void setName(String name) {
+      names[row()] = name;
+    }
+
+    @Override
+    public String getDesc() {
+      return descs.get(row());
+    }
+
+    @Override
+    public void setDesc(String desc) {
+      descs.set(row(), desc);
+    }
+
+    @Override
+    public boolean isLatSet() {
+      return lats[row()] != Stop.MISSING_VALUE;
+    }
+
+    @Override
+    public double getLat() {
+      return lats[row()];
+    }
+
+    @Override
+    public void setLat(double lat) {
+      lats[row()] = lat;
+    }
+
+    @Override
+    public void clearLat() {
+      lats[row()] = Stop.MISSING_VALUE;
+    }
+
+    @Override
+    public boolean isLonSet() {
+      return lons[row()] != Stop.MISSING_VALUE;
+    }
+
+    @Override
+    public double getLon() {
+      return lons[row()];
+    }
+
+    @Override
+    public void setLon(double lon) {
+      lons[row()] = lon;
+    }
+
+    @Override
+    public void clearLon() {
+      lons[row()] = Stop.MISSING_VALUE;
+    }
+
+    @Override
+    public String getZoneId() {
+      return zoneIds.get(row());
+    }
+
+    @Override
+    public void setZoneId(String zoneId) {
+      zoneIds.set(row(), zoneId);
+    }
+
+    @Override
+    public String getUrl() {
+      return urls.get(row());
+    }
+
+    @Override
+    public void setUrl(String url) {
+      urls.set(row(), url);
+    }
+
+    @Override
+    public int getLocationType() {
+      return locationTypes[row()];
+    }
+
+    @Override
+    public void setLocationType(int locationType) {
+      locationTypes[row()] = locationType;
+    }
+
+    @Override
+    public String getParentStation() {
+      return parentStations.get(row());
+    }
+
+    @Override
+    public void setParentStation(String parentStation) {
+      parentStations.set(row(), parentStation);
+    }
+
+    @Override
+    public int getWheelchairBoarding() {
+      return wheelchairBoardings[row()];
+    }
+
+    @Override
+    public void setWheelchairBoarding(int wheelchairBoarding) {
+      wheelchairBoardings[row()] = wheelchairBoarding;
+    }
+
+    @Override
+    public String getTimezone() {
+      return timezones.get(row());
+    }
+
+    @Override
+    public void setTimezone(String timezone) {
+      timezones.set(row(), timezone);
+    }
+
+    @Override
+    public String getPlatformCode() {
+      return platformCodes.get(row());
+    }
+
+    @Override
+    public void setPlatformCode(String platformCode) {
+      platformCodes.set(row(), platformCode);
+    }
+
+    @Override
+    public Level getLevel() {
+      return levels.get(row());
+    }
+
+    @Override
+    public void setLevel(Level level) {
+      levels.set(row(), level);
+    }
+
+    @Override
+    public String getDirection() {
+      return directions.get(row());
+    }
+
+    @Override
+    public void setDirection(String direction) {
+      directions.set(row(), direction);
+    }
+
+    @Override
+    public int getVehicleType() {
+      return vehicleTypes.get(row());
+    }
+
+    @Override
+    public void setVehicleType(int vehicleType) {
+      vehicleTypes.set(row(), vehicleType);
+    }
+
+    @Override
+    public String getMtaStopId() {
+      return mtaStopIds.get(row());
+    }
+
+    @Override
+    public void setMtaStopId(String mtaStopId) {
+      mtaStopIds.set(row(), mtaStopId);
+    }
+
+    @Override
+    public int getRegionalFareCardAccepted() {
+      return regionalFareCardsAccepted.get(row());
+    }
+
+    @Override
+    public void setRegionalFareCardAccepted(int regionalFareCardAccepted) {
+      regionalFareCardsAccepted.set(row(), regionalFareCardAccepted);
+    }
+
+    @Override
+    public String getTtsStopName() {
+      return ttsStopNames.get(row());
+    }
+
+    @Override
+    public void setTtsStopName(String ttsStopName) {
+      ttsStopNames.set(row(), ttsStopName);
+    }
+
+    @Override
+    public Map<Class<?>, Object> getExtensions() {
+      Map<Class<?>, Object> values = extensions.get(row());
+      if (values == null) {
+        return Collections.emptyMap();
+      }
+      return Collections.unmodifiableMap(values);
+    }
+
+    @Override
+    public void putExtension(Class<?> type, Object extension) {
+      int row = row();
+      Map<Class<?>, Object> values = extensions.get(row);
+      if (values == null) {
+        values = new HashMap<Class<?>, Object>();
+        extensions.set(row, values);
+      }
+      values.put(type, extension);
+    }
+
+  
+    private int row() {
+      if (layout != ids.getLayout()) {
+        row = ids.isAssigned(id) ? ids.getRow(id) : -1;
+        layout = ids.getLayout();
+      }
+      if (row == -1) {
+        throw new IllegalStateException("stop " + id + " has been removed");
+      }
+      return row;
+    }
+  }
+}
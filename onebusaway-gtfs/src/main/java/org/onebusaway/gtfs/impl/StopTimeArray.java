@@ -18,14 +18,43 @@ package org.onebusaway.gtfs.impl;
 import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 import org.onebusaway.gtfs.model.*;
 
+/**
+ * Stores stop times column by column, handing out {@link StopTime} proxies
+ * that read and write the columns in place. Each row keeps a stable id, which
+ * the proxies report from {@link StopTime#getId()}. Headsigns, route short
+ * names and free running flags, which have few distinct values, are
+ * dictionary encoded, and the duration offsets and factors, the flex and
+ * feed-specific fields and the extensions, which most feeds leave unset, are
+ * only allocated once a row has one.
+ *
+ * Rows can be removed, through {@link #remove(Object)},
+ * {@link #removeForId(int)} or an iterator, which only marks them as removed,
+ * so removing rows while iterating is safe. Removed rows are reclaimed by
+ * {@link #compact()}, which also happens when the array would otherwise have
+ * to grow and enough rows have been removed. Until then, proxies of a removed
+ * row can still read it. Positional access with {@link #get(int)} compacts
+ * the array first if any rows have been removed.
+ *
+ * {@link #clusterByTrip()} sorts the rows by trip and stop sequence and keeps
+ * the offset of each trip's rows, so that {@link #getStopTimesForTrip(Trip)}
+ * can return a view of them without an index of its own. The offsets are
+ * dropped as soon as rows are added or removed, or a stop time's trip or stop
+ * sequence changes.
+ */
 public class StopTimeArray extends AbstractList<StopTime> {
 
-  private int size = 0;
+  private final PackedRowIds ids = new PackedRowIds();
 
   private Trip[] trips = new Trip[0];
 
@@ -47,9 +76,9 @@ public class StopTimeArray extends AbstractList<StopTime> {
 
   private int[] stopSequences = new int[0];
 
-  private String[] stopHeadsigns = new String[0];
+  private final DictionaryColumn<String> stopHeadsigns = DictionaryColumn.byValue();
 
-  private String[] routeShortNames = new String[0];
+  private final DictionaryColumn<String> routeShortNames = DictionaryColumn.byValue();
 
   private int[] pickupTypes = new int[0];
 
@@ -61,29 +90,216 @@ public class StopTimeArray extends AbstractList<StopTime> {
 
   private BookingRule[] dropOffBookingRules = new BookingRule[0];
 
-  private double[] meanOffsets = new double[0];
+  private final OptionalDoubleColumn meanOffsets = new OptionalDoubleColumn(
+      StopTime.MISSING_VALUE);
+
+  private final OptionalDoubleColumn safeOffsets = new OptionalDoubleColumn(
+      StopTime.MISSING_VALUE);
+
+  private final OptionalDoubleColumn meanFactors = new OptionalDoubleColumn(
+      StopTime.MISSING_VALUE);
+
+  private final OptionalDoubleColumn safeFactors = new OptionalDoubleColumn(
+      StopTime.MISSING_VALUE);
+
+  private final DictionaryColumn<String> freeRunningFlags = DictionaryColumn.byValue();
+
+  private final SparseColumn<Integer> toStopSequences = new SparseColumn<>();
+
+  private final SparseIntColumn startPickupDropOffWindows = new SparseIntColumn(
+      StopTime.MISSING_VALUE);
+
+  private final SparseIntColumn endPickupDropOffWindows = new SparseIntColumn(
+      StopTime.MISSING_VALUE);
+
+  private final SparseIntColumn continuousPickups = new SparseIntColumn(
+      StopTime.MISSING_FLEX_VALUE);
 
-  private double[] safeOffsets = new double[0];
-  
-  private double[] meanFactors = new double[0];
+  private final SparseIntColumn continuousDropOffs = new SparseIntColumn(
+      StopTime.MISSING_FLEX_VALUE);
 
-  private double[] safeFactors = new double[0];
+  private final SparseColumn<String> farePeriodIds = new SparseColumn<>();
+
+  private final OptionalDoubleColumn startServiceAreaRadii = new OptionalDoubleColumn(
+      StopTime.MISSING_VALUE);
+
+  private final OptionalDoubleColumn endServiceAreaRadii = new OptionalDoubleColumn(
+      StopTime.MISSING_VALUE);
+
+  private final SparseIntColumn departureBuffers = new SparseIntColumn(0);
+
+  private final SparseColumn<String> tracks = new SparseColumn<>();
+
+  private final SparseColumn<Note> notes = new SparseColumn<>();
+
+  private final SparseColumn<Map<Class<?>, Object>> extensions = new SparseColumn<>();
+
+  /**
+   * The index into {@link #tripOffsets} of each trip, or null if the rows are
+   * not currently clustered by trip
+   */
+  private Map<Trip, Integer> tripIndices = null;
+
+  /**
+   * The first row of each clustered trip, followed by the end of the last one
+   */
+  private int[] tripOffsets = null;
 
-  private String[] freeRunningFlags = new String[0];
-  
   public void trimToSize() {
-    setLength(size);
+    compact();
+    setLength(ids.getLength());
+    ids.trimToSize();
+  }
+
+  /**
+   * Reclaims the rows of removed stop times, moving the remaining rows down
+   * while keeping their ids.
+   */
+  public void compact() {
+    if (ids.getRemovedCount() == 0)
+      return;
+    int[] order = ids.getLiveRows();
+    reorder(order, order.length);
+  }
+
+  /**
+   * Sorts the rows by trip, in order of each trip's first row, and by stop
+   * sequence within a trip, and records where the rows of each trip start.
+   * Removed rows are reclaimed first. Ids are kept, so existing proxies remain
+   * valid.
+   */
+  public void clusterByTrip() {
+    compact();
+    int length = ids.getLength();
+
+    Map<Trip, Integer> indices = new HashMap<Trip, Integer>();
+    int[] tripIndexByRow = new int[length];
+    int[] counts = new int[length + 1];
+    for (int row = 0; row < length; row++) {
+      Integer index = indices.get(trips[row]);
+      if (index == null) {
+        index = indices.size();
+        indices.put(trips[row], index);
+      }
+      tripIndexByRow[row] = index;
+      counts[index + 1]++;
+    }
+
+    int tripCount = indices.size();
+    int[] offsets = new int[tripCount + 1];
+    for (int i = 0; i < tripCount; i++) {
+      offsets[i + 1] = offsets[i] + counts[i + 1];
+    }
+
+    // Within a trip, rows are ordered by a key of the stop sequence in the
+    // high bits and the row in the low bits, which keeps rows with the same
+    // stop sequence in their original order
+    long[] keys = new long[length];
+    int[] next = Arrays.copyOf(offsets, tripCount);
+    for (int row = 0; row < length; row++) {
+      keys[next[tripIndexByRow[row]]++] = ((long) stopSequences[row] << 32)
+          | row;
+    }
+    int[] order = new int[length];
+    boolean sorted = true;
+    for (int i = 0; i < tripCount; i++) {
+      Arrays.sort(keys, offsets[i], offsets[i + 1]);
+    }
+    for (int i = 0; i < length; i++) {
+      order[i] = (int) keys[i];
+      sorted &= order[i] == i;
+    }
+    if (!sorted) {
+      reorder(order, length);
+    }
+
+    indices.remove(null);
+    tripIndices = indices;
+    tripOffsets = offsets;
+  }
+
+  /**
+   * @return true if the rows are clustered by trip, so that
+   *         {@link #getStopTimesForTrip(Trip)} can answer
+   */
+  public boolean isClusteredByTrip() {
+    return tripIndices != null;
+  }
+
+  /**
+   * @return a view of the stop times of the specified trip, ordered by stop
+   *         sequence, or null if the rows are not currently clustered by trip.
+   *         The view stays valid until the rows are next moved, after which
+   *         reading it throws {@link ConcurrentModificationException}.
+   */
+  public List<StopTime> getStopTimesForTrip(Trip trip) {
+    if (tripIndices == null) {
+      return null;
+    }
+    Integer index = tripIndices.get(trip);
+    if (index == null) {
+      return Collections.emptyList();
+    }
+    return new RowRange(tripOffsets[index], tripOffsets[index + 1]);
+  }
+
+  /**
+   * @return the stop time with the specified id, or null if it has been
+   *         removed
+   * @throws NoSuchElementException if no stop time ever had the id
+   */
+  public StopTime getForId(int id) {
+    if (!ids.isAssigned(id)) {
+      throw new NoSuchElementException();
+    }
+    int row = ids.getLiveRow(id);
+    if (row == -1) {
+      return null;
+    }
+    return createProxy(row);
+  }
+
+  /**
+   * @return true if the row of the specified id was removed, false if there was
+   *         no such live row
+   */
+  public boolean removeForId(int id) {
+    if (!ids.remove(id)) {
+      return false;
+    }
+    unclusterByTrip();
+    return true;
+  }
+
+  /**
+   * @return true if the specified stop time is a live proxy of this array
+   */
+  public boolean isStored(StopTime stopTime) {
+    StopTimeProxy proxy = stopTime.getProxy();
+    if (!(proxy instanceof StopTimeProxyImpl)) {
+      return false;
+    }
+    StopTimeProxyImpl impl = (StopTimeProxyImpl) proxy;
+    return impl.getArray() == this && ids.getLiveRow(impl.getId()) != -1;
   }
 
   /****
    * {@link Collection} Interface
    ****/
 
+  /**
+   * Appends a row with the values of the specified stop time. A stop time that
+   * is not already a proxy becomes a proxy of the new row, so that it reports
+   * the row's id and later changes to it are stored.
+   */
   @Override
   public boolean add(StopTime stopTime) {
-    int index = size;
-    size++;
-    ensureCapacity(size);
+    if (ids.getLength() == trips.length && ids.isCompactionDue()) {
+      compact();
+    }
+    unclusterByTrip();
+    int index = ids.addRow();
+    ensureCapacity(index + 1);
     trips[index] = stopTime.getTrip();
     startServiceAreas[index] = stopTime.getStartServiceArea();
     endServiceAreas[index] = stopTime.getEndServiceArea();
@@ -94,26 +310,75 @@ public class StopTimeArray extends AbstractList<StopTime> {
     departureTimes[index] = stopTime.getDepartureTime();
     timepoints[index] = stopTime.getTimepoint();
     stopSequences[index] = stopTime.getStopSequence();
-    stopHeadsigns[index] = stopTime.getStopHeadsign();
-    routeShortNames[index] = stopTime.getRouteShortName();
+    stopHeadsigns.set(index, stopTime.getStopHeadsign());
+    routeShortNames.set(index, stopTime.getRouteShortName());
     pickupTypes[index] = stopTime.getPickupType();
     dropOffTypes[index] = stopTime.getDropOffType();
     shapeDistTraveled[index] = stopTime.getShapeDistTraveled();
     pickupBookingRules[index] = stopTime.getPickupBookingRule();
     dropOffBookingRules[index] = stopTime.getDropOffBookingRule();    
-    safeOffsets[index] = stopTime.getSafeDurationOffset();
-    safeFactors[index] = stopTime.getSafeDurationFactor();
-    meanOffsets[index] = stopTime.getMeanDurationOffset();
-    meanFactors[index] = stopTime.getMeanDurationFactor();
-    freeRunningFlags[index] = stopTime.getFreeRunningFlag();
-
+    safeOffsets.setDouble(index, stopTime.getSafeDurationOffset());
+    safeFactors.setDouble(index, stopTime.getSafeDurationFactor());
+    meanOffsets.setDouble(index, stopTime.getMeanDurationOffset());
+    meanFactors.setDouble(index, stopTime.getMeanDurationFactor());
+    freeRunningFlags.set(index, stopTime.getFreeRunningFlag());
+    toStopSequences.set(index, stopTime.getToStopSequence());
+    startPickupDropOffWindows.set(index,
+        stopTime.getStartPickupDropOffWindow());
+    endPickupDropOffWindows.set(index, stopTime.getEndPickupDropOffWindow());
+    continuousPickups.set(index, stopTime.getContinuousPickup());
+    continuousDropOffs.set(index, stopTime.getContinuousDropOff());
+    farePeriodIds.set(index, stopTime.getFarePeriodId());
+    startServiceAreaRadii.setDouble(index,
+        stopTime.getStartServiceAreaRadius());
+    endServiceAreaRadii.setDouble(index, stopTime.getEndServiceAreaRadius());
+    departureBuffers.set(index, stopTime.getDepartureBuffer());
+    tracks.set(index, stopTime.getTrack());
+    notes.set(index, stopTime.getNote());
+    Map<Class<?>, Object> stopTimeExtensions = stopTime.getExtensions();
+    extensions.set(index, stopTimeExtensions.isEmpty() ? null
+        : new HashMap<Class<?>, Object>(stopTimeExtensions));
+
+    if (stopTime.getProxy() == null) {
+      stopTime.setProxy(new StopTimeProxyImpl(ids.getId(index), index));
+    }
     return true;
   }
 
+  @Override
+  public boolean remove(Object o) {
+    if (!(o instanceof StopTime)) {
+      return false;
+    }
+    Integer id = ((StopTime) o).getId();
+    return id != null && removeForId(id);
+  }
+
   @Override
   public void clear() {
-    size = 0;
+    ids.clear();
+    stopHeadsigns.clear();
+    routeShortNames.clear();
+    freeRunningFlags.clear();
+    meanOffsets.clear();
+    safeOffsets.clear();
+    meanFactors.clear();
+    safeFactors.clear();
+    toStopSequences.clear();
+    startPickupDropOffWindows.clear();
+    endPickupDropOffWindows.clear();
+    continuousPickups.clear();
+    continuousDropOffs.clear();
+    farePeriodIds.clear();
+    startServiceAreaRadii.clear();
+    endServiceAreaRadii.clear();
+    departureBuffers.clear();
+    tracks.clear();
+    notes.clear();
+    extensions.clear();
     setLength(0);
+    unclusterByTrip();
+    modCount++;
   }
 
   @Override
@@ -123,23 +388,102 @@ public class StopTimeArray extends AbstractList<StopTime> {
 
   @Override
   public StopTime get(int index) {
-    if (index < 0 || index >= size) {
+    if (index < 0 || index >= ids.size()) {
       throw new NoSuchElementException();
     }
-    StopTime stopTime = new StopTime();
-    stopTime.setProxy(new StopTimeProxyImpl(index));
-    return stopTime;
+    compact();
+    return createProxy(index);
   }
 
   @Override
   public int size() {
-    return size;
+    return ids.size();
   }
 
   /****
    * Private Methods
    ****/
 
+  private StopTime createProxy(int row) {
+    StopTime stopTime = new StopTime();
+    stopTime.setProxy(new StopTimeProxyImpl(ids.getId(row), row));
+    return stopTime;
+  }
+
+  /**
+   * Moves the rows so that the new row i is the old row order[i], dropping any
+   * row that is not listed.
+   */
+  private void reorder(int[] order, int count) {
+    this.trips = reorder(this.trips, order, count);
+    this.startServiceAreas = reorder(this.startServiceAreas, order, count);
+    this.endServiceAreas = reorder(this.endServiceAreas, order, count);
+    this.stops = reorder(this.stops, order, count);
+    this.locationGroups = reorder(this.locationGroups, order, count);
+    this.locations = reorder(this.locations, order, count);
+    this.arrivalTimes = reorder(this.arrivalTimes, order, count);
+    this.departureTimes = reorder(this.departureTimes, order, count);
+    this.timepoints = reorder(this.timepoints, order, count);
+    this.stopSequences = reorder(this.stopSequences, order, count);
+    stopHeadsigns.reorder(order, count);
+    routeShortNames.reorder(order, count);
+    this.pickupTypes = reorder(this.pickupTypes, order, count);
+    this.dropOffTypes = reorder(this.dropOffTypes, order, count);
+    this.shapeDistTraveled = reorder(this.shapeDistTraveled, order, count);
+    this.pickupBookingRules = reorder(this.pickupBookingRules, order, count);
+    this.dropOffBookingRules = reorder(this.dropOffBookingRules, order, count);
+    safeOffsets.reorder(order, count);
+    safeFactors.reorder(order, count);
+    meanOffsets.reorder(order, count);
+    meanFactors.reorder(order, count);
+    freeRunningFlags.reorder(order, count);
+    toStopSequences.reorder(order, count);
+    startPickupDropOffWindows.reorder(order, count);
+    endPickupDropOffWindows.reorder(order, count);
+    continuousPickups.reorder(order, count);
+    continuousDropOffs.reorder(order, count);
+    farePeriodIds.reorder(order, count);
+    startServiceAreaRadii.reorder(order, count);
+    endServiceAreaRadii.reorder(order, count);
+    departureBuffers.reorder(order, count);
+    tracks.reorder(order, count);
+    notes.reorder(order, count);
+    extensions.reorder(order, count);
+    ids.reorder(order, count);
+    unclusterByTrip();
+    modCount++;
+  }
+
+  private void unclusterByTrip() {
+    tripIndices = null;
+    tripOffsets = null;
+  }
+
+  static <T> T[] reorder(T[] values, int[] order, int count) {
+    T[] result = Arrays.copyOf(values, values.length);
+    for (int i = 0; i < count; i++) {
+      result[i] = values[order[i]];
+    }
+    Arrays.fill(result, count, result.length, null);
+    return result;
+  }
+
+  static int[] reorder(int[] values, int[] order, int count) {
+    int[] result = new int[values.length];
+    for (int i = 0; i < count; i++) {
+      result[i] = values[order[i]];
+    }
+    return result;
+  }
+
+  static double[] reorder(double[] values, int[] order, int count) {
+    double[] result = new double[values.length];
+    for (int i = 0; i < count; i++) {
+      result[i] = values[order[i]];
+    }
+    return result;
+  }
+
   private void ensureCapacity(int capacity) {
     if (trips.length < capacity) {
       int newLength = Math.max(8, trips.length << 2);
@@ -158,57 +502,124 @@ public class StopTimeArray extends AbstractList<StopTime> {
     this.departureTimes = Arrays.copyOf(this.departureTimes, newLength);
     this.timepoints = Arrays.copyOf(this.timepoints, newLength);
     this.stopSequences = Arrays.copyOf(this.stopSequences, newLength);
-    this.stopHeadsigns = Arrays.copyOf(this.stopHeadsigns, newLength);
-    this.routeShortNames = Arrays.copyOf(this.routeShortNames, newLength);
+    stopHeadsigns.setLength(newLength);
+    routeShortNames.setLength(newLength);
     this.pickupTypes = Arrays.copyOf(this.pickupTypes, newLength);
     this.dropOffTypes = Arrays.copyOf(this.dropOffTypes, newLength);
     this.shapeDistTraveled = Arrays.copyOf(this.shapeDistTraveled, newLength);
     this.pickupBookingRules = Arrays.copyOf(this.pickupBookingRules, newLength);
     this.dropOffBookingRules = Arrays.copyOf(this.dropOffBookingRules, newLength);
-    this.safeOffsets = Arrays.copyOf(this.safeOffsets, newLength);
-    this.safeFactors = Arrays.copyOf(this.safeFactors, newLength);
-    this.meanOffsets = Arrays.copyOf(this.meanOffsets, newLength);
-    this.meanFactors = Arrays.copyOf(this.meanFactors, newLength);
-    this.freeRunningFlags = Arrays.copyOf(this.freeRunningFlags, newLength);
+    safeOffsets.setLength(newLength);
+    safeFactors.setLength(newLength);
+    meanOffsets.setLength(newLength);
+    meanFactors.setLength(newLength);
+    freeRunningFlags.setLength(newLength);
+    toStopSequences.setLength(newLength);
+    startPickupDropOffWindows.setLength(newLength);
+    endPickupDropOffWindows.setLength(newLength);
+    continuousPickups.setLength(newLength);
+    continuousDropOffs.setLength(newLength);
+    farePeriodIds.setLength(newLength);
+    startServiceAreaRadii.setLength(newLength);
+    endServiceAreaRadii.setLength(newLength);
+    departureBuffers.setLength(newLength);
+    tracks.setLength(newLength);
+    notes.setLength(newLength);
+    extensions.setLength(newLength);
   }
 
   private class StopTimeIterator implements Iterator<StopTime> {
 
-    private int index = 0;
+    private int row = ids.nextLiveRow(0);
+
+    private int lastRow = -1;
+
+    private final int expectedModCount = modCount;
 
     @Override
     public boolean hasNext() {
-      return index < size;
+      return row < ids.getLength();
     }
 
     @Override
     public StopTime next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
       if (!hasNext()) {
         throw new NoSuchElementException();
       }
-      StopTime stopTime = new StopTime();
-      stopTime.setProxy(new StopTimeProxyImpl(index));
-      index++;
-      return stopTime;
+      lastRow = row;
+      row = ids.nextLiveRow(row + 1);
+      return createProxy(lastRow);
     }
 
     @Override
     public void remove() {
-      throw new UnsupportedOperationException();
+      if (lastRow == -1) {
+        throw new IllegalStateException();
+      }
+      removeForId(ids.getId(lastRow));
+      lastRow = -1;
+    }
+  }
+
+  /**
+   * A read-only view of a contiguous range of rows, creating proxies as they
+   * are read
+   */
+  private class RowRange extends AbstractList<StopTime> implements
+      RandomAccess {
+
+    private final int start;
+
+    private final int end;
+
+    private final int layout = ids.getLayout();
+
+    public RowRange(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public StopTime get(int index) {
+      if (index < 0 || index >= end - start) {
+        throw new IndexOutOfBoundsException(Integer.toString(index));
+      }
+      if (layout != ids.getLayout()) {
+        throw new ConcurrentModificationException();
+      }
+      return createProxy(start + index);
+    }
+
+    @Override
+    public int size() {
+      return end - start;
     }
   }
 
   private class StopTimeProxyImpl implements StopTimeProxy {
 
-    private final int index;
+    private final int id;
 
-    public StopTimeProxyImpl(int index) {
-      this.index = index;
+    private int row;
+
+    private int layout;
+
+    public StopTimeProxyImpl(int id, int row) {
+      this.id = id;
+      this.row = row;
+      this.layout = ids.getLayout();
+    }
+
+    public StopTimeArray getArray() {
+      return StopTimeArray.this;
     }
 
     @Override
     public Integer getId() {
-      return index;
+      return id;
     }
 
     @Override
@@ -218,262 +629,416 @@ public class StopTimeArray extends AbstractList<StopTime> {
 
     @Override
     public Trip getTrip() {
-      return trips[index];
+      return trips[row()];
     }
 
     @Override
     public void setTrip(Trip trip) {
-      trips[index] = trip;
+      int row = row();
+      if (trips[row] != trip) {
+        unclusterByTrip();
+      }
+      trips[row] = trip;
     }
 
     @Override
     public Area getStartServiceArea() {
-      return startServiceAreas[index];
+      return startServiceAreas[row()];
     }
 
     @Override
     public void setStartServiceArea(Area area) {
-      startServiceAreas[index] = area;
+      startServiceAreas[row()] = area;
     }
 
     @Override
     public Area getEndServiceArea() {
-      return endServiceAreas[index];
+      return endServiceAreas[row()];
     }
 
     @Override
     public void setEndServiceArea(Area area) {
-      endServiceAreas[index] = area;
+      endServiceAreas[row()] = area;
     }
 
     @Override
     public int getStopSequence() {
-      return stopSequences[index];
+      return stopSequences[row()];
     }
 
     @Override
     public void setStopSequence(int stopSequence) {
-      stopSequences[index] = stopSequence;
+      int row = row();
+      if (stopSequences[row] != stopSequence) {
+        unclusterByTrip();
+      }
+      stopSequences[row] = stopSequence;
     }
 
     @Override
     public StopLocation getStop() {
-      return stops[index];
+      return stops[row()];
     }
 
     @Override
     public StopLocation getLocation() {
-      return locations[index];
+      return locations[row()];
     }
 
     @Override
     public StopLocation getLocationGroup() {
-      return locationGroups[index];
+      return locationGroups[row()];
     }
 
     @Override
     public void setStop(StopLocation stop) {
-      stops[index] = stop;
+      stops[row()] = stop;
     }
 
     @Override
     public void setLocation(StopLocation location) {
-      locations[index] = location;
+      locations[row()] = location;
     }
 
     @Override
     public void setLocationGroup(StopLocation group) {
-      locationGroups[index] = group;
+      locationGroups[row()] = group;
     }
 
     @Override
     public boolean isArrivalTimeSet() {
-      return arrivalTimes[index] != StopTime.MISSING_VALUE;
+      return arrivalTimes[row()] != StopTime.MISSING_VALUE;
     }
 
     @Override
     public int getArrivalTime() {
-      return arrivalTimes[index];
+      return arrivalTimes[row()];
     }
 
     @Override
     public void setArrivalTime(int arrivalTime) {
-      arrivalTimes[index] = arrivalTime;
+      arrivalTimes[row()] = arrivalTime;
     }
 
     @Override
     public void clearArrivalTime() {
-      arrivalTimes[index] = StopTime.MISSING_VALUE;
+      arrivalTimes[row()] = StopTime.MISSING_VALUE;
     }
 
     @Override
     public boolean isDepartureTimeSet() {
-      return departureTimes[index] != StopTime.MISSING_VALUE;
+      return departureTimes[row()] != StopTime.MISSING_VALUE;
     }
 
     @Override
     public int getDepartureTime() {
-      return departureTimes[index];
+      return departureTimes[row()];
     }
 
     @Override
     public void setDepartureTime(int departureTime) {
-      departureTimes[index] = departureTime;
+      departureTimes[row()] = departureTime;
     }
 
     @Override
     public void clearDepartureTime() {
-      departureTimes[index] = StopTime.MISSING_VALUE;
+      departureTimes[row()] = StopTime.MISSING_VALUE;
     }
 
     @Override
     public boolean isTimepointSet() {
-      return timepoints[index] != StopTime.MISSING_VALUE;
+      return timepoints[row()] != StopTime.MISSING_VALUE;
     }
 
     @Override
     public int getTimepoint() {
-      return timepoints[index];
+      return timepoints[row()];
     }
 
     @Override
     public void setTimepoint(int timepoint) {
-      timepoints[index] = timepoint;
+      timepoints[row()] = timepoint;
     }
 
     @Override
     public void clearTimepoint() {
-      timepoints[index] = StopTime.MISSING_VALUE;
+      timepoints[row()] = StopTime.MISSING_VALUE;
     }
 
     @Override
     public String getStopHeadsign() {
-      return stopHeadsigns[index];
+      return stopHeadsigns.get(row());
     }
 
     @Override
     public void setStopHeadsign(String headSign) {
-      stopHeadsigns[index] = headSign;
+      stopHeadsigns.set(row(), headSign);
     }
 
     @Override
     public String getRouteShortName() {
-      return routeShortNames[index];
+      return routeShortNames.get(row());
     }
 
     @Override
     public void setRouteShortName(String routeShortName) {
-      routeShortNames[index] = routeShortName;
+      routeShortNames.set(row(), routeShortName);
     }
 
     @Override
     public int getPickupType() {
-      return pickupTypes[index];
+      return pickupTypes[row()];
     }
 
     @Override
     public void setPickupType(int pickupType) {
-      pickupTypes[index] = pickupType;
+      pickupTypes[row()] = pickupType;
     }
 
     @Override
     public int getDropOffType() {
-      return dropOffTypes[index];
+      return dropOffTypes[row()];
     }
 
     @Override
     public void setDropOffType(int dropOffType) {
-      dropOffTypes[index] = dropOffType;
+      dropOffTypes[row()] = dropOffType;
     }
 
     @Override
     public boolean isShapeDistTraveledSet() {
-      return shapeDistTraveled[index] != StopTime.MISSING_VALUE;
+      return shapeDistTraveled[row()] != StopTime.MISSING_VALUE;
     }
 
     @Override
     public double getShapeDistTraveled() {
-      return shapeDistTraveled[index];
+      return shapeDistTraveled[row()];
     }
 
     @Override
     public void setShapeDistTraveled(double shapeDistTraveled) {
-      StopTimeArray.this.shapeDistTraveled[index] = shapeDistTraveled;
+      StopTimeArray.this.shapeDistTraveled[row()] = shapeDistTraveled;
     }
 
     @Override
     public void clearShapeDistTraveled() {
-      shapeDistTraveled[index] = StopTime.MISSING_VALUE;
+      shapeDistTraveled[row()] = StopTime.MISSING_VALUE;
     }
 
     @Override
     public BookingRule getPickupBookingRule() {
-      return pickupBookingRules[index];
+      return pickupBookingRules[row()];
     }
 
     @Override
     public void setPickupBookingRule(BookingRule pickupBookingRule) {
-      pickupBookingRules[index] = pickupBookingRule;
+      pickupBookingRules[row()] = pickupBookingRule;
     }
 
     @Override
     public BookingRule getDropOffBookingRule() {
-      return dropOffBookingRules[index];
+      return dropOffBookingRules[row()];
     }
 
     @Override
     public void setDropOffBookingRule(BookingRule dropOffBookingRule) {
-      dropOffBookingRules[index] = dropOffBookingRule;
+      dropOffBookingRules[row()] = dropOffBookingRule;
     }
 
     @Override
     public double getMeanDurationFactor() {
-      return meanOffsets[index];
+      return meanFactors.getDouble(row());
     }
 
     @Override
     public void setMeanDurationFactor(double meanDurationFactor) {
-      meanFactors[index] = meanDurationFactor;
+      meanFactors.setDouble(row(), meanDurationFactor);
     }
 
     @Override
     public double getMeanDurationOffset() {
-      return meanOffsets[index];
+      return meanOffsets.getDouble(row());
     }
 
     @Override
     public void setMeanDurationOffset(double meanDurationOffset) {
-      meanOffsets[index] = meanDurationOffset;
+      meanOffsets.setDouble(row(), meanDurationOffset);
     }
 
     @Override
     public double getSafeDurationFactor() {
-      return safeFactors[index];
+      return safeFactors.getDouble(row());
     }
 
     @Override
     public void setSafeDurationFactor(double safeDurationFactor) {
-      safeFactors[index] = safeDurationFactor;
+      safeFactors.setDouble(row(), safeDurationFactor);
     }
 
     @Override
     public double getSafeDurationOffset() {
-      return safeOffsets[index];
+      return safeOffsets.getDouble(row());
     }
 
     @Override
     public void setSafeDurationOffset(double safeDurationOffset) {
-      safeOffsets[index] = safeDurationOffset;
+      safeOffsets.setDouble(row(), safeDurationOffset);
     }
 
     @Override
     public String getFreeRunningFlag() {
-      return freeRunningFlags[index];
+      return freeRunningFlags.get(row());
     }
 
     @Override
     public void setFreeRunningFlag(String freeRunningFlag) {
-      freeRunningFlags[index] = freeRunningFlag;
+      freeRunningFlags.set(row(), freeRunningFlag);
+    }
+
+    @Override
+    public Integer getToStopSequence() {
+      return toStopSequences.get(row());
+    }
+
+    @Override
+    public void setToStopSequence(Integer toStopSequence) {
+      toStopSequences.set(row(), toStopSequence);
+    }
+
+    @Override
+    public int getStartPickupDropOffWindow() {
+      return startPickupDropOffWindows.get(row());
+    }
+
+    @Override
+    public void setStartPickupDropOffWindow(int startPickupDropOffWindow) {
+      startPickupDropOffWindows.set(row(), startPickupDropOffWindow);
+    }
+
+    @Override
+    public int getEndPickupDropOffWindow() {
+      return endPickupDropOffWindows.get(row());
+    }
+
+    @Override
+    public void setEndPickupDropOffWindow(int endPickupDropOffWindow) {
+      endPickupDropOffWindows.set(row(), endPickupDropOffWindow);
+    }
+
+    @Override
+    public int getContinuousPickup() {
+      return continuousPickups.get(row());
+    }
+
+    @Override
+    public void setContinuousPickup(int continuousPickup) {
+      continuousPickups.set(row(), continuousPickup);
+    }
+
+    @Override
+    public int getContinuousDropOff() {
+      return continuousDropOffs.get(row());
+    }
+
+    @Override
+    public void setContinuousDropOff(int continuousDropOff) {
+      continuousDropOffs.set(row(), continuousDropOff);
+    }
+
+    @Override
+    public String getFarePeriodId() {
+      return farePeriodIds.get(row());
+    }
+
+    @Override
+    public void setFarePeriodId(String farePeriodId) {
+      farePeriodIds.set(row(), farePeriodId);
+    }
+
+    @Override
+    public double getStartServiceAreaRadius() {
+      return startServiceAreaRadii.getDouble(row());
+    }
+
+    @Override
+    public void setStartServiceAreaRadius(double startServiceAreaRadius) {
+      startServiceAreaRadii.setDouble(row(), startServiceAreaRadius);
+    }
+
+    @Override
+    public double getEndServiceAreaRadius() {
+      return endServiceAreaRadii.getDouble(row());
+    }
+
+    @Override
+    public void setEndServiceAreaRadius(double endServiceAreaRadius) {
+      endServiceAreaRadii.setDouble(row(), endServiceAreaRadius);
+    }
+
+    @Override
+    public int getDepartureBuffer() {
+      return departureBuffers.get(row());
+    }
+
+    @Override
+    public void setDepartureBuffer(int departureBuffer) {
+      departureBuffers.set(row(), departureBuffer);
+    }
+
+    @Override
+    public String getTrack() {
+      return tracks.get(row());
+    }
+
+    @Override
+    public void setTrack(String track) {
+      tracks.set(row(), track);
+    }
+
+    @Override
+    public Note getNote() {
+      return notes.get(row());
+    }
+
+    @Override
+    public void setNote(Note note) {
+      notes.set(row(), note);
+    }
+
+    @Override
+    public Map<Class<?>, Object> getExtensions() {
+      Map<Class<?>, Object> values = extensions.get(row());
+      if (values == null) {
+        return Collections.emptyMap();
+      }
+      return Collections.unmodifiableMap(values);
+    }
+
+    @Override
+    public void putExtension(Class<?> type, Object extension) {
+      int row = row();
+      Map<Class<?>, Object> values = extensions.get(row);
+      if (values == null) {
+        values = new HashMap<Class<?>, Object>();
+        extensions.set(row, values);
+      }
+      values.put(type, extension);
+    }
+
+    /**
+     * @return the current row of this proxy's id, which changes when the
+     *         array is compacted
+     */
+    private int row() {
+      if (layout != ids.getLayout()) {
+        row = ids.isAssigned(id) ? ids.getRow(id) : -1;
+        layout = ids.getLayout();
+      }
+      if (row == -1) {
+        throw new IllegalStateException("stop time " + id
+            + " has been removed");
+      }
+      return row;
     }
   }
 }
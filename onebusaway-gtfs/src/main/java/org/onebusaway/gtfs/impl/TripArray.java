@@ -0,0 +1,678 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Note;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.model.TripProxy;
+
+/**
+ * Stores trips column by column, with the low-cardinality string and id
+ * columns dictionary encoded, and the optional duration columns and the
+ * columns of the feed-specific fields and extensions only allocated once a
+ * trip has a value for them.
+ *
+ * As with {@link StopTimeArray}, the array hands out {@link Trip} proxies
+ * that read and write the columns in place, and keeps no trip objects of its
+ * own: a trip that is added becomes a proxy of its row, and reading a row
+ * creates a new proxy, equal to the others by id. Rows are found by trip id
+ * through a {@link PackedIdIndex}. Adding a trip with the id of a live row
+ * overwrites that row, so proxies of the row see the new values. A removed
+ * row remains readable through existing proxies until the array is
+ * compacted.
+ *
+ * Since other entities reference trips, {@link #setSharingProxies(boolean)}
+ * makes reads hand out a single proxy per row for as long as it is set, such
+ * as while a feed is read, so that those references share it.
+ */
+public class TripArray extends AbstractList<Trip> {
+
+  private final PackedRowIds ids = new PackedRowIds();
+
+  private final PackedIdIndex index = new PackedIdIndex();
+
+  /**
+   * The proxy handed out for each row while proxies are shared, or null
+   */
+  private Trip[] sharedTrips = null;
+
+  private AgencyAndId[] tripIds = new AgencyAndId[0];
+
+  private String[] tripShortNames = new String[0];
+
+  private final DictionaryColumn<Route> routes = DictionaryColumn.byIdentity();
+
+  private final DictionaryColumn<AgencyAndId> serviceIds = DictionaryColumn.byValue();
+
+  private final DictionaryColumn<AgencyAndId> shapeIds = DictionaryColumn.byValue();
+
+  private final DictionaryColumn<String> tripHeadsigns = DictionaryColumn.byValue();
+
+  private final DictionaryColumn<String> directionIds = DictionaryColumn.byValue();
+
+  private final DictionaryColumn<String> blockIds = DictionaryColumn.byValue();
+
+  private int[] wheelchairAccessible = new int[0];
+
+  private int[] bikesAllowed = new int[0];
+
+  private int[] carsAllowed = new int[0];
+
+  private final OptionalDoubleColumn meanDurationFactors = new OptionalDoubleColumn();
+
+  private final OptionalDoubleColumn meanDurationOffsets = new OptionalDoubleColumn();
+
+  private final OptionalDoubleColumn safeDurationFactors = new OptionalDoubleColumn();
+
+  private final OptionalDoubleColumn safeDurationOffsets = new OptionalDoubleColumn();
+
+  private final SparseColumn<Note> notes = new SparseColumn<>();
+
+  private final SparseIntColumn peakOffpeaks = new SparseIntColumn(0);
+
+  private final SparseColumn<String> mtaTripIds = new SparseColumn<>();
+
+  private final SparseIntColumn boardingTypes = new SparseIntColumn(0);
+
+  private final SparseColumn<Map<Class<?>, Object>> extensions = new SparseColumn<>();
+
+  public void trimToSize() {
+    compact();
+    setLength(ids.getLength());
+    ids.trimToSize();
+    index.rebuild(tripIds, ids);
+  }
+
+  /**
+   * Reclaims the rows of removed trips, moving the remaining rows down while
+   * keeping their ids.
+   */
+  public void compact() {
+    if (ids.getRemovedCount() == 0)
+      return;
+    int[] order = ids.getLiveRows();
+    reorder(order, order.length);
+  }
+
+  /**
+   * While set, each row is handed out as the same proxy, which is the trip
+   * that was added for the row if there was one. Clearing it drops those
+   * proxies, and reads create a new proxy each time again.
+   */
+  public void setSharingProxies(boolean sharingProxies) {
+    sharedTrips = sharingProxies ? new Trip[tripIds.length] : null;
+  }
+
+  /**
+   * @return the trip with the specified id, or null if there is none
+   */
+  public Trip getForId(AgencyAndId tripId) {
+    int row = index.get(tripId, tripIds, ids);
+    return row == -1 ? null : getProxy(row);
+  }
+
+  /**
+   * @return true if there was a trip with the specified id, whose row is
+   *         removed
+   */
+  public boolean removeForId(AgencyAndId tripId) {
+    int row = index.get(tripId, tripIds, ids);
+    return row != -1 && ids.remove(ids.getId(row));
+  }
+
+  /**
+   * @return true if the specified trip is a proxy of a live row of this array
+   */
+  public boolean isStored(Trip trip) {
+    TripProxy proxy = trip.getProxy();
+    if (!(proxy instanceof TripProxyImpl)) {
+      return false;
+    }
+    TripProxyImpl impl = (TripProxyImpl) proxy;
+    return impl.getArray() == this && ids.getLiveRow(impl.id) != -1;
+  }
+
+  /**
+   * @return the number of slots of the index of rows by trip id
+   */
+  int getIdIndexCapacity() {
+    return index.getCapacity();
+  }
+
+  /****
+   * {@link List} Interface
+   ****/
+
+  /**
+   * Stores the values of the specified trip in the row of the live trip with
+   * the same id, or else in a new row. A trip that is not already a proxy
+   * becomes a proxy of the row, its own fields cleared.
+   */
+  @Override
+  public boolean add(Trip trip) {
+    int row = index.get(trip.getId(), tripIds, ids);
+    if (row == -1) {
+      if (ids.getLength() == tripIds.length && ids.isCompactionDue()) {
+        compact();
+      }
+      row = ids.addRow();
+      ensureCapacity(row + 1);
+      tripIds[row] = trip.getId();
+      if (tripIds[row] != null) {
+        index.put(tripIds[row], row, tripIds, ids);
+      }
+    }
+    tripShortNames[row] = trip.getTripShortName();
+    routes.set(row, trip.getRoute());
+    serviceIds.set(row, trip.getServiceId());
+    shapeIds.set(row, trip.getShapeId());
+    tripHeadsigns.set(row, trip.getTripHeadsign());
+    directionIds.set(row, trip.getDirectionId());
+    blockIds.set(row, trip.getBlockId());
+    wheelchairAccessible[row] = trip.getWheelchairAccessible();
+    bikesAllowed[row] = trip.getBikesAllowed();
+    carsAllowed[row] = trip.getCarsAllowed();
+    meanDurationFactors.set(row, trip.getMeanDurationFactor());
+    meanDurationOffsets.set(row, trip.getMeanDurationOffset());
+    safeDurationFactors.set(row, trip.getSafeDurationFactor());
+    safeDurationOffsets.set(row, trip.getSafeDurationOffset());
+    notes.set(row, trip.getNote());
+    peakOffpeaks.set(row, trip.getPeakOffpeak());
+    mtaTripIds.set(row, trip.getMtaTripId());
+    boardingTypes.set(row, trip.getBoardingType());
+    Map<Class<?>, Object> tripExtensions = trip.getExtensions();
+    extensions.set(row, tripExtensions.isEmpty() ? null
+        : new HashMap<Class<?>, Object>(tripExtensions));
+
+    if (trip.getProxy() == null) {
+      clearFields(trip);
+      trip.setProxy(new TripProxyImpl(ids.getId(row), row));
+      if (sharedTrips != null) {
+        sharedTrips[row] = trip;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (!(o instanceof Trip)) {
+      return false;
+    }
+    AgencyAndId id = ((Trip) o).getId();
+    return id != null && removeForId(id);
+  }
+
+  @Override
+  public void clear() {
+    ids.clear();
+    index.clear();
+    routes.clear();
+    serviceIds.clear();
+    shapeIds.clear();
+    tripHeadsigns.clear();
+    directionIds.clear();
+    blockIds.clear();
+    meanDurationFactors.clear();
+    meanDurationOffsets.clear();
+    safeDurationFactors.clear();
+    safeDurationOffsets.clear();
+    notes.clear();
+    peakOffpeaks.clear();
+    mtaTripIds.clear();
+    boardingTypes.clear();
+    extensions.clear();
+    setLength(0);
+    modCount++;
+  }
+
+  @Override
+  public Iterator<Trip> iterator() {
+    return new TripIterator();
+  }
+
+  @Override
+  public Trip get(int index) {
+    if (index < 0 || index >= ids.size()) {
+      throw new NoSuchElementException();
+    }
+    compact();
+    return getProxy(index);
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Reads may come from several threads at once, as when a feed is read in
+   * parallel, so handing out shared proxies is synchronized.
+   */
+  private Trip getProxy(int row) {
+    if (sharedTrips == null) {
+      return createProxy(row);
+    }
+    synchronized (this) {
+      Trip trip = sharedTrips[row];
+      if (trip == null) {
+        trip = createProxy(row);
+        sharedTrips[row] = trip;
+      }
+      return trip;
+    }
+  }
+
+  private Trip createProxy(int row) {
+    Trip trip = new Trip();
+    trip.setProxy(new TripProxyImpl(ids.getId(row), row));
+    return trip;
+  }
+
+  /**
+   * Releases the values held by the fields of a trip that is about to be
+   * proxied, since they are stored in the columns from then on. The trip's
+   * own extensions are left in place, as they are only reachable through the
+   * proxy once it is set.
+   */
+  private static void clearFields(Trip trip) {
+    trip.setId(null);
+    trip.setRoute(null);
+    trip.setServiceId(null);
+    trip.setTripShortName(null);
+    trip.setTripHeadsign(null);
+    trip.setDirectionId(null);
+    trip.setBlockId(null);
+    trip.setShapeId(null);
+    trip.setMeanDurationFactor(null);
+    trip.setMeanDurationOffset(null);
+    trip.setSafeDurationFactor(null);
+    trip.setSafeDurationOffset(null);
+    trip.setNote(null);
+    trip.setPeakOffpeak(0);
+    trip.setMtaTripId(null);
+    trip.setBoardingType(0);
+  }
+
+  /**
+   * Moves the rows so that the new row i is the old row order[i], dropping any
+   * row that is not listed.
+   */
+  private void reorder(int[] order, int count) {
+    if (this.sharedTrips != null) {
+      this.sharedTrips = StopTimeArray.reorder(this.sharedTrips, order, count);
+    }
+    this.tripIds = StopTimeArray.reorder(this.tripIds, order, count);
+    this.tripShortNames = StopTimeArray.reorder(this.tripShortNames, order,
+        count);
+    routes.reorder(order, count);
+    serviceIds.reorder(order, count);
+    shapeIds.reorder(order, count);
+    tripHeadsigns.reorder(order, count);
+    directionIds.reorder(order, count);
+    blockIds.reorder(order, count);
+    this.wheelchairAccessible = StopTimeArray.reorder(
+        this.wheelchairAccessible, order, count);
+    this.bikesAllowed = StopTimeArray.reorder(this.bikesAllowed, order, count);
+    this.carsAllowed = StopTimeArray.reorder(this.carsAllowed, order, count);
+    meanDurationFactors.reorder(order, count);
+    meanDurationOffsets.reorder(order, count);
+    safeDurationFactors.reorder(order, count);
+    safeDurationOffsets.reorder(order, count);
+    notes.reorder(order, count);
+    peakOffpeaks.reorder(order, count);
+    mtaTripIds.reorder(order, count);
+    boardingTypes.reorder(order, count);
+    extensions.reorder(order, count);
+    ids.reorder(order, count);
+    index.rebuild(tripIds, ids);
+    modCount++;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (tripIds.length < capacity) {
+      int newLength = Math.max(8, tripIds.length << 2);
+      setLength(newLength);
+    }
+  }
+
+  private void setLength(int newLength) {
+    if (this.sharedTrips != null) {
+      this.sharedTrips = Arrays.copyOf(this.sharedTrips, newLength);
+    }
+    this.tripIds = Arrays.copyOf(this.tripIds, newLength);
+    this.tripShortNames = Arrays.copyOf(this.tripShortNames, newLength);
+    routes.setLength(newLength);
+    serviceIds.setLength(newLength);
+    shapeIds.setLength(newLength);
+    tripHeadsigns.setLength(newLength);
+    directionIds.setLength(newLength);
+    blockIds.setLength(newLength);
+    this.wheelchairAccessible = Arrays.copyOf(this.wheelchairAccessible,
+        newLength);
+    this.bikesAllowed = Arrays.copyOf(this.bikesAllowed, newLength);
+    this.carsAllowed = Arrays.copyOf(this.carsAllowed, newLength);
+    meanDurationFactors.setLength(newLength);
+    meanDurationOffsets.setLength(newLength);
+    safeDurationFactors.setLength(newLength);
+    safeDurationOffsets.setLength(newLength);
+    notes.setLength(newLength);
+    peakOffpeaks.setLength(newLength);
+    mtaTripIds.setLength(newLength);
+    boardingTypes.setLength(newLength);
+    extensions.setLength(newLength);
+  }
+
+  private class TripIterator implements Iterator<Trip> {
+
+    private int row = ids.nextLiveRow(0);
+
+    private int lastRow = -1;
+
+    private final int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return row < ids.getLength();
+    }
+
+    @Override
+    public Trip next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      lastRow = row;
+      row = ids.nextLiveRow(row + 1);
+      return getProxy(lastRow);
+    }
+
+    @Override
+    public void remove() {
+      if (lastRow == -1) {
+        throw new IllegalStateException();
+      }
+      ids.remove(ids.getId(lastRow));
+      lastRow = -1;
+    }
+  }
+
+  private class TripProxyImpl implements TripProxy {
+
+    private final int id;
+
+    private int row;
+
+    private int layout;
+
+    public TripProxyImpl(int id, int row) {
+      this.id = id;
+      this.row = row;
+      this.layout = ids.getLayout();
+    }
+
+    public TripArray getArray() {
+      return TripArray.this;
+    }
+
+    @Override
+    public AgencyAndId getId() {
+      return tripIds[row()];
+    }
+
+    /**
+     * Also re-keys the trip, so that it is found by its new id from then on.
+     */
+    @Override
+    public void setId(AgencyAndId tripId) {
+      int row = row();
+      tripIds[row] = tripId;
+      if (tripId != null) {
+        index.put(tripId, row, tripIds, ids);
+      }
+    }
+
+    @Override
+    public Route getRoute() {
+      return routes.get(row());
+    }
+
+    @Override
+    public void setRoute(Route route) {
+      routes.set(row(), route);
+    }
+
+    @Override
+    public AgencyAndId getServiceId() {
+      return serviceIds.get(row());
+    }
+
+    @Override
+    public void setServiceId(AgencyAndId serviceId) {
+      serviceIds.set(row(), serviceId);
+    }
+
+    @Override
+    public String getTripShortName() {
+      return tripShortNames[row()];
+    }
+
+    @Override
+    public void setTripShortName(String tripShortName) {
+      tripShortNames[row()] = tripShortName;
+    }
+
+    @Override
+    public String getTripHeadsign() {
+      return tripHeadsigns.get(row());
+    }
+
+    @Override
+    public void setTripHeadsign(String tripHeadsign) {
+      tripHeadsigns.set(row(), tripHeadsign);
+    }
+
+    @Override
+    public String getDirectionId() {
+      return directionIds.get(row());
+    }
+
+    @Override
+    public void setDirectionId(String directionId) {
+      directionIds.set(row(), directionId);
+    }
+
+    @Override
+    public String getBlockId() {
+      return blockIds.get(row());
+    }
+
+    @Override
+    public void setBlockId(String blockId) {
+      blockIds.set(row(), blockId);
+    }
+
+    @Override
+    public AgencyAndId getShapeId() {
+      return shapeIds.get(row());
+    }
+
+    @Override
+    public void setShapeId(AgencyAndId shapeId) {
+      shapeIds.set(row(), shapeId);
+    }
+
+    @Override
+    public int getWheelchairAccessible() {
+      return wheelchairAccessible[row()];
+    }
+
+    @Override
+    public void setWheelchairAccessible(int wheelchairAccessible) {
+      TripArray.this.wheelchairAccessible[row()] = wheelchairAccessible;
+    }
+
+    @Override
+    public int getBikesAllowed() {
+      return bikesAllowed[row()];
+    }
+
+    @Override
+    public void setBikesAllowed(int bikesAllowed) {
+      TripArray.this.bikesAllowed[row()] = bikesAllowed;
+    }
+
+    @Override
+    public int getCarsAllowed() {
+      return carsAllowed[row()];
+    }
+
+    @Override
+    public void setCarsAllowed(int carsAllowed) {
+      TripArray.this.carsAllowed[row()] = carsAllowed;
+    }
+
+    @Override
+    public Double getMeanDurationFactor() {
+      return meanDurationFactors.get(row());
+    }
+
+    @Override
+    public void setMeanDurationFactor(Double meanDurationFactor) {
+      meanDurationFactors.set(row(), meanDurationFactor);
+    }
+
+    @Override
+    public Double getMeanDurationOffset() {
+      return meanDurationOffsets.get(row());
+    }
+
+    @Override
+    public void setMeanDurationOffset(Double meanDurationOffset) {
+      meanDurationOffsets.set(row(), meanDurationOffset);
+    }
+
+    @Override
+    public Double getSafeDurationFactor() {
+      return safeDurationFactors.get(row());
+    }
+
+    @Override
+    public void setSafeDurationFactor(Double safeDurationFactor) {
+      safeDurationFactors.set(row(), safeDurationFactor);
+    }
+
+    @Override
+    public Double getSafeDurationOffset() {
+      return safeDurationOffsets.get(row());
+    }
+
+    @Override
+    public void setSafeDurationOffset(Double safeDurationOffset) {
+      safeDurationOffsets.set(row(), safeDurationOffset);
+    }
+
+    @Override
+    public Note getNote() {
+      return notes.get(row());
+    }
+
+    @Override
+    public void setNote(Note note) {
+      notes.set(row(), note);
+    }
+
+    @Override
+    public int getPeakOffpeak() {
+      return peakOffpeaks.get(row());
+    }
+
+    @Override
+    public void setPeakOffpeak(int peakOffpeak) {
+      peakOffpeaks.set(row(), peakOffpeak);
+    }
+
+    @Override
+    public String getMtaTripId() {
+      return mtaTripIds.get(row());
+    }
+
+    @Override
+    public void setMtaTripId(String mtaTripId) {
+      mtaTripIds.set(row(), mtaTripId);
+    }
+
+    @Override
+    public int getBoardingType() {
+      return boardingTypes.get(row());
+    }
+
+    @Override
+    public void setBoardingType(int boardingType) {
+      boardingTypes.set(row(), boardingType);
+    }
+
+    @Override
+    public Map<Class<?>, Object> getExtensions() {
+      Map<Class<?>, Object> values = extensions.get(row());
+      if (values == null) {
+        return Collections.emptyMap();
+      }
+      return Collections.unmodifiableMap(values);
+    }
+
+    @Override
+    public void putExtension(Class<?> type, Object extension) {
+      int row = row();
+      Map<Class<?>, Object> values = extensions.get(row);
+      if (values == null) {
+        values = new HashMap<Class<?>, Object>();
+        extensions.set(row, values);
+      }
+      values.put(type, extension);
+    }
+
+  
+    private int row() {
+      if (layout != ids.getLayout()) {
+        row = ids.isAssigned(id) ? ids.getRow(id) : -1;
+        layout = ids.getLayout();
+      }
+      if (row == -1) {
+        throw new IllegalStateException("trip " + id + " has been removed");
+      }
+      return row;
+    }
+  }
+}
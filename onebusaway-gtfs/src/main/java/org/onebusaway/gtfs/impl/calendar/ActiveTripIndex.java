@@ -0,0 +1,428 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl.calendar;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.model.calendar.CalendarServiceData;
+import org.onebusaway.gtfs.model.calendar.ServiceDate;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
+
+/**
+ * The trips active on each service date of a feed, precomputed from the
+ * service dates of a {@link CalendarServiceData} and the trips of a
+ * {@link GtfsRelationalDao}, so that the trips of a date, or of a range of
+ * dates, are found without going through their service ids.
+ * 
+ * Trips are numbered densely in the order of their ids, and the trips of each
+ * day from the first to the last service date of the feed, and those of each
+ * route, are kept as {@link BitSet}s of trip indices. Each distinct set of
+ * active services has one bitset, shared by every day it is active on, so a
+ * calendar that runs for decades costs a reference per day rather than a
+ * bitset per day, in memory and when written. Queries return new
+ * bitsets, which can be combined with {@link BitSet#and(BitSet)} and
+ * {@link BitSet#or(BitSet)}, as in
+ * 
+ * <pre>
+ * BitSet trips = index.getTripsActiveOnAnyDate(monday, sunday);
+ * trips.and(index.getTripsForRoute(routeId));
+ * </pre>
+ * 
+ * for the trips of a route that run at some point in a week. The index can be
+ * written next to a feed with {@link #write(OutputStream)} and read back with
+ * {@link #read(InputStream)}. It cannot be modified once built, and can be
+ * read by any number of threads.
+ */
+public final class ActiveTripIndex {
+
+  private static final byte[] MAGIC = {'O', 'B', 'A', 'T', 'R', 'I', 'P', 0};
+
+  private static final int VERSION = 2;
+
+  /**
+   * The trip ids, in ascending order, by trip index
+   */
+  private final AgencyAndId[] tripIds;
+
+  /**
+   * The route ids, in ascending order
+   */
+  private final AgencyAndId[] routeIds;
+
+  /**
+   * The trips of each route
+   */
+  private final BitSet[] tripsByRoute;
+
+  /**
+   * The day of {@link #tripsByDay}[0], as days since 1970-01-01
+   */
+  private final long firstDay;
+
+  /**
+   * The trips active on each day from the first day on, or null for none.
+   * Days with the same active services share the same bitset.
+   */
+  private final BitSet[] tripsByDay;
+
+  private ActiveTripIndex(AgencyAndId[] tripIds, AgencyAndId[] routeIds,
+      BitSet[] tripsByRoute, long firstDay, BitSet[] tripsByDay) {
+    this.tripIds = tripIds;
+    this.routeIds = routeIds;
+    this.tripsByRoute = tripsByRoute;
+    this.firstDay = firstDay;
+    this.tripsByDay = tripsByDay;
+  }
+
+  /**
+   * @param dao the trips, with their routes and service ids
+   * @param data the service dates of the service ids of the trips
+   */
+  public static ActiveTripIndex create(GtfsRelationalDao dao,
+      CalendarServiceData data) {
+
+    List<Trip> trips = new ArrayList<Trip>(dao.getAllTrips());
+    trips.sort((a, b) -> a.getId().compareTo(b.getId()));
+    AgencyAndId[] tripIds = new AgencyAndId[trips.size()];
+
+    Map<AgencyAndId, BitSet> tripsByServiceId = new HashMap<AgencyAndId, BitSet>();
+    Map<AgencyAndId, BitSet> tripsByRouteId = new HashMap<AgencyAndId, BitSet>();
+    for (int i = 0; i < tripIds.length; i++) {
+      Trip trip = trips.get(i);
+      tripIds[i] = trip.getId();
+      if (trip.getServiceId() != null)
+        tripsByServiceId.computeIfAbsent(trip.getServiceId(),
+            id -> new BitSet()).set(i);
+      if (trip.getRoute() != null)
+        tripsByRouteId.computeIfAbsent(trip.getRoute().getId(),
+            id -> new BitSet()).set(i);
+    }
+
+    AgencyAndId[] routeIds = tripsByRouteId.keySet().toArray(
+        new AgencyAndId[0]);
+    Arrays.sort(routeIds);
+    BitSet[] tripsByRoute = new BitSet[routeIds.length];
+    for (int i = 0; i < routeIds.length; i++)
+      tripsByRoute[i] = tripsByRouteId.get(routeIds[i]);
+
+    Map<AgencyAndId, List<ServiceDate>> datesByServiceId = new HashMap<AgencyAndId, List<ServiceDate>>();
+    long firstDay = Long.MAX_VALUE;
+    long lastDay = Long.MIN_VALUE;
+    for (AgencyAndId serviceId : tripsByServiceId.keySet()) {
+      List<ServiceDate> dates = data.getServiceDatesForServiceId(serviceId);
+      if (dates == null || dates.isEmpty())
+        continue;
+      datesByServiceId.put(serviceId, dates);
+      firstDay = Math.min(firstDay, dates.get(0).getAsEpochDay());
+      lastDay = Math.max(lastDay, dates.get(dates.size() - 1).getAsEpochDay());
+    }
+    if (firstDay > lastDay) {
+      firstDay = 0;
+      lastDay = -1;
+    }
+
+    List<AgencyAndId> serviceIds = new ArrayList<AgencyAndId>(
+        datesByServiceId.keySet());
+    BitSet[] servicesByDay = new BitSet[Math.toIntExact(lastDay - firstDay + 1)];
+    for (int i = 0; i < serviceIds.size(); i++) {
+      for (ServiceDate date : datesByServiceId.get(serviceIds.get(i))) {
+        int index = (int) (date.getAsEpochDay() - firstDay);
+        if (servicesByDay[index] == null)
+          servicesByDay[index] = new BitSet();
+        servicesByDay[index].set(i);
+      }
+    }
+
+    /**
+     * Days with the same active services share the same trips, and as feeds
+     * repeat a few weekly patterns, often for decades, there are far fewer
+     * distinct sets of trips than days
+     */
+    Map<BitSet, BitSet> tripsByServices = new HashMap<BitSet, BitSet>();
+    BitSet[] tripsByDay = new BitSet[servicesByDay.length];
+    for (int i = 0; i < servicesByDay.length; i++) {
+      BitSet services = servicesByDay[i];
+      if (services == null)
+        continue;
+      BitSet dayTrips = tripsByServices.get(services);
+      if (dayTrips == null) {
+        dayTrips = new BitSet();
+        for (int j = services.nextSetBit(0); j >= 0; j = services.nextSetBit(j + 1))
+          dayTrips.or(tripsByServiceId.get(serviceIds.get(j)));
+        tripsByServices.put(services, dayTrips);
+      }
+      tripsByDay[i] = dayTrips;
+    }
+
+    return new ActiveTripIndex(tripIds, routeIds, tripsByRoute, firstDay,
+        tripsByDay);
+  }
+
+  public int getTripCount() {
+    return tripIds.length;
+  }
+
+  /**
+   * @return the trip id of the trip index
+   */
+  public AgencyAndId getTripId(int tripIndex) {
+    return tripIds[tripIndex];
+  }
+
+  /**
+   * @return the trip index of the trip id, or -1 if the trip is not indexed
+   */
+  public int getTripIndex(AgencyAndId tripId) {
+    int index = Arrays.binarySearch(tripIds, tripId);
+    return index < 0 ? -1 : index;
+  }
+
+  /**
+   * @return the trip ids of the trip indices, in ascending order
+   */
+  public List<AgencyAndId> getTripIds(BitSet trips) {
+    List<AgencyAndId> result = new ArrayList<AgencyAndId>(trips.cardinality());
+    for (int i = trips.nextSetBit(0); i >= 0 && i < tripIds.length; i = trips.nextSetBit(i + 1))
+      result.add(tripIds[i]);
+    return result;
+  }
+
+  /**
+   * @return the first service date with active trips, or null if there is none
+   */
+  public ServiceDate getFirstServiceDate() {
+    if (tripsByDay.length == 0)
+      return null;
+    return ServiceDate.ofEpochDay(firstDay);
+  }
+
+  /**
+   * @return the last service date with active trips, or null if there is none
+   */
+  public ServiceDate getLastServiceDate() {
+    if (tripsByDay.length == 0)
+      return null;
+    return ServiceDate.ofEpochDay(firstDay + tripsByDay.length - 1);
+  }
+
+  /**
+   * @return the trips of the route, or an empty set if the route has none
+   */
+  public BitSet getTripsForRoute(AgencyAndId routeId) {
+    int index = Arrays.binarySearch(routeIds, routeId);
+    if (index < 0)
+      return new BitSet();
+    return (BitSet) tripsByRoute[index].clone();
+  }
+
+  /**
+   * @return the trips active on the service date
+   */
+  public BitSet getActiveTrips(ServiceDate date) {
+    BitSet trips = getTripsForDay(date.getAsEpochDay());
+    return trips == null ? new BitSet() : (BitSet) trips.clone();
+  }
+
+  public boolean isTripActive(AgencyAndId tripId, ServiceDate date) {
+    int tripIndex = getTripIndex(tripId);
+    BitSet trips = getTripsForDay(date.getAsEpochDay());
+    return tripIndex != -1 && trips != null && trips.get(tripIndex);
+  }
+
+  /**
+   * @return the trips active on at least one of the service dates from
+   *         {@code from} to {@code to}, inclusive
+   */
+  public BitSet getTripsActiveOnAnyDate(ServiceDate from, ServiceDate to) {
+    BitSet result = new BitSet();
+    long fromDay = Math.max(from.getAsEpochDay(), firstDay);
+    long toDay = Math.min(to.getAsEpochDay(), firstDay + tripsByDay.length - 1);
+    Set<BitSet> seen = Collections.newSetFromMap(new IdentityHashMap<BitSet, Boolean>());
+    for (long day = fromDay; day <= toDay; day++) {
+      BitSet trips = tripsByDay[(int) (day - firstDay)];
+      if (trips != null && seen.add(trips))
+        result.or(trips);
+    }
+    return result;
+  }
+
+  /**
+   * @return the trips active on every one of the service dates from
+   *         {@code from} to {@code to}, inclusive, which is every trip if the
+   *         range is empty
+   */
+  public BitSet getTripsActiveOnEveryDate(ServiceDate from, ServiceDate to) {
+    BitSet result = new BitSet();
+    result.set(0, tripIds.length);
+    BitSet previous = null;
+    for (long day = from.getAsEpochDay(); day <= to.getAsEpochDay() && !result.isEmpty(); day++) {
+      BitSet trips = getTripsForDay(day);
+      if (trips == null)
+        return new BitSet();
+      if (trips != previous)
+        result.and(trips);
+      previous = trips;
+    }
+    return result;
+  }
+
+  /****
+   * Persistence
+   ****/
+
+  /**
+   * Writes the index, followed by a CRC32C of it. The stream is not closed.
+   */
+  public void write(OutputStream out) throws IOException {
+    CheckedOutputStream checked = new CheckedOutputStream(
+        new BufferedOutputStream(out), new CRC32C());
+    DataOutputStream data = new DataOutputStream(checked);
+    data.write(MAGIC);
+    data.writeInt(VERSION);
+    writeIds(data, tripIds);
+    writeIds(data, routeIds);
+    for (BitSet trips : tripsByRoute)
+      writeBitSet(data, trips);
+    Map<BitSet, Integer> tripSetIndices = new IdentityHashMap<BitSet, Integer>();
+    for (BitSet trips : tripsByDay) {
+      if (trips != null && !tripSetIndices.containsKey(trips))
+        tripSetIndices.put(trips, tripSetIndices.size());
+    }
+    BitSet[] tripSets = new BitSet[tripSetIndices.size()];
+    for (Map.Entry<BitSet, Integer> entry : tripSetIndices.entrySet())
+      tripSets[entry.getValue()] = entry.getKey();
+    data.writeInt(tripSets.length);
+    for (BitSet trips : tripSets)
+      writeBitSet(data, trips);
+    data.writeLong(firstDay);
+    data.writeInt(tripsByDay.length);
+    for (BitSet trips : tripsByDay)
+      data.writeInt(trips == null ? -1 : tripSetIndices.get(trips));
+    data.flush();
+    data.writeLong(checked.getChecksum().getValue());
+    data.flush();
+  }
+
+  /**
+   * Reads an index written by {@link #write(OutputStream)}, and nothing after
+   * it. The stream is not closed.
+   * 
+   * @param in the stream, which should be buffered
+   * @throws IOException if the stream does not hold an index of this version,
+   *           or its checksum does not match
+   */
+  public static ActiveTripIndex read(InputStream in) throws IOException {
+    CheckedInputStream checked = new CheckedInputStream(in, new CRC32C());
+    DataInputStream data = new DataInputStream(checked);
+
+    byte[] magic = new byte[MAGIC.length];
+    data.readFully(magic);
+    if (!Arrays.equals(magic, MAGIC))
+      throw new IOException("not an active trip index");
+    int version = data.readInt();
+    if (version != VERSION)
+      throw new IOException("unsupported active trip index version "
+          + version + ", expected " + VERSION);
+
+    AgencyAndId[] tripIds = readIds(data);
+    AgencyAndId[] routeIds = readIds(data);
+    BitSet[] tripsByRoute = new BitSet[routeIds.length];
+    for (int i = 0; i < routeIds.length; i++)
+      tripsByRoute[i] = readBitSet(data);
+    BitSet[] tripSets = new BitSet[data.readInt()];
+    for (int i = 0; i < tripSets.length; i++)
+      tripSets[i] = readBitSet(data);
+    long firstDay = data.readLong();
+    BitSet[] tripsByDay = new BitSet[data.readInt()];
+    for (int i = 0; i < tripsByDay.length; i++) {
+      int index = data.readInt();
+      if (index < -1 || index >= tripSets.length)
+        throw new IOException("invalid trip set index " + index);
+      tripsByDay[i] = index == -1 ? null : tripSets[index];
+    }
+
+    long expected = checked.getChecksum().getValue();
+    long checksum = data.readLong();
+    if (checksum != expected)
+      throw new IOException("active trip index checksum mismatch: "
+          + Long.toHexString(checksum) + " != " + Long.toHexString(expected));
+
+    return new ActiveTripIndex(tripIds, routeIds, tripsByRoute, firstDay,
+        tripsByDay);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private BitSet getTripsForDay(long day) {
+    long index = day - firstDay;
+    if (index < 0 || index >= tripsByDay.length)
+      return null;
+    return tripsByDay[(int) index];
+  }
+
+  private static void writeIds(DataOutputStream data, AgencyAndId[] ids)
+      throws IOException {
+    data.writeInt(ids.length);
+    for (AgencyAndId id : ids) {
+      data.writeUTF(id.getAgencyId());
+      data.writeUTF(id.getId());
+    }
+  }
+
+  private static AgencyAndId[] readIds(DataInputStream data)
+      throws IOException {
+    AgencyAndId[] ids = new AgencyAndId[data.readInt()];
+    for (int i = 0; i < ids.length; i++)
+      ids[i] = new AgencyAndId(data.readUTF(), data.readUTF());
+    return ids;
+  }
+
+  private static void writeBitSet(DataOutputStream data, BitSet bits)
+      throws IOException {
+    long[] words = bits.toLongArray();
+    data.writeInt(words.length);
+    for (long word : words)
+      data.writeLong(word);
+  }
+
+  private static BitSet readBitSet(DataInputStream data) throws IOException {
+    long[] words = new long[data.readInt()];
+    for (int i = 0; i < words.length; i++)
+      words[i] = data.readLong();
+    return BitSet.valueOf(words);
+  }
+}
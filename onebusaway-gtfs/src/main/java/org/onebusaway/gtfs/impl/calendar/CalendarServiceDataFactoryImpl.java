@@ -17,7 +17,17 @@
  */
 package org.onebusaway.gtfs.impl.calendar;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
@@ -44,12 +54,21 @@ import org.slf4j.LoggerFactory;
 public class CalendarServiceDataFactoryImpl implements
         CalendarServiceDataFactory {
 
+  private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+  /**
+   * Fewer service ids than this per thread are not worth the threads
+   */
+  private static final int MIN_SERVICE_IDS_PER_TASK = 256;
+
   private final Logger _log = LoggerFactory.getLogger(CalendarServiceDataFactoryImpl.class);
 
   private GtfsRelationalDao _dao;
 
   private int _excludeFutureServiceDatesInDays;
 
+  private int _parallelism = 1;
+
   public static CalendarService createService(GtfsRelationalDao dao) {
     CalendarServiceDataFactoryImpl factory = new CalendarServiceDataFactoryImpl(
             dao);
@@ -73,6 +92,19 @@ public class CalendarServiceDataFactoryImpl implements
     _excludeFutureServiceDatesInDays = excludeFutureServiceDatesInDays;
   }
 
+  /**
+   * @param parallelism the largest number of threads to compute the service
+   *          dates of service ids on. The dao is only read on the calling
+   *          thread.
+   */
+  public void setParallelism(int parallelism) {
+    _parallelism = parallelism;
+  }
+
+  public int getParallelism() {
+    return _parallelism;
+  }
+
   @Override
   public CalendarServiceData createData() {
 
@@ -117,71 +149,139 @@ public class CalendarServiceDataFactoryImpl implements
 
     List<AgencyAndId> serviceIds = _dao.getAllServiceIds();
 
-    int index = 0;
-
+    /**
+     * The dao is only read on this thread, as it need not be safe for
+     * concurrent readers
+     */
+    List<ServiceCalendar> calendars = new ArrayList<ServiceCalendar>(serviceIds.size());
+    List<List<ServiceCalendarDate>> calendarDates = new ArrayList<List<ServiceCalendarDate>>(serviceIds.size());
     for (AgencyAndId serviceId : serviceIds) {
+      calendars.add(_dao.getCalendarForServiceId(serviceId));
+      calendarDates.add(_dao.getCalendarDatesForServiceId(serviceId));
+    }
 
-      index++;
-
-      _log.info("serviceId=" + serviceId + " (" + index + "/"
-              + serviceIds.size() + ")");
-
-      TimeZone serviceIdTimeZone = data.getTimeZoneForAgencyId(serviceId.getAgencyId());
-      if (serviceIdTimeZone == null) {
-        serviceIdTimeZone = TimeZone.getDefault();
-      }
+    int lastDay = getLastServiceDay();
+    int[][] daysByServiceId = new int[serviceIds.size()][];
+    runInParallel(serviceIds.size(), i -> daysByServiceId[i] = getServiceDays(
+            calendars.get(i), calendarDates.get(i), lastDay));
 
-      Set<ServiceDate> activeDates = getServiceDatesForServiceId(serviceId,
-              serviceIdTimeZone);
+    LocalizedMidnights midnights = new LocalizedMidnights(daysByServiceId);
 
-      List<ServiceDate> serviceDates = new ArrayList<ServiceDate>(activeDates);
-      Collections.sort(serviceDates);
+    for (int i = 0; i < serviceIds.size(); i++) {
+      AgencyAndId serviceId = serviceIds.get(i);
+      putServiceDays(data, serviceId, daysByServiceId[i],
+              tripAgencyIdsReferencingServiceId.get(serviceId),
+              timeZoneMapByAgencyId::get, midnights);
+    }
 
-      data.putServiceDatesForServiceId(serviceId, serviceDates);
+    _log.info("computed service dates of " + serviceIds.size()
+            + " service ids");
 
-      List<String> tripAgencyIds = tripAgencyIdsReferencingServiceId.get(serviceId);
+    return data;
+  }
 
-      Set<TimeZone> timeZones = new HashSet<TimeZone>();
-      for (String tripAgencyId : tripAgencyIds) {
-        TimeZone timeZone = timeZoneMapByAgencyId.get(tripAgencyId);
-        if (timeZone == null) {
-          throw new IllegalStateException("no timezone for agency " + tripAgencyId);
-        }
-        timeZones.add(timeZone);
+  /**
+   * Only the service dates of the specified service ids, and of their
+   * localized service ids, are computed, from the calendars and calendar
+   * dates of the dao, and the days on which they are active are updated in
+   * place of rebuilding the services active on every day. The time zones of
+   * agencies are those of the data, so a change of agencies needs
+   * {@link #createData()}.
+   */
+  @Override
+  public CalendarServiceData updateData(CalendarServiceData data,
+                                        Collection<AgencyAndId> serviceIds) {
+
+    CalendarServiceData updated = new CalendarServiceData(data);
+
+    List<AgencyAndId> activeServiceIds = new ArrayList<AgencyAndId>();
+    List<AgencyAndId> removedServiceIds = new ArrayList<AgencyAndId>();
+    List<int[]> daysByServiceId = new ArrayList<int[]>();
+    int lastDay = getLastServiceDay();
+    for (AgencyAndId serviceId : new LinkedHashSet<AgencyAndId>(serviceIds)) {
+      ServiceCalendar calendar = _dao.getCalendarForServiceId(serviceId);
+      List<ServiceCalendarDate> calendarDates = _dao.getCalendarDatesForServiceId(serviceId);
+      if (calendar == null && calendarDates.isEmpty()) {
+        removedServiceIds.add(serviceId);
+        continue;
       }
+      activeServiceIds.add(serviceId);
+      daysByServiceId.add(getServiceDays(calendar, calendarDates, lastDay));
+    }
 
-      for (TimeZone timeZone : timeZones) {
+    /**
+     * Service ids that are still active keep their index, and have their days
+     * replaced in place, so that repeated updates do not grow the data
+     */
+    updated.removeServiceIds(removedServiceIds);
+    updated.removeLocalizedServiceIds(activeServiceIds);
 
-        List<Date> dates = new ArrayList<Date>(serviceDates.size());
-        for (ServiceDate serviceDate : serviceDates) {
-          dates.add(serviceDate.getAsDate(timeZone));
-        }
+    LocalizedMidnights midnights = new LocalizedMidnights(
+            daysByServiceId.toArray(new int[0][]));
 
-        LocalizedServiceId id = new LocalizedServiceId(serviceId, timeZone);
-        data.putDatesForLocalizedServiceId(id, dates);
-      }
+    for (int i = 0; i < activeServiceIds.size(); i++) {
+      AgencyAndId serviceId = activeServiceIds.get(i);
+      putServiceDays(updated, serviceId, daysByServiceId.get(i),
+              _dao.getTripAgencyIdsReferencingServiceId(serviceId),
+              data::getTimeZoneForAgencyId, midnights);
     }
 
-    return data;
+    updated.makeReadOnly();
+
+    _log.info("updated service dates of " + serviceIds.size()
+            + " service ids");
+
+    return updated;
   }
 
   public Set<ServiceDate> getServiceDatesForServiceId(AgencyAndId serviceId,
                                                       TimeZone serviceIdTimeZone) {
     Set<ServiceDate> activeDates = new HashSet<ServiceDate>();
-    ServiceCalendar c = _dao.getCalendarForServiceId(serviceId);
+    int[] days = getServiceDays(_dao.getCalendarForServiceId(serviceId),
+            _dao.getCalendarDatesForServiceId(serviceId), getLastServiceDay());
+    for (int day : days)
+      activeDates.add(ServiceDate.ofEpochDay(day));
+    return activeDates;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Puts the days of the service id, and the localized dates of the service
+   * id in the time zone of each agency with trips that reference it
+   * 
+   * @param tripAgencyIds the agencies of the trips, or null for none
+   */
+  private void putServiceDays(CalendarServiceData data,
+                              AgencyAndId serviceId, int[] days, List<String> tripAgencyIds,
+                              Function<String, TimeZone> timeZonesByAgencyId,
+                              LocalizedMidnights midnights) {
 
-    if (c != null) {
-      addDatesFromCalendar(c, serviceIdTimeZone, activeDates);
+    data.putServiceDaysForServiceId(serviceId, days);
+
+    if (tripAgencyIds == null)
+      return;
+
+    Set<TimeZone> timeZones = new HashSet<TimeZone>();
+    for (String tripAgencyId : tripAgencyIds) {
+      TimeZone timeZone = timeZonesByAgencyId.apply(tripAgencyId);
+      if (timeZone == null) {
+        throw new IllegalStateException("no timezone for agency " + tripAgencyId);
+      }
+      timeZones.add(timeZone);
     }
-    for (ServiceCalendarDate cd : _dao.getCalendarDatesForServiceId(serviceId)) {
-      addAndRemoveDatesFromCalendarDate(cd, serviceIdTimeZone, activeDates);
+
+    for (TimeZone timeZone : timeZones) {
+      long[] times = new long[days.length];
+      for (int j = 0; j < days.length; j++)
+        times[j] = midnights.get(days[j], timeZone);
+      LocalizedServiceId id = new LocalizedServiceId(serviceId, timeZone);
+      data.putTimesForLocalizedServiceId(id, times);
     }
-    return activeDates;
   }
 
-  private void setTimeZonesForAgencies(CalendarServiceData data) {
-    setTimeZonesForAgencies(data, _dao.getAllAgencies());
-  }
   private void setTimeZonesForAgencies(CalendarServiceData data, Collection<Agency> allAgencies) {
     for (Agency agency : allAgencies) {
       TimeZone timeZone = TimeZone.getTimeZone(agency.getTimezone());
@@ -194,101 +294,199 @@ public class CalendarServiceDataFactoryImpl implements
     }
   }
 
-  private void addDatesFromCalendar(ServiceCalendar calendar,
-                                    TimeZone timeZone, Set<ServiceDate> activeDates) {
+  /**
+   * Runs the task for each index from 0 to count, on up to
+   * {@link #getParallelism()} threads
+   */
+  private void runInParallel(int count, IntConsumer task) {
 
-    /**
-     * We calculate service dates relative to noon so as to avoid any weirdness
-     * relative to DST.
-     */
-    Date startDate = getServiceDateAsNoon(calendar.getStartDate(), timeZone);
-    Date endDate = getServiceDateAsNoon(calendar.getEndDate(), timeZone);
+    int parallelism = Math.min(_parallelism, count / MIN_SERVICE_IDS_PER_TASK);
+    if (parallelism <= 1) {
+      for (int i = 0; i < count; i++)
+        task.accept(i);
+      return;
+    }
 
-    java.util.Calendar c = java.util.Calendar.getInstance(timeZone);
-    c.setTime(startDate);
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+            new ThreadFactory() {
+
+              private int _index = 0;
+
+              @Override
+              public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "gtfs-calendar-" + (_index++));
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+
+    try {
+      List<Future<?>> results = new ArrayList<Future<?>>();
+      int tasks = parallelism * 4;
+      for (int t = 0; t < tasks; t++) {
+        int from = (int) ((long) count * t / tasks);
+        int to = (int) ((long) count * (t + 1) / tasks);
+        results.add(executor.submit(() -> {
+          for (int i = from; i < to; i++)
+            task.accept(i);
+        }));
+      }
+      for (Future<?> result : results)
+        getResult(result);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-    while (true) {
-      Date date = c.getTime();
-      if (date.after(endDate))
-        break;
+  private static void getResult(Future<?> result) {
+    try {
+      result.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(
+              "interrupted while computing service dates", ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
 
-      int day = c.get(java.util.Calendar.DAY_OF_WEEK);
-      boolean active = false;
+  /**
+   * Service dates are computed as days since 1970-01-01, which do not depend
+   * on any time zone, and a day's weekday follows from its number, as
+   * 1970-01-01 was a Thursday.
+   * 
+   * @param lastDay the last day that may be added, from
+   *          {@link #getLastServiceDay()}
+   * @return the active days of the calendar and its calendar dates, applied in
+   *         order, in ascending order
+   */
+  private int[] getServiceDays(ServiceCalendar calendar,
+                               List<ServiceCalendarDate> calendarDates, int lastDay) {
+
+    int firstDay = Integer.MAX_VALUE;
+    if (calendar != null)
+      firstDay = calendar.getStartDate().getAsEpochDay();
+    for (ServiceCalendarDate calendarDate : calendarDates)
+      firstDay = Math.min(firstDay, calendarDate.getDate().getAsEpochDay());
+
+    BitSet days = new BitSet();
+
+    if (calendar != null) {
+      int[] weekdays = {
+              calendar.getMonday(), calendar.getTuesday(),
+              calendar.getWednesday(), calendar.getThursday(),
+              calendar.getFriday(), calendar.getSaturday(), calendar.getSunday()};
+      int endDay = Math.min(calendar.getEndDate().getAsEpochDay(), lastDay);
+      for (int day = calendar.getStartDate().getAsEpochDay(); day <= endDay; day++) {
+        if (weekdays[Math.floorMod(day + 3, 7)] == 1)
+          days.set(day - firstDay);
+      }
+    }
 
-      switch (day) {
-        case java.util.Calendar.MONDAY:
-          active = calendar.getMonday() == 1;
-          break;
-        case java.util.Calendar.TUESDAY:
-          active = calendar.getTuesday() == 1;
-          break;
-        case java.util.Calendar.WEDNESDAY:
-          active = calendar.getWednesday() == 1;
-          break;
-        case java.util.Calendar.THURSDAY:
-          active = calendar.getThursday() == 1;
-          break;
-        case java.util.Calendar.FRIDAY:
-          active = calendar.getFriday() == 1;
+    for (ServiceCalendarDate calendarDate : calendarDates) {
+      int day = calendarDate.getDate().getAsEpochDay();
+      switch (calendarDate.getExceptionType()) {
+        case ServiceCalendarDate.EXCEPTION_TYPE_ADD:
+          if (day <= lastDay)
+            days.set(day - firstDay);
           break;
-        case java.util.Calendar.SATURDAY:
-          active = calendar.getSaturday() == 1;
+        case ServiceCalendarDate.EXCEPTION_TYPE_REMOVE:
+          days.clear(day - firstDay);
           break;
-        case java.util.Calendar.SUNDAY:
-          active = calendar.getSunday() == 1;
+        default:
+          _log.warn("unknown CalendarDate exception type: "
+                  + calendarDate.getExceptionType());
           break;
       }
+    }
 
-      if (active) {
-        addServiceDate(activeDates, new ServiceDate(c), timeZone);
-      }
+    int[] result = new int[days.cardinality()];
+    int n = 0;
+    for (int i = days.nextSetBit(0); i >= 0; i = days.nextSetBit(i + 1))
+      result[n++] = firstDay + i;
+    return result;
+  }
 
-      c.add(java.util.Calendar.DAY_OF_YEAR, 1);
-    }
+  /**
+   * A service date is excluded if it is more than
+   * {@link #setExcludeFutureServiceDatesInDays(int)} whole days after now,
+   * counting from its midnight in the default time zone.
+   * 
+   * @return the last service date that is not excluded, as days since
+   *         1970-01-01
+   */
+  private int getLastServiceDay() {
+    if (_excludeFutureServiceDatesInDays <= 0)
+      return Integer.MAX_VALUE;
+    long now = System.currentTimeMillis();
+    TimeZone timeZone = TimeZone.getDefault();
+    int day = new ServiceDate(new Date(now)).getAsEpochDay()
+            + _excludeFutureServiceDatesInDays;
+    while (isExcluded(day, now, timeZone))
+      day--;
+    while (!isExcluded(day + 1, now, timeZone))
+      day++;
+    return day;
   }
 
-  private void addAndRemoveDatesFromCalendarDate(
-          ServiceCalendarDate calendarDate, TimeZone serviceIdTimeZone,
-          Set<ServiceDate> activeDates) {
-
-    ServiceDate serviceDate = calendarDate.getDate();
-    Date targetDate = calendarDate.getDate().getAsDate();
-    Calendar c = Calendar.getInstance();
-    c.setTime(targetDate);
-
-    switch (calendarDate.getExceptionType()) {
-      case ServiceCalendarDate.EXCEPTION_TYPE_ADD:
-        addServiceDate(activeDates, serviceDate, serviceIdTimeZone);
-        break;
-      case ServiceCalendarDate.EXCEPTION_TYPE_REMOVE:
-        activeDates.remove(serviceDate);
-        break;
-      default:
-        _log.warn("unknown CalendarDate exception type: "
-                + calendarDate.getExceptionType());
-        break;
-    }
+  private boolean isExcluded(int day, long now, TimeZone timeZone) {
+    long time = ServiceDate.ofEpochDay(day).getAsDate(timeZone).getTime();
+    return (int) ((time - now) / DAY_MILLIS) > _excludeFutureServiceDatesInDays;
   }
 
-  private void addServiceDate(Set<ServiceDate> activeDates,
-                              ServiceDate serviceDate, TimeZone timeZone) {
-    if (_excludeFutureServiceDatesInDays > 0) {
-      int days = (int) ((serviceDate.getAsDate().getTime() - System.currentTimeMillis()) / (24 * 60 * 60 * 1000));
-      if (days > _excludeFutureServiceDatesInDays)
-        return;
+  /**
+   * The "midnight" of each service date in each time zone, as
+   * {@link ServiceDate#getAsDate(TimeZone)} computes it, computed once per
+   * day and time zone over the days of all service ids
+   */
+  private static class LocalizedMidnights {
+
+    private final int firstDay;
+
+    private final int dayCount;
+
+    private final Map<TimeZone, long[]> midnightsByTimeZone = new HashMap<TimeZone, long[]>();
+
+    public LocalizedMidnights(int[][] daysByServiceId) {
+      int firstDay = Integer.MAX_VALUE;
+      int lastDay = Integer.MIN_VALUE;
+      for (int[] days : daysByServiceId) {
+        if (days.length > 0) {
+          firstDay = Math.min(firstDay, days[0]);
+          lastDay = Math.max(lastDay, days[days.length - 1]);
+        }
+      }
+      this.firstDay = firstDay;
+      this.dayCount = firstDay <= lastDay ? lastDay - firstDay + 1 : 0;
     }
 
-    activeDates.add(new ServiceDate(serviceDate));
-  }
+    public long get(int day, TimeZone timeZone) {
+      long[] midnights = midnightsByTimeZone.get(timeZone);
+      if (midnights == null) {
+        ZoneId zoneId = timeZone.toZoneId();
+        midnights = new long[dayCount];
+        for (int i = 0; i < dayCount; i++)
+          midnights[i] = getMidnight(firstDay + i, zoneId);
+        midnightsByTimeZone.put(timeZone, midnights);
+      }
+      return midnights[day - firstDay];
+    }
 
-  private static Date getServiceDateAsNoon(ServiceDate serviceDate,
-                                           TimeZone timeZone) {
-    Calendar c = serviceDate.getAsCalendar(timeZone);
-    c.add(Calendar.HOUR_OF_DAY, 12);
-    return c.getTime();
+    /**
+     * As GTFS defines it, noon less twelve hours, which is an hour off
+     * midnight on days when daylight saving time starts or ends
+     */
+    private static long getMidnight(int day, ZoneId zoneId) {
+      return LocalDate.ofEpochDay(day).atTime(LocalTime.NOON).atZone(zoneId)
+              .toInstant().toEpochMilli() - DAY_MILLIS / 2;
+    }
   }
 
-
   private Map<AgencyAndId, ServiceCalendar> getCalendarsByServiceId(
           Collection<ServiceCalendar> calendars) {
     Map<AgencyAndId, ServiceCalendar> calendarsByServiceId = new HashMap<AgencyAndId, ServiceCalendar>();
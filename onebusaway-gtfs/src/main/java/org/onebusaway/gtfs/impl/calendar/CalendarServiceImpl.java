@@ -17,9 +17,9 @@
 package org.onebusaway.gtfs.impl.calendar;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +35,13 @@ import org.onebusaway.gtfs.services.calendar.CalendarServiceDataFactory;
  * An implementation of {@link CalendarService}. Requires a pre-computed
  * {@link CalendarServiceData} bundle for efficient operation.
  * 
+ * Each range query of {@link CalendarService} also has a variant with times
+ * in milliseconds since the epoch, which writes the service dates to a buffer
+ * or to {@link ServiceDateResults} supplied by the caller, and so allocates
+ * nothing once they are large enough. The variants for a single service id
+ * return the number of service dates found, which are written in the same
+ * order as the {@link Date} queries list them, for as many as fit.
+ * 
  * @author bdferris
  * 
  */
@@ -65,6 +72,17 @@ public class CalendarServiceImpl implements CalendarService {
     _data = data;
   }
 
+  /**
+   * Recomputes the service dates of the specified service ids with the data
+   * factory, and then replaces the data at once, so that concurrent readers
+   * see either the old data or the new, but never a mix of the two.
+   */
+  public synchronized void updateServiceIds(Collection<AgencyAndId> serviceIds) {
+    if (_factory == null)
+      throw new IllegalStateException("no calendar service data factory");
+    _data = _factory.updateData(getData(), serviceIds);
+  }
+
   /****
    * {@link CalendarService} Interface
    ****/
@@ -115,11 +133,9 @@ public class CalendarServiceImpl implements CalendarService {
   @Override
   public boolean isLocalizedServiceIdActiveOnDate(
       LocalizedServiceId localizedServiceId, Date serviceDate) {
-
-    // TODO : Make this more efficient?
     CalendarServiceData data = getData();
-    List<Date> dates = data.getDatesForLocalizedServiceId(localizedServiceId);
-    return Collections.binarySearch(dates, serviceDate) >= 0;
+    return data.isLocalizedServiceIdActiveOnDate(localizedServiceId,
+        serviceDate);
   }
 
   /**
@@ -224,6 +240,75 @@ public class CalendarServiceImpl implements CalendarService {
         target, true);
   }
 
+  /****
+   * Queries in Milliseconds Since the Epoch
+   ****/
+
+  public int getServiceDateArrivalsWithinRange(LocalizedServiceId serviceId,
+      ServiceInterval interval, long from, long to, long[] serviceDates) {
+    return getServiceDates(getData(), serviceId, interval,
+        ServiceIdOp.ARRIVAL_OP, to, from, false, serviceDates, 0);
+  }
+
+  public void getServiceDateArrivalsWithinRange(
+      ServiceIdIntervals serviceIdIntervals, long from, long to,
+      ServiceDateResults results) {
+    getServiceDates(serviceIdIntervals, ServiceIdOp.ARRIVAL_OP, to, from,
+        false, results);
+  }
+
+  public int getServiceDateDeparturesWithinRange(LocalizedServiceId serviceId,
+      ServiceInterval interval, long from, long to, long[] serviceDates) {
+    return getServiceDates(getData(), serviceId, interval,
+        ServiceIdOp.DEPARTURE_OP, from, to, false, serviceDates, 0);
+  }
+
+  public void getServiceDateDeparturesWithinRange(
+      ServiceIdIntervals serviceIdIntervals, long from, long to,
+      ServiceDateResults results) {
+    getServiceDates(serviceIdIntervals, ServiceIdOp.DEPARTURE_OP, from, to,
+        false, results);
+  }
+
+  public int getServiceDatesWithinRange(LocalizedServiceId serviceId,
+      ServiceInterval interval, long from, long to, long[] serviceDates) {
+    return getServiceDates(getData(), serviceId, interval,
+        ServiceIdOp.BOTH_OP, from, to, false, serviceDates, 0);
+  }
+
+  public void getServiceDatesWithinRange(ServiceIdIntervals serviceIdIntervals,
+      long from, long to, ServiceDateResults results) {
+    getServiceDates(serviceIdIntervals, ServiceIdOp.BOTH_OP, from, to, false,
+        results);
+  }
+
+  public int getNextDepartureServiceDates(LocalizedServiceId serviceId,
+      ServiceInterval interval, long targetTime, long[] serviceDates) {
+    return getServiceDates(getData(), serviceId, interval,
+        ServiceIdOp.DEPARTURE_OP, targetTime, targetTime, true, serviceDates,
+        0);
+  }
+
+  public void getNextDepartureServiceDates(
+      ServiceIdIntervals serviceIdIntervals, long targetTime,
+      ServiceDateResults results) {
+    getServiceDates(serviceIdIntervals, ServiceIdOp.DEPARTURE_OP, targetTime,
+        targetTime, true, results);
+  }
+
+  public int getPreviousArrivalServiceDates(LocalizedServiceId serviceId,
+      ServiceInterval interval, long targetTime, long[] serviceDates) {
+    return getServiceDates(getData(), serviceId, interval,
+        ServiceIdOp.ARRIVAL_OP, targetTime, targetTime, true, serviceDates, 0);
+  }
+
+  public void getPreviousArrivalServiceDates(
+      ServiceIdIntervals serviceIdIntervals, long targetTime,
+      ServiceDateResults results) {
+    getServiceDates(serviceIdIntervals, ServiceIdOp.ARRIVAL_OP, targetTime,
+        targetTime, true, results);
+  }
+
   /****
    * Private Methods
    ****/
@@ -242,84 +327,143 @@ public class CalendarServiceImpl implements CalendarService {
   private Map<LocalizedServiceId, List<Date>> getServiceDates(
       ServiceIdIntervals serviceIdIntervals, ServiceIdOp op, Date from,
       Date to, boolean includeNextDate) {
+    ServiceDateResults results = new ServiceDateResults();
+    getServiceDates(serviceIdIntervals, op, from.getTime(), to.getTime(),
+        includeNextDate, results);
+    return results.toMap();
+  }
 
-    CalendarServiceData allData = getData();
+  private List<Date> getServiceDates(CalendarServiceData allData,
+      LocalizedServiceId serviceId, ServiceInterval interval, ServiceIdOp op,
+      Date from, Date to, boolean includeNextDateIfNeeded) {
+
+    long[] buffer = new long[8];
+    int count = getServiceDates(allData, serviceId, interval, op,
+        from.getTime(), to.getTime(), includeNextDateIfNeeded, buffer, 0);
+    if (count > buffer.length) {
+      buffer = new long[count];
+      getServiceDates(allData, serviceId, interval, op, from.getTime(),
+          to.getTime(), includeNextDateIfNeeded, buffer, 0);
+    }
+
+    List<Date> resultsForServiceId = new ArrayList<Date>(count);
+    for (int i = 0; i < count; i++)
+      resultsForServiceId.add(new Date(buffer[i]));
+    return resultsForServiceId;
+  }
 
-    Map<LocalizedServiceId, List<Date>> results = new HashMap<LocalizedServiceId, List<Date>>();
+  private void getServiceDates(ServiceIdIntervals serviceIdIntervals,
+      ServiceIdOp op, long from, long to, boolean includeNextDate,
+      ServiceDateResults results) {
+
+    results.clear();
+
+    CalendarServiceData allData = getData();
 
     for (Map.Entry<LocalizedServiceId, ServiceInterval> entry : serviceIdIntervals) {
 
       LocalizedServiceId serviceId = entry.getKey();
       ServiceInterval interval = entry.getValue();
 
-      List<Date> serviceDates = getServiceDates(allData, serviceId, interval,
-          op, from, to, includeNextDate);
+      long[] buffer = results.getServiceDateBuffer();
+      int offset = results.getServiceDateOffset();
+      int count = getServiceDates(allData, serviceId, interval, op, from, to,
+          includeNextDate, buffer, offset);
 
-      if (!serviceDates.isEmpty())
-        results.put(serviceId, serviceDates);
-    }
+      if (count == 0)
+        continue;
 
-    return results;
+      if (offset + count > buffer.length) {
+        results.ensureCapacity(count);
+        getServiceDates(allData, serviceId, interval, op, from, to,
+            includeNextDate, results.getServiceDateBuffer(), offset);
+      }
+
+      results.add(serviceId, count);
+    }
   }
 
-  private List<Date> getServiceDates(CalendarServiceData allData,
+  /**
+   * Writes the service dates of the service id whose interval the op finds to
+   * be within the range to the buffer, from the offset on, for as long as they
+   * fit. Nothing is allocated.
+   * 
+   * @return the number of service dates found, which may be more than fit in
+   *         the buffer
+   */
+  private static int getServiceDates(CalendarServiceData allData,
       LocalizedServiceId serviceId, ServiceInterval interval, ServiceIdOp op,
-      Date from, Date to, boolean includeNextDateIfNeeded) {
-
-    List<Date> serviceDates = allData.getDatesForLocalizedServiceId(serviceId);
+      long from, long to, boolean includeNextDateIfNeeded, long[] buffer,
+      int offset) {
 
-    List<Date> resultsForServiceId = new ArrayList<Date>();
-    Date nextDate = null;
+    long[] serviceDates = allData.getTimesForLocalizedServiceId(serviceId);
 
     if (serviceDates == null)
-      return resultsForServiceId;
+      return 0;
 
-    Date target = op.shiftTime(interval, from);
-    int index = search(serviceDates, op, 0, serviceDates.size(), target);
+    long target = op.shiftTime(interval, from);
+    int index = search(serviceDates, op, target);
 
-    if (index == serviceDates.size())
+    if (index == serviceDates.length)
       index--;
 
+    int count = 0;
+    boolean hasNextDate = false;
+    long nextDate = 0;
+
     while (0 <= index) {
-      Date serviceDate = op.getServiceDate(serviceDates, index);
+      long serviceDate = op.getServiceDate(serviceDates, index);
       int rc = op.compareInterval(interval, serviceDate, from, to);
 
       if (rc > 0) {
         nextDate = serviceDate;
+        hasNextDate = true;
       } else if (rc == 0) {
-        resultsForServiceId.add(serviceDate);
+        if (offset + count < buffer.length)
+          buffer[offset + count] = serviceDate;
+        count++;
       } else if (rc < 0) {
         break;
       }
       index--;
     }
 
-    if (includeNextDateIfNeeded && resultsForServiceId.isEmpty()
-        && nextDate != null)
-      resultsForServiceId.add(nextDate);
+    if (includeNextDateIfNeeded && count == 0 && hasNextDate) {
+      if (offset < buffer.length)
+        buffer[offset] = nextDate;
+      count = 1;
+    }
 
-    return resultsForServiceId;
+    return count;
   }
 
-  private int search(List<Date> serviceDates, ServiceIdOp op, int indexFrom,
-      int indexTo, Date key) {
+  /**
+   * @return the index of a service date equal to the key in the order of the
+   *         op, or else the index that the key would be inserted at
+   */
+  private static int search(long[] serviceDates, ServiceIdOp op, long key) {
+
+    int indexFrom = 0;
+    int indexTo = serviceDates.length;
 
-    if (indexTo == indexFrom)
-      return indexFrom;
+    while (indexFrom < indexTo) {
 
-    int index = (indexFrom + indexTo) / 2;
+      int index = (indexFrom + indexTo) >>> 1;
 
-    Date serviceDate = op.getServiceDate(serviceDates, index);
+      long serviceDate = op.getServiceDate(serviceDates, index);
 
-    int rc = op.compare(key, serviceDate);
+      int rc = op.compare(key, serviceDate);
 
-    if (rc == 0)
-      return index;
+      if (rc == 0)
+        return index;
+
+      if (rc < 0)
+        indexTo = index;
+      else
+        indexFrom = index + 1;
+    }
 
-    if (rc < 0)
-      return search(serviceDates, op, indexFrom, index, key);
-    else
-      return search(serviceDates, op, index + 1, indexTo, key);
+    return indexFrom;
   }
 
   private static final <T> List<T> list(List<T> values) {
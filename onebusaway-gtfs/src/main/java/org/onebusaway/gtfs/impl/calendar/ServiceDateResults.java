@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl.calendar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.onebusaway.gtfs.model.calendar.LocalizedServiceId;
+import org.onebusaway.gtfs.model.calendar.ServiceIdIntervals;
+
+/**
+ * The service dates of each localized service id found by a query of
+ * {@link CalendarServiceImpl} over {@link ServiceIdIntervals}, in milliseconds
+ * since the epoch. Service ids without service dates are left out, as they are
+ * from the {@link Map} of the {@link Date} queries. A query clears the results
+ * first, and their arrays are kept and only grow, so results that are reused
+ * from query to query stop allocating once they are large enough.
+ */
+public final class ServiceDateResults {
+
+  private LocalizedServiceId[] serviceIds = new LocalizedServiceId[8];
+
+  /**
+   * The service dates of the i-th service id are those from offsets[i] to
+   * offsets[i + 1]
+   */
+  private int[] offsets = new int[9];
+
+  private long[] serviceDates = new long[16];
+
+  private int size;
+
+  public void clear() {
+    Arrays.fill(serviceIds, 0, size, null);
+    size = 0;
+  }
+
+  /**
+   * @return the number of service ids with service dates
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public LocalizedServiceId getServiceId(int index) {
+    checkIndex(index);
+    return serviceIds[index];
+  }
+
+  public int getServiceDateCount(int index) {
+    checkIndex(index);
+    return offsets[index + 1] - offsets[index];
+  }
+
+  /**
+   * @return the service date, in milliseconds since the epoch
+   */
+  public long getServiceDate(int index, int serviceDateIndex) {
+    if (serviceDateIndex < 0 || serviceDateIndex >= getServiceDateCount(index))
+      throw new IndexOutOfBoundsException(Integer.toString(serviceDateIndex));
+    return serviceDates[offsets[index] + serviceDateIndex];
+  }
+
+  /**
+   * @return the results as the {@link Date} queries return them
+   */
+  public Map<LocalizedServiceId, List<Date>> toMap() {
+    Map<LocalizedServiceId, List<Date>> results = new HashMap<LocalizedServiceId, List<Date>>();
+    for (int i = 0; i < size; i++) {
+      List<Date> dates = new ArrayList<Date>();
+      for (int j = offsets[i]; j < offsets[i + 1]; j++)
+        dates.add(new Date(serviceDates[j]));
+      results.put(serviceIds[i], dates);
+    }
+    return results;
+  }
+
+  /****
+   * Package Methods
+   ****/
+
+  /**
+   * @return the array that the service dates of the next service id are
+   *         written to, from {@link #getServiceDateOffset()} on
+   */
+  long[] getServiceDateBuffer() {
+    return serviceDates;
+  }
+
+  int getServiceDateOffset() {
+    return offsets[size];
+  }
+
+  /**
+   * Grows the buffer to fit the specified number of service dates after the
+   * offset
+   */
+  void ensureCapacity(int count) {
+    int capacity = offsets[size] + count;
+    if (capacity > serviceDates.length)
+      serviceDates = Arrays.copyOf(serviceDates, Math.max(capacity,
+          serviceDates.length << 1));
+  }
+
+  /**
+   * Adds the service id, with the specified number of service dates that have
+   * been written to the buffer
+   */
+  void add(LocalizedServiceId serviceId, int count) {
+    if (size == serviceIds.length) {
+      serviceIds = Arrays.copyOf(serviceIds, size << 1);
+      offsets = Arrays.copyOf(offsets, (size << 1) + 1);
+    }
+    serviceIds[size] = serviceId;
+    offsets[size + 1] = offsets[size] + count;
+    size++;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException(Integer.toString(index));
+  }
+}
@@ -41,16 +41,29 @@ public abstract class ServiceIdOp implements Comparator<Date> {
 
   public abstract Date getServiceDate(List<Date> data, int index);
 
+  /**
+   * As {@link #getServiceDate(List, int)}, over service dates in milliseconds
+   * since the epoch
+   */
+  public abstract long getServiceDate(long[] data, int index);
+
   public int compare(Date a, Date b) {
-    int rc = a.compareTo(b);
+    return compare(a.getTime(), b.getTime());
+  }
+
+  public int compare(long a, long b) {
+    int rc = Long.compare(a, b);
     if (_reverse)
       rc = -rc;
     return rc;
   }
 
   public Date shiftTime(ServiceInterval interval, Date time) {
-    long offset = getFromTime(interval) * 1000;
-    return new Date(time.getTime() - offset);
+    return new Date(shiftTime(interval, time.getTime()));
+  }
+
+  public long shiftTime(ServiceInterval interval, long time) {
+    return time - getFromTime(interval) * 1000L;
   }
 
   /**
@@ -68,19 +81,29 @@ public abstract class ServiceIdOp implements Comparator<Date> {
    */
   public int compareInterval(ServiceInterval interval, Date serviceDate,
       Date from, Date to) {
-    long serviceFrom = serviceDate.getTime() + getFromTime(interval) * 1000;
-    long serviceTo = serviceDate.getTime() + getToTime(interval) * 1000;
+    return compareInterval(interval, serviceDate.getTime(), from.getTime(),
+        to.getTime());
+  }
+
+  /**
+   * As {@link #compareInterval(ServiceInterval, Date, Date, Date)}, with times
+   * in milliseconds since the epoch
+   */
+  public int compareInterval(ServiceInterval interval, long serviceDate,
+      long from, long to) {
+    long serviceFrom = serviceDate + getFromTime(interval) * 1000L;
+    long serviceTo = serviceDate + getToTime(interval) * 1000L;
 
     if (_reverse) {
-      if (serviceTo >= from.getTime())
+      if (serviceTo >= from)
         return -1;
-      if (to.getTime() >= serviceFrom)
+      if (to >= serviceFrom)
         return 1;
       return 0;
     } else {
-      if (serviceTo <= from.getTime())
+      if (serviceTo <= from)
         return -1;
-      if (to.getTime() <= serviceFrom)
+      if (to <= serviceFrom)
         return 1;
       return 0;
     }
@@ -106,6 +129,11 @@ public abstract class ServiceIdOp implements Comparator<Date> {
     public Date getServiceDate(List<Date> data, int index) {
       return data.get(data.size() - 1 - index);
     }
+
+    @Override
+    public long getServiceDate(long[] data, int index) {
+      return data[data.length - 1 - index];
+    }
   }
 
   private static class DeparturesServiceDateTimeOp extends ServiceIdOp {
@@ -128,6 +156,11 @@ public abstract class ServiceIdOp implements Comparator<Date> {
     public Date getServiceDate(List<Date> data, int index) {
       return data.get(index);
     }
+
+    @Override
+    public long getServiceDate(long[] data, int index) {
+      return data[index];
+    }
   }
 
   private static class MaxRangeServiceDateTimeOp extends ServiceIdOp {
@@ -150,6 +183,11 @@ public abstract class ServiceIdOp implements Comparator<Date> {
     public Date getServiceDate(List<Date> data, int index) {
       return data.get(index);
     }
+
+    @Override
+    public long getServiceDate(long[] data, int index) {
+      return data[index];
+    }
   }
 
 }
@@ -28,6 +28,17 @@ public class AgencyAndId implements Serializable, Comparable<AgencyAndId> {
 
   private String id;
 
+  /**
+   * Cached {@link #hashCode()}, or zero if not yet computed
+   */
+  private transient int hash;
+
+  /**
+   * True for the canonical instances of an {@link AgencyAndIdPool}, which are
+   * shared and so cannot be modified
+   */
+  private transient boolean shared;
+
   public AgencyAndId() {
 
   }
@@ -42,7 +53,9 @@ public class AgencyAndId implements Serializable, Comparable<AgencyAndId> {
   }
 
   public void setAgencyId(String agencyId) {
+    checkNotShared();
     this.agencyId = agencyId;
+    this.hash = 0;
   }
 
   public String getId() {
@@ -50,7 +63,9 @@ public class AgencyAndId implements Serializable, Comparable<AgencyAndId> {
   }
 
   public void setId(String id) {
+    checkNotShared();
     this.id = id;
+    this.hash = 0;
   }
 
   public boolean hasValues() {
@@ -83,9 +98,13 @@ public class AgencyAndId implements Serializable, Comparable<AgencyAndId> {
 
   @Override
   public int hashCode() {
-    int hash = 93;
-    if (agencyId != null) hash += agencyId.hashCode();
-    if (id != null) hash += id.hashCode();
+    int hash = this.hash;
+    if (hash == 0) {
+      hash = 93;
+      if (agencyId != null) hash += agencyId.hashCode();
+      if (id != null) hash += id.hashCode();
+      this.hash = hash;
+    }
     return hash;
   }
 
@@ -146,4 +165,21 @@ public class AgencyAndId implements Serializable, Comparable<AgencyAndId> {
       return null;
     return aid.getAgencyId() + ID_SEPARATOR + aid.getId();
   }
+
+  /**
+   * Marks the id as a canonical instance of an {@link AgencyAndIdPool}
+   */
+  void markShared() {
+    shared = true;
+  }
+
+  /**
+   * @throws UnsupportedOperationException if the id is a canonical instance of
+   *           an {@link AgencyAndIdPool}
+   */
+  private void checkNotShared() {
+    if (shared)
+      throw new UnsupportedOperationException(
+          "canonical ids are shared and cannot be modified: " + this);
+  }
 }
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands out a single canonical {@link AgencyAndId} instance for each distinct
+ * agency id and id, so that the many entities referencing the same service,
+ * shape or route share one id object, and hash map lookups keyed by those ids
+ * succeed on identity. The pool holds its ids for as long as the pool itself
+ * is reachable, which is typically the lifetime of a GTFS reader or an
+ * in-memory dao.
+ * 
+ * Since canonical ids are shared, they cannot be modified in place, and their
+ * setters throw {@link UnsupportedOperationException}: assign a new id
+ * instead. Ids with a null agency id or id are never pooled.
+ * 
+ * A pool is thread-safe.
+ */
+public class AgencyAndIdPool {
+
+  private final ConcurrentMap<String, ConcurrentMap<String, AgencyAndId>> _idsByAgencyId = new ConcurrentHashMap<String, ConcurrentMap<String, AgencyAndId>>();
+
+  /**
+   * @return the canonical id for the specified agency id and id
+   */
+  public AgencyAndId getId(String agencyId, String id) {
+    if (agencyId == null || id == null)
+      return new AgencyAndId(agencyId, id);
+    ConcurrentMap<String, AgencyAndId> ids = getIdsForAgencyId(agencyId);
+    AgencyAndId aid = ids.get(id);
+    if (aid == null) {
+      aid = new AgencyAndId(agencyId, id);
+      aid.markShared();
+      AgencyAndId existing = ids.putIfAbsent(id, aid);
+      if (existing != null)
+        aid = existing;
+    }
+    return aid;
+  }
+
+  /**
+   * @return the canonical id equal to the specified id, which is a copy of it
+   *         if there was none yet, so that the caller's instance stays
+   *         modifiable
+   */
+  public AgencyAndId canonicalize(AgencyAndId id) {
+    if (id == null || !id.hasValues())
+      return id;
+    return getId(id.getAgencyId(), id.getId());
+  }
+
+  /**
+   * @return the number of canonical ids in the pool
+   */
+  public int size() {
+    int size = 0;
+    for (ConcurrentMap<String, AgencyAndId> ids : _idsByAgencyId.values())
+      size += ids.size();
+    return size;
+  }
+
+  public void clear() {
+    _idsByAgencyId.clear();
+  }
+
+  private ConcurrentMap<String, AgencyAndId> getIdsForAgencyId(String agencyId) {
+    ConcurrentMap<String, AgencyAndId> ids = _idsByAgencyId.get(agencyId);
+    if (ids == null) {
+      ids = new ConcurrentHashMap<String, AgencyAndId>();
+      ConcurrentMap<String, AgencyAndId> existing = _idsByAgencyId.putIfAbsent(
+          agencyId, ids);
+      if (existing != null)
+        ids = existing;
+    }
+    return ids;
+  }
+}
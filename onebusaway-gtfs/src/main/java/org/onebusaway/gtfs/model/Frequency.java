@@ -46,80 +46,147 @@ public final class Frequency extends IdentityBean<Integer> {
   @CsvField(optional = true, defaultValue = "0")
   private int labelOnly = 0;
 
+  @CsvField(ignore = true)
+  private transient FrequencyProxy proxy = null;
+
   public Frequency() {
 
   }
 
   public Frequency(Frequency f) {
-    this.id = f.id;
-    this.trip = f.trip;
-    this.startTime = f.startTime;
-    this.endTime = f.endTime;
-    this.headwaySecs = f.headwaySecs;
-    this.exactTimes = f.exactTimes;
+    this.id = f.getId();
+    this.trip = f.getTrip();
+    this.startTime = f.getStartTime();
+    this.endTime = f.getEndTime();
+    this.headwaySecs = f.getHeadwaySecs();
+    this.exactTimes = f.getExactTimes();
+    this.labelOnly = f.getLabelOnly();
   }
 
   @Override
   public Integer getId() {
+    if (proxy != null) {
+      return proxy.getId();
+    }
     return id;
   }
 
   @Override
   public void setId(Integer id) {
+    if (proxy != null) {
+      proxy.setId(id);
+      return;
+    }
     this.id = id;
   }
 
   public Trip getTrip() {
+    if (proxy != null) {
+      return proxy.getTrip();
+    }
     return trip;
   }
 
   public void setTrip(Trip trip) {
+    if (proxy != null) {
+      proxy.setTrip(trip);
+      return;
+    }
     this.trip = trip;
   }
 
   public int getStartTime() {
+    if (proxy != null) {
+      return proxy.getStartTime();
+    }
     return startTime;
   }
 
   public void setStartTime(int startTime) {
+    if (proxy != null) {
+      proxy.setStartTime(startTime);
+      return;
+    }
     this.startTime = startTime;
   }
 
   public int getEndTime() {
+    if (proxy != null) {
+      return proxy.getEndTime();
+    }
     return endTime;
   }
 
   public void setEndTime(int endTime) {
+    if (proxy != null) {
+      proxy.setEndTime(endTime);
+      return;
+    }
     this.endTime = endTime;
   }
 
   public int getHeadwaySecs() {
+    if (proxy != null) {
+      return proxy.getHeadwaySecs();
+    }
     return headwaySecs;
   }
 
   public void setHeadwaySecs(int headwaySecs) {
+    if (proxy != null) {
+      proxy.setHeadwaySecs(headwaySecs);
+      return;
+    }
     this.headwaySecs = headwaySecs;
   }
 
   public int getExactTimes() {
+    if (proxy != null) {
+      return proxy.getExactTimes();
+    }
     return exactTimes;
   }
 
   public void setExactTimes(int exactTimes) {
+    if (proxy != null) {
+      proxy.setExactTimes(exactTimes);
+      return;
+    }
     this.exactTimes = exactTimes;
   }
 
   public int getLabelOnly() {
+    if (proxy != null) {
+      return proxy.getLabelOnly();
+    }
     return labelOnly;
   }
 
   public void setLabelOnly(int labelOnly) {
+    if (proxy != null) {
+      proxy.setLabelOnly(labelOnly);
+      return;
+    }
     this.labelOnly = labelOnly;
   }
 
+  /**
+   * When set, all interactions with the frequency will be redirected through
+   * this proxy.
+   * 
+   * @param proxy
+   */
+  public void setProxy(FrequencyProxy proxy) {
+    this.proxy = proxy;
+  }
+
+  public FrequencyProxy getProxy() {
+    return proxy;
+  }
+
   public String toString() {
     return "<Frequency " + getId() + " start="
-        + StopTimeFieldMappingFactory.getSecondsAsString(startTime) + " end="
-        + StopTimeFieldMappingFactory.getSecondsAsString(endTime) + ">";
+        + StopTimeFieldMappingFactory.getSecondsAsString(getStartTime()) + " end="
+        + StopTimeFieldMappingFactory.getSecondsAsString(getEndTime()) + ">";
   }
 }
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.model;
+
+/**
+ * @see Frequency#setProxy(FrequencyProxy)
+ */
+public interface FrequencyProxy {
+
+  public Integer getId();
+
+  public void setId(Integer id);
+
+  public Trip getTrip();
+
+  public void setTrip(Trip trip);
+
+  public int getStartTime();
+
+  public void setStartTime(int startTime);
+
+  public int getEndTime();
+
+  public void setEndTime(int endTime);
+
+  public int getHeadwaySecs();
+
+  public void setHeadwaySecs(int headwaySecs);
+
+  public int getExactTimes();
+
+  public void setExactTimes(int exactTimes);
+
+  public int getLabelOnly();
+
+  public void setLabelOnly(int labelOnly);
+}
@@ -16,6 +16,7 @@
 package org.onebusaway.gtfs.model;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -51,6 +52,16 @@ public abstract class IdentityBean<T extends Serializable> implements
     return (X) _extensionsByType.get(type);
   }
 
+  /**
+   * @return the extensions of the entity by type, which may not be modified
+   */
+  public Map<Class<?>, Object> getExtensions() {
+    if (_extensionsByType == null) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(_extensionsByType);
+  }
+
   /***************************************************************************
    * {@link Object}
    **************************************************************************/
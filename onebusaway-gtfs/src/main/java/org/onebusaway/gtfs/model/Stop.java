@@ -16,6 +16,8 @@
  */
 package org.onebusaway.gtfs.model;
 
+import java.util.Map;
+
 import org.onebusaway.csv_entities.schema.annotations.CsvField;
 import org.onebusaway.csv_entities.schema.annotations.CsvFields;
 import org.onebusaway.gtfs.serialization.mappings.DefaultAgencyIdFieldMappingFactory;
@@ -27,7 +29,7 @@ public final class Stop extends IdentityBean<AgencyAndId> implements StopLocatio
 
   private static final long serialVersionUID = 1L;
   
-  private static final int MISSING_VALUE = -999;
+  public static final int MISSING_VALUE = -999;
 
   public static final int LOCATION_TYPE_STOP = 0;
 
@@ -99,206 +101,400 @@ public final class Stop extends IdentityBean<AgencyAndId> implements StopLocatio
   @CsvField(optional = true, name = "tts_stop_name")
   private String ttsStopName;
 
+  @CsvField(ignore = true)
+  private transient StopProxy proxy = null;
+
   public Stop() {
 
   }
 
   public Stop(Stop obj) {
-    this.id = obj.id;
-    this.code = obj.code;
-    this.name = obj.name;
-    this.desc = obj.desc;
-    this.lat = obj.lat;
-    this.lon = obj.lon;
-    this.zoneId = obj.zoneId;
-    this.url = obj.url;
-    this.locationType = obj.locationType;
-    this.parentStation = obj.parentStation;
-    this.wheelchairBoarding = obj.wheelchairBoarding;
-    this.direction = obj.direction;
-    this.timezone = obj.timezone;
-    this.vehicleType = obj.vehicleType;
-    this.platformCode = obj.platformCode;
-    this.level = obj.level;
-    this.mtaStopId = obj.mtaStopId;
-    this.regionalFareCardAccepted = obj.regionalFareCardAccepted;
-    this.ttsStopName = obj.ttsStopName;
+    this.id = obj.getId();
+    this.code = obj.getCode();
+    this.name = obj.getName();
+    this.desc = obj.getDesc();
+    this.lat = obj.getLat();
+    this.lon = obj.getLon();
+    this.zoneId = obj.getZoneId();
+    this.url = obj.getUrl();
+    this.locationType = obj.getLocationType();
+    this.parentStation = obj.getParentStation();
+    this.wheelchairBoarding = obj.getWheelchairBoarding();
+    this.direction = obj.getDirection();
+    this.timezone = obj.getTimezone();
+    this.vehicleType = obj.getVehicleType();
+    this.platformCode = obj.getPlatformCode();
+    this.level = obj.getLevel();
+    this.mtaStopId = obj.getMtaStopId();
+    this.regionalFareCardAccepted = obj.getRegionalFareCardAccepted();
+    this.ttsStopName = obj.getTtsStopName();
   }
 
   public AgencyAndId getId() {
+    if (proxy != null) {
+      return proxy.getId();
+    }
     return id;
   }
 
   public void setId(AgencyAndId id) {
+    if (proxy != null) {
+      proxy.setId(id);
+      return;
+    }
     this.id = id;
   }
 
   public String getCode() {
+    if (proxy != null) {
+      return proxy.getCode();
+    }
     return code;
   }
 
   public void setCode(String code) {
+    if (proxy != null) {
+      proxy.setCode(code);
+      return;
+    }
     this.code = code;
   }
 
   public String getName() {
+    if (proxy != null) {
+      return proxy.getName();
+    }
     return name;
   }
 
   public void setName(String name) {
+    if (proxy != null) {
+      proxy.setName(name);
+      return;
+    }
     this.name = name;
   }
 
   public String getDesc() {
+    if (proxy != null) {
+      return proxy.getDesc();
+    }
     return desc;
   }
 
   public void setDesc(String desc) {
+    if (proxy != null) {
+      proxy.setDesc(desc);
+      return;
+    }
     this.desc = desc;
   }
 
   public boolean isLatSet() {
+    if (proxy != null) {
+      return proxy.isLatSet();
+    }
     return this.lat != MISSING_VALUE;
   }
 
   public double getLat() {
+    if (proxy != null) {
+      return proxy.getLat();
+    }
     return lat;
   }
 
   public void setLat(double lat) {
+    if (proxy != null) {
+      proxy.setLat(lat);
+      return;
+    }
     this.lat = lat;
   }
 
   public void clearLat() {
+    if (proxy != null) {
+      proxy.clearLat();
+      return;
+    }
     this.lat = MISSING_VALUE;
   }
 
   public boolean isLonSet() {
+    if (proxy != null) {
+      return proxy.isLonSet();
+    }
     return this.lon != MISSING_VALUE;
   }
 
   public double getLon() {
+    if (proxy != null) {
+      return proxy.getLon();
+    }
     return lon;
   }
 
   public void setLon(double lon) {
+    if (proxy != null) {
+      proxy.setLon(lon);
+      return;
+    }
     this.lon = lon;
   }
 
   public void clearLon() {
+    if (proxy != null) {
+      proxy.clearLon();
+      return;
+    }
     this.lon = MISSING_VALUE;
   }
 
   public String getZoneId() {
+    if (proxy != null) {
+      return proxy.getZoneId();
+    }
     return zoneId;
   }
 
   public void setZoneId(String zoneId) {
+    if (proxy != null) {
+      proxy.setZoneId(zoneId);
+      return;
+    }
     this.zoneId = zoneId;
   }
 
   public String getUrl() {
+    if (proxy != null) {
+      return proxy.getUrl();
+    }
     return url;
   }
 
   public void setUrl(String url) {
+    if (proxy != null) {
+      proxy.setUrl(url);
+      return;
+    }
     this.url = url;
   }
 
   public int getLocationType() {
+    if (proxy != null) {
+      return proxy.getLocationType();
+    }
     return locationType;
   }
 
   public void setLocationType(int locationType) {
+    if (proxy != null) {
+      proxy.setLocationType(locationType);
+      return;
+    }
     this.locationType = locationType;
   }
 
   public String getParentStation() {
+    if (proxy != null) {
+      return proxy.getParentStation();
+    }
     return parentStation;
   }
 
   public void setParentStation(String parentStation) {
+    if (proxy != null) {
+      proxy.setParentStation(parentStation);
+      return;
+    }
     this.parentStation = parentStation;
   }
 
   @Override
   public String toString() {
-    return "<Stop " + this.id + ">";
+    return "<Stop " + getId() + ">";
+  }
+
+  @Override
+  public void putExtension(Class<?> type, Object extension) {
+    if (proxy != null) {
+      proxy.putExtension(type, extension);
+      return;
+    }
+    super.putExtension(type, extension);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <X> X getExtension(Class<X> type) {
+    if (proxy != null) {
+      return (X) proxy.getExtensions().get(type);
+    }
+    return super.getExtension(type);
+  }
+
+  @Override
+  public Map<Class<?>, Object> getExtensions() {
+    if (proxy != null) {
+      return proxy.getExtensions();
+    }
+    return super.getExtensions();
+  }
+
+  /**
+   * When set, all interactions with the stop's fields and extensions will be
+   * redirected through this proxy.
+   * 
+   * @param proxy
+   */
+  public void setProxy(StopProxy proxy) {
+    this.proxy = proxy;
+  }
+
+  public StopProxy getProxy() {
+    return proxy;
   }
 
   public void setWheelchairBoarding(int wheelchairBoarding) {
+    if (proxy != null) {
+      proxy.setWheelchairBoarding(wheelchairBoarding);
+      return;
+    }
     this.wheelchairBoarding = wheelchairBoarding;
   }
 
   public int getWheelchairBoarding() {
+    if (proxy != null) {
+      return proxy.getWheelchairBoarding();
+    }
     return wheelchairBoarding;
   }
 
   public String getDirection() {
+    if (proxy != null) {
+      return proxy.getDirection();
+    }
     return direction;
   }
 
   public void setDirection(String direction) {
+    if (proxy != null) {
+      proxy.setDirection(direction);
+      return;
+    }
     this.direction = direction;
   }
 
   public String getTimezone() {
+    if (proxy != null) {
+      return proxy.getTimezone();
+    }
     return timezone;
   }
 
   public void setTimezone(String timezone) {
+    if (proxy != null) {
+      proxy.setTimezone(timezone);
+      return;
+    }
     this.timezone = timezone;
   }
   
   public boolean isVehicleTypeSet() {
-    return vehicleType != MISSING_VALUE;
+    return getVehicleType() != MISSING_VALUE;
   }
 
   public int getVehicleType() {
+    if (proxy != null) {
+      return proxy.getVehicleType();
+    }
     return vehicleType;
   }
 
   public void setVehicleType(int vehicleType) {
+    if (proxy != null) {
+      proxy.setVehicleType(vehicleType);
+      return;
+    }
     this.vehicleType = vehicleType;
   }
   
   public void clearVehicleType() {
-    vehicleType = MISSING_VALUE;
+    setVehicleType(MISSING_VALUE);
   }
 
   public String getPlatformCode() {
+    if (proxy != null) {
+      return proxy.getPlatformCode();
+    }
     return platformCode;
   }
 
   public void setPlatformCode(String platformCode) {
+    if (proxy != null) {
+      proxy.setPlatformCode(platformCode);
+      return;
+    }
     this.platformCode = platformCode;
   }
 
   public Level getLevel() {
+    if (proxy != null) {
+      return proxy.getLevel();
+    }
     return this.level;
   }
 
   public void setLevel(Level level) {
+    if (proxy != null) {
+      proxy.setLevel(level);
+      return;
+    }
     this.level = level;
   }
 
-  public String getMtaStopId() { return mtaStopId; }
+  public String getMtaStopId() {
+    if (proxy != null) {
+      return proxy.getMtaStopId();
+    }
+    return mtaStopId;
+  }
 
-  public void setMtaStopId(String mtaStopId) { this.mtaStopId = mtaStopId; }
+  public void setMtaStopId(String mtaStopId) {
+    if (proxy != null) {
+      proxy.setMtaStopId(mtaStopId);
+      return;
+    }
+    this.mtaStopId = mtaStopId;
+  }
 
   public int getRegionalFareCardAccepted() {
+    if (proxy != null) {
+      return proxy.getRegionalFareCardAccepted();
+    }
     return regionalFareCardAccepted;
   }
 
   public void setRegionalFareCardAccepted(int regionalFareCardAccepted) {
+    if (proxy != null) {
+      proxy.setRegionalFareCardAccepted(regionalFareCardAccepted);
+      return;
+    }
     this.regionalFareCardAccepted = regionalFareCardAccepted;
   }
 
   public String getTtsStopName() {
+    if (proxy != null) {
+      return proxy.getTtsStopName();
+    }
     return ttsStopName;
   }
 
   public void setTtsStopName(String ttsStopName) {
+    if (proxy != null) {
+      proxy.setTtsStopName(ttsStopName);
+      return;
+    }
     this.ttsStopName = ttsStopName;
   }
 }
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.model;
+
+import java.util.Map;
+
+/**
+ * @see Stop#setProxy(StopProxy)
+ */
+public interface StopProxy {
+
+  public AgencyAndId getId();
+
+  public void setId(AgencyAndId id);
+
+  public String getCode();
+
+  public void setCode(String code);
+
+  public String getName();
+
+  public void setName(String name);
+
+  public String getDesc();
+
+  public void setDesc(String desc);
+
+  public boolean isLatSet();
+
+  public double getLat();
+
+  public void setLat(double lat);
+
+  public void clearLat();
+
+  public boolean isLonSet();
+
+  public double getLon();
+
+  public void setLon(double lon);
+
+  public void clearLon();
+
+  public String getZoneId();
+
+  public void setZoneId(String zoneId);
+
+  public String getUrl();
+
+  public void setUrl(String url);
+
+  public int getLocationType();
+
+  public void setLocationType(int locationType);
+
+  public String getParentStation();
+
+  public void setParentStation(String parentStation);
+
+  public int getWheelchairBoarding();
+
+  public void setWheelchairBoarding(int wheelchairBoarding);
+
+  public String getTimezone();
+
+  public void setTimezone(String timezone);
+
+  public String getPlatformCode();
+
+  public void setPlatformCode(String platformCode);
+
+  public Level getLevel();
+
+  public void setLevel(Level level);
+
+  public String getDirection();
+
+  public void setDirection(String direction);
+
+  public int getVehicleType();
+
+  public void setVehicleType(int vehicleType);
+
+  public String getMtaStopId();
+
+  public void setMtaStopId(String mtaStopId);
+
+  public int getRegionalFareCardAccepted();
+
+  public void setRegionalFareCardAccepted(int regionalFareCardAccepted);
+
+  public String getTtsStopName();
+
+  public void setTtsStopName(String ttsStopName);
+
+  /**
+   * @return the extensions of the stop by type, which may not be modified
+   */
+  public Map<Class<?>, Object> getExtensions();
+
+  public void putExtension(Class<?> type, Object extension);
+}
@@ -16,6 +16,8 @@
  */
 package org.onebusaway.gtfs.model;
 
+import java.util.Map;
+
 import org.onebusaway.csv_entities.schema.annotations.CsvField;
 import org.onebusaway.csv_entities.schema.annotations.CsvFields;
 import org.onebusaway.gtfs.serialization.mappings.EntityFieldMappingFactory;
@@ -237,10 +239,17 @@ public final class StopTime extends IdentityBean<Integer> implements
   }
 
   public Integer getToStopSequence() {
+    if (proxy != null) {
+      return proxy.getToStopSequence();
+    }
     return toStopSequence;
   }
 
   public void setToStopSequence(Integer toStopSequence) {
+    if (proxy != null) {
+      proxy.setToStopSequence(toStopSequence);
+      return;
+    }
     this.toStopSequence = toStopSequence;
   }
 
@@ -379,18 +388,32 @@ public final class StopTime extends IdentityBean<Integer> implements
 
 
   public int getStartPickupDropOffWindow() {
+    if (proxy != null) {
+      return proxy.getStartPickupDropOffWindow();
+    }
     return startPickupDropOffWindow;
   }
 
   public void setStartPickupDropOffWindow(int startPickupDropOffWindow) {
+    if (proxy != null) {
+      proxy.setStartPickupDropOffWindow(startPickupDropOffWindow);
+      return;
+    }
     this.startPickupDropOffWindow = startPickupDropOffWindow;
   }
 
   public int getEndPickupDropOffWindow() {
+    if (proxy != null) {
+      return proxy.getEndPickupDropOffWindow();
+    }
     return endPickupDropOffWindow;
   }
 
   public void setEndPickupDropOffWindow(int endPickupDropOffWindow) {
+    if (proxy != null) {
+      proxy.setEndPickupDropOffWindow(endPickupDropOffWindow);
+      return;
+    }
     this.endPickupDropOffWindow = endPickupDropOffWindow;
   }
 
@@ -491,18 +514,32 @@ public final class StopTime extends IdentityBean<Integer> implements
   }
 
   public int getContinuousPickup() {
+    if (proxy != null) {
+      return proxy.getContinuousPickup();
+    }
     return continuousPickup;
   }
 
   public void setContinuousPickup(int continuousPickup) {
+    if (proxy != null) {
+      proxy.setContinuousPickup(continuousPickup);
+      return;
+    }
     this.continuousPickup = continuousPickup;
   }
 
   public int getContinuousDropOff() {
+    if (proxy != null) {
+      return proxy.getContinuousDropOff();
+    }
     return continuousDropOff;
   }
 
   public void setContinuousDropOff(int continuousDropOff) {
+    if (proxy != null) {
+      proxy.setContinuousDropOff(continuousDropOff);
+      return;
+    }
     this.continuousDropOff = continuousDropOff;
   }
 
@@ -537,10 +574,17 @@ public final class StopTime extends IdentityBean<Integer> implements
   }
 
   public String getFarePeriodId() {
+    if (proxy != null) {
+      return proxy.getFarePeriodId();
+    }
     return farePeriodId;
   }
 
   public void setFarePeriodId(String farePeriodId) {
+    if (proxy != null) {
+      proxy.setFarePeriodId(farePeriodId);
+      return;
+    }
     this.farePeriodId = farePeriodId;
   }
 
@@ -576,42 +620,77 @@ public final class StopTime extends IdentityBean<Integer> implements
   }
 
   public double getStartServiceAreaRadius() {
+    if (proxy != null) {
+      return proxy.getStartServiceAreaRadius();
+    }
     return startServiceAreaRadius;
   }
 
   public void setStartServiceAreaRadius(double startServiceAreaRadius) {
+    if (proxy != null) {
+      proxy.setStartServiceAreaRadius(startServiceAreaRadius);
+      return;
+    }
     this.startServiceAreaRadius = startServiceAreaRadius;
   }
 
   public double getEndServiceAreaRadius() {
+    if (proxy != null) {
+      return proxy.getEndServiceAreaRadius();
+    }
     return endServiceAreaRadius;
   }
 
   public void setEndServiceAreaRadius(double endServiceAreaRadius) {
+    if (proxy != null) {
+      proxy.setEndServiceAreaRadius(endServiceAreaRadius);
+      return;
+    }
     this.endServiceAreaRadius = endServiceAreaRadius;
   }
 
   public int getDepartureBuffer() {
+    if (proxy != null) {
+      return proxy.getDepartureBuffer();
+    }
     return departureBuffer;
   }
 
   public void setDepartureBuffer(int departureBuffer) {
+    if (proxy != null) {
+      proxy.setDepartureBuffer(departureBuffer);
+      return;
+    }
     this.departureBuffer = departureBuffer;
   }
 
   public String getTrack() {
+    if (proxy != null) {
+      return proxy.getTrack();
+    }
     return track;
   }
 
   public void setTrack(String track) {
+    if (proxy != null) {
+      proxy.setTrack(track);
+      return;
+    }
     this.track = track;
   }
 
   public Note getNote() {
+    if (proxy != null) {
+      return proxy.getNote();
+    }
     return note;
   }
 
   public void setNote(Note note) {
+    if (proxy != null) {
+      proxy.setNote(note);
+      return;
+    }
     this.note = note;
   }
 
@@ -649,6 +728,32 @@ public final class StopTime extends IdentityBean<Integer> implements
     this.dropOffBookingRule = dropOffBookingRule;
   }
 
+  @Override
+  public void putExtension(Class<?> type, Object extension) {
+    if (proxy != null) {
+      proxy.putExtension(type, extension);
+      return;
+    }
+    super.putExtension(type, extension);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <X> X getExtension(Class<X> type) {
+    if (proxy != null) {
+      return (X) proxy.getExtensions().get(type);
+    }
+    return super.getExtension(type);
+  }
+
+  @Override
+  public Map<Class<?>, Object> getExtensions() {
+    if (proxy != null) {
+      return proxy.getExtensions();
+    }
+    return super.getExtensions();
+  }
+
   /**
    * When set, all interactions with this stop time will be redirected through
    * this proxy.
@@ -680,49 +785,63 @@ public final class StopTime extends IdentityBean<Integer> implements
   }
 
 	public double getMeanDurationFactor() {
-		return meanDurationFactor;
+		if (proxy != null) {
+			return proxy.getMeanDurationFactor();
+		}
+		return this.meanDurationFactor;
 	}
 	
 	public void setMeanDurationFactor(double meanDurationFactor) {
+		if (proxy != null) {
+			proxy.setMeanDurationFactor(meanDurationFactor);
+			return;
+		}
 		this.meanDurationFactor = meanDurationFactor;
 	}
 	
 	public double getMeanDurationOffset() {
-		return meanDurationOffset;
+		if (proxy != null) {
+			return proxy.getMeanDurationOffset();
+		}
+		return this.meanDurationOffset;
 	}
 	
 	public void setMeanDurationOffset(double meanDurationOffset) {
+		if (proxy != null) {
+			proxy.setMeanDurationOffset(meanDurationOffset);
+			return;
+		}
 		this.meanDurationOffset = meanDurationOffset;
 	}
 	
 	public double getSafeDurationFactor() {
-	    if (proxy != null) {
-	        return proxy.getSafeDurationFactor();
-	      }
-	      return this.safeDurationFactor;
+		if (proxy != null) {
+			return proxy.getSafeDurationFactor();
+		}
+		return this.safeDurationFactor;
 	}
 	
 	public void setSafeDurationFactor(double safeDurationFactor) {
-	    if (proxy != null) {
-	        proxy.setSafeDurationFactor(safeDurationFactor);
-	        return;
-	      }
-	      this.safeDurationFactor = safeDurationFactor;
+		if (proxy != null) {
+			proxy.setSafeDurationFactor(safeDurationFactor);
+			return;
+		}
+		this.safeDurationFactor = safeDurationFactor;
 	}
 	
 	public double getSafeDurationOffset() {
-	    if (proxy != null) {
-	        return proxy.getSafeDurationOffset();
-	      }
-	      return this.safeDurationOffset;
+		if (proxy != null) {
+			return proxy.getSafeDurationOffset();
+		}
+		return this.safeDurationOffset;
 	}
 	
 	public void setSafeDurationOffset(double safeDurationOffset) {
-	    if (proxy != null) {
-	        proxy.setSafeDurationOffset(safeDurationOffset);
-	        return;
-	      }
-	    this.safeDurationOffset = safeDurationOffset;
+		if (proxy != null) {
+			proxy.setSafeDurationOffset(safeDurationOffset);
+			return;
+		}
+		this.safeDurationOffset = safeDurationOffset;
 	}
 
   public String getFreeRunningFlag() {
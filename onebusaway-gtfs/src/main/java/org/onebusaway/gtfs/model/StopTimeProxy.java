@@ -15,6 +15,8 @@
  */
 package org.onebusaway.gtfs.model;
 
+import java.util.Map;
+
 /**
  * 
  * @author bdferris
@@ -130,4 +132,55 @@ public interface StopTimeProxy {
 
   public void setFreeRunningFlag(String freeRunningFlag);
 
+  public Integer getToStopSequence();
+
+  public void setToStopSequence(Integer toStopSequence);
+
+  public int getStartPickupDropOffWindow();
+
+  public void setStartPickupDropOffWindow(int startPickupDropOffWindow);
+
+  public int getEndPickupDropOffWindow();
+
+  public void setEndPickupDropOffWindow(int endPickupDropOffWindow);
+
+  public int getContinuousPickup();
+
+  public void setContinuousPickup(int continuousPickup);
+
+  public int getContinuousDropOff();
+
+  public void setContinuousDropOff(int continuousDropOff);
+
+  public String getFarePeriodId();
+
+  public void setFarePeriodId(String farePeriodId);
+
+  public double getStartServiceAreaRadius();
+
+  public void setStartServiceAreaRadius(double startServiceAreaRadius);
+
+  public double getEndServiceAreaRadius();
+
+  public void setEndServiceAreaRadius(double endServiceAreaRadius);
+
+  public int getDepartureBuffer();
+
+  public void setDepartureBuffer(int departureBuffer);
+
+  public String getTrack();
+
+  public void setTrack(String track);
+
+  public Note getNote();
+
+  public void setNote(Note note);
+
+  /**
+   * @return the extensions of the stop time by type, which may not be
+   *         modified
+   */
+  public Map<Class<?>, Object> getExtensions();
+
+  public void putExtension(Class<?> type, Object extension);
 }
@@ -15,6 +15,8 @@
  */
 package org.onebusaway.gtfs.model;
 
+import java.util.Map;
+
 import org.onebusaway.csv_entities.schema.annotations.CsvField;
 import org.onebusaway.csv_entities.schema.annotations.CsvFields;
 import org.onebusaway.gtfs.annotations.Experimental;
@@ -104,133 +106,227 @@ public final class Trip extends IdentityBean<AgencyAndId> {
   @CsvField(optional = true, name = "boarding_type")
   private int boardingType;
 
+  @CsvField(ignore = true)
+  private transient TripProxy proxy = null;
+
   public Trip() {
 
   }
 
   public Trip(Trip obj) {
-    this.id = obj.id;
-    this.route = obj.route;
-    this.serviceId = obj.serviceId;
-    this.tripShortName = obj.tripShortName;
-    this.tripHeadsign = obj.tripHeadsign;
-    this.directionId = obj.directionId;
-    this.blockId = obj.blockId;
-    this.shapeId = obj.shapeId;
-    this.wheelchairAccessible = obj.wheelchairAccessible;
-    this.meanDurationFactor = obj.meanDurationFactor;
-    this.meanDurationOffset = obj.meanDurationOffset;
-    this.safeDurationFactor = obj.safeDurationFactor;
-    this.safeDurationOffset = obj.safeDurationOffset;
-    this.bikesAllowed = obj.bikesAllowed;
-    this.carsAllowed = obj.carsAllowed;
-    this.note = obj.note;
-    this.peakOffpeak = obj.peakOffpeak;
-    this.mtaTripId = obj.mtaTripId;
-    this.boardingType = obj.boardingType;
+    this.id = obj.getId();
+    this.route = obj.getRoute();
+    this.serviceId = obj.getServiceId();
+    this.tripShortName = obj.getTripShortName();
+    this.tripHeadsign = obj.getTripHeadsign();
+    this.directionId = obj.getDirectionId();
+    this.blockId = obj.getBlockId();
+    this.shapeId = obj.getShapeId();
+    this.wheelchairAccessible = obj.getWheelchairAccessible();
+    this.meanDurationFactor = obj.getMeanDurationFactor();
+    this.meanDurationOffset = obj.getMeanDurationOffset();
+    this.safeDurationFactor = obj.getSafeDurationFactor();
+    this.safeDurationOffset = obj.getSafeDurationOffset();
+    this.bikesAllowed = obj.getBikesAllowed();
+    this.carsAllowed = obj.getCarsAllowed();
+    this.note = obj.getNote();
+    this.peakOffpeak = obj.getPeakOffpeak();
+    this.mtaTripId = obj.getMtaTripId();
+    this.boardingType = obj.getBoardingType();
   }
 
   public AgencyAndId getId() {
+    if (proxy != null) {
+      return proxy.getId();
+    }
     return id;
   }
 
   public void setId(AgencyAndId id) {
+    if (proxy != null) {
+      proxy.setId(id);
+      return;
+    }
     this.id = id;
   }
 
   public Route getRoute() {
+    if (proxy != null) {
+      return proxy.getRoute();
+    }
     return route;
   }
 
   public void setRoute(Route route) {
+    if (proxy != null) {
+      proxy.setRoute(route);
+      return;
+    }
     this.route = route;
   }
 
   public AgencyAndId getServiceId() {
+    if (proxy != null) {
+      return proxy.getServiceId();
+    }
     return serviceId;
   }
 
   public void setServiceId(AgencyAndId serviceId) {
+    if (proxy != null) {
+      proxy.setServiceId(serviceId);
+      return;
+    }
     this.serviceId = serviceId;
   }
 
   public String getTripShortName() {
+    if (proxy != null) {
+      return proxy.getTripShortName();
+    }
     return tripShortName;
   }
 
   public void setTripShortName(String tripShortName) {
+    if (proxy != null) {
+      proxy.setTripShortName(tripShortName);
+      return;
+    }
     this.tripShortName = tripShortName;
   }
 
   public String getTripHeadsign() {
+    if (proxy != null) {
+      return proxy.getTripHeadsign();
+    }
     return tripHeadsign;
   }
 
   public void setTripHeadsign(String tripHeadsign) {
+    if (proxy != null) {
+      proxy.setTripHeadsign(tripHeadsign);
+      return;
+    }
     this.tripHeadsign = tripHeadsign;
   }
 
   public String getDirectionId() {
+    if (proxy != null) {
+      return proxy.getDirectionId();
+    }
     return directionId;
   }
 
   public void setDirectionId(String directionId) {
+    if (proxy != null) {
+      proxy.setDirectionId(directionId);
+      return;
+    }
     this.directionId = directionId;
   }
 
   public String getBlockId() {
+    if (proxy != null) {
+      return proxy.getBlockId();
+    }
     return blockId;
   }
 
   public void setBlockId(String blockId) {
+    if (proxy != null) {
+      proxy.setBlockId(blockId);
+      return;
+    }
     this.blockId = blockId;
   }
 
   public AgencyAndId getShapeId() {
+    if (proxy != null) {
+      return proxy.getShapeId();
+    }
     return shapeId;
   }
 
   public void setShapeId(AgencyAndId shapeId) {
+    if (proxy != null) {
+      proxy.setShapeId(shapeId);
+      return;
+    }
     this.shapeId = shapeId;
   }
 
   public void setWheelchairAccessible(int wheelchairAccessible) {
+    if (proxy != null) {
+      proxy.setWheelchairAccessible(wheelchairAccessible);
+      return;
+    }
     this.wheelchairAccessible = wheelchairAccessible;
   }
 
   public int getWheelchairAccessible() {
+    if (proxy != null) {
+      return proxy.getWheelchairAccessible();
+    }
     return wheelchairAccessible;
   }
 
   public Double getMeanDurationFactor() {
+    if (proxy != null) {
+      return proxy.getMeanDurationFactor();
+    }
     return meanDurationFactor;
   }
 
   public void setMeanDurationFactor(Double meanDurationFactor) {
+    if (proxy != null) {
+      proxy.setMeanDurationFactor(meanDurationFactor);
+      return;
+    }
     this.meanDurationFactor = meanDurationFactor;
   }
 
   public Double getMeanDurationOffset() {
+    if (proxy != null) {
+      return proxy.getMeanDurationOffset();
+    }
     return meanDurationOffset;
   }
 
   public void setMeanDurationOffset(Double meanDurationOffset) {
+    if (proxy != null) {
+      proxy.setMeanDurationOffset(meanDurationOffset);
+      return;
+    }
     this.meanDurationOffset = meanDurationOffset;
   }
 
   public Double getSafeDurationFactor() {
+    if (proxy != null) {
+      return proxy.getSafeDurationFactor();
+    }
     return safeDurationFactor;
   }
 
   public void setSafeDurationFactor(Double safeDurationFactor) {
+    if (proxy != null) {
+      proxy.setSafeDurationFactor(safeDurationFactor);
+      return;
+    }
     this.safeDurationFactor = safeDurationFactor;
   }
 
   public Double getSafeDurationOffset() {
+    if (proxy != null) {
+      return proxy.getSafeDurationOffset();
+    }
     return safeDurationOffset;
   }
 
   public void setSafeDurationOffset(Double safeDurationOffset) {
+    if (proxy != null) {
+      proxy.setSafeDurationOffset(safeDurationOffset);
+      return;
+    }
     this.safeDurationOffset = safeDurationOffset;
   }
 
@@ -238,6 +334,9 @@ public final class Trip extends IdentityBean<AgencyAndId> {
    * @return 0 = unknown / unspecified, 1 = bikes allowed, 2 = bikes NOT allowed
    */
   public int getBikesAllowed() {
+    if (proxy != null) {
+      return proxy.getBikesAllowed();
+    }
     return bikesAllowed;
   }
 
@@ -246,6 +345,10 @@ public final class Trip extends IdentityBean<AgencyAndId> {
    *          NOT allowed
    */
   public void setBikesAllowed(int bikesAllowed) {
+    if (proxy != null) {
+      proxy.setBikesAllowed(bikesAllowed);
+      return;
+    }
     this.bikesAllowed = bikesAllowed;
   }
 
@@ -253,6 +356,9 @@ public final class Trip extends IdentityBean<AgencyAndId> {
    * @return 0 = unknown / unspecified, 1 = cars allowed, 2 = cars NOT allowed
    */
   public int getCarsAllowed() {
+    if (proxy != null) {
+      return proxy.getCarsAllowed();
+    }
     return carsAllowed;
   }
 
@@ -261,6 +367,10 @@ public final class Trip extends IdentityBean<AgencyAndId> {
    *          NOT allowed
    */
   public void setCarsAllowed(int carsAllowed) {
+    if (proxy != null) {
+      proxy.setCarsAllowed(carsAllowed);
+      return;
+    }
     this.carsAllowed = carsAllowed;
   }
 
@@ -268,29 +378,103 @@ public final class Trip extends IdentityBean<AgencyAndId> {
     return "<Trip " + getId() + ">";
   }
 
+  @Override
+  public void putExtension(Class<?> type, Object extension) {
+    if (proxy != null) {
+      proxy.putExtension(type, extension);
+      return;
+    }
+    super.putExtension(type, extension);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <X> X getExtension(Class<X> type) {
+    if (proxy != null) {
+      return (X) proxy.getExtensions().get(type);
+    }
+    return super.getExtension(type);
+  }
+
+  @Override
+  public Map<Class<?>, Object> getExtensions() {
+    if (proxy != null) {
+      return proxy.getExtensions();
+    }
+    return super.getExtensions();
+  }
+
+  /**
+   * When set, all interactions with the trip's fields and extensions will be
+   * redirected through this proxy.
+   * 
+   * @param proxy
+   */
+  public void setProxy(TripProxy proxy) {
+    this.proxy = proxy;
+  }
+
+  public TripProxy getProxy() {
+    return proxy;
+  }
+
   public Note getNote() {
+    if (proxy != null) {
+      return proxy.getNote();
+    }
     return note;
   }
 
   public void setNote(Note note) {
+    if (proxy != null) {
+      proxy.setNote(note);
+      return;
+    }
     this.note = note;
   }
 
   public int getPeakOffpeak() {
+    if (proxy != null) {
+      return proxy.getPeakOffpeak();
+    }
     return peakOffpeak;
   }
 
   public void setPeakOffpeak(int peakOffpeak) {
+    if (proxy != null) {
+      proxy.setPeakOffpeak(peakOffpeak);
+      return;
+    }
     this.peakOffpeak = peakOffpeak;
   }
 
-  public String getMtaTripId() { return mtaTripId; }
+  public String getMtaTripId() {
+    if (proxy != null) {
+      return proxy.getMtaTripId();
+    }
+    return mtaTripId;
+  }
 
-  public void setMtaTripId(String mtaTripId) { this.mtaTripId = mtaTripId; }
+  public void setMtaTripId(String mtaTripId) {
+    if (proxy != null) {
+      proxy.setMtaTripId(mtaTripId);
+      return;
+    }
+    this.mtaTripId = mtaTripId;
+  }
 
-  public int getBoardingType() { return boardingType; }
+  public int getBoardingType() {
+    if (proxy != null) {
+      return proxy.getBoardingType();
+    }
+    return boardingType;
+  }
 
   public void setBoardingType(int boardingType) {
+    if (proxy != null) {
+      proxy.setBoardingType(boardingType);
+      return;
+    }
     this.boardingType = boardingType;
   }
 }
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.model;
+
+import java.util.Map;
+
+/**
+ * @see Trip#setProxy(TripProxy)
+ */
+public interface TripProxy {
+
+  public AgencyAndId getId();
+
+  public void setId(AgencyAndId id);
+
+  public Route getRoute();
+
+  public void setRoute(Route route);
+
+  public AgencyAndId getServiceId();
+
+  public void setServiceId(AgencyAndId serviceId);
+
+  public String getTripShortName();
+
+  public void setTripShortName(String tripShortName);
+
+  public String getTripHeadsign();
+
+  public void setTripHeadsign(String tripHeadsign);
+
+  public String getDirectionId();
+
+  public void setDirectionId(String directionId);
+
+  public String getBlockId();
+
+  public void setBlockId(String blockId);
+
+  public AgencyAndId getShapeId();
+
+  public void setShapeId(AgencyAndId shapeId);
+
+  public int getWheelchairAccessible();
+
+  public void setWheelchairAccessible(int wheelchairAccessible);
+
+  public int getBikesAllowed();
+
+  public void setBikesAllowed(int bikesAllowed);
+
+  public int getCarsAllowed();
+
+  public void setCarsAllowed(int carsAllowed);
+
+  public Double getMeanDurationFactor();
+
+  public void setMeanDurationFactor(Double meanDurationFactor);
+
+  public Double getMeanDurationOffset();
+
+  public void setMeanDurationOffset(Double meanDurationOffset);
+
+  public Double getSafeDurationFactor();
+
+  public void setSafeDurationFactor(Double safeDurationFactor);
+
+  public Double getSafeDurationOffset();
+
+  public void setSafeDurationOffset(Double safeDurationOffset);
+
+  public Note getNote();
+
+  public void setNote(Note note);
+
+  public int getPeakOffpeak();
+
+  public void setPeakOffpeak(int peakOffpeak);
+
+  public String getMtaTripId();
+
+  public void setMtaTripId(String mtaTripId);
+
+  public int getBoardingType();
+
+  public void setBoardingType(int boardingType);
+
+  /**
+   * @return the extensions of the trip by type, which may not be modified
+   */
+  public Map<Class<?>, Object> getExtensions();
+
+  public void putExtension(Class<?> type, Object extension);
+}
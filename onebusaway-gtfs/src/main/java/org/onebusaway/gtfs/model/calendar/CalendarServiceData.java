@@ -15,30 +15,96 @@
  */
 package org.onebusaway.gtfs.model.calendar;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.TimeZone;
 
 import org.onebusaway.gtfs.model.AgencyAndId;
 
+/**
+ * The service dates of each service id, and their localized dates.
+ * 
+ * Service ids are numbered densely in the order they are added, and the
+ * service dates of each are kept as a bitset of day numbers, counted in days
+ * since 1970-01-01, so that whether a service is active on a date is a single
+ * bit test. A bitset of the active services of each day, which answers
+ * {@link #getServiceIdsForDate(ServiceDate)}, is built from them when first
+ * needed after a change. Localized dates are kept as sorted epoch
+ * milliseconds, and localized dates that are the "midnight" of their
+ * service date, as {@link ServiceDate#getAsDate(TimeZone)} computes them, are
+ * also tested with a bit test.
+ * 
+ * A copy made with {@link #CalendarServiceData(CalendarServiceData)} shares
+ * the dates of the original, which are never modified, and a change to the
+ * copy updates the bitsets of the active services of the affected days only,
+ * so that a few service ids can be changed without rebuilding the rest.
+ */
 public class CalendarServiceData implements Serializable {
 
-  private static final long serialVersionUID = 1L;
+  private static final long serialVersionUID = 2L;
+
+  private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+  private static final long NOON_MILLIS = 12 * 60 * 60 * 1000L;
 
   private Map<String, TimeZone> _timeZonesByAgencyId = new HashMap<String, TimeZone>();
 
-  private Map<AgencyAndId, List<ServiceDate>> _serviceDatesByServiceId = new HashMap<AgencyAndId, List<ServiceDate>>();
+  private Map<AgencyAndId, Integer> _serviceIndices = new HashMap<AgencyAndId, Integer>();
+
+  private List<AgencyAndId> _serviceIds = new ArrayList<AgencyAndId>();
 
-  private Map<LocalizedServiceId, List<Date>> _datesByLocalizedServiceId = new HashMap<LocalizedServiceId, List<Date>>();
+  private List<DaySet> _daysByServiceIndex = new ArrayList<DaySet>();
+
+  private Map<LocalizedServiceId, LocalizedDates> _datesByLocalizedServiceId = new HashMap<LocalizedServiceId, LocalizedDates>();
+
+  private boolean _readOnly = false;
+
+  /**
+   * The active services of each day, built from {@link #_daysByServiceIndex}
+   * when first needed, and then updated as service dates change
+   */
+  private transient volatile ServicesByDay _servicesByDay;
 
-  private Map<ServiceDate, Set<AgencyAndId>> _serviceIdsByDate = new HashMap<ServiceDate, Set<AgencyAndId>>();
+  /**
+   * The indices of removed service ids, which are given to the next service
+   * ids added, or null until first needed
+   */
+  private transient Deque<Integer> _freeServiceIndices;
+
+  public CalendarServiceData() {
+
+  }
+
+  /**
+   * Copies the data, which is not modified by changes to the copy. The copy
+   * can be changed even if the data is read-only.
+   */
+  public CalendarServiceData(CalendarServiceData data) {
+    _timeZonesByAgencyId = new HashMap<String, TimeZone>(
+        data._timeZonesByAgencyId);
+    _serviceIndices = new HashMap<AgencyAndId, Integer>(data._serviceIndices);
+    _serviceIds = new ArrayList<AgencyAndId>(data._serviceIds);
+    _daysByServiceIndex = new ArrayList<DaySet>(data._daysByServiceIndex);
+    _datesByLocalizedServiceId = new HashMap<LocalizedServiceId, LocalizedDates>(
+        data._datesByLocalizedServiceId);
+    _servicesByDay = data._servicesByDay;
+  }
 
   /**
    * @param agencyId
@@ -50,58 +116,471 @@ public class CalendarServiceData implements Serializable {
   }
 
   public void putTimeZoneForAgencyId(String agencyId, TimeZone timeZone) {
+    checkNotReadOnly();
     _timeZonesByAgencyId.put(agencyId, timeZone);
   }
 
   public Set<AgencyAndId> getServiceIds() {
-    return Collections.unmodifiableSet(_serviceDatesByServiceId.keySet());
+    return Collections.unmodifiableSet(_serviceIndices.keySet());
   }
 
   public Set<LocalizedServiceId> getLocalizedServiceIds() {
     return Collections.unmodifiableSet(_datesByLocalizedServiceId.keySet());
   }
 
+  /**
+   * @return the service dates of the service id in ascending order, or null if
+   *         the service id was not found
+   */
   public List<ServiceDate> getServiceDatesForServiceId(AgencyAndId serviceId) {
-    return _serviceDatesByServiceId.get(serviceId);
+    Integer index = _serviceIndices.get(serviceId);
+    if (index == null)
+      return null;
+    DaySet days = _daysByServiceIndex.get(index);
+    List<ServiceDate> serviceDates = new ArrayList<ServiceDate>(
+        days.bits.cardinality());
+    for (int i = days.bits.nextSetBit(0); i >= 0; i = days.bits.nextSetBit(i + 1))
+      serviceDates.add(ServiceDate.ofEpochDay(days.firstDay + i));
+    return Collections.unmodifiableList(serviceDates);
   }
 
+  /**
+   * @return true if the service id is active on the service date
+   */
+  public boolean isServiceIdActiveOnDate(AgencyAndId serviceId,
+      ServiceDate date) {
+    Integer index = _serviceIndices.get(serviceId);
+    return index != null
+        && _daysByServiceIndex.get(index).contains(date.getAsEpochDay());
+  }
+
+  /**
+   * @return a new set of the service ids that are active on the service date
+   */
   public Set<AgencyAndId> getServiceIdsForDate(ServiceDate date) {
-    Set<AgencyAndId> serviceIds = _serviceIdsByDate.get(date);
-    if (serviceIds == null)
-      serviceIds = new HashSet<AgencyAndId>();
+    Set<AgencyAndId> serviceIds = new HashSet<AgencyAndId>();
+    BitSet services = getServicesByDay().get(date.getAsEpochDay());
+    if (services != null) {
+      for (int i = services.nextSetBit(0); i >= 0; i = services.nextSetBit(i + 1))
+        serviceIds.add(_serviceIds.get(i));
+    }
     return serviceIds;
   }
 
   public void putServiceDatesForServiceId(AgencyAndId serviceId,
       List<ServiceDate> serviceDates) {
-    serviceDates = new ArrayList<ServiceDate>(serviceDates);
-    Collections.sort(serviceDates);
-    serviceDates = Collections.unmodifiableList(serviceDates);
-    _serviceDatesByServiceId.put(serviceId, serviceDates);
-    for (ServiceDate serviceDate : serviceDates) {
-      Set<AgencyAndId> serviceIds = _serviceIdsByDate.get(serviceDate);
-      if (serviceIds == null) {
-        serviceIds = new HashSet<AgencyAndId>();
-        _serviceIdsByDate.put(serviceDate, serviceIds);
+    int[] days = new int[serviceDates.size()];
+    for (int i = 0; i < days.length; i++)
+      days[i] = serviceDates.get(i).getAsEpochDay();
+    putServiceDaysForServiceId(serviceId, days);
+  }
+
+  /**
+   * @param days the service dates of the service id, as days since 1970-01-01
+   *          as {@link ServiceDate#getAsEpochDay()} computes them
+   */
+  public void putServiceDaysForServiceId(AgencyAndId serviceId, int[] days) {
+    checkNotReadOnly();
+    DaySet daySet = DaySet.create(days);
+    Integer index = _serviceIndices.get(serviceId);
+    DaySet previous = DaySet.EMPTY;
+    if (index == null) {
+      index = getFreeServiceIndices().poll();
+      if (index == null) {
+        index = _serviceIds.size();
+        _serviceIds.add(serviceId);
+        _daysByServiceIndex.add(daySet);
+      } else {
+        _serviceIds.set(index, serviceId);
+        _daysByServiceIndex.set(index, daySet);
+      }
+      _serviceIndices.put(serviceId, index);
+    } else {
+      previous = _daysByServiceIndex.set(index, daySet);
+    }
+    updateServicesByDay(index, previous, daySet);
+  }
+
+  /**
+   * Removes the service dates and the localized dates of the service ids. The
+   * index of each removed service id is given to the next service id added.
+   */
+  public void removeServiceIds(Collection<AgencyAndId> serviceIds) {
+    checkNotReadOnly();
+    Set<AgencyAndId> removed = new HashSet<AgencyAndId>(serviceIds);
+    for (AgencyAndId serviceId : removed) {
+      Integer index = _serviceIndices.remove(serviceId);
+      if (index != null) {
+        _serviceIds.set(index, null);
+        DaySet previous = _daysByServiceIndex.set(index, DaySet.EMPTY);
+        updateServicesByDay(index, previous, DaySet.EMPTY);
+        getFreeServiceIndices().push(index);
       }
-      serviceIds.add(serviceId);
     }
+    removeLocalizedServiceIds(removed);
+  }
+
+  /**
+   * Removes the localized dates of the service ids, in every time zone, and
+   * keeps their service dates
+   */
+  public void removeLocalizedServiceIds(Collection<AgencyAndId> serviceIds) {
+    checkNotReadOnly();
+    Set<AgencyAndId> removed = new HashSet<AgencyAndId>(serviceIds);
+    _datesByLocalizedServiceId.keySet().removeIf(
+        id -> removed.contains(id.getId()));
   }
 
+  /**
+   * @return the localized dates of the service id in ascending order, or null
+   *         if the localized service id was not found
+   */
   public List<Date> getDatesForLocalizedServiceId(LocalizedServiceId serviceId) {
-    return _datesByLocalizedServiceId.get(serviceId);
+    LocalizedDates dates = _datesByLocalizedServiceId.get(serviceId);
+    if (dates == null)
+      return null;
+    return new DateList(dates.times);
+  }
+
+  /**
+   * As {@link #getDatesForLocalizedServiceId(LocalizedServiceId)}, without
+   * creating a {@link Date} for each date. The array is the data's own, and
+   * must not be modified.
+   *
+   * @return the localized dates of the service id, in milliseconds since the
+   *         epoch in ascending order, or null if the localized service id was
+   *         not found
+   */
+  public long[] getTimesForLocalizedServiceId(LocalizedServiceId serviceId) {
+    LocalizedDates dates = _datesByLocalizedServiceId.get(serviceId);
+    if (dates == null)
+      return null;
+    return dates.times;
+  }
+
+  /**
+   * @return true if the date is one of the localized dates of the service id
+   */
+  public boolean isLocalizedServiceIdActiveOnDate(
+      LocalizedServiceId serviceId, Date date) {
+    LocalizedDates dates = _datesByLocalizedServiceId.get(serviceId);
+    if (dates == null)
+      return false;
+    long time = date.getTime();
+    if (dates.days == null)
+      return Arrays.binarySearch(dates.times, time) >= 0;
+    long localNoon = getLocalNoon(time, serviceId.getTimeZone());
+    return Math.floorMod(localNoon, DAY_MILLIS) == NOON_MILLIS
+        && dates.days.contains(Math.floorDiv(localNoon, DAY_MILLIS));
   }
 
   public void putDatesForLocalizedServiceId(LocalizedServiceId serviceId,
       List<Date> dates) {
-    dates = Collections.unmodifiableList(new ArrayList<Date>(dates));
-    _datesByLocalizedServiceId.put(serviceId, dates);
+    long[] times = new long[dates.size()];
+    for (int i = 0; i < times.length; i++)
+      times[i] = dates.get(i).getTime();
+    putTimesForLocalizedServiceId(serviceId, times);
   }
 
+  /**
+   * @param times the localized dates of the service id, in milliseconds since
+   *          the epoch, which are sorted in place
+   */
+  public void putTimesForLocalizedServiceId(LocalizedServiceId serviceId,
+      long[] times) {
+    checkNotReadOnly();
+    Arrays.sort(times);
+    _datesByLocalizedServiceId.put(serviceId, new LocalizedDates(times,
+        getLocalizedDays(serviceId, times)));
+  }
+
+  /**
+   * Rejects any further change, and builds the active services of each day
+   */
   public void makeReadOnly() {
+    _readOnly = true;
     _timeZonesByAgencyId = Collections.unmodifiableMap(_timeZonesByAgencyId);
-    _serviceDatesByServiceId = Collections.unmodifiableMap(_serviceDatesByServiceId);
+    _serviceIndices = Collections.unmodifiableMap(_serviceIndices);
+    _serviceIds = Collections.unmodifiableList(_serviceIds);
+    _daysByServiceIndex = Collections.unmodifiableList(_daysByServiceIndex);
     _datesByLocalizedServiceId = Collections.unmodifiableMap(_datesByLocalizedServiceId);
-    _serviceIdsByDate = Collections.unmodifiableMap(_serviceIdsByDate);
+    getServicesByDay();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void checkNotReadOnly() {
+    if (_readOnly)
+      throw new UnsupportedOperationException(
+          "the calendar service data is read-only");
+  }
+
+  /**
+   * Updates the active services of each day, if they have been built, for a
+   * change of the days of a service
+   */
+  private Deque<Integer> getFreeServiceIndices() {
+    if (_freeServiceIndices == null) {
+      _freeServiceIndices = new ArrayDeque<Integer>();
+      for (int i = _serviceIds.size() - 1; i >= 0; i--) {
+        if (_serviceIds.get(i) == null)
+          _freeServiceIndices.push(i);
+      }
+    }
+    return _freeServiceIndices;
+  }
+
+  private void updateServicesByDay(int serviceIndex, DaySet previous,
+      DaySet days) {
+    ServicesByDay servicesByDay = _servicesByDay;
+    if (servicesByDay != null)
+      _servicesByDay = servicesByDay.update(serviceIndex, previous, days);
+  }
+
+  private ServicesByDay getServicesByDay() {
+    ServicesByDay servicesByDay = _servicesByDay;
+    if (servicesByDay == null) {
+      synchronized (this) {
+        servicesByDay = _servicesByDay;
+        if (servicesByDay == null) {
+          servicesByDay = ServicesByDay.create(_daysByServiceIndex);
+          _servicesByDay = servicesByDay;
+        }
+      }
+    }
+    return servicesByDay;
+  }
+
+  /**
+   * @return the days of the localized dates, if every one of them is the
+   *         "midnight" of its service date in the service id's time zone, and
+   *         otherwise null
+   */
+  private DaySet getLocalizedDays(LocalizedServiceId serviceId, long[] times) {
+    int[] days = new int[times.length];
+    for (int i = 0; i < times.length; i++) {
+      long localNoon = getLocalNoon(times[i], serviceId.getTimeZone());
+      if (Math.floorMod(localNoon, DAY_MILLIS) != NOON_MILLIS)
+        return null;
+      days[i] = Math.toIntExact(Math.floorDiv(localNoon, DAY_MILLIS));
+    }
+    DaySet daySet = DaySet.create(days);
+    Integer index = _serviceIndices.get(serviceId.getId());
+    if (index != null && _daysByServiceIndex.get(index).equals(daySet))
+      return _daysByServiceIndex.get(index);
+    return daySet;
+  }
+
+  /**
+   * A date is the "midnight" of a service date when twelve hours later it is
+   * exactly noon on that date, local time.
+   * 
+   * @return the local time, in milliseconds since 1970-01-01T00:00 local time,
+   *         twelve hours after the specified time
+   */
+  private static long getLocalNoon(long time, TimeZone timeZone) {
+    long noon = time + NOON_MILLIS;
+    return noon + timeZone.getOffset(noon);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException,
+      ClassNotFoundException {
+    in.defaultReadObject();
+    if (_readOnly)
+      getServicesByDay();
+  }
+
+  /**
+   * A set of day numbers, as a bitset offset by the first day
+   */
+  private static final class DaySet implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final DaySet EMPTY = new DaySet(0, new BitSet());
+
+    private final long firstDay;
+
+    private final BitSet bits;
+
+    private DaySet(long firstDay, BitSet bits) {
+      this.firstDay = firstDay;
+      this.bits = bits;
+    }
+
+    public static DaySet create(int[] days) {
+      int firstDay = 0;
+      if (days.length > 0) {
+        firstDay = Integer.MAX_VALUE;
+        for (int day : days)
+          firstDay = Math.min(firstDay, day);
+      }
+      BitSet bits = new BitSet();
+      for (int day : days)
+        bits.set(day - firstDay);
+      return new DaySet(firstDay, bits);
+    }
+
+    public boolean contains(long day) {
+      long index = day - firstDay;
+      return index >= 0 && index <= Integer.MAX_VALUE && bits.get((int) index);
+    }
+
+    public boolean isEmpty() {
+      return bits.isEmpty();
+    }
+
+    public long getFirstDay() {
+      return firstDay;
+    }
+
+    public long getLastDay() {
+      return firstDay + bits.length() - 1;
+    }
+
+    @Override
+    public int hashCode() {
+      return bits.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof DaySet))
+        return false;
+      DaySet other = (DaySet) obj;
+      if (bits.isEmpty() || other.bits.isEmpty())
+        return bits.isEmpty() && other.bits.isEmpty();
+      return firstDay == other.firstDay && bits.equals(other.bits);
+    }
+  }
+
+  /**
+   * The bitset of the active service indices of each day
+   */
+  private static final class ServicesByDay {
+
+    private final long firstDay;
+
+    private final BitSet[] services;
+
+    private ServicesByDay(long firstDay, BitSet[] services) {
+      this.firstDay = firstDay;
+      this.services = services;
+    }
+
+    public static ServicesByDay create(List<DaySet> daysByServiceIndex) {
+      long firstDay = Long.MAX_VALUE;
+      long lastDay = Long.MIN_VALUE;
+      for (DaySet days : daysByServiceIndex) {
+        if (!days.isEmpty()) {
+          firstDay = Math.min(firstDay, days.getFirstDay());
+          lastDay = Math.max(lastDay, days.getLastDay());
+        }
+      }
+      if (firstDay > lastDay)
+        return new ServicesByDay(0, new BitSet[0]);
+      BitSet[] services = new BitSet[Math.toIntExact(lastDay - firstDay + 1)];
+      for (int serviceIndex = 0; serviceIndex < daysByServiceIndex.size(); serviceIndex++) {
+        DaySet days = daysByServiceIndex.get(serviceIndex);
+        int offset = (int) (days.getFirstDay() - firstDay);
+        for (int i = days.bits.nextSetBit(0); i >= 0; i = days.bits.nextSetBit(i + 1)) {
+          BitSet bits = services[offset + i];
+          if (bits == null) {
+            bits = new BitSet(daysByServiceIndex.size());
+            services[offset + i] = bits;
+          }
+          bits.set(serviceIndex);
+        }
+      }
+      return new ServicesByDay(firstDay, services);
+    }
+
+    /**
+     * @return the active services of each day after a change of the days of a
+     *         service, sharing the bitsets of the days that are not affected
+     */
+    public ServicesByDay update(int serviceIndex, DaySet previous, DaySet days) {
+      long first = firstDay;
+      long last = firstDay + services.length - 1;
+      if (!days.isEmpty()) {
+        first = services.length == 0 ? days.getFirstDay() : Math.min(first,
+            days.getFirstDay());
+        last = services.length == 0 ? days.getLastDay() : Math.max(last,
+            days.getLastDay());
+      }
+      BitSet[] updated = new BitSet[Math.toIntExact(Math.max(last - first + 1,
+          0))];
+      System.arraycopy(services, 0, updated, (int) (firstDay - first),
+          services.length);
+      for (int i = previous.bits.nextSetBit(0); i >= 0; i = previous.bits.nextSetBit(i + 1)) {
+        int index = (int) (previous.firstDay + i - first);
+        updated[index] = (BitSet) updated[index].clone();
+        updated[index].clear(serviceIndex);
+        if (updated[index].isEmpty())
+          updated[index] = null;
+      }
+      for (int i = days.bits.nextSetBit(0); i >= 0; i = days.bits.nextSetBit(i + 1)) {
+        int index = (int) (days.firstDay + i - first);
+        updated[index] = updated[index] == null ? new BitSet()
+            : (BitSet) updated[index].clone();
+        updated[index].set(serviceIndex);
+      }
+      return new ServicesByDay(first, updated);
+    }
+
+    /**
+     * @return the active service indices of the day, or null if there are none
+     */
+    public BitSet get(long day) {
+      long index = day - firstDay;
+      if (index < 0 || index >= services.length)
+        return null;
+      return services[(int) index];
+    }
+  }
+
+  private static final class LocalizedDates implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] times;
+
+    /**
+     * The days of the dates, or null if not every date is the "midnight" of
+     * its service date
+     */
+    private final DaySet days;
+
+    public LocalizedDates(long[] times, DaySet days) {
+      this.times = times;
+      this.days = days;
+    }
+  }
+
+  /**
+   * A read-only view of localized dates, creating a {@link Date} per read
+   */
+  private static final class DateList extends AbstractList<Date> implements
+      RandomAccess {
+
+    private final long[] times;
+
+    public DateList(long[] times) {
+      this.times = times;
+    }
+
+    @Override
+    public Date get(int index) {
+      return new Date(times[index]);
+    }
+
+    @Override
+    public int size() {
+      return times.length;
+    }
   }
 }
@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
+import java.time.LocalDate;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -113,6 +114,16 @@ public class ServiceDate implements Serializable, Comparable<ServiceDate> {
     return new ServiceDate(year, month, day);
   }
 
+  /**
+   * @param epochDay the number of days since 1970-01-01
+   * @return the service date of the day
+   */
+  public static ServiceDate ofEpochDay(long epochDay) {
+    LocalDate date = LocalDate.ofEpochDay(epochDay);
+    return new ServiceDate(date.getYear(), date.getMonthValue(),
+        date.getDayOfMonth());
+  }
+
   public int getYear() {
     return year;
   }
@@ -173,6 +184,17 @@ public class ServiceDate implements Serializable, Comparable<ServiceDate> {
     return c.getTime();
   }
 
+  /**
+   * Months and days out of range roll over into the following months and
+   * years, as they do in {@link #getAsCalendar(TimeZone)}.
+   * 
+   * @return the number of days from 1970-01-01 to this service date
+   */
+  public int getAsEpochDay() {
+    return Math.toIntExact(LocalDate.of(year, 1, 1).plusMonths(month - 1).plusDays(
+        day - 1).toEpochDay());
+  }
+
   /**
    * @return a string in "YYYYMMDD" format
    */
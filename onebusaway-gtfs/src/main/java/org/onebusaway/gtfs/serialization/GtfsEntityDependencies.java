@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.LocationGroup;
+import org.onebusaway.gtfs.model.LocationGroupElement;
+import org.onebusaway.gtfs.model.StopArea;
+import org.onebusaway.gtfs.model.StopAreaElement;
+
+/**
+ * Computes which entity classes in a {@link GtfsReader} load list can be read
+ * concurrently. Entity references are resolved while a file is being read, so
+ * a class can only be read once every class it references has been fully
+ * loaded into the entity store.
+ * 
+ * Dependencies between GTFS model classes are derived from the types of their
+ * fields (e.g. {@code StopTime.trip} makes stop_times.txt depend on
+ * trips.txt), plus an implicit dependency on {@link Agency} for default agency
+ * ids. Classes outside the GTFS model package depend on every class before
+ * them in the load list. The result preserves the visibility of the sequential
+ * load order: a class never sees entities from a class listed after it.
+ */
+final class GtfsEntityDependencies {
+
+  private static final String MODEL_PACKAGE = Agency.class.getPackage().getName();
+
+  /**
+   * Entity types that are created or modified by the reader's entity handler
+   * while loading another class
+   */
+  private static final Map<Class<?>, Class<?>> _producedTypes = new HashMap<Class<?>, Class<?>>();
+
+  static {
+    _producedTypes.put(StopAreaElement.class, StopArea.class);
+    _producedTypes.put(LocationGroupElement.class, LocationGroup.class);
+  }
+
+  private GtfsEntityDependencies() {
+
+  }
+
+  /**
+   * @param entityClasses the entity classes in sequential load order
+   * @return groups of indices into the load list; all classes in a group can
+   *         be read concurrently once the previous groups have been loaded.
+   *         Indices within a group are in ascending order.
+   */
+  public static List<List<Integer>> getLoadWaves(List<Class<?>> entityClasses) {
+
+    int n = entityClasses.size();
+    int[] levels = new int[n];
+
+    for (int i = 0; i < n; i++) {
+      Class<?> entityClass = entityClasses.get(i);
+      int level = 0;
+      for (int j = 0; j < i; j++) {
+        if (dependsOn(entityClass, entityClasses.get(j)))
+          level = Math.max(level, levels[j] + 1);
+        else if (dependsOn(entityClasses.get(j), entityClass))
+          /**
+           * An earlier class references this one but must not see its
+           * entities, so this class may not be loaded before that one is read
+           */
+          level = Math.max(level, levels[j]);
+      }
+      levels[i] = level;
+    }
+
+    TreeMap<Integer, List<Integer>> waves = new TreeMap<Integer, List<Integer>>();
+    for (int i = 0; i < n; i++) {
+      List<Integer> wave = waves.get(levels[i]);
+      if (wave == null) {
+        wave = new ArrayList<Integer>();
+        waves.put(levels[i], wave);
+      }
+      wave.add(i);
+    }
+    return new ArrayList<List<Integer>>(waves.values());
+  }
+
+  /**
+   * @return true if reading entities of the first type may look up entities of
+   *         the second type
+   */
+  static boolean dependsOn(Class<?> entityClass, Class<?> otherClass) {
+
+    if (entityClass == otherClass)
+      return true;
+
+    if (!isModelClass(entityClass))
+      return true;
+
+    if (otherClass == Agency.class)
+      return true;
+
+    Class<?> producedType = _producedTypes.get(otherClass);
+
+    for (Class<?> c = entityClass; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        Class<?> type = field.getType();
+        if (!isModelClass(type))
+          continue;
+        if (type.isAssignableFrom(otherClass))
+          return true;
+        if (producedType != null && type.isAssignableFrom(producedType))
+          return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isModelClass(Class<?> type) {
+    Package p = type.getPackage();
+    return p != null && p.getName().equals(MODEL_PACKAGE);
+  }
+}
@@ -20,14 +20,24 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.onebusaway.csv_entities.CsvEntityContext;
 import org.onebusaway.csv_entities.CsvEntityReader;
 import org.onebusaway.csv_entities.CsvInputSource;
+import org.onebusaway.csv_entities.CsvStringPool;
 import org.onebusaway.csv_entities.CsvTokenizerStrategy;
 import org.onebusaway.csv_entities.EntityHandler;
+import org.onebusaway.csv_entities.ListEntityHandler;
 import org.onebusaway.csv_entities.exceptions.CsvEntityIOException;
 import org.onebusaway.csv_entities.schema.DefaultEntitySchemaFactory;
+import org.onebusaway.gtfs.impl.GenericDaoImpl;
 import org.onebusaway.gtfs.impl.GtfsDaoImpl;
 import org.onebusaway.gtfs.impl.ZipHandler;
 import org.onebusaway.gtfs.model.*;
@@ -46,11 +56,15 @@ public class GtfsReader extends CsvEntityReader {
 
   private GtfsReaderContextImpl _context = new GtfsReaderContextImpl();
 
-  private GenericMutableDao _entityStore = new GtfsDaoImpl();
+  private GenericMutableDao _entityStore;
 
   private List<Agency> _agencies = new ArrayList<Agency>();
 
-  private Map<Class<?>, Map<String, String>> _agencyIdsByEntityClassAndId = new HashMap<Class<?>, Map<String, String>>();
+  /**
+   * Concurrent, since field mappings look up agency ids while the entities of
+   * a file read in chunks are being handled
+   */
+  private Map<Class<?>, Map<String, String>> _agencyIdsByEntityClassAndId = new ConcurrentHashMap<Class<?>, Map<String, String>>();
 
   private String _defaultAgencyId;
 
@@ -60,8 +74,16 @@ public class GtfsReader extends CsvEntityReader {
 
   private File _inputLocation = null;
 
+  private int _parallelism = 1;
+
+  private AgencyAndIdPool _agencyAndIdPool;
+
   public GtfsReader() {
 
+    GtfsDaoImpl entityStore = new GtfsDaoImpl();
+    _entityStore = entityStore;
+    _agencyAndIdPool = entityStore.getAgencyAndIdPool();
+
     _entityClasses.add(Agency.class);
     _entityClasses.add(Block.class);
     _entityClasses.add(ShapePoint.class);
@@ -111,6 +133,14 @@ public class GtfsReader extends CsvEntityReader {
     
     setTrimValues(true);
 
+    /**
+     * Deduplicate the columns whose values are typically repeated across many
+     * rows and retained by the entities (directly or inside an AgencyAndId)
+     */
+    setStringPool(new CsvStringPool(Arrays.asList("agency_id", "route_id",
+        "service_id", "shape_id", "block_id", "trip_headsign", "stop_headsign",
+        "zone_id")));
+
     /**
      * Prep the Entity Schema Factories
      */
@@ -168,8 +198,23 @@ public class GtfsReader extends CsvEntityReader {
     return _entityStore;
   }
 
+  /**
+   * When the entity store is a {@link GtfsDaoImpl}, as the default store is,
+   * the reader adopts the store's {@link AgencyAndIdPool}, so that ids read
+   * from the feed and keys of the store's indexes share instances.
+   */
   public void setEntityStore(GenericMutableDao entityStore) {
     _entityStore = entityStore;
+    if (entityStore instanceof GtfsDaoImpl)
+      _agencyAndIdPool = ((GtfsDaoImpl) entityStore).getAgencyAndIdPool();
+  }
+
+  public AgencyAndIdPool getAgencyAndIdPool() {
+    return _agencyAndIdPool;
+  }
+
+  public void setAgencyAndIdPool(AgencyAndIdPool agencyAndIdPool) {
+    _agencyAndIdPool = agencyAndIdPool;
   }
 
   public List<Class<?>> getEntityClasses() {
@@ -184,16 +229,52 @@ public class GtfsReader extends CsvEntityReader {
     _overwriteDuplicates = overwriteDuplicates;
   }
 
-  public void readEntities(Class<?> entityClass, Reader reader) throws IOException, CsvEntityIOException {
+  /**
+   * Enables parallel loading when greater than one: entity classes whose
+   * references have all been loaded are read concurrently on a pool of this
+   * many threads, and their entities are then passed to the entity handlers
+   * and entity store on the calling thread, in load order. Only supported for
+   * in-memory entity stores extending {@link GenericDaoImpl}; other stores are
+   * always loaded sequentially. Each file's entities are held in memory until
+   * all files read alongside it have been parsed.
+   * 
+   * @param parallelism the maximum number of files to read concurrently
+   */
+  public void setParallelism(int parallelism) {
+    _parallelism = parallelism;
+  }
+
+  public int getParallelism() {
+    return _parallelism;
+  }
+
+  @Override
+  protected void readEntities(Class<?> entityClass, Reader reader,
+      EntityHandler handler) throws IOException, CsvEntityIOException {
     if (entityClass == Location.class) {
       for (Location location : new LocationsGeoJSONReader(reader, getDefaultAgencyId()).read()) {
-        injectEntity(location);
+        handler.handleEntity(location);
       }
     } else {
-      super.readEntities(entityClass, reader);
+      super.readEntities(entityClass, reader, handler);
     }
   }
 
+  @Override
+  protected boolean canReadFromBuffer(Class<?> entityClass) {
+    return entityClass != Location.class;
+  }
+
+  /**
+   * Chunked reads are limited to in-memory entity stores, for the same reasons
+   * as {@link #setParallelism(int)}.
+   */
+  @Override
+  protected boolean canReadInChunks(Class<?> entityClass) {
+    return _entityStore instanceof GenericDaoImpl
+        && super.canReadInChunks(entityClass);
+  }
+
   public void run() throws IOException {
     run(getInputSource());
   }
@@ -204,11 +285,15 @@ public class GtfsReader extends CsvEntityReader {
 
     _entityStore.open();
 
-    for (Class<?> entityClass : classes) {
-      _log.info("reading entities: " + entityClass.getName());
+    if (_parallelism > 1 && _entityStore instanceof GenericDaoImpl) {
+      runInParallel(classes, source);
+    } else {
+      for (Class<?> entityClass : classes) {
+        _log.info("reading entities: " + entityClass.getName());
 
-      readEntities(entityClass, source);
-      _entityStore.flush();
+        readEntities(entityClass, source);
+        _entityStore.flush();
+      }
     }
 
     _entityStore.close();
@@ -228,6 +313,85 @@ public class GtfsReader extends CsvEntityReader {
     }
   }
 
+  /**
+   * Reads the entity classes in waves of mutually independent classes, as
+   * computed by {@link GtfsEntityDependencies}. The files of a wave are parsed
+   * concurrently, and only read from the entity store. Once the whole wave has
+   * been parsed, its entities are handled on this thread in load order, so
+   * the store is never modified while a file is being parsed.
+   */
+  private void runInParallel(List<Class<?>> classes, final CsvInputSource source)
+      throws IOException {
+
+    List<List<Integer>> waves = GtfsEntityDependencies.getLoadWaves(classes);
+
+    ExecutorService executor = Executors.newFixedThreadPool(_parallelism,
+        new ThreadFactory() {
+          private int _index = 0;
+
+          @Override
+          public synchronized Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "gtfs-reader-" + (_index++));
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+
+    try {
+      for (List<Integer> wave : waves) {
+
+        List<Future<List<Object>>> results = new ArrayList<Future<List<Object>>>();
+        for (int index : wave) {
+          final Class<?> entityClass = classes.get(index);
+          results.add(executor.submit(new Callable<List<Object>>() {
+            @Override
+            public List<Object> call() throws Exception {
+              _log.info("reading entities: " + entityClass.getName());
+              ListEntityHandler<Object> buffer = new ListEntityHandler<Object>();
+              readEntities(entityClass, source, buffer);
+              return buffer.getValues();
+            }
+          }));
+        }
+
+        /**
+         * Wait for the whole wave before touching the entity store, since
+         * other files of the wave may still be reading from it
+         */
+        List<List<Object>> entitiesByClass = new ArrayList<List<Object>>();
+        for (Future<List<Object>> result : results)
+          entitiesByClass.add(getResult(result));
+
+        for (List<Object> entities : entitiesByClass) {
+          for (Object entity : entities)
+            injectEntity(entity);
+          _entityStore.flush();
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<Object> getResult(Future<List<Object>> result)
+      throws IOException {
+    try {
+      return result.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while reading entities");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
+
   private String readContent(File inputLocation, String filename) {
     if (inputLocation.getAbsoluteFile().getName().endsWith(".zip")) {
       // zip file
@@ -433,6 +597,10 @@ public class GtfsReader extends CsvEntityReader {
       return GtfsReader.this.getAgencyForEntity(entityType, entityId);
     }
 
+    public AgencyAndId getAgencyAndId(String agencyId, String id) {
+      return _agencyAndIdPool.getId(agencyId, id);
+    }
+
     public String getTranslatedAgencyId(String agencyId) {
       return GtfsReader.this.getTranslatedAgencyId(agencyId);
     }
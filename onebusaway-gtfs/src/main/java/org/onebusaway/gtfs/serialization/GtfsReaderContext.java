@@ -16,6 +16,7 @@
 package org.onebusaway.gtfs.serialization;
 
 import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.AgencyAndId;
 
 import java.io.Serializable;
 import java.util.List;
@@ -31,4 +32,13 @@ public interface GtfsReaderContext {
   public Object getEntity(Class<?> entityClass, Serializable id);
 
   public String getAgencyForEntity(Class<?> entityType, String entityId);
+
+  /**
+   * @return the id for the specified agency id and id, which readers share
+   *         between all the entities they read, and which is a new id by
+   *         default
+   */
+  public default AgencyAndId getAgencyAndId(String agencyId, String id) {
+    return new AgencyAndId(agencyId, id);
+  }
 }
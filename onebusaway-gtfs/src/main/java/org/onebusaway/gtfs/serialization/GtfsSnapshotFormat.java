@@ -0,0 +1,264 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.geojson.GeoJsonObject;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.IdentityBean;
+import org.onebusaway.gtfs.model.Location;
+import org.onebusaway.gtfs.model.StopArea;
+import org.onebusaway.gtfs.model.Translation;
+import org.onebusaway.gtfs.model.calendar.ServiceDate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Constants and field introspection shared by {@link GtfsSnapshotWriter} and
+ * {@link GtfsSnapshotReader}.
+ * 
+ * A snapshot starts with {@link #MAGIC}, the format version and a reserved
+ * int. Then come the columns of each entity class, one per persistent field,
+ * followed by a table of the ids and a table of the strings that the columns
+ * refer to by index, and a directory with the offset and length of each
+ * column and table. The file ends with the offset of the directory and a
+ * CRC32C of all the bytes before it. All values are big-endian.
+ */
+final class GtfsSnapshotFormat {
+
+  static final byte[] MAGIC = {'O', 'B', 'A', 'G', 'T', 'F', 'S', 0};
+
+  static final int VERSION = 1;
+
+  static final int HEADER_LENGTH = MAGIC.length + 8;
+
+  static final int FOOTER_LENGTH = 16;
+
+  /****
+   * Column kinds, with the width of each value where it is fixed
+   ****/
+
+  static final byte KIND_INT = 1;
+
+  static final byte KIND_LONG = 2;
+
+  static final byte KIND_FLOAT = 3;
+
+  static final byte KIND_DOUBLE = 4;
+
+  static final byte KIND_BOOLEAN = 5;
+
+  /**
+   * An index into the string table, or -1 for null
+   */
+  static final byte KIND_STRING = 6;
+
+  /**
+   * An index into the id table, or -1 for null
+   */
+  static final byte KIND_ID = 7;
+
+  /**
+   * A service date as yyyymmdd, or -1 for null
+   */
+  static final byte KIND_DATE = 8;
+
+  /**
+   * The index of the entity's class in the directory and its row, or -1 and 0
+   * for null
+   */
+  static final byte KIND_REF = 9;
+
+  /**
+   * A presence byte followed by an int
+   */
+  static final byte KIND_BOXED_INT = 10;
+
+  /**
+   * A presence byte followed by a double
+   */
+  static final byte KIND_BOXED_DOUBLE = 11;
+
+  /**
+   * A tagged value of variable length
+   */
+  static final byte KIND_OBJECT = 12;
+
+  /****
+   * Tags of the values of {@link #KIND_OBJECT} columns
+   ****/
+
+  static final byte TAG_NULL = 0;
+
+  static final byte TAG_STRING = 1;
+
+  static final byte TAG_ID = 2;
+
+  static final byte TAG_DATE = 3;
+
+  static final byte TAG_REF = 4;
+
+  static final byte TAG_INT = 5;
+
+  static final byte TAG_LONG = 6;
+
+  static final byte TAG_DOUBLE = 7;
+
+  static final byte TAG_FLOAT = 8;
+
+  static final byte TAG_BOOLEAN = 9;
+
+  static final byte TAG_LIST = 10;
+
+  static final byte TAG_SET = 11;
+
+  /**
+   * A GeoJSON object, as an index into the string table
+   */
+  static final byte TAG_GEOJSON = 12;
+
+  private static final ObjectMapper _geoJsonMapper = new ObjectMapper();
+
+  private GtfsSnapshotFormat() {
+
+  }
+
+  /**
+   * @return the entity classes written by {@link GtfsWriter}, along with the
+   *         classes that {@link GtfsReader} loads or creates that it does not
+   *         write
+   */
+  static List<Class<?>> getDefaultEntityClasses() {
+    Set<Class<?>> entityClasses = new LinkedHashSet<Class<?>>(
+        GtfsEntitySchemaFactory.getEntityClasses());
+    entityClasses.add(Location.class);
+    entityClasses.add(StopArea.class);
+    entityClasses.add(Translation.class);
+    return new ArrayList<Class<?>>(entityClasses);
+  }
+
+  /**
+   * @return the non-static, non-transient fields of the entity class and its
+   *         superclasses below {@link IdentityBean}, superclass fields first
+   */
+  static List<Field> getPersistentFields(Class<?> entityClass) {
+    List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+    for (Class<?> c = entityClass; c != null && c != Object.class
+        && c != IdentityBean.class; c = c.getSuperclass())
+      hierarchy.add(0, c);
+    List<Field> fields = new ArrayList<Field>();
+    for (Class<?> c : hierarchy) {
+      for (Field field : c.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+            || field.isSynthetic())
+          continue;
+        if (Modifier.isFinal(modifiers))
+          throw new IllegalArgumentException("final field " + field
+              + " cannot be restored");
+        field.setAccessible(true);
+        fields.add(field);
+      }
+    }
+    return fields;
+  }
+
+  static byte getKind(Class<?> type) {
+    if (type == Integer.TYPE)
+      return KIND_INT;
+    if (type == Long.TYPE)
+      return KIND_LONG;
+    if (type == Float.TYPE)
+      return KIND_FLOAT;
+    if (type == Double.TYPE)
+      return KIND_DOUBLE;
+    if (type == Boolean.TYPE)
+      return KIND_BOOLEAN;
+    if (type == String.class)
+      return KIND_STRING;
+    if (type == AgencyAndId.class)
+      return KIND_ID;
+    if (type == ServiceDate.class)
+      return KIND_DATE;
+    if (type == Integer.class)
+      return KIND_BOXED_INT;
+    if (type == Double.class)
+      return KIND_BOXED_DOUBLE;
+    if (IdentityBean.class.isAssignableFrom(type)
+        || (type.isInterface() && !Collection.class.isAssignableFrom(type)))
+      return KIND_REF;
+    return KIND_OBJECT;
+  }
+
+  /**
+   * @return the width of each value of a column of the specified kind, or -1
+   *         if values vary in width
+   */
+  static int getWidth(byte kind) {
+    switch (kind) {
+      case KIND_BOOLEAN:
+        return 1;
+      case KIND_INT:
+      case KIND_FLOAT:
+      case KIND_STRING:
+      case KIND_ID:
+      case KIND_DATE:
+        return 4;
+      case KIND_BOXED_INT:
+        return 5;
+      case KIND_LONG:
+      case KIND_DOUBLE:
+      case KIND_REF:
+        return 8;
+      case KIND_BOXED_DOUBLE:
+        return 9;
+      default:
+        return -1;
+    }
+  }
+
+  static int toDateValue(ServiceDate date) {
+    if (date == null)
+      return -1;
+    return date.getYear() * 10000 + date.getMonth() * 100 + date.getDay();
+  }
+
+  static ServiceDate fromDateValue(int value) {
+    if (value == -1)
+      return null;
+    return new ServiceDate(value / 10000, (value / 100) % 100, value % 100);
+  }
+
+  static String toGeoJson(GeoJsonObject object) {
+    try {
+      return _geoJsonMapper.writeValueAsString(object);
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("error writing geometry " + object, ex);
+    }
+  }
+
+  static GeoJsonObject fromGeoJson(String value) throws IOException {
+    return _geoJsonMapper.readValue(value, GeoJsonObject.class);
+  }
+}
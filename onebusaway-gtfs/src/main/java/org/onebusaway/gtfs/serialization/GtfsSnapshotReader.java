@@ -0,0 +1,427 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import static org.onebusaway.gtfs.serialization.GtfsSnapshotFormat.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+import org.onebusaway.gtfs.impl.GtfsDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.AgencyAndIdPool;
+import org.onebusaway.gtfs.services.GenericMutableDao;
+import org.onebusaway.gtfs.services.GtfsDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Restores the entities and metadata written by {@link GtfsSnapshotWriter}
+ * into an entity store. The snapshot is memory-mapped, and its checksum is
+ * verified before any entity is created. Only the entity classes listed in
+ * {@link #getEntityClasses()} are accepted.
+ * 
+ * Entities are saved to the store in the order they were written. Indices of
+ * the store are not part of the snapshot: a {@link GtfsDaoImpl} clusters its
+ * packed stop times when it is closed at the end of {@link #run()}, and the
+ * indices of a relational dao are built as they would be after reading a
+ * feed.
+ */
+public class GtfsSnapshotReader {
+
+  private static final Logger _log = LoggerFactory.getLogger(GtfsSnapshotReader.class);
+
+  /**
+   * Checksums are computed over mappings of at most this many bytes
+   */
+  private static final int CHECKSUM_CHUNK_SIZE = 1 << 26;
+
+  private List<Class<?>> _entityClasses = getDefaultEntityClasses();
+
+  private File _inputLocation;
+
+  private GenericMutableDao _entityStore = new GtfsDaoImpl();
+
+  private String[] _strings;
+
+  private AgencyAndId[] _ids;
+
+  private Object[][] _entitiesByClass;
+
+  public void setInputLocation(File inputLocation) {
+    _inputLocation = inputLocation;
+  }
+
+  public List<Class<?>> getEntityClasses() {
+    return _entityClasses;
+  }
+
+  public void setEntityClasses(List<Class<?>> entityClasses) {
+    _entityClasses = entityClasses;
+  }
+
+  public GenericMutableDao getEntityStore() {
+    return _entityStore;
+  }
+
+  public void setEntityStore(GenericMutableDao entityStore) {
+    _entityStore = entityStore;
+  }
+
+  /**
+   * @throws IOException if the snapshot cannot be read, is not a snapshot of a
+   *           supported version, fails its checksum or refers to an entity
+   *           class or field that is not supported
+   */
+  public void run() throws IOException {
+
+    try (FileChannel channel = FileChannel.open(_inputLocation.toPath(),
+        StandardOpenOption.READ)) {
+
+      long size = channel.size();
+      if (size < HEADER_LENGTH + FOOTER_LENGTH)
+        throw new IOException("not a gtfs snapshot: " + _inputLocation);
+
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          HEADER_LENGTH);
+      byte[] magic = new byte[MAGIC.length];
+      header.get(magic);
+      if (!Arrays.equals(magic, MAGIC))
+        throw new IOException("not a gtfs snapshot: " + _inputLocation);
+      int version = header.getInt();
+      if (version != VERSION)
+        throw new IOException("unsupported gtfs snapshot version " + version
+            + ": " + _inputLocation);
+
+      ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, size
+          - FOOTER_LENGTH, FOOTER_LENGTH);
+      long directoryOffset = footer.getLong();
+      long expectedChecksum = footer.getLong();
+      if (computeChecksum(channel, size - 8) != expectedChecksum)
+        throw new IOException("gtfs snapshot checksum mismatch: "
+            + _inputLocation);
+      if (directoryOffset < HEADER_LENGTH
+          || directoryOffset > size - FOOTER_LENGTH)
+        throw corrupt();
+
+      try {
+        read(channel, directoryOffset, size - FOOTER_LENGTH);
+      } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+        throw corrupt();
+      } finally {
+        _strings = null;
+        _ids = null;
+        _entitiesByClass = null;
+      }
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void read(FileChannel channel, long directoryOffset, long end)
+      throws IOException {
+
+    ByteBuffer directory = map(channel, directoryOffset, end
+        - directoryOffset, end);
+
+    int classCount = directory.getInt();
+    List<Class<?>> classes = new ArrayList<Class<?>>();
+    List<List<ColumnEntry>> columnsByClass = new ArrayList<List<ColumnEntry>>();
+    _entitiesByClass = new Object[classCount][];
+
+    for (int i = 0; i < classCount; i++) {
+      Class<?> entityClass = getEntityClass(readString(directory));
+      int count = directory.getInt();
+      Map<String, Field> fieldsByName = new HashMap<String, Field>();
+      for (Field field : getPersistentFields(entityClass))
+        fieldsByName.put(field.getName(), field);
+      int fieldCount = directory.getInt();
+      List<ColumnEntry> columns = new ArrayList<ColumnEntry>();
+      for (int j = 0; j < fieldCount; j++) {
+        String name = readString(directory);
+        ColumnEntry column = new ColumnEntry(fieldsByName.get(name),
+            directory.get(), directory.getLong(), directory.getLong());
+        if (column.field == null || column.kind != getKind(column.field.getType()))
+          throw new IOException("unsupported field " + entityClass.getName()
+              + "." + name + " in gtfs snapshot: " + _inputLocation);
+        int width = getWidth(column.kind);
+        if (width != -1 && column.length != (long) width * count)
+          throw corrupt();
+        columns.add(column);
+      }
+      classes.add(entityClass);
+      columnsByClass.add(columns);
+      _entitiesByClass[i] = newInstances(entityClass, count);
+    }
+
+    long idsOffset = directory.getLong();
+    long idsLength = directory.getLong();
+    long stringsOffset = directory.getLong();
+    long stringsLength = directory.getLong();
+
+    ByteBuffer strings = map(channel, stringsOffset, stringsLength,
+        directoryOffset);
+    _strings = new String[strings.getInt()];
+    for (int i = 0; i < _strings.length; i++)
+      _strings[i] = readString(strings);
+
+    AgencyAndIdPool pool = _entityStore instanceof GtfsDaoImpl
+        ? ((GtfsDaoImpl) _entityStore).getAgencyAndIdPool()
+        : new AgencyAndIdPool();
+    ByteBuffer ids = map(channel, idsOffset, idsLength, directoryOffset);
+    _ids = new AgencyAndId[ids.getInt()];
+    for (int i = 0; i < _ids.length; i++)
+      _ids[i] = pool.getId(getString(ids.getInt()), getString(ids.getInt()));
+
+    /**
+     * Values of variable type are set last, as they include collections of
+     * entities, which must have their ids by then
+     */
+    for (boolean objects : new boolean[] {false, true}) {
+      for (int i = 0; i < classCount; i++) {
+        for (ColumnEntry column : columnsByClass.get(i)) {
+          if ((column.kind == KIND_OBJECT) == objects)
+            readColumn(
+                map(channel, column.offset, column.length, directoryOffset),
+                column, _entitiesByClass[i]);
+        }
+      }
+    }
+
+    _entityStore.open();
+    for (int i = 0; i < classCount; i++) {
+      _log.info("saving entities: " + classes.get(i).getName());
+      for (Object entity : _entitiesByClass[i])
+        _entityStore.saveEntity(entity);
+      _entityStore.flush();
+    }
+
+    int metadataCount = directory.getInt();
+    for (int i = 0; i < metadataCount; i++) {
+      String filename = getString(directory.getInt());
+      String content = getString(directory.getInt());
+      if (_entityStore instanceof GtfsDao)
+        ((GtfsDao) _entityStore).addMetadata(filename, content);
+    }
+
+    _entityStore.close();
+  }
+
+  private void readColumn(ByteBuffer buffer, ColumnEntry column,
+      Object[] entities) throws IOException {
+    Field field = column.field;
+    try {
+      for (Object entity : entities) {
+        switch (column.kind) {
+          case KIND_INT:
+            field.setInt(entity, buffer.getInt());
+            break;
+          case KIND_LONG:
+            field.setLong(entity, buffer.getLong());
+            break;
+          case KIND_FLOAT:
+            field.setFloat(entity, buffer.getFloat());
+            break;
+          case KIND_DOUBLE:
+            field.setDouble(entity, buffer.getDouble());
+            break;
+          case KIND_BOOLEAN:
+            field.setBoolean(entity, buffer.get() != 0);
+            break;
+          case KIND_STRING:
+            field.set(entity, getString(buffer.getInt()));
+            break;
+          case KIND_ID:
+            field.set(entity, getId(buffer.getInt()));
+            break;
+          case KIND_DATE:
+            field.set(entity, fromDateValue(buffer.getInt()));
+            break;
+          case KIND_REF:
+            field.set(entity, readRef(buffer));
+            break;
+          case KIND_BOXED_INT: {
+            boolean present = buffer.get() != 0;
+            int value = buffer.getInt();
+            field.set(entity, present ? Integer.valueOf(value) : null);
+            break;
+          }
+          case KIND_BOXED_DOUBLE: {
+            boolean present = buffer.get() != 0;
+            double value = buffer.getDouble();
+            field.set(entity, present ? Double.valueOf(value) : null);
+            break;
+          }
+          default:
+            field.set(entity, readObject(buffer));
+            break;
+        }
+      }
+    } catch (IllegalAccessException | IllegalArgumentException ex) {
+      throw new IOException("error restoring " + field + " from gtfs snapshot: "
+          + _inputLocation, ex);
+    }
+  }
+
+  private Object readObject(ByteBuffer buffer) throws IOException {
+    byte tag = buffer.get();
+    switch (tag) {
+      case TAG_NULL:
+        return null;
+      case TAG_STRING:
+        return getString(buffer.getInt());
+      case TAG_ID:
+        return getId(buffer.getInt());
+      case TAG_DATE:
+        return fromDateValue(buffer.getInt());
+      case TAG_REF:
+        return readRef(buffer);
+      case TAG_INT:
+        return buffer.getInt();
+      case TAG_LONG:
+        return buffer.getLong();
+      case TAG_DOUBLE:
+        return buffer.getDouble();
+      case TAG_FLOAT:
+        return buffer.getFloat();
+      case TAG_BOOLEAN:
+        return buffer.get() != 0;
+      case TAG_LIST: {
+        int size = buffer.getInt();
+        List<Object> values = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++)
+          values.add(readObject(buffer));
+        return values;
+      }
+      case TAG_SET: {
+        int size = buffer.getInt();
+        Set<Object> values = new LinkedHashSet<Object>();
+        for (int i = 0; i < size; i++)
+          values.add(readObject(buffer));
+        return values;
+      }
+      case TAG_GEOJSON:
+        return fromGeoJson(getString(buffer.getInt()));
+      default:
+        throw corrupt();
+    }
+  }
+
+  private Object readRef(ByteBuffer buffer) {
+    int classIndex = buffer.getInt();
+    int row = buffer.getInt();
+    if (classIndex == -1)
+      return null;
+    return _entitiesByClass[classIndex][row];
+  }
+
+  private String getString(int index) {
+    return index == -1 ? null : _strings[index];
+  }
+
+  private AgencyAndId getId(int index) {
+    return index == -1 ? null : _ids[index];
+  }
+
+  private Class<?> getEntityClass(String name) throws IOException {
+    for (Class<?> entityClass : _entityClasses) {
+      if (entityClass.getName().equals(name))
+        return entityClass;
+    }
+    throw new IOException("unsupported entity class " + name
+        + " in gtfs snapshot: " + _inputLocation);
+  }
+
+  private static Object[] newInstances(Class<?> entityClass, int count)
+      throws IOException {
+    try {
+      Constructor<?> constructor = entityClass.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      Object[] entities = new Object[count];
+      for (int i = 0; i < count; i++)
+        entities[i] = constructor.newInstance();
+      return entities;
+    } catch (NoSuchMethodException | InstantiationException
+        | IllegalAccessException | InvocationTargetException ex) {
+      throw new IOException("error instantiating " + entityClass.getName(), ex);
+    }
+  }
+
+  private MappedByteBuffer map(FileChannel channel, long offset, long length,
+      long end) throws IOException {
+    if (offset < HEADER_LENGTH || length < 0 || offset + length > end
+        || length > Integer.MAX_VALUE)
+      throw corrupt();
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+  }
+
+  private static long computeChecksum(FileChannel channel, long length)
+      throws IOException {
+    CRC32C checksum = new CRC32C();
+    for (long offset = 0; offset < length; offset += CHECKSUM_CHUNK_SIZE) {
+      long chunk = Math.min(CHECKSUM_CHUNK_SIZE, length - offset);
+      checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, chunk));
+    }
+    return checksum.getValue();
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private IOException corrupt() {
+    return new IOException("corrupt gtfs snapshot: " + _inputLocation);
+  }
+
+  private static class ColumnEntry {
+
+    private final Field field;
+
+    private final byte kind;
+
+    private final long offset;
+
+    private final long length;
+
+    public ColumnEntry(Field field, byte kind, long offset, long length) {
+      this.field = field;
+      this.kind = kind;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
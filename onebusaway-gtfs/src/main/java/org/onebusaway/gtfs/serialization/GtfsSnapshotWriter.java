@@ -0,0 +1,431 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import static org.onebusaway.gtfs.serialization.GtfsSnapshotFormat.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import org.geojson.GeoJsonObject;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.IdentityBean;
+import org.onebusaway.gtfs.model.calendar.ServiceDate;
+import org.onebusaway.gtfs.services.GtfsDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the entities and metadata of a {@link GtfsDao} to a compact binary
+ * snapshot that {@link GtfsSnapshotReader} restores without parsing a feed.
+ * Every persistent field of every entity is written, including fields that
+ * {@link GtfsWriter} leaves out, while entity extensions are not. Entities
+ * with integer ids are written in id order, so that a dao that assigns ids
+ * in save order, as packed stop times do, restores the same ids.
+ * 
+ * Every entity referenced by a written entity must itself be stored in the
+ * dao, under a class that is written.
+ */
+public class GtfsSnapshotWriter {
+
+  private static final Logger _log = LoggerFactory.getLogger(GtfsSnapshotWriter.class);
+
+  private List<Class<?>> _entityClasses = getDefaultEntityClasses();
+
+  private File _outputLocation;
+
+  private List<Class<?>> _classes;
+
+  private Map<Class<?>, List<Object>> _entitiesByClass;
+
+  private Map<Class<?>, Map<Object, Integer>> _rowsByClassAndId;
+
+  private Map<String, Integer> _strings;
+
+  private Map<AgencyAndId, Integer> _ids;
+
+  public void setOutputLocation(File outputLocation) {
+    _outputLocation = outputLocation;
+  }
+
+  public List<Class<?>> getEntityClasses() {
+    return _entityClasses;
+  }
+
+  public void setEntityClasses(List<Class<?>> entityClasses) {
+    _entityClasses = entityClasses;
+  }
+
+  public void run(GtfsDao dao) throws IOException {
+
+    _classes = new ArrayList<Class<?>>();
+    _entitiesByClass = new HashMap<Class<?>, List<Object>>();
+    _rowsByClassAndId = new HashMap<Class<?>, Map<Object, Integer>>();
+    _strings = new LinkedHashMap<String, Integer>();
+    _ids = new LinkedHashMap<AgencyAndId, Integer>();
+
+    for (Class<?> entityClass : new LinkedHashSet<Class<?>>(_entityClasses)) {
+      Collection<?> entities = dao.getAllEntitiesForType(entityClass);
+      if (entities.isEmpty())
+        continue;
+      List<Object> rows = new ArrayList<Object>(entities);
+      if (hasIntegerIds(rows))
+        rows.sort(Comparator.comparing(entity -> (Integer) ((IdentityBean<?>) entity).getId()));
+      _classes.add(entityClass);
+      _entitiesByClass.put(entityClass, rows);
+    }
+
+    try (SnapshotOutputStream counter = new SnapshotOutputStream(
+        new BufferedOutputStream(new FileOutputStream(_outputLocation), 1 << 16))) {
+
+      CRC32C checksum = new CRC32C();
+      DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+          counter, checksum));
+
+      out.write(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(0);
+
+      List<List<long[]>> columnsByClass = new ArrayList<List<long[]>>();
+      List<List<Field>> fieldsByClass = new ArrayList<List<Field>>();
+      for (Class<?> entityClass : _classes) {
+        _log.info("writing entities: " + entityClass.getName());
+        List<Object> entities = _entitiesByClass.get(entityClass);
+        List<Field> fields = getPersistentFields(entityClass);
+        List<long[]> columns = new ArrayList<long[]>();
+        for (Field field : fields) {
+          long offset = counter.getCount();
+          writeColumn(out, entityClass, entities, field);
+          columns.add(new long[] {offset, counter.getCount() - offset});
+        }
+        fieldsByClass.add(fields);
+        columnsByClass.add(columns);
+      }
+
+      List<int[]> metadata = new ArrayList<int[]>();
+      for (String filename : dao.getOptionalMetadataFilenames()) {
+        if (dao.hasMetadata(filename) && dao.getMetadata(filename) != null)
+          metadata.add(new int[] {
+              getStringIndex(filename),
+              getStringIndex(dao.getMetadata(filename))});
+      }
+
+      long idsOffset = counter.getCount();
+      out.writeInt(_ids.size());
+      for (AgencyAndId id : _ids.keySet()) {
+        out.writeInt(getStringIndex(id.getAgencyId()));
+        out.writeInt(getStringIndex(id.getId()));
+      }
+      long idsLength = counter.getCount() - idsOffset;
+
+      long stringsOffset = counter.getCount();
+      out.writeInt(_strings.size());
+      for (String value : _strings.keySet())
+        writeString(out, value);
+      long stringsLength = counter.getCount() - stringsOffset;
+
+      long directoryOffset = counter.getCount();
+      out.writeInt(_classes.size());
+      for (int i = 0; i < _classes.size(); i++) {
+        writeString(out, _classes.get(i).getName());
+        out.writeInt(_entitiesByClass.get(_classes.get(i)).size());
+        List<Field> fields = fieldsByClass.get(i);
+        List<long[]> columns = columnsByClass.get(i);
+        out.writeInt(fields.size());
+        for (int j = 0; j < fields.size(); j++) {
+          writeString(out, fields.get(j).getName());
+          out.writeByte(getKind(fields.get(j).getType()));
+          out.writeLong(columns.get(j)[0]);
+          out.writeLong(columns.get(j)[1]);
+        }
+      }
+      out.writeLong(idsOffset);
+      out.writeLong(idsLength);
+      out.writeLong(stringsOffset);
+      out.writeLong(stringsLength);
+      out.writeInt(metadata.size());
+      for (int[] entry : metadata) {
+        out.writeInt(entry[0]);
+        out.writeInt(entry[1]);
+      }
+
+      out.writeLong(directoryOffset);
+      out.writeLong(checksum.getValue());
+      out.flush();
+    } finally {
+      _classes = null;
+      _entitiesByClass = null;
+      _rowsByClassAndId = null;
+      _strings = null;
+      _ids = null;
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void writeColumn(DataOutputStream out, Class<?> entityClass,
+      List<Object> entities, Field field) throws IOException {
+
+    byte kind = getKind(field.getType());
+    Method getProxy = getProxyMethod(entityClass);
+    Method getter = getProxy != null ? getProxiedGetter(entityClass,
+        getProxy.getReturnType(), field) : null;
+
+    for (Object entity : entities) {
+      Object value;
+      try {
+        if (getter != null && getProxy.invoke(entity) != null)
+          value = getter.invoke(entity);
+        else
+          value = field.get(entity);
+      } catch (IllegalAccessException | InvocationTargetException ex) {
+        throw new IllegalStateException("error reading " + field, ex);
+      }
+      switch (kind) {
+        case KIND_INT:
+          out.writeInt((Integer) value);
+          break;
+        case KIND_LONG:
+          out.writeLong((Long) value);
+          break;
+        case KIND_FLOAT:
+          out.writeFloat((Float) value);
+          break;
+        case KIND_DOUBLE:
+          out.writeDouble((Double) value);
+          break;
+        case KIND_BOOLEAN:
+          out.writeBoolean((Boolean) value);
+          break;
+        case KIND_STRING:
+          out.writeInt(getStringIndex((String) value));
+          break;
+        case KIND_ID:
+          out.writeInt(getIdIndex((AgencyAndId) value));
+          break;
+        case KIND_DATE:
+          out.writeInt(toDateValue((ServiceDate) value));
+          break;
+        case KIND_REF:
+          writeRef(out, value);
+          break;
+        case KIND_BOXED_INT:
+          out.writeBoolean(value != null);
+          out.writeInt(value != null ? (Integer) value : 0);
+          break;
+        case KIND_BOXED_DOUBLE:
+          out.writeBoolean(value != null);
+          out.writeDouble(value != null ? (Double) value : 0);
+          break;
+        default:
+          writeObject(out, value);
+          break;
+      }
+    }
+  }
+
+  private void writeObject(DataOutputStream out, Object value)
+      throws IOException {
+    if (value == null) {
+      out.writeByte(TAG_NULL);
+    } else if (value instanceof String) {
+      out.writeByte(TAG_STRING);
+      out.writeInt(getStringIndex((String) value));
+    } else if (value instanceof AgencyAndId) {
+      out.writeByte(TAG_ID);
+      out.writeInt(getIdIndex((AgencyAndId) value));
+    } else if (value instanceof ServiceDate) {
+      out.writeByte(TAG_DATE);
+      out.writeInt(toDateValue((ServiceDate) value));
+    } else if (value instanceof IdentityBean<?>) {
+      out.writeByte(TAG_REF);
+      writeRef(out, value);
+    } else if (value instanceof Integer) {
+      out.writeByte(TAG_INT);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(TAG_LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(TAG_DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Float) {
+      out.writeByte(TAG_FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(TAG_BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof List<?> || value instanceof Set<?>) {
+      Collection<?> values = (Collection<?>) value;
+      out.writeByte(value instanceof List<?> ? TAG_LIST : TAG_SET);
+      out.writeInt(values.size());
+      for (Object element : values)
+        writeObject(out, element);
+    } else if (value instanceof GeoJsonObject) {
+      out.writeByte(TAG_GEOJSON);
+      out.writeInt(getStringIndex(toGeoJson((GeoJsonObject) value)));
+    } else {
+      throw new IllegalArgumentException("unsupported value type: "
+          + value.getClass().getName());
+    }
+  }
+
+  private void writeRef(DataOutputStream out, Object entity)
+      throws IOException {
+    if (entity == null) {
+      out.writeInt(-1);
+      out.writeInt(0);
+      return;
+    }
+    Class<?> entityClass = entity.getClass();
+    int classIndex = _classes.indexOf(entityClass);
+    Integer row = null;
+    if (classIndex != -1) {
+      Map<Object, Integer> rowsById = _rowsByClassAndId.get(entityClass);
+      if (rowsById == null) {
+        rowsById = new HashMap<Object, Integer>();
+        List<Object> entities = _entitiesByClass.get(entityClass);
+        for (int i = 0; i < entities.size(); i++)
+          rowsById.put(((IdentityBean<?>) entities.get(i)).getId(), i);
+        _rowsByClassAndId.put(entityClass, rowsById);
+      }
+      row = rowsById.get(((IdentityBean<?>) entity).getId());
+    }
+    if (row == null)
+      throw new IllegalStateException("referenced entity is not stored: "
+          + entityClass.getName() + " " + ((IdentityBean<?>) entity).getId());
+    out.writeInt(classIndex);
+    out.writeInt(row);
+  }
+
+  private int getStringIndex(String value) {
+    if (value == null)
+      return -1;
+    Integer index = _strings.get(value);
+    if (index == null) {
+      index = _strings.size();
+      _strings.put(value, index);
+    }
+    return index;
+  }
+
+  private int getIdIndex(AgencyAndId id) {
+    if (id == null)
+      return -1;
+    Integer index = _ids.get(id);
+    if (index == null) {
+      index = _ids.size();
+      _ids.put(id, index);
+    }
+    return index;
+  }
+
+  private static void writeString(DataOutputStream out, String value)
+      throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static boolean hasIntegerIds(List<Object> entities) {
+    for (Object entity : entities) {
+      if (!(((IdentityBean<?>) entity).getId() instanceof Integer))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return the getProxy() method of entity classes that store their values
+   *         in a proxy while they have one, as packed entities do, or null
+   */
+  private static Method getProxyMethod(Class<?> entityClass) {
+    try {
+      return entityClass.getMethod("getProxy");
+    } catch (NoSuchMethodException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the getter of the field if the proxy type has it, or null
+   */
+  private static Method getProxiedGetter(Class<?> entityClass,
+      Class<?> proxyType, Field field) {
+    String name = field.getName();
+    String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    for (String prefix : new String[] {"get", "is"}) {
+      try {
+        proxyType.getMethod(prefix + suffix);
+        return entityClass.getMethod(prefix + suffix);
+      } catch (NoSuchMethodException ex) {
+
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Counts the bytes written, since a snapshot can exceed the 2GB that
+   * {@link DataOutputStream#size()} can count
+   */
+  private static class SnapshotOutputStream extends FilterOutputStream {
+
+    private long _count = 0;
+
+    public SnapshotOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    public long getCount() {
+      return _count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      _count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      _count += len;
+    }
+  }
+}
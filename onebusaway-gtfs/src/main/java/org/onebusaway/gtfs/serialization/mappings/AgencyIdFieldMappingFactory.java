@@ -23,6 +23,8 @@ import org.onebusaway.csv_entities.schema.EntitySchemaFactory;
 import org.onebusaway.csv_entities.schema.FieldMapping;
 import org.onebusaway.csv_entities.schema.FieldMappingFactory;
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.serialization.GtfsReader;
+import org.onebusaway.gtfs.serialization.GtfsReaderContext;
 
 import java.util.Collection;
 import java.util.Map;
@@ -71,7 +73,9 @@ public class AgencyIdFieldMappingFactory implements FieldMappingFactory {
           throw new MissingRequiredFieldException(_entityType, _csvFieldName);
         return;
       }
-      AgencyAndId agencyAndId = new AgencyAndId(agencyId, id);
+      GtfsReaderContext ctx = (GtfsReaderContext) context.get(GtfsReader.KEY_CONTEXT);
+      AgencyAndId agencyAndId = ctx != null ? ctx.getAgencyAndId(agencyId, id)
+          : new AgencyAndId(agencyId, id);
       object.setPropertyValue(_objFieldName, agencyAndId);
     }
   }
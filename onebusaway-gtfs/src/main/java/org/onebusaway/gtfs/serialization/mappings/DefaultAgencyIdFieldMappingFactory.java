@@ -15,6 +15,7 @@
  */
 package org.onebusaway.gtfs.serialization.mappings;
 
+import java.util.List;
 import java.util.Map;
 
 import org.onebusaway.csv_entities.CsvEntityContext;
@@ -22,8 +23,10 @@ import org.onebusaway.csv_entities.schema.BeanWrapper;
 import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
 import org.onebusaway.csv_entities.schema.DefaultFieldMapping;
 import org.onebusaway.csv_entities.schema.EntitySchemaFactory;
+import org.onebusaway.csv_entities.schema.FieldBinder;
 import org.onebusaway.csv_entities.schema.FieldMapping;
 import org.onebusaway.csv_entities.schema.FieldMappingFactory;
+import org.onebusaway.csv_entities.schema.PropertyAccessor;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.Route;
@@ -110,10 +113,43 @@ public class DefaultAgencyIdFieldMappingFactory implements FieldMappingFactory {
       String agencyId = resolveAgencyId(context, object);
 
       String id = (String) csvValues.get(_csvFieldName);
-      AgencyAndId agencyAndId = new AgencyAndId(agencyId, id);
+      GtfsReaderContext ctx = (GtfsReaderContext) context.get(GtfsReader.KEY_CONTEXT);
+      AgencyAndId agencyAndId = ctx != null ? ctx.getAgencyAndId(agencyId, id)
+          : new AgencyAndId(agencyId, id);
       object.setPropertyValue(_objFieldName, agencyAndId);
     }
 
+    @Override
+    public FieldBinder compile(Class<?> entityClass,
+        Map<String, Integer> columnIndices) {
+
+      /**
+       * Agency ids resolved through a property path depend on the state of the
+       * entity, so we only compile the default agency id case
+       */
+      if (_agencyIdPath != null)
+        return null;
+
+      final PropertyAccessor setter = findSetter(entityClass);
+      if (setter == null)
+        return null;
+
+      final int columnIndex = getColumnIndex(columnIndices);
+
+      return new FieldBinder() {
+        @Override
+        public void bind(CsvEntityContext context, List<String> values,
+            Object entity) {
+          if (isMissingAndOptional(values, columnIndex))
+            return;
+          GtfsReaderContext ctx = (GtfsReaderContext) context.get(GtfsReader.KEY_CONTEXT);
+          String agencyId = ctx.getDefaultAgencyId();
+          setter.setValue(entity,
+              ctx.getAgencyAndId(agencyId, values.get(columnIndex)));
+        }
+      };
+    }
+
     private String resolveAgencyId(CsvEntityContext context, BeanWrapper object) {
 
       if (_agencyIdPath == null) {
@@ -16,14 +16,21 @@
  */
 package org.onebusaway.gtfs.serialization.mappings;
 
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.beanutils.ConversionException;
 import org.apache.commons.beanutils.Converter;
 import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.CsvRowWriter;
 import org.onebusaway.csv_entities.schema.AbstractFieldMapping;
 import org.onebusaway.csv_entities.schema.BeanWrapper;
+import org.onebusaway.csv_entities.schema.CompilableFieldMapping;
+import org.onebusaway.csv_entities.schema.FieldBinder;
+import org.onebusaway.csv_entities.schema.FieldFormatter;
 import org.onebusaway.csv_entities.schema.FieldMapping;
+import org.onebusaway.csv_entities.schema.FormattableFieldMapping;
+import org.onebusaway.csv_entities.schema.PropertyAccessor;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.IdentityBean;
 import org.onebusaway.gtfs.serialization.GtfsReader;
@@ -40,7 +47,7 @@ import org.onebusaway.gtfs.serialization.GtfsReaderContext;
  * @see GtfsReaderContext#getEntity(Class, java.io.Serializable)
  */
 class EntityFieldMappingImpl extends AbstractFieldMapping implements
-    ConverterFactory {
+    ConverterFactory, CompilableFieldMapping, FormattableFieldMapping {
 
   private Class<?> _objFieldType;
 
@@ -62,6 +69,40 @@ class EntityFieldMappingImpl extends AbstractFieldMapping implements
     object.setPropertyValue(_objFieldName, entity);
   }
 
+  @Override
+  public FieldBinder compile(Class<?> entityClass,
+      Map<String, Integer> columnIndices) {
+
+    if (!isReadPathInheritedFrom(EntityFieldMappingImpl.class))
+      return null;
+
+    final PropertyAccessor setter = findSetter(entityClass);
+    if (setter == null)
+      return null;
+
+    final int columnIndex = getColumnIndex(columnIndices);
+
+    return new FieldBinder() {
+
+      private CsvEntityContext _boundContext;
+
+      private Converter _converter;
+
+      @Override
+      public void bind(CsvEntityContext context, List<String> values,
+          Object entity) {
+        if (isMissingAndOptional(values, columnIndex))
+          return;
+        if (_boundContext != context) {
+          _converter = create(context);
+          _boundContext = context;
+        }
+        Object value = _converter.convert(_objFieldType, values.get(columnIndex));
+        setter.setValue(entity, value);
+      }
+    };
+  }
+
   @SuppressWarnings("unchecked")
   public void translateFromObjectToCSV(CsvEntityContext context,
       BeanWrapper object, Map<String, Object> csvValues) {
@@ -76,6 +117,29 @@ class EntityFieldMappingImpl extends AbstractFieldMapping implements
     csvValues.put(_csvFieldName, id.getId());
   }
 
+  @Override
+  public FieldFormatter compileFormatter(Class<?> entityClass) {
+
+    if (!isWritePathInheritedFrom(EntityFieldMappingImpl.class))
+      return null;
+
+    final PropertyAccessor getter = findGetter(entityClass);
+    if (getter == null)
+      return null;
+
+    return new FieldFormatter() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public void format(CsvEntityContext context, Object entity,
+          CsvRowWriter row) {
+        IdentityBean<AgencyAndId> value = (IdentityBean<AgencyAndId>) getter.getValue(entity);
+        if (isOptional() && value == null)
+          return;
+        row.appendValue((Object) value.getId().getId());
+      }
+    };
+  }
+
   /****
    * {@link ConverterFactory}
    ****/
@@ -102,7 +166,7 @@ class EntityFieldMappingImpl extends AbstractFieldMapping implements
       } else if (type == _objFieldType) {
         String entityId = value.toString();
         String agencyId = _context.getAgencyForEntity(_objFieldType, entityId);
-        AgencyAndId id = new AgencyAndId(agencyId, entityId);
+        AgencyAndId id = _context.getAgencyAndId(agencyId, entityId);
         return _context.getEntity(_objFieldType, id);
       }
       throw new ConversionException("Could not convert " + value + " of type "
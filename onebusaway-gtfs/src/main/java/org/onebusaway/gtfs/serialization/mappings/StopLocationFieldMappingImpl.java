@@ -50,7 +50,7 @@ public class StopLocationFieldMappingImpl extends EntityFieldMappingImpl {
             } else if (type == StopLocation.class) {
                 String entityId = value.toString();
                 String agencyId = _context.getDefaultAgencyId();
-                AgencyAndId id = new AgencyAndId(agencyId, entityId);
+                AgencyAndId id = _context.getAgencyAndId(agencyId, entityId);
                 Object stop =  _context.getEntity(Stop.class, id);
                 if (stop != null) return stop;
                 Object location =  _context.getEntity(Location.class, id);
@@ -18,6 +18,7 @@ package org.onebusaway.gtfs.serialization.mappings;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -26,11 +27,17 @@ import java.util.regex.Pattern;
 import org.apache.commons.beanutils.ConversionException;
 import org.apache.commons.beanutils.Converter;
 import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.CsvRowWriter;
 import org.onebusaway.csv_entities.schema.AbstractFieldMapping;
 import org.onebusaway.csv_entities.schema.BeanWrapper;
+import org.onebusaway.csv_entities.schema.CompilableFieldMapping;
 import org.onebusaway.csv_entities.schema.EntitySchemaFactory;
+import org.onebusaway.csv_entities.schema.FieldBinder;
+import org.onebusaway.csv_entities.schema.FieldFormatter;
 import org.onebusaway.csv_entities.schema.FieldMapping;
 import org.onebusaway.csv_entities.schema.FieldMappingFactory;
+import org.onebusaway.csv_entities.schema.FormattableFieldMapping;
+import org.onebusaway.csv_entities.schema.PropertyAccessor;
 
 public class StopTimeFieldMappingFactory implements FieldMappingFactory {
 
@@ -60,6 +67,23 @@ public class StopTimeFieldMappingFactory implements FieldMappingFactory {
     return b.toString();
   }
 
+  /**
+   * Appends the same representation as {@link #getSecondsAsString(int)} to the
+   * current field of a row, without allocating intermediate strings.
+   */
+  public static void appendSecondsAsString(CsvRowWriter row, int t) {
+    int seconds = positiveMod(t, 60);
+    int hourAndMinutes = (t - seconds) / 60;
+    int minutes = positiveMod(hourAndMinutes, 60);
+    int hours = (hourAndMinutes - minutes) / 60;
+
+    row.appendZeroPadded(hours, 2);
+    row.appendRaw(":");
+    row.appendZeroPadded(minutes, 2);
+    row.appendRaw(":");
+    row.appendZeroPadded(seconds, 2);
+  }
+
   private static final int positiveMod(int value, int modulo) {
     int m = value % modulo;
     if (m < 0) {
@@ -84,7 +108,7 @@ public class StopTimeFieldMappingFactory implements FieldMappingFactory {
   }
 
   private static class StopTimeFieldMapping extends AbstractFieldMapping
-      implements Converter {
+      implements Converter, CompilableFieldMapping, FormattableFieldMapping {
 
     public StopTimeFieldMapping(Class<?> entityType, String csvFieldName,
         String objFieldName, boolean required) {
@@ -117,6 +141,45 @@ public class StopTimeFieldMappingFactory implements FieldMappingFactory {
       csvValues.put(_csvFieldName, value);
     }
 
+    @Override
+    public FieldBinder compile(Class<?> entityClass,
+        Map<String, Integer> columnIndices) {
+
+      final PropertyAccessor setter = findSetter(entityClass);
+      if (setter == null)
+        return null;
+
+      final int columnIndex = getColumnIndex(columnIndices);
+
+      return new FieldBinder() {
+        @Override
+        public void bind(CsvEntityContext context, List<String> values,
+            Object entity) {
+          if (isMissingAndOptional(values, columnIndex))
+            return;
+          setter.setValue(entity, getStringAsSeconds(values.get(columnIndex)));
+        }
+      };
+    }
+
+    @Override
+    public FieldFormatter compileFormatter(Class<?> entityClass) {
+
+      final PropertyAccessor getter = findGetter(entityClass);
+      if (getter == null)
+        return null;
+
+      return new FieldFormatter() {
+        @Override
+        public void format(CsvEntityContext context, Object entity,
+            CsvRowWriter row) {
+          int t = (Integer) getter.getValue(entity);
+          if (t >= 0)
+            appendSecondsAsString(row, t);
+        }
+      };
+    }
+
     @Override
     public Object convert(@SuppressWarnings("rawtypes")
     Class type, Object value) {
@@ -29,4 +29,19 @@ public interface CalendarServiceDataFactory {
   public CalendarServiceData updateData(Collection<Agency> allAgencies,
                                         Map<AgencyAndId, List<String>> tripAgencyIdsReferencingServiceId,
                                         Map<String, TimeZone> timeZoneMapByAgencyId);
+
+  /**
+   * Recomputes the service dates of the specified service ids, which may have
+   * been added, changed or removed since the data was created, and copies the
+   * rest. The data is not modified, so readers of it are not affected, and the
+   * result is read-only.
+   * 
+   * By default, the data is created again from scratch.
+   */
+  public default CalendarServiceData updateData(CalendarServiceData data,
+      Collection<AgencyAndId> serviceIds) {
+    CalendarServiceData updated = createData();
+    updated.makeReadOnly();
+    return updated;
+  }
 }
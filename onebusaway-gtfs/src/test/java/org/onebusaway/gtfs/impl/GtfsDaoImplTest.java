@@ -16,6 +16,12 @@
 package org.onebusaway.gtfs.impl;
 
 import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertFalse;
+import static  org.junit.jupiter.api.Assertions.assertNotSame;
+import static  org.junit.jupiter.api.Assertions.assertNull;
+import static  org.junit.jupiter.api.Assertions.assertSame;
+import static  org.junit.jupiter.api.Assertions.assertThrows;
+import static  org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.onebusaway.gtfs.GtfsTestData;
 import org.onebusaway.gtfs.model.Agency;
@@ -23,6 +29,8 @@ import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.FareAttribute;
 import org.onebusaway.gtfs.model.FareRule;
 import org.onebusaway.gtfs.model.Frequency;
+import org.onebusaway.gtfs.model.Level;
+import org.onebusaway.gtfs.model.Note;
 import org.onebusaway.gtfs.model.Route;
 import org.onebusaway.gtfs.model.ServiceCalendar;
 import org.onebusaway.gtfs.model.ServiceCalendarDate;
@@ -36,7 +44,10 @@ import org.onebusaway.gtfs.model.calendar.ServiceDate;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 
 public class GtfsDaoImplTest {
 
@@ -129,4 +140,432 @@ public class GtfsDaoImplTest {
     Trip trip = dao.getTripForId(new AgencyAndId("BART","15PB1"));
     assertEquals(new AgencyAndId("BART","WKDY"),trip.getServiceId());
   }
+
+  @Test
+  public void testPackedRemovalAndInsertion() throws IOException {
+
+    GtfsDaoImpl dao = new GtfsDaoImpl();
+    dao.setPackStopTimes(true);
+    dao.setPackShapePoints(true);
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    Collection<StopTime> stopTimes = dao.getAllStopTimes();
+    int stopTimeCount = stopTimes.size();
+
+    Trip trip = dao.getTripForId(new AgencyAndId("BART", "15PB1"));
+    List<StopTime> removed = new ArrayList<StopTime>();
+    List<StopTime> kept = new ArrayList<StopTime>();
+    for (StopTime stopTime : stopTimes) {
+      if (stopTime.getTrip() == trip)
+        removed.add(stopTime);
+      else if (kept.size() < 10)
+        kept.add(stopTime);
+    }
+    assertFalse(removed.isEmpty());
+
+    for (StopTime stopTime : removed)
+      dao.removeEntity(stopTime);
+    assertEquals(stopTimeCount - removed.size(), stopTimes.size());
+    for (StopTime stopTime : stopTimes)
+      assertTrue(stopTime.getTrip() != trip);
+
+    StopTime removedStopTime = removed.get(0);
+    assertNull(dao.getStopTimeForId(removedStopTime.getId()));
+    // Removed rows stay readable until the array is compacted
+    assertSame(trip, removedStopTime.getTrip());
+
+    StopTime added = new StopTime();
+    added.setTrip(trip);
+    added.setStop(kept.get(0).getStop());
+    added.setStopSequence(99);
+    dao.saveEntity(added);
+    assertEquals(stopTimeCount - removed.size() + 1, stopTimes.size());
+    int addedId = added.getId();
+    // Saving a stored stop time again does not duplicate it
+    dao.saveOrUpdateEntity(dao.getStopTimeForId(addedId));
+    assertEquals(stopTimeCount - removed.size() + 1, stopTimes.size());
+
+    dao.close();
+
+    assertThrows(IllegalStateException.class, () -> removedStopTime.getTrip());
+    for (StopTime stopTime : kept) {
+      StopTime byId = dao.getStopTimeForId(stopTime.getId());
+      assertEquals(stopTime.getStopSequence(), byId.getStopSequence());
+      assertSame(stopTime.getStop(), byId.getStop());
+    }
+
+    // Changes to the saved stop time are stored in place
+    added.setArrivalTime(3600);
+    assertEquals(3600, dao.getStopTimeForId(addedId).getArrivalTime());
+    assertEquals(99, dao.getStopTimeForId(addedId).getStopSequence());
+
+    Collection<ShapePoint> shapePoints = dao.getAllShapePoints();
+    int shapePointCount = shapePoints.size();
+    Iterator<ShapePoint> it = shapePoints.iterator();
+    ShapePoint first = it.next();
+    it.remove();
+    ShapePoint second = it.next();
+    assertEquals(shapePointCount - 1, shapePoints.size());
+    assertNull(dao.getShapePointForId(first.getId()));
+    assertEquals(second.getSequence(), shapePoints.iterator().next().getSequence());
+  }
+
+  @Test
+  public void testPackedTripsStopsAndFrequencies() throws IOException {
+
+    GtfsDaoImpl expected = new GtfsDaoImpl();
+    GtfsTestData.readGtfs(expected, GtfsTestData.getBartGtfs(), "BART");
+
+    GtfsDaoImpl dao = new GtfsDaoImpl();
+    dao.setPackStopTimes(true);
+    dao.setPackTrips(true);
+    dao.setPackStops(true);
+    dao.setPackFrequencies(true);
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    assertEquals(expected.getAllTrips().size(), dao.getAllTrips().size());
+    for (Trip expectedTrip : expected.getAllTrips()) {
+      Trip trip = dao.getTripForId(expectedTrip.getId());
+      assertEquals(expectedTrip.getRoute(), trip.getRoute());
+      assertEquals(expectedTrip.getServiceId(), trip.getServiceId());
+      assertEquals(expectedTrip.getTripHeadsign(), trip.getTripHeadsign());
+      assertEquals(expectedTrip.getDirectionId(), trip.getDirectionId());
+      assertEquals(expectedTrip.getBlockId(), trip.getBlockId());
+      assertEquals(expectedTrip.getShapeId(), trip.getShapeId());
+      assertNull(trip.getMeanDurationFactor());
+    }
+    assertEquals(expected.getAllStops().size(), dao.getAllStops().size());
+    for (Stop expectedStop : expected.getAllStops()) {
+      Stop stop = dao.getStopForId(expectedStop.getId());
+      assertEquals(expectedStop.getName(), stop.getName());
+      assertEquals(expectedStop.getLat(), stop.getLat(), 0.0);
+      assertEquals(expectedStop.getLon(), stop.getLon(), 0.0);
+      assertEquals(expectedStop.getZoneId(), stop.getZoneId());
+      assertEquals(expectedStop.getLocationType(), stop.getLocationType());
+    }
+    Frequency expectedFrequency = expected.getFrequencyForId(1);
+    Frequency frequency = dao.getAllFrequencies().iterator().next();
+    assertEquals(expectedFrequency.getTrip(), frequency.getTrip());
+    assertEquals(expectedFrequency.getStartTime(), frequency.getStartTime());
+    assertEquals(expectedFrequency.getHeadwaySecs(), frequency.getHeadwaySecs());
+
+    // Entities read along with packed trips and stops share an instance of
+    // each, and later reads return equal proxies of the same rows
+    StopTime stopTime = dao.getAllStopTimes().iterator().next();
+    Trip trip = stopTime.getTrip();
+    for (StopTime other : dao.getAllStopTimes()) {
+      if (other.getTrip().equals(trip))
+        assertSame(trip, other.getTrip());
+    }
+    assertEquals(trip, dao.getTripForId(trip.getId()));
+    assertEquals(stopTime.getStop(), dao.getStopForId(stopTime.getStop().getId()));
+
+    trip.setMeanDurationFactor(1.5);
+    assertEquals(1.5, dao.getTripForId(trip.getId()).getMeanDurationFactor());
+    AgencyAndId tripId = trip.getId();
+    AgencyAndId renamedId = new AgencyAndId("BART", "renamed");
+    trip.setId(renamedId);
+    assertNull(dao.getTripForId(tripId));
+    assertEquals(trip, dao.getTripForId(renamedId));
+
+    // Saving a trip with the id of a stored trip overwrites its row
+    Trip replacement = new Trip();
+    replacement.setId(renamedId);
+    replacement.setRoute(trip.getRoute());
+    replacement.setTripHeadsign("replaced");
+    dao.saveEntity(replacement);
+    assertEquals(expected.getAllTrips().size(), dao.getAllTrips().size());
+    assertEquals("replaced", trip.getTripHeadsign());
+    assertNull(trip.getMeanDurationFactor());
+    assertEquals(renamedId, replacement.getId());
+
+    // A removed trip stays readable until the array is compacted
+    dao.removeEntity(trip);
+    assertNull(dao.getTripForId(renamedId));
+    assertEquals("replaced", trip.getTripHeadsign());
+    assertEquals(expected.getAllTrips().size() - 1, dao.getAllTrips().size());
+
+    dao.close();
+    assertThrows(IllegalStateException.class, () -> trip.getTripHeadsign());
+    for (Trip expectedTrip : expected.getAllTrips()) {
+      if (expectedTrip.getId().equals(tripId))
+        continue;
+      assertEquals(expectedTrip.getTripHeadsign(),
+          dao.getTripForId(expectedTrip.getId()).getTripHeadsign());
+    }
+  }
+
+  @Test
+  public void testPackedTripsAndStopsKeepEveryValue() {
+
+    Route route = new Route();
+    route.setId(new AgencyAndId("a", "r"));
+    Note note = new Note();
+    note.setId(new AgencyAndId("a", "n"));
+    Level level = new Level();
+    level.setId(new AgencyAndId("a", "l"));
+
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("a", "t"));
+    trip.setRoute(route);
+    trip.setServiceId(new AgencyAndId("a", "s"));
+    trip.setTripShortName("short");
+    trip.setTripHeadsign("headsign");
+    trip.setDirectionId("1");
+    trip.setBlockId("block");
+    trip.setShapeId(new AgencyAndId("a", "shape"));
+    trip.setWheelchairAccessible(1);
+    trip.setBikesAllowed(2);
+    trip.setCarsAllowed(1);
+    trip.setMeanDurationFactor(1.5);
+    trip.setMeanDurationOffset(2.5);
+    trip.setSafeDurationFactor(3.5);
+    trip.setSafeDurationOffset(4.5);
+    trip.setNote(note);
+    trip.setPeakOffpeak(1);
+    trip.setMtaTripId("MTA1");
+    trip.setBoardingType(2);
+    trip.putExtension(String.class, "trip extension");
+
+    Stop stop = new Stop();
+    stop.setId(new AgencyAndId("a", "st"));
+    stop.setCode("code");
+    stop.setName("name");
+    stop.setDesc("desc");
+    stop.setLat(47.5);
+    stop.setLon(-122.5);
+    stop.setZoneId("zone");
+    stop.setUrl("http://example.com");
+    stop.setLocationType(Stop.LOCATION_TYPE_STATION);
+    stop.setParentStation("parent");
+    stop.setWheelchairBoarding(1);
+    stop.setDirection("N");
+    stop.setTimezone("America/New_York");
+    stop.setVehicleType(3);
+    stop.setPlatformCode("2");
+    stop.setLevel(level);
+    stop.setMtaStopId("MTA2");
+    stop.setRegionalFareCardAccepted(1);
+    stop.setTtsStopName("tts");
+    stop.putExtension(String.class, "stop extension");
+
+    GtfsDaoImpl dao = new GtfsDaoImpl();
+    dao.setPackTrips(true);
+    dao.setPackStops(true);
+    dao.open();
+    dao.saveEntity(trip);
+    dao.saveEntity(stop);
+    dao.close();
+
+    trip = dao.getTripForId(new AgencyAndId("a", "t"));
+    assertSame(route, trip.getRoute());
+    assertEquals(new AgencyAndId("a", "s"), trip.getServiceId());
+    assertEquals("short", trip.getTripShortName());
+    assertEquals("headsign", trip.getTripHeadsign());
+    assertEquals("1", trip.getDirectionId());
+    assertEquals("block", trip.getBlockId());
+    assertEquals(new AgencyAndId("a", "shape"), trip.getShapeId());
+    assertEquals(1, trip.getWheelchairAccessible());
+    assertEquals(2, trip.getBikesAllowed());
+    assertEquals(1, trip.getCarsAllowed());
+    assertEquals(1.5, trip.getMeanDurationFactor());
+    assertEquals(2.5, trip.getMeanDurationOffset());
+    assertEquals(3.5, trip.getSafeDurationFactor());
+    assertEquals(4.5, trip.getSafeDurationOffset());
+    assertSame(note, trip.getNote());
+    assertEquals(1, trip.getPeakOffpeak());
+    assertEquals("MTA1", trip.getMtaTripId());
+    assertEquals(2, trip.getBoardingType());
+    assertEquals("trip extension", trip.getExtension(String.class));
+
+    stop = dao.getStopForId(new AgencyAndId("a", "st"));
+    assertEquals("code", stop.getCode());
+    assertEquals("name", stop.getName());
+    assertEquals("desc", stop.getDesc());
+    assertEquals(47.5, stop.getLat());
+    assertEquals(-122.5, stop.getLon());
+    assertEquals("zone", stop.getZoneId());
+    assertEquals("http://example.com", stop.getUrl());
+    assertEquals(Stop.LOCATION_TYPE_STATION, stop.getLocationType());
+    assertEquals("parent", stop.getParentStation());
+    assertEquals(1, stop.getWheelchairBoarding());
+    assertEquals("N", stop.getDirection());
+    assertEquals("America/New_York", stop.getTimezone());
+    assertEquals(3, stop.getVehicleType());
+    assertEquals("2", stop.getPlatformCode());
+    assertSame(level, stop.getLevel());
+    assertEquals("MTA2", stop.getMtaStopId());
+    assertEquals(1, stop.getRegionalFareCardAccepted());
+    assertEquals("tts", stop.getTtsStopName());
+    assertEquals("stop extension", stop.getExtension(String.class));
+
+    // Values set through a proxy are seen by later proxies of the row
+    trip.setMtaTripId("MTA3");
+    trip.putExtension(Integer.class, 7);
+    stop.clearVehicleType();
+    Trip read = dao.getTripForId(trip.getId());
+    assertEquals("MTA3", read.getMtaTripId());
+    assertEquals(7, read.getExtension(Integer.class));
+    assertEquals("trip extension", read.getExtension(String.class));
+    assertFalse(dao.getStopForId(stop.getId()).isVehicleTypeSet());
+  }
+
+  @Test
+  public void testPackedStopTimesKeepEveryValue() {
+
+    Note note = new Note();
+    note.setId(new AgencyAndId("a", "n"));
+
+    StopTime stopTime = new StopTime();
+    stopTime.setStopSequence(1);
+    stopTime.setToStopSequence(2);
+    stopTime.setStartPickupDropOffWindow(3600);
+    stopTime.setEndPickupDropOffWindow(7200);
+    stopTime.setContinuousPickup(0);
+    stopTime.setContinuousDropOff(2);
+    stopTime.setFarePeriodId("peak");
+    stopTime.setStartServiceAreaRadius(100.5);
+    stopTime.setEndServiceAreaRadius(200.5);
+    stopTime.setDepartureBuffer(60);
+    stopTime.setTrack("4");
+    stopTime.setNote(note);
+    stopTime.putExtension(String.class, "stop time extension");
+
+    StopTimeArray stopTimes = new StopTimeArray();
+    stopTimes.add(stopTime);
+    stopTimes.add(new StopTime());
+    stopTimes.trimToSize();
+
+    stopTime = stopTimes.getForId(stopTime.getId());
+    assertEquals(2, stopTime.getToStopSequence());
+    assertEquals(3600, stopTime.getStartPickupDropOffWindow());
+    assertEquals(7200, stopTime.getEndPickupDropOffWindow());
+    assertEquals(0, stopTime.getContinuousPickup());
+    assertEquals(2, stopTime.getContinuousDropOff());
+    assertEquals("peak", stopTime.getFarePeriodId());
+    assertEquals(100.5, stopTime.getStartServiceAreaRadius());
+    assertEquals(200.5, stopTime.getEndServiceAreaRadius());
+    assertEquals(60, stopTime.getDepartureBuffer());
+    assertEquals("4", stopTime.getTrack());
+    assertSame(note, stopTime.getNote());
+    assertEquals("stop time extension", stopTime.getExtension(String.class));
+
+    // Rows without the values read as the defaults of an unpacked stop time
+    StopTime other = stopTimes.get(1);
+    StopTime unpacked = new StopTime();
+    assertNull(other.getToStopSequence());
+    assertEquals(unpacked.getStartPickupDropOffWindow(),
+        other.getStartPickupDropOffWindow());
+    assertEquals(unpacked.getContinuousPickup(), other.getContinuousPickup());
+    assertEquals(unpacked.getStartServiceAreaRadius(),
+        other.getStartServiceAreaRadius());
+    assertNull(other.getTrack());
+    assertTrue(other.getExtensions().isEmpty());
+  }
+
+  @Test
+  public void testTripArrayIdIndexFollowsLiveRows() {
+
+    TripArray trips = new TripArray();
+    for (int i = 0; i < 1000; i++) {
+      Trip trip = new Trip();
+      trip.setId(new AgencyAndId("a", "t" + i));
+      trip.setTripHeadsign("h" + i);
+      trips.add(trip);
+    }
+    for (int i = 0; i < 1000; i++) {
+      if (i % 10 != 0)
+        assertTrue(trips.removeForId(new AgencyAndId("a", "t" + i)));
+    }
+    assertFalse(trips.removeForId(new AgencyAndId("a", "t1")));
+    trips.trimToSize();
+
+    assertEquals(100, trips.size());
+    assertTrue(trips.getIdIndexCapacity() <= 256);
+    for (int i = 0; i < 1000; i += 10) {
+      Trip trip = trips.getForId(new AgencyAndId("a", "t" + i));
+      assertEquals("h" + i, trip.getTripHeadsign());
+    }
+    assertNull(trips.getForId(new AgencyAndId("a", "t1")));
+
+    // Each read creates a proxy unless proxies are shared
+    AgencyAndId id = new AgencyAndId("a", "t0");
+    assertNotSame(trips.getForId(id), trips.getForId(id));
+    trips.setSharingProxies(true);
+    assertSame(trips.getForId(id), trips.getForId(id));
+  }
+
+  @Test
+  public void testStopTimeArrayCompaction() {
+
+    StopTimeArray stopTimes = new StopTimeArray();
+    List<Integer> ids = new ArrayList<Integer>();
+    for (int i = 0; i < 100; i++) {
+      StopTime stopTime = new StopTime();
+      stopTime.setStopSequence(i);
+      stopTimes.add(stopTime);
+      ids.add(stopTime.getId());
+    }
+    for (int i = 0; i < 100; i += 2)
+      assertTrue(stopTimes.removeForId(ids.get(i)));
+    assertFalse(stopTimes.removeForId(ids.get(0)));
+    assertEquals(50, stopTimes.size());
+
+    // Positional access compacts first
+    assertEquals(1, stopTimes.get(0).getStopSequence());
+    assertEquals(99, stopTimes.get(49).getStopSequence());
+    for (int i = 1; i < 100; i += 2)
+      assertEquals(i, stopTimes.getForId(ids.get(i)).getStopSequence());
+
+    // Ids are never reused
+    StopTime stopTime = new StopTime();
+    stopTimes.add(stopTime);
+    assertEquals(100, stopTime.getId());
+  }
+
+  @Test
+  public void testStopTimeArrayEncodedColumns() {
+
+    StopTimeArray stopTimes = new StopTimeArray();
+    List<Integer> ids = new ArrayList<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      StopTime stopTime = new StopTime();
+      stopTime.setStopSequence(i);
+      stopTime.setStopHeadsign(i % 3 == 0 ? null : "headsign " + (i % 400));
+      stopTime.setFreeRunningFlag(i % 2 == 0 ? "1" : null);
+      if (i % 100 == 0) {
+        stopTime.setMeanDurationFactor(1.5);
+        stopTime.setMeanDurationOffset(i);
+        stopTime.setSafeDurationFactor(2.5);
+      }
+      stopTimes.add(stopTime);
+      ids.add(stopTime.getId());
+    }
+    for (int i = 0; i < 1000; i += 7)
+      stopTimes.removeForId(ids.get(i));
+    stopTimes.compact();
+
+    for (int i = 0; i < 1000; i++) {
+      if (i % 7 == 0)
+        continue;
+      StopTime stopTime = stopTimes.getForId(ids.get(i));
+      assertEquals(i % 3 == 0 ? null : "headsign " + (i % 400),
+          stopTime.getStopHeadsign());
+      assertEquals(i % 2 == 0 ? "1" : null, stopTime.getFreeRunningFlag());
+      if (i % 100 == 0) {
+        assertEquals(1.5, stopTime.getMeanDurationFactor());
+        assertEquals(i, stopTime.getMeanDurationOffset());
+        assertEquals(2.5, stopTime.getSafeDurationFactor());
+      } else {
+        assertEquals(StopTime.MISSING_VALUE, stopTime.getMeanDurationFactor());
+        assertEquals(StopTime.MISSING_VALUE, stopTime.getSafeDurationOffset());
+      }
+    }
+
+    StopTime stopTime = stopTimes.getForId(ids.get(1));
+    stopTime.setMeanDurationFactor(3.0);
+    assertEquals(3.0, stopTime.getMeanDurationFactor());
+    stopTime.setMeanDurationFactor(StopTime.MISSING_VALUE);
+    assertEquals(StopTime.MISSING_VALUE, stopTime.getMeanDurationFactor());
+  }
 }
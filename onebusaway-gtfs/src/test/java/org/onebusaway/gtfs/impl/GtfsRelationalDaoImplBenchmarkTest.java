@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import static  org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.Route;
+
+/**
+ * Timing checks of {@link GtfsRelationalDaoImpl}, which are tagged as
+ * benchmarks and left out of the default build, since their results depend
+ * on the load of the machine. Run them with
+ * {@code -DexcludedGroups= -Dtest=GtfsRelationalDaoImplBenchmarkTest}.
+ */
+@Tag("benchmark")
+public class GtfsRelationalDaoImplBenchmarkTest {
+
+  /**
+   * Doubling the number of operations of the mixed workload, and the number of
+   * routes and service ids that the trips are spread over, should about double
+   * its time. Rebuilding an index, or scanning every entity, after each
+   * mutation would about quadruple it. The best of a few runs of each size is
+   * compared, with a generous margin for noise.
+   */
+  @Test
+  public void testMixedWorkloadScalesLinearly() {
+    int operations = 40000;
+    runMixedWorkload(new GtfsRelationalDaoImpl(), operations);
+    long time = Long.MAX_VALUE;
+    long doubledTime = Long.MAX_VALUE;
+    for (int run = 0; run < 3; run++) {
+      time = Math.min(time, runMixedWorkload(new GtfsRelationalDaoImpl(),
+          operations));
+      doubledTime = Math.min(doubledTime, runMixedWorkload(
+          new GtfsRelationalDaoImpl(), 2 * operations));
+    }
+    assertTrue(doubledTime < 3.5 * time, "2N operations took " + doubledTime
+        + "ns, N took " + time + "ns");
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * @return the time taken by the workload, in nanoseconds
+   */
+  private static long runMixedWorkload(GtfsRelationalDaoImpl dao,
+      int operations) {
+    List<Route> routes = GtfsRelationalDaoImplTest.createRoutes(dao,
+        operations / 400);
+    System.gc();
+    long start = System.nanoTime();
+    GtfsRelationalDaoImplTest.runMixedWorkload(dao, routes, operations);
+    return System.nanoTime() - start;
+  }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertFalse;
+import static  org.junit.jupiter.api.Assertions.assertThrows;
+import static  org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.FareAttribute;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
+
+public class GtfsRelationalDaoImplConcurrencyTest {
+
+  private static final int THREADS = 8;
+
+  private static final int CALLS_PER_THREAD = 5000;
+
+  @Test
+  public void testFreezeRejectsMutations() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(true);
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+    Trip trip = dao.getTripForId(new AgencyAndId("BART", "15PB1"));
+    StopTime stopTime = dao.getStopTimesForTrip(trip).get(0);
+
+    assertFalse(dao.isFrozen());
+    dao.freeze();
+    assertTrue(dao.isFrozen());
+    dao.freeze();
+
+    Route route = new Route();
+    route.setId(new AgencyAndId("BART", "new"));
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.saveEntity(route));
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.updateEntity(trip));
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.removeEntity(trip));
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.removeEntity(stopTime));
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.clearAllEntitiesForType(Trip.class));
+    assertThrows(UnsupportedOperationException.class, () -> dao.clear());
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.addMetadata("modifications.txt", ""));
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.getAllTrips().clear());
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.getAllStopTimes().clear());
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.getTripsForRoute(trip.getRoute()).clear());
+
+    dao.clearAllCaches();
+    dao.close();
+    assertEquals(12, dao.getStopTimesForTrip(trip).size());
+    assertEquals(Arrays.asList("BART"),
+        dao.getTripAgencyIdsReferencingServiceId(trip.getServiceId()));
+  }
+
+  /**
+   * Calls every {@link GtfsRelationalDao} method, with arguments drawn from the
+   * feed, from many threads at once, and checks that each call returns what it
+   * returned on a single thread. Indices are modified before the dao is frozen,
+   * so that freezing has to rebuild them.
+   */
+  @Test
+  public void testFrozenDaoIsSafeForConcurrentReaders() throws Exception {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(true);
+    dao.setPackShapePoints(true);
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    Trip moved = dao.getTripForId(new AgencyAndId("BART", "15PB1"));
+    dao.getTripsForRoute(moved.getRoute());
+    moved.setRoute(dao.getRouteForId(new AgencyAndId("BART", "05")));
+    dao.updateEntity(moved);
+    dao.setIndexPrewarmParallelism(4);
+    dao.freeze();
+
+    List<Call> calls = getCalls(dao);
+    for (Method method : GtfsRelationalDao.class.getMethods()) {
+      if (method.getName().equals("addMetadata"))
+        continue;
+      assertTrue(calls.stream().anyMatch(call -> call.method.equals(method)),
+          "no arguments for " + method);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> results = new ArrayList<Future<?>>();
+      for (int t = 0; t < THREADS; t++) {
+        long seed = t;
+        results.add(executor.submit(() -> {
+          Random random = new Random(seed);
+          start.await();
+          for (int i = 0; i < CALLS_PER_THREAD; i++) {
+            Call call = calls.get(random.nextInt(calls.size()));
+            assertEquals(call.expected, call.invoke(dao), call.toString());
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> result : results)
+        result.get();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * @return a call of every read method of the dao with every combination of
+   *         candidate arguments, each with the result of calling it once
+   */
+  private static List<Call> getCalls(GtfsRelationalDaoImpl dao)
+      throws Exception {
+
+    Map<Class<?>, List<Object>> candidates = new HashMap<Class<?>, List<Object>>();
+    candidates.put(Agency.class, new ArrayList<Object>(dao.getAllAgencies()));
+    candidates.put(Route.class, new ArrayList<Object>(dao.getAllRoutes()));
+    candidates.put(FareAttribute.class, new ArrayList<Object>(
+        dao.getAllFareAttributes()));
+    candidates.put(Stop.class, sample(dao.getAllStops(), 20));
+    candidates.put(Trip.class, sample(dao.getAllTrips(), 20));
+
+    List<Object> ids = new ArrayList<Object>();
+    ids.addAll(dao.getAllServiceIds());
+    ids.addAll(dao.getAllShapeIds());
+    for (Object trip : candidates.get(Trip.class))
+      ids.add(((Trip) trip).getId());
+    ids.add(new AgencyAndId("BART", "missing"));
+    candidates.put(AgencyAndId.class, ids);
+    candidates.put(Serializable.class, ids);
+
+    List<Object> strings = new ArrayList<Object>();
+    for (Agency agency : dao.getAllAgencies())
+      strings.add(agency.getId());
+    for (Object stop : candidates.get(Stop.class))
+      strings.add(((Stop) stop).getZoneId());
+    strings.add("modifications.txt");
+    strings.add("missing");
+    candidates.put(String.class, strings);
+
+    candidates.put(Integer.TYPE, Arrays.<Object> asList(0, 1, 2, 100, 1000,
+        Integer.MAX_VALUE));
+    candidates.put(Class.class, Arrays.<Object> asList(Trip.class,
+        StopTime.class, ShapePoint.class, Agency.class));
+
+    List<Call> calls = new ArrayList<Call>();
+    for (Method method : GtfsRelationalDao.class.getMethods()) {
+      if (method.getName().equals("addMetadata"))
+        continue;
+      List<Object[]> argumentLists = new ArrayList<Object[]>();
+      argumentLists.add(new Object[0]);
+      for (Class<?> type : method.getParameterTypes()) {
+        List<Object> values = candidates.get(type);
+        if (values == null)
+          throw new IllegalStateException("no candidates for " + type);
+        List<Object[]> extended = new ArrayList<Object[]>();
+        for (Object[] arguments : argumentLists) {
+          for (Object value : values) {
+            Object[] next = Arrays.copyOf(arguments, arguments.length + 1);
+            next[arguments.length] = value;
+            extended.add(next);
+          }
+        }
+        argumentLists = extended;
+      }
+      for (Object[] arguments : argumentLists) {
+        Call call = new Call(method, arguments);
+        call.expected = call.invoke(dao);
+        calls.add(call);
+      }
+    }
+    return calls;
+  }
+
+  private static List<Object> sample(Collection<?> values, int count) {
+    List<Object> result = new ArrayList<Object>(values);
+    return result.subList(0, Math.min(count, result.size()));
+  }
+
+  private static class Call {
+
+    private final Method method;
+
+    private final Object[] arguments;
+
+    private Object expected;
+
+    public Call(Method method, Object[] arguments) {
+      this.method = method;
+      this.arguments = arguments;
+    }
+
+    /**
+     * @return the result of the call, with collections copied to lists so that
+     *         they can be compared, or the type of the exception it threw
+     */
+    public Object invoke(GtfsRelationalDao dao) throws IllegalAccessException {
+      try {
+        Object result = method.invoke(dao, arguments);
+        if (result instanceof Collection<?>)
+          return new ArrayList<Object>((Collection<?>) result);
+        return result;
+      } catch (InvocationTargetException ex) {
+        return ex.getCause().getClass();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return method.getName() + Arrays.toString(arguments);
+    }
+  }
+}
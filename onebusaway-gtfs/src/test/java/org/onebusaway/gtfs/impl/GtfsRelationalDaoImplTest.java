@@ -17,15 +17,25 @@
 package org.onebusaway.gtfs.impl;
 
 import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertFalse;
+import static  org.junit.jupiter.api.Assertions.assertSame;
 import static  org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 import org.onebusaway.gtfs.GtfsTestData;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.AgencyAndIdPool;
 import org.onebusaway.gtfs.model.Frequency;
 import org.onebusaway.gtfs.model.Route;
 import org.onebusaway.gtfs.model.ServiceCalendar;
@@ -99,6 +109,230 @@ public class GtfsRelationalDaoImplTest {
     assertEquals(7, calendarDates.size());
   }
 
+  @Test
+  public void testPackedStopTimesForTrip() throws IOException {
+
+    GtfsRelationalDaoImpl expected = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(expected, GtfsTestData.getBartGtfs(), "BART");
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(true);
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+    assertTrue(dao.getPackedStopTimesForTrip(new Trip()) != null);
+
+    for (Trip trip : expected.getAllTrips()) {
+      List<StopTime> expectedStopTimes = expected.getStopTimesForTrip(trip);
+      List<StopTime> stopTimes = dao.getStopTimesForTrip(trip);
+      assertEquals(expectedStopTimes.size(), stopTimes.size());
+      for (int i = 0; i < stopTimes.size(); i++) {
+        StopTime stopTime = stopTimes.get(i);
+        assertEquals(trip, stopTime.getTrip());
+        assertEquals(expectedStopTimes.get(i).getStopSequence(),
+            stopTime.getStopSequence());
+        assertEquals(expectedStopTimes.get(i).getArrivalTime(),
+            stopTime.getArrivalTime());
+      }
+    }
+
+    // Removing stop times of a trip while iterating over them is safe, and
+    // drops the clustering until the dao is next closed
+    Trip trip = dao.getTripForId(new AgencyAndId("BART", "15PB1"));
+    for (StopTime stopTime : dao.getStopTimesForTrip(trip)) {
+      if (stopTime.getStopSequence() % 2 == 0)
+        dao.removeEntity(stopTime);
+    }
+    assertTrue(dao.getPackedStopTimesForTrip(trip) == null);
+    List<StopTime> stopTimes = dao.getStopTimesForTrip(trip);
+    assertEquals(6, stopTimes.size());
+    for (StopTime stopTime : stopTimes)
+      assertFalse(stopTime.getStopSequence() % 2 == 0);
+
+    dao.clearAllCaches();
+    dao.close();
+    assertEquals(6, dao.getPackedStopTimesForTrip(trip).size());
+
+    // Stop times read back are new proxies of their rows, equal to but not
+    // the same as the indexed ones, and updating one still moves it
+    StopTime stopTime = dao.getStopTimesForTrip(trip).get(0);
+    Stop stop = (Stop) stopTime.getStop();
+    Stop otherStop = (Stop) dao.getStopTimesForTrip(trip).get(1).getStop();
+    int count = dao.getStopTimesForStop(stop).size();
+    int otherCount = dao.getStopTimesForStop(otherStop).size();
+    stopTime.setStop(otherStop);
+    dao.updateEntity(stopTime);
+    assertEquals(count - 1, dao.getStopTimesForStop(stop).size());
+    assertEquals(otherCount + 1, dao.getStopTimesForStop(otherStop).size());
+  }
+
+  @Test
+  public void testPackedTripsStopsAndFrequencies() throws IOException {
+
+    GtfsRelationalDaoImpl expected = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(expected, GtfsTestData.getBartGtfs(), "BART");
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(true);
+    dao.setPackTrips(true);
+    dao.setPackStops(true);
+    dao.setPackFrequencies(true);
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    // Packed trips are kept in feed order, rather than in hash order
+    for (Route route : expected.getAllRoutes())
+      assertEquals(new HashSet<Trip>(expected.getTripsForRoute(route)),
+          new HashSet<Trip>(dao.getTripsForRoute(route)));
+    for (Trip trip : expected.getAllTrips()) {
+      assertEquals(expected.getFrequenciesForTrip(trip).size(),
+          dao.getFrequenciesForTrip(trip).size());
+      assertEquals(expected.getStopTimesForTrip(trip).size(),
+          dao.getStopTimesForTrip(trip).size());
+    }
+    for (Stop stop : expected.getAllStops()) {
+      assertEquals(expected.getStopTimesForStop(stop).size(),
+          dao.getStopTimesForStop(stop).size());
+    }
+
+    Trip trip = dao.getTripForId(new AgencyAndId("BART", "15PB1"));
+    Route route = trip.getRoute();
+    int tripCount = dao.getTripsForRoute(route).size();
+    dao.removeEntity(trip);
+    assertEquals(tripCount - 1, dao.getTripsForRoute(route).size());
+    assertFalse(dao.getTripsForRoute(route).contains(trip));
+  }
+
+  @Test
+  public void testPrewarmIndices() throws IOException {
+
+    GtfsRelationalDaoImpl expected = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(expected, GtfsTestData.getBartGtfs(), "BART");
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setIndexPrewarmParallelism(4);
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    for (Route route : expected.getAllRoutes())
+      assertEquals(expected.getTripsForRoute(route), dao.getTripsForRoute(route));
+    for (Trip trip : expected.getAllTrips()) {
+      assertEquals(expected.getFrequenciesForTrip(trip),
+          dao.getFrequenciesForTrip(trip));
+      assertEquals(expected.getStopTimesForTrip(trip).size(),
+          dao.getStopTimesForTrip(trip).size());
+    }
+    for (Stop stop : expected.getAllStops()) {
+      assertEquals(expected.getStopTimesForStop(stop).size(),
+          dao.getStopTimesForStop(stop).size());
+      assertEquals(expected.getStopsForStation(stop),
+          dao.getStopsForStation(stop));
+    }
+    for (AgencyAndId serviceId : expected.getAllServiceIds()) {
+      assertEquals(expected.getTripsForServiceId(serviceId),
+          dao.getTripsForServiceId(serviceId));
+      assertEquals(expected.getCalendarDatesForServiceId(serviceId),
+          dao.getCalendarDatesForServiceId(serviceId));
+    }
+    assertEquals(new HashSet<AgencyAndId>(expected.getAllShapeIds()),
+        new HashSet<AgencyAndId>(dao.getAllShapeIds()));
+  }
+
+  @Test
+  public void testIncrementalIndexMaintenance() {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    Agency agency = new Agency();
+    agency.setId("a");
+    dao.saveEntity(agency);
+    Route routeA = route(dao, agency, "A");
+    Route routeB = route(dao, agency, "B");
+    Trip trip = trip(dao, routeA, "t1", "WKDY");
+
+    assertEquals(List.of(trip), dao.getTripsForRoute(routeA));
+    assertEquals(List.of("a"),
+        dao.getTripAgencyIdsReferencingServiceId(new AgencyAndId("a", "WKDY")));
+
+    // A saved entity is added to built indices
+    Trip other = trip(dao, routeA, "t2", "WKND");
+    assertEquals(List.of(trip, other), dao.getTripsForRoute(routeA));
+    assertEquals(List.of(other),
+        dao.getTripsForServiceId(new AgencyAndId("a", "WKND")));
+
+    // An updated entity is moved to its new key
+    List<Trip> tripsBefore = dao.getTripsForRoute(routeA);
+    trip.setRoute(routeB);
+    dao.updateEntity(trip);
+    assertEquals(List.of(other), dao.getTripsForRoute(routeA));
+    assertEquals(List.of(trip), dao.getTripsForRoute(routeB));
+    assertEquals(2, tripsBefore.size());
+
+    // As is an entity whose id changed
+    other.setId(new AgencyAndId("a", "t3"));
+    dao.updateEntity(other);
+    assertSame(other, dao.getTripForId(new AgencyAndId("a", "t3")));
+    assertEquals(List.of(other), dao.getTripsForRoute(routeA));
+
+    // A removed entity is removed from built indices
+    dao.removeEntity(other);
+    assertTrue(dao.getTripsForRoute(routeA).isEmpty());
+    assertTrue(dao.getTripAgencyIdsReferencingServiceId(
+        new AgencyAndId("a", "WKND")).isEmpty());
+
+    // Stop times stay in stop sequence order
+    StopTime last = stopTime(dao, trip, 10);
+    StopTime first = stopTime(dao, trip, 0);
+    assertEquals(List.of(first, last), dao.getStopTimesForTrip(trip));
+    StopTime middle = stopTime(dao, trip, 5);
+    assertEquals(List.of(first, middle, last), dao.getStopTimesForTrip(trip));
+  }
+
+  /**
+   * Interleaves 100k saves, updates, id changes and removals with lookups, and
+   * checks that the indices still match the entities
+   */
+  @Test
+  public void testMixedWorkload() {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    List<Route> routes = createRoutes(dao, 50);
+    List<Trip> trips = runMixedWorkload(dao, routes, 100000);
+
+    for (Trip trip : trips)
+      assertSame(trip, dao.getTripForId(trip.getId()));
+    assertEquals(trips.size(), dao.getAllTrips().size());
+
+    Map<Route, Set<Trip>> expected = new HashMap<Route, Set<Trip>>();
+    for (Trip trip : dao.getAllTrips())
+      expected.computeIfAbsent(trip.getRoute(), r -> new HashSet<Trip>()).add(
+          trip);
+    for (Route route : routes)
+      assertEquals(expected.getOrDefault(route, Set.of()),
+          new HashSet<Trip>(dao.getTripsForRoute(route)));
+
+    int stopTimeCount = 0;
+    for (Trip trip : dao.getAllTrips()) {
+      List<StopTime> stopTimes = dao.getStopTimesForTrip(trip);
+      for (int i = 1; i < stopTimes.size(); i++)
+        assertTrue(stopTimes.get(i - 1).getStopSequence() <= stopTimes.get(i).getStopSequence());
+      stopTimeCount += stopTimes.size();
+    }
+    assertEquals(dao.getAllStopTimes().size(), stopTimeCount);
+  }
+
+  @Test
+  public void testCanonicalIds() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    AgencyAndIdPool pool = dao.getAgencyAndIdPool();
+    AgencyAndId serviceId = pool.getId("BART", "WKDY");
+    for (Trip trip : dao.getTripsForServiceId(serviceId))
+      assertSame(serviceId, trip.getServiceId());
+    assertSame(serviceId,
+        dao.getCalendarForServiceId(serviceId).getServiceId());
+
+    Trip trip = dao.getTripForId(new AgencyAndId("BART", "15PB1"));
+    assertSame(trip.getId(), pool.getId("BART", "15PB1"));
+  }
+
   @Test
   public void testSyntheticGetTripAgencyIdsReferencingServiceId() {
 
@@ -164,4 +398,95 @@ public class GtfsRelationalDaoImplTest {
     List<Trip> trips = dao.getTripsForBlockId(new AgencyAndId(agencyId, "block.1"));
     assertEquals(2, trips.size());
   }
+
+  private static Route route(GtfsRelationalDaoImpl dao, Agency agency,
+      String id) {
+    Route route = new Route();
+    route.setId(new AgencyAndId(agency.getId(), id));
+    route.setAgency(agency);
+    dao.saveEntity(route);
+    return route;
+  }
+
+  static List<Route> createRoutes(GtfsRelationalDaoImpl dao,
+      int count) {
+    Agency agency = new Agency();
+    agency.setId("a");
+    dao.saveEntity(agency);
+    List<Route> routes = new ArrayList<Route>();
+    for (int i = 0; i < count; i++)
+      routes.add(route(dao, agency, "r" + i));
+    return routes;
+  }
+
+  /**
+   * Spreads the trips over the routes and over two service ids for every five
+   * routes.
+   * 
+   * @return the trips left in the dao
+   */
+  static List<Trip> runMixedWorkload(GtfsRelationalDaoImpl dao,
+      List<Route> routes, int operations) {
+    Random random = new Random(42);
+    int serviceIdCount = routes.size() * 2 / 5;
+    List<Trip> trips = new ArrayList<Trip>();
+    for (int i = 0; i < operations; i++) {
+      Route route = routes.get(random.nextInt(routes.size()));
+      switch (i % 5) {
+        case 0:
+        case 1:
+          trips.add(trip(dao, route, "t" + i, "s" + (i % serviceIdCount)));
+          break;
+        case 2: {
+          Collections.swap(trips, random.nextInt(trips.size()),
+              trips.size() - 1);
+          Trip trip = trips.remove(trips.size() - 1);
+          for (StopTime stopTime : dao.getStopTimesForTrip(trip))
+            dao.removeEntity(stopTime);
+          dao.removeEntity(trip);
+          break;
+        }
+        case 3: {
+          Trip trip = trips.get(random.nextInt(trips.size()));
+          trip.setRoute(route);
+          if (i % 2 == 0)
+            trip.setId(new AgencyAndId("a", "u" + i));
+          dao.updateEntity(trip);
+          break;
+        }
+        case 4: {
+          Trip trip = trips.get(random.nextInt(trips.size()));
+          stopTime(dao, trip, random.nextInt(100));
+          break;
+        }
+      }
+      Trip trip = trips.get(random.nextInt(trips.size()));
+      List<Trip> tripsForRoute = dao.getTripsForRoute(trip.getRoute());
+      if (i % 100 == 0)
+        assertTrue(tripsForRoute.contains(trip));
+      assertSame(trip, dao.getTripForId(trip.getId()));
+      dao.getStopTimesForTrip(trip);
+      dao.getTripsForServiceId(trip.getServiceId());
+    }
+    return trips;
+  }
+
+  private static Trip trip(GtfsRelationalDaoImpl dao, Route route, String id,
+      String serviceId) {
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("a", id));
+    trip.setRoute(route);
+    trip.setServiceId(new AgencyAndId("a", serviceId));
+    dao.saveEntity(trip);
+    return trip;
+  }
+
+  private static StopTime stopTime(GtfsRelationalDaoImpl dao, Trip trip,
+      int stopSequence) {
+    StopTime stopTime = new StopTime();
+    stopTime.setTrip(trip);
+    stopTime.setStopSequence(stopSequence);
+    dao.saveEntity(stopTime);
+    return stopTime;
+  }
 }
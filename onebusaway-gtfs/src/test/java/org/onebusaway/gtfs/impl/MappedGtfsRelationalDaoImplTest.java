@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertNotSame;
+import static  org.junit.jupiter.api.Assertions.assertNull;
+import static  org.junit.jupiter.api.Assertions.assertSame;
+import static  org.junit.jupiter.api.Assertions.assertThrows;
+import static  org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.IdentityBean;
+import org.onebusaway.gtfs.model.Note;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+public class MappedGtfsRelationalDaoImplTest {
+
+  @Test
+  public void testBart() throws Exception {
+    assertSameFeed(GtfsTestData.getBartGtfs(), "BART");
+  }
+
+  @Test
+  public void testPierceTransitFlex() throws Exception {
+    assertSameFeed(GtfsTestData.getPierceTransitFlex(), "1");
+  }
+
+  @Test
+  public void testReadOnly() throws IOException {
+    MappedGtfsRelationalDaoImpl dao = new MappedGtfsRelationalDaoImpl(
+        read(GtfsTestData.getBartGtfs(), "BART"), createTempFile());
+
+    Trip trip = dao.getTripForId(new AgencyAndId("BART", "15PB1"));
+    StopTime stopTime = dao.getStopTimesForTrip(trip).get(0);
+    assertNotSame(trip, dao.getTripForId(trip.getId()));
+    assertEquals(trip, dao.getTripForId(trip.getId()));
+    assertEquals(trip, stopTime.getTrip());
+
+    assertThrows(UnsupportedOperationException.class,
+        () -> trip.setTripHeadsign("elsewhere"));
+    assertThrows(UnsupportedOperationException.class,
+        () -> stopTime.setArrivalTime(0));
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.getStopTimesForTrip(trip).clear());
+    assertThrows(UnsupportedOperationException.class,
+        () -> dao.addMetadata("modifications.txt", ""));
+    assertNull(dao.getTripForId(new AgencyAndId("BART", "missing")));
+    assertNull(dao.getStopTimeForId(Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void testFeedSpecificValuesAndExtensions() throws IOException {
+    GtfsRelationalDaoImpl source = new GtfsRelationalDaoImpl();
+    source.setPackStopTimes(true);
+    source.setPackTrips(true);
+
+    Route route = new Route();
+    route.setId(new AgencyAndId("a", "r"));
+    source.saveEntity(route);
+    Note note = new Note();
+    note.setId(new AgencyAndId("a", "n"));
+    source.saveEntity(note);
+    Stop stop = new Stop();
+    stop.setId(new AgencyAndId("a", "s"));
+    source.saveEntity(stop);
+
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("a", "t"));
+    trip.setRoute(route);
+    trip.setNote(note);
+    trip.setPeakOffpeak(1);
+    trip.setMtaTripId("MTA1");
+    trip.setBoardingType(2);
+    trip.putExtension(String.class, "trip extension");
+    source.saveEntity(trip);
+
+    StopTime stopTime = new StopTime();
+    stopTime.setTrip(trip);
+    stopTime.setStop(stop);
+    stopTime.setTrack("4");
+    stopTime.setNote(note);
+    stopTime.putExtension(String.class, "stop time extension");
+    source.saveEntity(stopTime);
+
+    MappedGtfsRelationalDaoImpl dao = new MappedGtfsRelationalDaoImpl(source,
+        createTempFile());
+    Trip mapped = dao.getTripForId(trip.getId());
+    assertSame(note, mapped.getNote());
+    assertEquals(1, mapped.getPeakOffpeak());
+    assertEquals("MTA1", mapped.getMtaTripId());
+    assertEquals(2, mapped.getBoardingType());
+    assertEquals("trip extension", mapped.getExtension(String.class));
+    StopTime mappedStopTime = dao.getStopTimesForTrip(mapped).get(0);
+    assertEquals("4", mappedStopTime.getTrack());
+    assertSame(note, mappedStopTime.getNote());
+    assertEquals("stop time extension",
+        mappedStopTime.getExtension(String.class));
+    assertThrows(UnsupportedOperationException.class,
+        () -> mapped.putExtension(String.class, "changed"));
+
+    // Shape point extensions cannot be stored, so they are rejected
+    ShapePoint shapePoint = new ShapePoint();
+    shapePoint.setShapeId(new AgencyAndId("a", "shape"));
+    shapePoint.putExtension(String.class, "shape point extension");
+    source.saveEntity(shapePoint);
+    assertThrows(IllegalArgumentException.class,
+        () -> new MappedGtfsRelationalDaoImpl(source, createTempFile()));
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Compares the mapped dao with the packed dao it was built from, which keeps
+   * the same values of trips, stop times and shape points
+   */
+  private static void assertSameFeed(File gtfs, String agencyId)
+      throws Exception {
+
+    GtfsRelationalDaoImpl expected = read(gtfs, agencyId);
+    MappedGtfsRelationalDaoImpl actual = new MappedGtfsRelationalDaoImpl(
+        expected, createTempFile());
+
+    assertSameEntities(expected.getAllTrips(), actual.getAllTrips());
+    assertSameEntities(expected.getAllStopTimes(), actual.getAllStopTimes());
+    assertSameEntities(expected.getAllShapePoints(),
+        actual.getAllShapePoints());
+    assertSameEntities(expected.getAllFrequencies(),
+        actual.getAllFrequencies());
+    assertSameEntities(expected.getAllRoutes(), actual.getAllRoutes());
+
+    for (Trip trip : expected.getAllTrips()) {
+      Trip mapped = actual.getTripForId(trip.getId());
+      assertSameEntity(trip, mapped);
+      assertSameList(expected.getStopTimesForTrip(trip),
+          actual.getStopTimesForTrip(mapped));
+      assertSameEntities(expected.getFrequenciesForTrip(trip),
+          actual.getFrequenciesForTrip(mapped));
+    }
+    for (StopTime stopTime : expected.getAllStopTimes())
+      assertSameEntity(stopTime, actual.getStopTimeForId(stopTime.getId()));
+    for (Stop stop : expected.getAllStops())
+      assertSameEntities(expected.getStopTimesForStop(stop),
+          actual.getStopTimesForStop(stop));
+    for (Route route : expected.getAllRoutes())
+      assertSameEntities(expected.getTripsForRoute(route),
+          actual.getTripsForRoute(route));
+    for (AgencyAndId serviceId : expected.getAllServiceIds()) {
+      assertSameEntities(expected.getTripsForServiceId(serviceId),
+          actual.getTripsForServiceId(serviceId));
+      assertEquals(expected.getTripAgencyIdsReferencingServiceId(serviceId),
+          actual.getTripAgencyIdsReferencingServiceId(serviceId));
+    }
+    for (Trip trip : expected.getAllTrips()) {
+      if (trip.getBlockId() == null)
+        continue;
+      AgencyAndId blockId = new AgencyAndId(trip.getId().getAgencyId(),
+          trip.getBlockId());
+      assertSameEntities(expected.getTripsForBlockId(blockId),
+          actual.getTripsForBlockId(blockId));
+    }
+
+    assertEquals(sortedIds(expected.getAllShapeIds()),
+        sortedIds(actual.getAllShapeIds()));
+    for (AgencyAndId shapeId : expected.getAllShapeIds()) {
+      assertSameList(expected.getShapePointsForShapeId(shapeId),
+          actual.getShapePointsForShapeId(shapeId));
+      assertSameEntities(expected.getTripsForShapeId(shapeId),
+          actual.getTripsForShapeId(shapeId));
+    }
+    for (ShapePoint shapePoint : expected.getAllShapePoints())
+      assertSameEntity(shapePoint,
+          actual.getShapePointForId(shapePoint.getId()));
+
+    assertEquals(expected.getAllServiceIds(), actual.getAllServiceIds());
+    for (String filename : expected.getOptionalMetadataFilenames())
+      assertEquals(expected.getMetadata(filename), actual.getMetadata(filename));
+  }
+
+  private static GtfsRelationalDaoImpl read(File gtfs, String agencyId)
+      throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(true);
+    dao.setPackShapePoints(true);
+    dao.setPackTrips(true);
+    GtfsTestData.readGtfs(dao, gtfs, agencyId);
+    return dao;
+  }
+
+  private static File createTempFile() throws IOException {
+    File path = File.createTempFile("MappedGtfsRelationalDaoImplTest-", ".bin");
+    path.deleteOnExit();
+    return path;
+  }
+
+  private static List<AgencyAndId> sortedIds(Collection<AgencyAndId> ids) {
+    List<AgencyAndId> values = new ArrayList<AgencyAndId>(ids);
+    values.sort(Comparator.naturalOrder());
+    return values;
+  }
+
+  /**
+   * Compares entities regardless of their order
+   */
+  private static void assertSameEntities(Collection<?> expected,
+      Collection<?> actual) throws Exception {
+    assertSameList(sorted(expected), sorted(actual));
+  }
+
+  private static void assertSameList(List<?> expected, List<?> actual)
+      throws Exception {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++)
+      assertSameEntity(expected.get(i), actual.get(i));
+  }
+
+  private static List<Object> sorted(Collection<?> entities) {
+    List<Object> values = new ArrayList<Object>(entities);
+    values.sort(Comparator.comparing(entity -> String.valueOf(((IdentityBean<?>) entity).getId())));
+    return values;
+  }
+
+  /**
+   * Compares every bean property, and compares referenced entities by id
+   */
+  private static void assertSameEntity(Object expected, Object actual)
+      throws IntrospectionException, IllegalAccessException,
+      InvocationTargetException {
+    assertEquals(expected.getClass(), actual.getClass());
+    for (PropertyDescriptor property : Introspector.getBeanInfo(
+        expected.getClass()).getPropertyDescriptors()) {
+      if (property.getReadMethod() == null
+          || property.getName().equals("class")
+          || property.getName().equals("proxy"))
+        continue;
+      assertEquals(toValue(property.getReadMethod().invoke(expected)),
+          toValue(property.getReadMethod().invoke(actual)), expected.getClass()
+              .getSimpleName() + "." + property.getName());
+    }
+  }
+
+  private static Object toValue(Object value) {
+    if (value instanceof IdentityBean<?>)
+      return value.getClass().getSimpleName() + ":"
+          + ((IdentityBean<?>) value).getId();
+    return value;
+  }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertFalse;
+import static  org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class PackedRowIdsTest {
+
+  @Test
+  public void testRowsMoveWithTheirIds() {
+
+    PackedRowIds ids = new PackedRowIds();
+    for (int i = 0; i < 10; i++)
+      assertEquals(i, ids.addRow());
+    assertTrue(ids.remove(3));
+    assertFalse(ids.remove(3));
+    assertEquals(3, ids.getRow(3));
+    assertEquals(-1, ids.getLiveRow(3));
+
+    int[] order = ids.getLiveRows();
+    ids.reorder(order, order.length);
+
+    assertEquals(9, ids.size());
+    assertEquals(-1, ids.getRow(3));
+    assertTrue(ids.isAssigned(3));
+    for (int id = 0; id < 10; id++) {
+      if (id != 3) {
+        assertEquals(id < 3 ? id : id - 1, ids.getLiveRow(id));
+        assertEquals(id, ids.getId(ids.getRow(id)));
+      }
+    }
+  }
+
+  /**
+   * Keeps a few long-lived rows while many others are added and removed, which
+   * leaves the live ids sparse. The map from ids to rows should stay
+   * proportional to the live rows rather than to every id ever assigned.
+   */
+  @Test
+  public void testIdMapStaysProportionalToLiveRows() {
+
+    PackedRowIds ids = new PackedRowIds();
+    List<Integer> kept = new ArrayList<Integer>();
+    for (int round = 0; round < 1000; round++) {
+      int first = ids.getId(ids.addRow());
+      if (round % 100 == 0)
+        kept.add(first);
+      else
+        ids.remove(first);
+      for (int i = 0; i < 999; i++)
+        ids.remove(ids.getId(ids.addRow()));
+      int[] order = ids.getLiveRows();
+      ids.reorder(order, order.length);
+    }
+
+    assertEquals(kept.size(), ids.size());
+    assertTrue(ids.getIdMapCapacity() <= 8 * kept.size(),
+        "capacity " + ids.getIdMapCapacity());
+    for (int i = 0; i < kept.size(); i++) {
+      assertEquals(i, ids.getLiveRow(kept.get(i)));
+      assertEquals(kept.get(i).intValue(), ids.getId(i));
+    }
+    assertEquals(-1, ids.getLiveRow(kept.get(0) + 1));
+
+    int id = ids.getId(ids.addRow());
+    assertEquals(kept.size(), ids.getLiveRow(id));
+  }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertFalse;
+import static  org.junit.jupiter.api.Assertions.assertNull;
+import static  org.junit.jupiter.api.Assertions.assertThrows;
+import static  org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class RelationIndexTest {
+
+  @Test
+  public void testGroupsValuesByKey() {
+
+    RelationIndex.Builder<String, Integer> builder = RelationIndex.builder();
+    for (int i = 0; i < 1000; i++)
+      builder.add("key" + (i % 37), i);
+    builder.add(null, -1);
+    RelationIndex<String, Integer> index = builder.build();
+
+    assertEquals(38, index.getKeyCount());
+    assertEquals(1001, index.getValueCount());
+    for (int k = 0; k < 37; k++) {
+      List<Integer> values = index.get("key" + k);
+      int expected = k;
+      for (Integer value : values) {
+        assertEquals(expected, value.intValue());
+        expected += 37;
+      }
+      assertTrue(expected >= 1000);
+    }
+    assertEquals(Arrays.asList(-1), index.get(null));
+    assertNull(index.get("missing"));
+    assertFalse(index.containsKey("missing"));
+    assertEquals("key0", index.keys().get(0));
+    assertNull(index.keys().get(37));
+
+    List<Integer> values = index.get("key0");
+    assertThrows(UnsupportedOperationException.class, () -> values.set(0, 1));
+    assertThrows(IndexOutOfBoundsException.class,
+        () -> values.get(values.size()));
+  }
+
+  @Test
+  public void testSortsValuesOfEachKey() {
+
+    RelationIndex.Builder<Integer, Integer> builder = RelationIndex.builder();
+    for (int i = 100; i > 0; i--)
+      builder.add(i % 3, i);
+    RelationIndex<Integer, Integer> index = builder.build(Comparator.<Integer> naturalOrder());
+
+    for (int k = 0; k < 3; k++) {
+      List<Integer> values = index.get(k);
+      for (int i = 1; i < values.size(); i++)
+        assertTrue(values.get(i - 1) < values.get(i));
+    }
+    assertEquals(Arrays.asList(1, 4, 7), index.get(1).subList(0, 3));
+  }
+
+  @Test
+  public void testAddAndRemoveValues() {
+
+    RelationIndex.Builder<String, Integer> builder = RelationIndex.builder();
+    for (int i = 0; i < 10000; i++)
+      builder.add(i < 10 ? "small" : "large", i);
+    RelationIndex<String, Integer> index = builder.build();
+
+    List<Integer> before = index.get("small");
+    index.add("small", 10000);
+    assertTrue(index.remove("small", 3));
+    assertFalse(index.remove("small", 3));
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), before);
+    assertEquals(Arrays.asList(0, 1, 2, 4, 5, 6, 7, 8, 9, 10000),
+        index.get("small"));
+
+    List<Integer> values = new ArrayList<Integer>(index.get("large"));
+    for (int i = 10; i < 10000; i += 3) {
+      assertTrue(index.remove("large", i));
+      values.remove(Integer.valueOf(i));
+    }
+    assertEquals(values, index.get("large"));
+    assertEquals(values.size() + 10, index.getValueCount());
+
+    index.put("other", 5);
+    assertEquals(Arrays.asList(5), index.get("other"));
+    assertFalse(index.get("small").contains(5));
+    assertTrue(index.removeValue(5));
+    assertNull(index.get("other"));
+    assertFalse(index.keys().contains("other"));
+  }
+
+  @Test
+  public void testPutMovesValuesBetweenKeys() {
+
+    RelationIndex.Builder<String, Integer> builder = RelationIndex.builder();
+    for (int i = 0; i < 100; i++)
+      builder.add("key" + (i % 10), i);
+    RelationIndex<String, Integer> index = builder.build();
+
+    index.add("key1", 100);
+    assertTrue(index.remove("key2", 2));
+    index.put("key3", 1);
+    index.put("key3", 100);
+    index.put("key3", 3);
+    assertEquals(Arrays.asList(11, 21, 31, 41, 51, 61, 71, 81, 91),
+        index.get("key1"));
+    assertEquals(Arrays.asList(3, 13, 23, 33, 43, 53, 63, 73, 83, 93, 1, 100),
+        index.get("key3"));
+    assertFalse(index.removeValue(2));
+
+    index.put("key1", 1);
+    index.put("key2", 2);
+    assertTrue(index.get("key1").contains(1));
+    assertFalse(index.get("key3").contains(1));
+    assertTrue(index.removeValue(100));
+    assertFalse(index.removeValue(100));
+    assertTrue(index.removeValue(1));
+    assertFalse(index.removeValue(1));
+    assertTrue(index.removeValue(2));
+    assertEquals(Arrays.asList(12, 22, 32, 42, 52, 62, 72, 82, 92),
+        index.get("key2"));
+    assertEquals(98, index.getValueCount());
+  }
+
+  @Test
+  public void testAddKeepsValuesSorted() {
+
+    RelationIndex.Builder<Integer, Integer> builder = RelationIndex.builder();
+    for (int i = 0; i < 100; i += 2)
+      builder.add(0, i);
+    RelationIndex<Integer, Integer> index = builder.build(Comparator.<Integer> naturalOrder());
+
+    for (int i = 99; i > 0; i -= 2)
+      index.add(0, i);
+    index.remove(0, 50);
+    List<Integer> values = index.get(0);
+    assertEquals(99, values.size());
+    for (int i = 1; i < values.size(); i++)
+      assertTrue(values.get(i - 1) < values.get(i));
+  }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertNull;
+import static  org.junit.jupiter.api.Assertions.assertThrows;
+import static  org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.ShapePoint;
+
+public class ShapeStoreTest {
+
+  @Test
+  public void testCaltrain() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackShapePoints(true);
+    GtfsTestData.readGtfs(dao, GtfsTestData.getCaltrainGtfs(), "Caltrain");
+    ShapeStore store = ShapeStore.create(dao);
+
+    List<AgencyAndId> shapeIds = new ArrayList<AgencyAndId>(
+        dao.getAllShapeIds());
+    shapeIds.sort(null);
+    assertEquals(shapeIds, store.getShapeIds());
+    assertEquals(dao.getAllShapePoints().size(), store.getPointCount());
+
+    for (AgencyAndId shapeId : shapeIds) {
+      List<ShapePoint> expected = dao.getShapePointsForShapeId(shapeId);
+      List<ShapePoint> actual = store.getShapePointsForShapeId(shapeId);
+      assertEquals(expected.size(), store.getPointCount(shapeId));
+      assertSamePoints(expected, actual);
+
+      int from = Math.min(expected.size(), ShapeStore.BLOCK_SIZE + 3);
+      int to = expected.size();
+      assertSamePoints(expected.subList(from, to),
+          store.getShapePointsForShapeId(shapeId, from, to));
+
+      double[] lats = new double[to - from];
+      double[] lons = new double[to - from];
+      store.getCoordinates(shapeId, from, to, lats, lons);
+      for (int i = 0; i < lats.length; i++) {
+        assertEquals(stored(expected.get(from + i).getLat()), lats[i]);
+        assertEquals(stored(expected.get(from + i).getLon()), lons[i]);
+      }
+
+      assertEquals(encode(expected, 5), store.getEncodedPolyline(shapeId));
+      assertEquals(encode(expected.subList(from, to), 6),
+          store.getEncodedPolyline(shapeId, from, to, 6));
+    }
+
+    assertTrue(store.getEncodedLength() < 8 * store.getPointCount());
+  }
+
+  @Test
+  public void testEncodedPolyline() {
+    ShapeStore store = ShapeStore.create(Arrays.asList(
+        point("a", 1, 38.5, -120.2), point("a", 2, 40.7, -120.95),
+        point("a", 3, 43.252, -126.453)));
+    AgencyAndId shapeId = new AgencyAndId("1", "a");
+    assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@",
+        store.getEncodedPolyline(shapeId));
+    assertEquals("_p~iF~ps|U", store.getEncodedPolyline(shapeId, 0, 1, 5));
+    assertEquals(3, store.getShapePointsForShapeId(shapeId, 0, 3).size());
+  }
+
+  @Test
+  public void testOrderAndMissingShapes() {
+    ShapePoint noShape = point("a", 1, 0, 0);
+    noShape.setShapeId(null);
+    ShapePoint withDist = point("b", 2, 1.5, 2.5);
+    withDist.setDistTraveled(12.5);
+    ShapeStore store = ShapeStore.create(Arrays.asList(point("b", 7, 1, 2),
+        withDist, point("a", 1, -1.23456789, 3), noShape));
+
+    assertEquals(Arrays.asList(new AgencyAndId("1", "a"), new AgencyAndId(
+        "1", "b")), store.getShapeIds());
+    List<ShapePoint> b = store.getShapePointsForShapeId(new AgencyAndId("1",
+        "b"));
+    assertEquals(2, b.get(0).getSequence());
+    assertEquals(12.5, b.get(0).getDistTraveled());
+    assertEquals(7, b.get(1).getSequence());
+    assertTrue(!b.get(1).isDistTraveledSet());
+
+    ShapePoint a = store.getShapePointsForShapeId(new AgencyAndId("1", "a")).get(
+        0);
+    assertEquals(-1.2345679, a.getLat());
+    assertTrue(!a.isDistTraveledSet());
+
+    AgencyAndId missing = new AgencyAndId("1", "missing");
+    assertEquals(0, store.getPointCount(missing));
+    assertTrue(store.getShapePointsForShapeId(missing).isEmpty());
+    assertNull(store.getEncodedPolyline(missing));
+    assertThrows(IllegalArgumentException.class,
+        () -> store.getEncodedPolyline(missing, 0, 0, 5));
+    assertThrows(IndexOutOfBoundsException.class,
+        () -> store.getShapePointsForShapeId(new AgencyAndId("1", "a"), 0, 2));
+    assertThrows(IllegalArgumentException.class,
+        () -> store.getEncodedPolyline(new AgencyAndId("1", "a"), 0, 1, 8));
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static ShapePoint point(String shapeId, int sequence, double lat,
+      double lon) {
+    ShapePoint shapePoint = new ShapePoint();
+    shapePoint.setShapeId(new AgencyAndId("1", shapeId));
+    shapePoint.setSequence(sequence);
+    shapePoint.setLat(lat);
+    shapePoint.setLon(lon);
+    return shapePoint;
+  }
+
+  private static void assertSamePoints(List<ShapePoint> expected,
+      List<ShapePoint> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      ShapePoint e = expected.get(i);
+      ShapePoint a = actual.get(i);
+      assertEquals(e.getId(), a.getId());
+      assertEquals(e.getShapeId(), a.getShapeId());
+      assertEquals(e.getSequence(), a.getSequence());
+      assertEquals(stored(e.getLat()), a.getLat());
+      assertEquals(stored(e.getLon()), a.getLon());
+      assertEquals(e.getDistTraveled(), a.getDistTraveled());
+    }
+  }
+
+  /**
+   * @return the coordinate rounded to the seven decimal places that the store
+   *         keeps
+   */
+  private static double stored(double value) {
+    return Math.round(value * 1e7) / 1e7;
+  }
+
+  /**
+   * Encodes points in the encoded polyline format, rounding the decimal values
+   * of their stored coordinates half up
+   */
+  private static String encode(List<ShapePoint> points, int precision) {
+    StringBuilder b = new StringBuilder();
+    long prevLat = 0;
+    long prevLon = 0;
+    for (ShapePoint point : points) {
+      long lat = round(point.getLat(), precision);
+      long lon = round(point.getLon(), precision);
+      encode(b, lat - prevLat);
+      encode(b, lon - prevLon);
+      prevLat = lat;
+      prevLon = lon;
+    }
+    return b.toString();
+  }
+
+  private static long round(double value, int precision) {
+    return BigDecimal.valueOf(stored(value)).movePointRight(precision).add(
+        new BigDecimal("0.5")).setScale(0, RoundingMode.FLOOR).longValue();
+  }
+
+  private static void encode(StringBuilder b, long value) {
+    long v = value < 0 ? ~(value << 1) : value << 1;
+    while (v >= 0x20) {
+      b.append((char) ((0x20 | (v & 0x1f)) + 63));
+      v >>= 5;
+    }
+    b.append((char) (v + 63));
+  }
+}
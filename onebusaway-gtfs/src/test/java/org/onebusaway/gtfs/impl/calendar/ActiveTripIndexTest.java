@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl.calendar;
+
+import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertFalse;
+import static  org.junit.jupiter.api.Assertions.assertThrows;
+import static  org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.ServiceCalendar;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.model.calendar.CalendarServiceData;
+import org.onebusaway.gtfs.model.calendar.ServiceDate;
+
+public class ActiveTripIndexTest {
+
+  /**
+   * The trips of each date are those of the service ids active on it, and
+   * ranges and routes combine as sets
+   */
+  @Test
+  public void testIslandGtfs() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getIslandGtfs(), "26");
+    CalendarServiceData data = new CalendarServiceDataFactoryImpl(dao).createData();
+
+    ActiveTripIndex index = ActiveTripIndex.create(dao, data);
+    assertEquals(dao.getAllTrips().size(), index.getTripCount());
+
+    ServiceDate first = index.getFirstServiceDate();
+    ServiceDate last = index.getLastServiceDate();
+    assertEquals(first, ServiceDate.ofEpochDay(first.getAsEpochDay()));
+    assertTrue(getTrips(dao, data, first.previous()).isEmpty());
+    assertTrue(getTrips(dao, data, last.next()).isEmpty());
+
+    for (ServiceDate date = first.previous(); date.compareTo(last.next()) <= 0; date = date.next()) {
+      Set<AgencyAndId> expected = getTrips(dao, data, date);
+      assertEquals(expected, new HashSet<AgencyAndId>(index.getTripIds(
+          index.getActiveTrips(date))), date.toString());
+      for (Trip trip : dao.getAllTrips()) {
+        assertEquals(expected.contains(trip.getId()), index.isTripActive(
+            trip.getId(), date));
+      }
+    }
+
+    ServiceDate monday = new ServiceDate(2008, 11, 3);
+    ServiceDate sunday = new ServiceDate(2008, 11, 9);
+    Set<AgencyAndId> any = new HashSet<AgencyAndId>();
+    Set<AgencyAndId> every = null;
+    for (ServiceDate date = monday; date.compareTo(sunday) <= 0; date = date.next()) {
+      Set<AgencyAndId> trips = getTrips(dao, data, date);
+      any.addAll(trips);
+      if (every == null)
+        every = new HashSet<AgencyAndId>(trips);
+      else
+        every.retainAll(trips);
+    }
+    assertFalse(any.isEmpty());
+    assertEquals(any, new HashSet<AgencyAndId>(index.getTripIds(
+        index.getTripsActiveOnAnyDate(monday, sunday))));
+    assertEquals(every, new HashSet<AgencyAndId>(index.getTripIds(
+        index.getTripsActiveOnEveryDate(monday, sunday))));
+    assertTrue(index.getTripsActiveOnEveryDate(first.previous(), first).isEmpty());
+
+    for (Route route : dao.getAllRoutes()) {
+      Set<AgencyAndId> expected = new HashSet<AgencyAndId>();
+      for (Trip trip : dao.getTripsForRoute(route)) {
+        if (any.contains(trip.getId()))
+          expected.add(trip.getId());
+      }
+      BitSet trips = index.getTripsActiveOnAnyDate(monday, sunday);
+      trips.and(index.getTripsForRoute(route.getId()));
+      assertEquals(expected, new HashSet<AgencyAndId>(index.getTripIds(trips)));
+    }
+    assertTrue(index.getTripsForRoute(new AgencyAndId("26", "missing")).isEmpty());
+    assertEquals(-1, index.getTripIndex(new AgencyAndId("26", "missing")));
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getIslandGtfs(), "26");
+    CalendarServiceData data = new CalendarServiceDataFactoryImpl(dao).createData();
+    ActiveTripIndex index = ActiveTripIndex.create(dao, data);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write(out);
+    byte[] bytes = out.toByteArray();
+    ActiveTripIndex read = ActiveTripIndex.read(new ByteArrayInputStream(bytes));
+
+    assertEquals(index.getTripCount(), read.getTripCount());
+    assertEquals(index.getFirstServiceDate(), read.getFirstServiceDate());
+    assertEquals(index.getLastServiceDate(), read.getLastServiceDate());
+    for (int i = 0; i < index.getTripCount(); i++)
+      assertEquals(index.getTripId(i), read.getTripId(i));
+    for (ServiceDate date = index.getFirstServiceDate(); date.compareTo(index.getLastServiceDate()) <= 0; date = date.next())
+      assertEquals(index.getActiveTrips(date), read.getActiveTrips(date));
+    for (Route route : dao.getAllRoutes()) {
+      assertEquals(index.getTripsForRoute(route.getId()),
+          read.getTripsForRoute(route.getId()));
+    }
+
+    bytes[bytes.length - 9] ^= 1;
+    assertThrows(IOException.class,
+        () -> ActiveTripIndex.read(new ByteArrayInputStream(bytes)));
+  }
+
+  /**
+   * Calendars that run for decades, as many feeds have, cost a reference per
+   * day rather than a bitset of every trip per day
+   */
+  @Test
+  public void testLongCalendars() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    Agency agency = new Agency();
+    agency.setId("A");
+    agency.setName("A");
+    agency.setTimezone("America/New_York");
+    dao.saveEntity(agency);
+
+    int tripCount = 2000;
+    for (int i = 0; i < 2; i++) {
+      ServiceCalendar calendar = new ServiceCalendar();
+      calendar.setServiceId(new AgencyAndId("A", "service" + i));
+      calendar.setStartDate(new ServiceDate(2020, 1, 1));
+      calendar.setEndDate(new ServiceDate(2099, 12, 31));
+      calendar.setMonday(1 - i);
+      calendar.setTuesday(1 - i);
+      calendar.setWednesday(1 - i);
+      calendar.setThursday(1 - i);
+      calendar.setFriday(1 - i);
+      calendar.setSaturday(i);
+      calendar.setSunday(i);
+      dao.saveEntity(calendar);
+    }
+    for (int i = 0; i < tripCount; i++) {
+      Trip trip = new Trip();
+      trip.setId(new AgencyAndId("A", "trip" + i));
+      trip.setServiceId(new AgencyAndId("A", "service" + (i % 2)));
+      dao.saveEntity(trip);
+    }
+
+    CalendarServiceData data = new CalendarServiceDataFactoryImpl(dao).createData();
+    ActiveTripIndex index = ActiveTripIndex.create(dao, data);
+    assertEquals(new ServiceDate(2020, 1, 1), index.getFirstServiceDate());
+    assertEquals(new ServiceDate(2099, 12, 31), index.getLastServiceDate());
+    assertEquals(getTrips(dao, data, new ServiceDate(2087, 6, 2)),
+        new HashSet<AgencyAndId>(index.getTripIds(index.getActiveTrips(
+            new ServiceDate(2087, 6, 2)))));
+    assertEquals(tripCount, index.getTripsActiveOnAnyDate(
+        new ServiceDate(2050, 1, 1), new ServiceDate(2050, 1, 7)).cardinality());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write(out);
+    int days = index.getLastServiceDate().getAsEpochDay()
+        - index.getFirstServiceDate().getAsEpochDay() + 1;
+    assertTrue(out.size() < days * 8, out.size() + " bytes");
+    assertTrue(out.size() * 50L < (long) days * tripCount / 8);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * @return the trips of the service ids active on the date
+   */
+  private static Set<AgencyAndId> getTrips(GtfsRelationalDaoImpl dao,
+      CalendarServiceData data, ServiceDate date) {
+    Set<AgencyAndId> tripIds = new HashSet<AgencyAndId>();
+    for (AgencyAndId serviceId : data.getServiceIdsForDate(date)) {
+      List<Trip> trips = dao.getTripsForServiceId(serviceId);
+      for (Trip trip : trips)
+        tripIds.add(trip.getId());
+    }
+    return tripIds;
+  }
+}
@@ -16,19 +16,32 @@
 package org.onebusaway.gtfs.impl.calendar;
 
 import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertFalse;
+import static  org.junit.jupiter.api.Assertions.assertNull;
+import static  org.junit.jupiter.api.Assertions.assertThrows;
 import static  org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.TreeSet;
 
 import org.junit.jupiter.api.Test;
 import org.onebusaway.gtfs.DateSupport;
 import org.onebusaway.gtfs.GtfsTestData;
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.ServiceCalendar;
+import org.onebusaway.gtfs.model.ServiceCalendarDate;
+import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.model.calendar.CalendarServiceData;
 import org.onebusaway.gtfs.model.calendar.LocalizedServiceId;
 import org.onebusaway.gtfs.model.calendar.ServiceDate;
@@ -97,4 +110,248 @@ public class CalendarServiceDataFactoryImplTest {
     assertEquals(DateSupport.date("2009-09-25 00:00 Pacific Daylight Time"),
         dates.get(dates.size() - 1));
   }
+
+  /**
+   * Service ids spanning both daylight saving time changes, computed on
+   * several threads, against the weekdays and midnights of
+   * {@link java.util.Calendar}
+   */
+  @Test
+  public void testParallelServiceDates() {
+
+    TimeZone tz = TimeZone.getTimeZone("America/New_York");
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    Agency agency = new Agency();
+    agency.setId("A");
+    agency.setName("A");
+    agency.setTimezone(tz.getID());
+    dao.saveEntity(agency);
+
+    for (int i = 0; i < 1000; i++) {
+      AgencyAndId serviceId = new AgencyAndId("A", Integer.toString(i));
+      ServiceCalendar calendar = new ServiceCalendar();
+      calendar.setServiceId(serviceId);
+      calendar.setStartDate(new ServiceDate(2010, 1, 1).shift(i % 97));
+      calendar.setEndDate(new ServiceDate(2010, 1, 1).shift(i % 97 + i % 400));
+      calendar.setMonday(i & 1);
+      calendar.setTuesday((i >> 1) & 1);
+      calendar.setWednesday((i >> 2) & 1);
+      calendar.setThursday((i >> 3) & 1);
+      calendar.setFriday((i >> 4) & 1);
+      calendar.setSaturday((i >> 5) & 1);
+      calendar.setSunday((i >> 6) & 1);
+      dao.saveEntity(calendar);
+
+      ServiceCalendarDate added = new ServiceCalendarDate();
+      added.setServiceId(serviceId);
+      added.setDate(new ServiceDate(2009, 12, 1).shift(i % 50));
+      added.setExceptionType(ServiceCalendarDate.EXCEPTION_TYPE_ADD);
+      dao.saveEntity(added);
+      ServiceCalendarDate removed = new ServiceCalendarDate();
+      removed.setServiceId(serviceId);
+      removed.setDate(new ServiceDate(2010, 3, 14));
+      removed.setExceptionType(ServiceCalendarDate.EXCEPTION_TYPE_REMOVE);
+      dao.saveEntity(removed);
+
+      Trip trip = new Trip();
+      trip.setId(new AgencyAndId("A", "trip" + i));
+      trip.setServiceId(serviceId);
+      dao.saveEntity(trip);
+    }
+
+    CalendarServiceDataFactoryImpl factory = new CalendarServiceDataFactoryImpl(
+        dao);
+    factory.setParallelism(4);
+    CalendarServiceData data = factory.createData();
+
+    assertEquals(1000, data.getServiceIds().size());
+    for (ServiceCalendar calendar : dao.getAllCalendars()) {
+      AgencyAndId serviceId = calendar.getServiceId();
+      List<ServiceDate> expected = getServiceDates(calendar,
+          dao.getCalendarDatesForServiceId(serviceId));
+      assertEquals(expected, data.getServiceDatesForServiceId(serviceId));
+
+      List<Date> dates = new ArrayList<Date>();
+      for (ServiceDate serviceDate : expected)
+        dates.add(serviceDate.getAsDate(tz));
+      assertEquals(dates, data.getDatesForLocalizedServiceId(
+          new LocalizedServiceId(serviceId, tz)));
+    }
+  }
+
+  /**
+   * Changes, adds and removes service ids, and checks that the incremental
+   * update matches data created from scratch, while the previous data is left
+   * as it was
+   */
+  @Test
+  public void testUpdateData() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getIslandGtfs(), "26");
+
+    CalendarServiceDataFactoryImpl factory = new CalendarServiceDataFactoryImpl(
+        dao);
+    CalendarServiceData data = factory.createData();
+    data.makeReadOnly();
+
+    TimeZone tz = data.getTimeZoneForAgencyId("26");
+    AgencyAndId changedId = new AgencyAndId("26", "23");
+    AgencyAndId removedId = new AgencyAndId("26", "25");
+    AgencyAndId addedId = new AgencyAndId("26", "new");
+    ServiceDate holiday = new ServiceDate(2008, 11, 3);
+    List<ServiceDate> changedDates = data.getServiceDatesForServiceId(changedId);
+    List<ServiceDate> removedDates = data.getServiceDatesForServiceId(removedId);
+    assertTrue(changedDates.contains(holiday));
+
+    ServiceCalendarDate removed = new ServiceCalendarDate();
+    removed.setServiceId(changedId);
+    removed.setDate(holiday);
+    removed.setExceptionType(ServiceCalendarDate.EXCEPTION_TYPE_REMOVE);
+    dao.saveEntity(removed);
+    dao.removeEntity(dao.getCalendarForServiceId(removedId));
+    for (ServiceCalendarDate calendarDate : dao.getCalendarDatesForServiceId(removedId))
+      dao.removeEntity(calendarDate);
+    ServiceCalendarDate added = new ServiceCalendarDate();
+    added.setServiceId(addedId);
+    added.setDate(new ServiceDate(2007, 12, 25));
+    added.setExceptionType(ServiceCalendarDate.EXCEPTION_TYPE_ADD);
+    dao.saveEntity(added);
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("26", "newTrip"));
+    trip.setServiceId(addedId);
+    dao.saveEntity(trip);
+
+    CalendarServiceData updated = factory.updateData(data, Arrays.asList(
+        changedId, removedId, addedId));
+    CalendarServiceData expected = factory.createData();
+
+    assertEquals(expected.getServiceIds(), updated.getServiceIds());
+    assertEquals(expected.getLocalizedServiceIds(),
+        updated.getLocalizedServiceIds());
+    for (AgencyAndId serviceId : expected.getServiceIds()) {
+      assertEquals(expected.getServiceDatesForServiceId(serviceId),
+          updated.getServiceDatesForServiceId(serviceId));
+    }
+    for (LocalizedServiceId serviceId : expected.getLocalizedServiceIds()) {
+      assertEquals(expected.getDatesForLocalizedServiceId(serviceId),
+          updated.getDatesForLocalizedServiceId(serviceId));
+    }
+    ServiceDate day = new ServiceDate(2007, 12, 1);
+    for (int i = 0; i < 700; i++) {
+      assertEquals(expected.getServiceIdsForDate(day.shift(i)),
+          updated.getServiceIdsForDate(day.shift(i)));
+    }
+    assertFalse(updated.isServiceIdActiveOnDate(changedId, holiday));
+    assertNull(updated.getServiceDatesForServiceId(removedId));
+    assertTrue(updated.isLocalizedServiceIdActiveOnDate(
+        new LocalizedServiceId(addedId, tz),
+        new ServiceDate(2007, 12, 25).getAsDate(tz)));
+    assertThrows(UnsupportedOperationException.class,
+        () -> updated.putServiceDatesForServiceId(changedId, changedDates));
+
+    assertEquals(changedDates, data.getServiceDatesForServiceId(changedId));
+    assertEquals(removedDates, data.getServiceDatesForServiceId(removedId));
+    assertTrue(data.isServiceIdActiveOnDate(changedId, holiday));
+    assertTrue(data.getServiceIdsForDate(holiday).contains(changedId));
+    assertFalse(data.getServiceIds().contains(addedId));
+  }
+
+  /**
+   * Removing and adding back service ids, and changing them, over and over
+   * reuses their indices, so that the data does not grow
+   */
+  @Test
+  public void testRepeatedUpdatesDoNotGrow() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getIslandGtfs(), "26");
+
+    CalendarServiceDataFactoryImpl factory = new CalendarServiceDataFactoryImpl(
+        dao);
+    CalendarServiceData data = factory.createData();
+    data.makeReadOnly();
+    int size = -1;
+
+    AgencyAndId changedId = new AgencyAndId("26", "23");
+    AgencyAndId removedId = new AgencyAndId("26", "26");
+    List<AgencyAndId> serviceIds = Arrays.asList(changedId, removedId);
+    ServiceCalendar calendar = dao.getCalendarForServiceId(removedId);
+    List<ServiceCalendarDate> calendarDates = new ArrayList<ServiceCalendarDate>(
+        dao.getCalendarDatesForServiceId(removedId));
+    ServiceCalendarDate holiday = new ServiceCalendarDate();
+    holiday.setServiceId(changedId);
+    holiday.setDate(new ServiceDate(2008, 11, 3));
+    holiday.setExceptionType(ServiceCalendarDate.EXCEPTION_TYPE_REMOVE);
+
+    for (int i = 0; i < 20; i++) {
+      dao.saveEntity(holiday);
+      dao.removeEntity(calendar);
+      for (ServiceCalendarDate calendarDate : calendarDates)
+        dao.removeEntity(calendarDate);
+      data = factory.updateData(data, serviceIds);
+      assertNull(data.getServiceDatesForServiceId(removedId));
+
+      dao.removeEntity(holiday);
+      dao.saveEntity(calendar);
+      for (ServiceCalendarDate calendarDate : calendarDates)
+        dao.saveEntity(calendarDate);
+      data = factory.updateData(data, serviceIds);
+      if (size == -1)
+        size = getSerializedSize(data);
+      assertEquals(size, getSerializedSize(data));
+    }
+
+    CalendarServiceData expected = factory.createData();
+    for (AgencyAndId serviceId : expected.getServiceIds()) {
+      assertEquals(expected.getServiceDatesForServiceId(serviceId),
+          data.getServiceDatesForServiceId(serviceId));
+    }
+    ServiceDate day = new ServiceDate(2007, 12, 1);
+    for (int i = 0; i < 700; i++) {
+      assertEquals(expected.getServiceIdsForDate(day.shift(i)),
+          data.getServiceIdsForDate(day.shift(i)));
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Steps through the calendar a day at a time with {@link Calendar}, then
+   * applies the calendar dates in order
+   */
+  private static List<ServiceDate> getServiceDates(ServiceCalendar calendar,
+      List<ServiceCalendarDate> calendarDates) {
+    Set<ServiceDate> serviceDates = new TreeSet<ServiceDate>();
+    Calendar c = calendar.getStartDate().getAsCalendar(
+        TimeZone.getTimeZone("UTC"));
+    Date end = calendar.getEndDate().getAsDate(TimeZone.getTimeZone("UTC"));
+    int[] weekdays = {
+        0, calendar.getSunday(), calendar.getMonday(), calendar.getTuesday(),
+        calendar.getWednesday(), calendar.getThursday(), calendar.getFriday(),
+        calendar.getSaturday()};
+    while (!c.getTime().after(end)) {
+      if (weekdays[c.get(Calendar.DAY_OF_WEEK)] == 1)
+        serviceDates.add(new ServiceDate(c));
+      c.add(Calendar.DAY_OF_YEAR, 1);
+    }
+    for (ServiceCalendarDate calendarDate : calendarDates) {
+      if (calendarDate.getExceptionType() == ServiceCalendarDate.EXCEPTION_TYPE_ADD)
+        serviceDates.add(calendarDate.getDate());
+      else
+        serviceDates.remove(calendarDate.getDate());
+    }
+    return new ArrayList<ServiceDate>(serviceDates);
+  }
+
+  private static int getSerializedSize(CalendarServiceData data)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(data);
+    }
+    return bytes.size();
+  }
 }
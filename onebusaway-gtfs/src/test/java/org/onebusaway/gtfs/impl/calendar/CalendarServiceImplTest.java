@@ -17,19 +17,28 @@ package org.onebusaway.gtfs.impl.calendar;
 
 import static  org.junit.jupiter.api.Assertions.assertEquals;
 import static  org.junit.jupiter.api.Assertions.assertTrue;
+import static  org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.TimeZone;
 
 import org.junit.jupiter.api.Test;
 import org.onebusaway.gtfs.GtfsTestData;
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.calendar.CalendarServiceData;
+import org.onebusaway.gtfs.model.calendar.LocalizedServiceId;
 import org.onebusaway.gtfs.model.calendar.ServiceDate;
+import org.onebusaway.gtfs.model.calendar.ServiceIdIntervals;
+import org.onebusaway.gtfs.model.calendar.ServiceInterval;
 
 public class CalendarServiceImplTest {
 
@@ -75,4 +84,150 @@ public class CalendarServiceImplTest {
       c.add(Calendar.DAY_OF_YEAR, 1);
     }
   }
+
+  /**
+   * The queries in milliseconds since the epoch find the same service dates as
+   * the {@link Date} queries, for every service id over the whole feed
+   */
+  @Test
+  public void testMillisecondQueries() throws IOException {
+
+    CalendarServiceImpl service = createIslandService();
+    TimeZone tz = service.getTimeZoneForAgencyId("26");
+    List<LocalizedServiceId> serviceIds = new ArrayList<LocalizedServiceId>();
+    for (AgencyAndId serviceId : service.getServiceIds())
+      serviceIds.add(new LocalizedServiceId(serviceId, tz));
+    List<ServiceInterval> intervals = Arrays.asList(new ServiceInterval(
+        hours(6), hours(7)), new ServiceInterval(hours(5), hours(6), hours(25),
+        hours(26)), new ServiceInterval(hours(0), hours(48)));
+
+    ServiceIdIntervals serviceIdIntervals = new ServiceIdIntervals();
+    for (int i = 0; i < serviceIds.size(); i++) {
+      ServiceInterval interval = intervals.get(i % intervals.size());
+      serviceIdIntervals.addStopTime(serviceIds.get(i), interval.getMinArrival(),
+          interval.getMinDeparture());
+      serviceIdIntervals.addStopTime(serviceIds.get(i), interval.getMaxArrival(),
+          interval.getMaxDeparture());
+    }
+
+    long[] buffer = new long[4];
+    ServiceDateResults results = new ServiceDateResults();
+    long start = new ServiceDate(2007, 12, 1).getAsDate(tz).getTime();
+    long end = new ServiceDate(2009, 10, 31).getAsDate(tz).getTime();
+    for (long time = start; time < end; time += 7 * 3600 * 1000L) {
+      Date from = new Date(time);
+      Date to = new Date(time + 30 * 3600 * 1000L);
+
+      for (LocalizedServiceId serviceId : serviceIds) {
+        for (ServiceInterval interval : intervals) {
+          assertServiceDates(service.getServiceDateArrivalsWithinRange(serviceId,
+              interval, from, to), buffer,
+              service.getServiceDateArrivalsWithinRange(serviceId, interval,
+                  from.getTime(), to.getTime(), buffer));
+          assertServiceDates(service.getServiceDateDeparturesWithinRange(serviceId,
+              interval, from, to), buffer,
+              service.getServiceDateDeparturesWithinRange(serviceId, interval,
+                  from.getTime(), to.getTime(), buffer));
+          assertServiceDates(service.getServiceDatesWithinRange(serviceId, interval,
+              from, to), buffer, service.getServiceDatesWithinRange(serviceId,
+              interval, from.getTime(), to.getTime(), buffer));
+          assertServiceDates(service.getNextDepartureServiceDates(serviceId, interval,
+              time), buffer, service.getNextDepartureServiceDates(serviceId,
+              interval, time, buffer));
+          assertServiceDates(service.getPreviousArrivalServiceDates(serviceId,
+              interval, time), buffer,
+              service.getPreviousArrivalServiceDates(serviceId, interval, time,
+                  buffer));
+        }
+      }
+
+      service.getServiceDateArrivalsWithinRange(serviceIdIntervals,
+          from.getTime(), to.getTime(), results);
+      assertEquals(service.getServiceDateArrivalsWithinRange(
+          serviceIdIntervals, from, to), results.toMap());
+      service.getServiceDateDeparturesWithinRange(serviceIdIntervals,
+          from.getTime(), to.getTime(), results);
+      assertEquals(service.getServiceDateDeparturesWithinRange(
+          serviceIdIntervals, from, to), results.toMap());
+      service.getServiceDatesWithinRange(serviceIdIntervals, from.getTime(),
+          to.getTime(), results);
+      assertEquals(service.getServiceDatesWithinRange(serviceIdIntervals,
+          from, to), results.toMap());
+      service.getNextDepartureServiceDates(serviceIdIntervals, time, results);
+      assertEquals(service.getNextDepartureServiceDates(serviceIdIntervals,
+          time), results.toMap());
+      service.getPreviousArrivalServiceDates(serviceIdIntervals, time, results);
+      assertEquals(service.getPreviousArrivalServiceDates(serviceIdIntervals,
+          time), results.toMap());
+    }
+  }
+
+  /**
+   * Compares the heap allocated by a departure query in milliseconds since the
+   * epoch with that of the same {@link Date} query
+   */
+  @Test
+  public void testMillisecondQueriesDoNotAllocate() throws IOException {
+
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported()
+        && threads.isThreadAllocatedMemoryEnabled());
+
+    CalendarServiceImpl service = createIslandService();
+    TimeZone tz = service.getTimeZoneForAgencyId("26");
+    LocalizedServiceId serviceId = new LocalizedServiceId(new AgencyAndId(
+        "26", "23"), tz);
+    ServiceInterval interval = new ServiceInterval(hours(6), hours(25));
+    long start = new ServiceDate(2008, 10, 27).getAsDate(tz).getTime();
+    long[] buffer = new long[4];
+    int calls = 10000;
+
+    for (int i = 0; i < calls; i++)
+      service.getNextDepartureServiceDates(serviceId, interval, start + i
+          * 60000L, buffer);
+    long before = threads.getCurrentThreadAllocatedBytes();
+    int found = 0;
+    for (int i = 0; i < calls; i++)
+      found += service.getNextDepartureServiceDates(serviceId, interval, start
+          + i * 60000L, buffer);
+    long millisecondBytes = threads.getCurrentThreadAllocatedBytes() - before;
+
+    before = threads.getCurrentThreadAllocatedBytes();
+    int dateFound = 0;
+    for (int i = 0; i < calls; i++)
+      dateFound += service.getNextDepartureServiceDates(serviceId, interval,
+          start + i * 60000L).size();
+    long dateBytes = threads.getCurrentThreadAllocatedBytes() - before;
+
+    assertEquals(dateFound, found);
+    assertTrue(millisecondBytes < 1024, millisecondBytes + " bytes allocated");
+    assertTrue(dateBytes > calls * 16L, dateBytes + " bytes allocated");
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static CalendarServiceImpl createIslandService() throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getIslandGtfs(), "26");
+    CalendarServiceData data = new CalendarServiceDataFactoryImpl(dao).createData();
+    data.makeReadOnly();
+    return new CalendarServiceImpl(data);
+  }
+
+  /**
+   * Checks that the number of service dates is that of the expected dates, and
+   * that those that fit in the buffer were written to it
+   */
+  private static void assertServiceDates(List<Date> expected, long[] buffer, int count) {
+    assertEquals(expected.size(), count);
+    for (int i = 0; i < Math.min(count, buffer.length); i++)
+      assertEquals(expected.get(i).getTime(), buffer[i]);
+  }
+
+  private static int hours(int hours) {
+    return hours * 3600;
+  }
 }
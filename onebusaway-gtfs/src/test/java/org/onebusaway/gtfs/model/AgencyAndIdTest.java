@@ -16,6 +16,9 @@
 package org.onebusaway.gtfs.model;
 
 import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertNotSame;
+import static  org.junit.jupiter.api.Assertions.assertSame;
+import static  org.junit.jupiter.api.Assertions.assertThrows;
 import static  org.junit.jupiter.api.Assertions.fail;
 
 import org.junit.jupiter.api.Test;
@@ -47,4 +50,59 @@ public class AgencyAndIdTest {
     AgencyAndId id = new AgencyAndId("a","b");
     assertEquals("a_b",AgencyAndId.convertToString(id));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testHashCodeAfterUpdate() {
+
+    AgencyAndId id = new AgencyAndId("a", "b");
+    int hash = id.hashCode();
+    id.setId("c");
+    assertEquals(new AgencyAndId("a", "c").hashCode(), id.hashCode());
+    id.setId("b");
+    assertEquals(hash, id.hashCode());
+  }
+
+  @Test
+  public void testPool() {
+
+    AgencyAndIdPool pool = new AgencyAndIdPool();
+    AgencyAndId id = pool.getId("a", "b");
+    assertSame(id, pool.getId("a", "b"));
+    assertSame(id, pool.canonicalize(new AgencyAndId("a", "b")));
+    assertNotSame(id, pool.getId("b", "a"));
+
+    AgencyAndId other = new AgencyAndId("a", "c");
+    AgencyAndId canonical = pool.canonicalize(other);
+    assertNotSame(other, canonical);
+    assertEquals(other, canonical);
+    assertSame(canonical, pool.getId("a", "c"));
+    assertEquals(3, pool.size());
+
+    AgencyAndId incomplete = pool.getId(null, "b");
+    assertNotSame(incomplete, pool.getId(null, "b"));
+    assertEquals(3, pool.size());
+  }
+
+  /**
+   * Canonical ids are shared by every entity that references them, so
+   * modifying one in place would change them all
+   */
+  @Test
+  public void testPooledIdsCannotBeModified() {
+
+    AgencyAndIdPool pool = new AgencyAndIdPool();
+    AgencyAndId id = pool.getId("a", "b");
+    assertThrows(UnsupportedOperationException.class, () -> id.setId("c"));
+    assertThrows(UnsupportedOperationException.class,
+        () -> id.setAgencyId("c"));
+    assertEquals(new AgencyAndId("a", "b"), id);
+
+    AgencyAndId other = new AgencyAndId("a", "c");
+    AgencyAndId canonical = pool.canonicalize(other);
+    assertThrows(UnsupportedOperationException.class,
+        () -> canonical.setId("d"));
+    other.setId("d");
+    assertEquals("c", canonical.getId());
+    assertEquals("c", pool.getId("a", "c").getId());
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.model.calendar;
+
+import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertFalse;
+import static  org.junit.jupiter.api.Assertions.assertNull;
+import static  org.junit.jupiter.api.Assertions.assertThrows;
+import static  org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+
+public class CalendarServiceDataTest {
+
+  private final TimeZone tz = TimeZone.getTimeZone("America/Los_Angeles");
+
+  /**
+   * Spring forward and fall back, where "midnight" is 23:00 or 01:00
+   */
+  private final ServiceDate dstStart = new ServiceDate(2010, 3, 14);
+
+  private final ServiceDate dstEnd = new ServiceDate(2010, 11, 7);
+
+  private final AgencyAndId sid1 = new AgencyAndId("A", "1");
+
+  private final AgencyAndId sid2 = new AgencyAndId("A", "2");
+
+  @Test
+  public void testServiceDates() {
+    CalendarServiceData data = new CalendarServiceData();
+    data.putServiceDatesForServiceId(sid1, Arrays.asList(dstEnd, dstStart,
+        dstStart.previous()));
+    data.putServiceDatesForServiceId(sid2, Arrays.asList(dstStart));
+    data.putServiceDatesForServiceId(new AgencyAndId("A", "empty"),
+        Collections.<ServiceDate> emptyList());
+
+    assertEquals(3, data.getServiceIds().size());
+    assertEquals(Arrays.asList(dstStart.previous(), dstStart, dstEnd),
+        data.getServiceDatesForServiceId(sid1));
+    assertNull(data.getServiceDatesForServiceId(new AgencyAndId("A", "dne")));
+    assertTrue(data.isServiceIdActiveOnDate(sid1, dstEnd));
+    assertFalse(data.isServiceIdActiveOnDate(sid1, dstEnd.next()));
+    assertFalse(data.isServiceIdActiveOnDate(sid1, new ServiceDate(1969, 1, 1)));
+
+    assertEquals(new HashSet<AgencyAndId>(Arrays.asList(sid1, sid2)),
+        data.getServiceIdsForDate(dstStart));
+    assertEquals(Collections.singleton(sid1), data.getServiceIdsForDate(dstEnd));
+    assertTrue(data.getServiceIdsForDate(new ServiceDate(2030, 1, 1)).isEmpty());
+
+    data.putServiceDatesForServiceId(sid1, Arrays.asList(dstEnd.next()));
+    assertEquals(Collections.singleton(sid2),
+        data.getServiceIdsForDate(dstStart));
+    assertTrue(data.getServiceIdsForDate(dstEnd).isEmpty());
+    assertEquals(Collections.singleton(sid1),
+        data.getServiceIdsForDate(dstEnd.next()));
+  }
+
+  @Test
+  public void testLocalizedDates() {
+    CalendarServiceData data = new CalendarServiceData();
+    List<ServiceDate> serviceDates = Arrays.asList(dstStart.previous(),
+        dstStart, dstEnd);
+    data.putServiceDatesForServiceId(sid1, serviceDates);
+    LocalizedServiceId lsid = new LocalizedServiceId(sid1, tz);
+    List<Date> dates = new ArrayList<Date>();
+    for (ServiceDate serviceDate : serviceDates)
+      dates.add(serviceDate.getAsDate(tz));
+    data.putDatesForLocalizedServiceId(lsid, dates);
+
+    assertEquals(dates, data.getDatesForLocalizedServiceId(lsid));
+    for (Date date : dates) {
+      assertTrue(data.isLocalizedServiceIdActiveOnDate(lsid, date));
+      assertFalse(data.isLocalizedServiceIdActiveOnDate(lsid, new Date(
+          date.getTime() + 60 * 60 * 1000)));
+      assertFalse(data.isLocalizedServiceIdActiveOnDate(lsid, new Date(
+          date.getTime() - 1)));
+    }
+    assertFalse(data.isLocalizedServiceIdActiveOnDate(lsid,
+        dstEnd.next().getAsDate(tz)));
+    assertFalse(data.isLocalizedServiceIdActiveOnDate(new LocalizedServiceId(
+        sid2, tz), dstEnd.getAsDate(tz)));
+    assertNull(data.getDatesForLocalizedServiceId(new LocalizedServiceId(sid2,
+        tz)));
+
+    Date notMidnight = new Date(dstEnd.getAsDate(tz).getTime() + 1000);
+    data.putDatesForLocalizedServiceId(lsid, Arrays.asList(notMidnight,
+        dates.get(0)));
+    assertTrue(data.isLocalizedServiceIdActiveOnDate(lsid, notMidnight));
+    assertTrue(data.isLocalizedServiceIdActiveOnDate(lsid, dates.get(0)));
+    assertFalse(data.isLocalizedServiceIdActiveOnDate(lsid, dates.get(2)));
+    assertEquals(Arrays.asList(dates.get(0), notMidnight),
+        data.getDatesForLocalizedServiceId(lsid));
+  }
+
+  @Test
+  public void testReadOnlyAndSerializable() throws Exception {
+    CalendarServiceData data = new CalendarServiceData();
+    data.putTimeZoneForAgencyId("A", tz);
+    data.putServiceDatesForServiceId(sid1, Arrays.asList(dstStart, dstEnd));
+    LocalizedServiceId lsid = new LocalizedServiceId(sid1, tz);
+    data.putDatesForLocalizedServiceId(lsid, Arrays.asList(
+        dstStart.getAsDate(tz), dstEnd.getAsDate(tz)));
+    data.makeReadOnly();
+
+    assertThrows(UnsupportedOperationException.class,
+        () -> data.putServiceDatesForServiceId(sid2, Arrays.asList(dstEnd)));
+    assertThrows(UnsupportedOperationException.class,
+        () -> data.putTimeZoneForAgencyId("B", tz));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(data);
+    }
+    CalendarServiceData copy;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+        bytes.toByteArray()))) {
+      copy = (CalendarServiceData) in.readObject();
+    }
+
+    assertEquals(tz, copy.getTimeZoneForAgencyId("A"));
+    assertEquals(Collections.singleton(sid1), copy.getServiceIdsForDate(dstEnd));
+    assertEquals(data.getServiceDatesForServiceId(sid1),
+        copy.getServiceDatesForServiceId(sid1));
+    assertTrue(copy.isLocalizedServiceIdActiveOnDate(lsid,
+        dstStart.getAsDate(tz)));
+    assertThrows(UnsupportedOperationException.class,
+        () -> copy.putServiceDatesForServiceId(sid2, Arrays.asList(dstEnd)));
+  }
+}
@@ -30,6 +30,16 @@ import org.junit.jupiter.api.Test;
 
 public class ServiceDateTest {
 
+  @Test
+  public void testEpochDay() {
+    assertEquals(0, new ServiceDate(1970, 1, 1).getAsEpochDay());
+    assertEquals(14652, new ServiceDate(2010, 2, 12).getAsEpochDay());
+    assertEquals(-1, new ServiceDate(1969, 12, 31).getAsEpochDay());
+    assertEquals(new ServiceDate(2010, 3, 2).getAsEpochDay(),
+        new ServiceDate(2010, 2, 30).getAsEpochDay());
+    assertEquals(new ServiceDate(2010, 2, 12), ServiceDate.ofEpochDay(14652));
+  }
+
   @Test
   public void testGetAsDateWithTimezoneA() {
     ServiceDate serviceDateA = new ServiceDate(2010, 2, 16);
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.Frequency;
+import org.onebusaway.gtfs.model.IdentityBean;
+import org.onebusaway.gtfs.model.Location;
+import org.onebusaway.gtfs.model.LocationGroup;
+import org.onebusaway.gtfs.model.LocationGroupElement;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopAreaElement;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+public class GtfsReaderParallelTest {
+
+  @Test
+  public void testLoadWaves() {
+    List<Class<?>> classes = new GtfsReader().getEntityClasses();
+    List<List<Integer>> waves = GtfsEntityDependencies.getLoadWaves(classes);
+
+    assertEquals(Arrays.asList(0), waves.get(0));
+    assertTrue(waveOf(waves, classes, Route.class) < waveOf(waves, classes,
+        Trip.class));
+    assertTrue(waveOf(waves, classes, Trip.class) < waveOf(waves, classes,
+        StopTime.class));
+    assertTrue(waveOf(waves, classes, Trip.class) < waveOf(waves, classes,
+        Frequency.class));
+    assertTrue(waveOf(waves, classes, StopAreaElement.class) < waveOf(waves,
+        classes, StopTime.class));
+    assertTrue(waveOf(waves, classes, LocationGroupElement.class) < waveOf(
+        waves, classes, StopTime.class));
+    assertTrue(waveOf(waves, classes, Location.class) <= waveOf(waves,
+        classes, LocationGroup.class));
+    assertTrue(waves.size() < classes.size());
+
+    assertTrue(GtfsEntityDependencies.dependsOn(StopTime.class, Stop.class));
+    assertTrue(GtfsEntityDependencies.dependsOn(Trip.class, Agency.class));
+    assertFalse(GtfsEntityDependencies.dependsOn(ShapePoint.class, Trip.class));
+  }
+
+  @Test
+  public void testBart() throws IOException {
+    assertSameAsSequential(GtfsTestData.getBartGtfs(), "BART");
+  }
+
+  @Test
+  public void testCaltrain() throws IOException {
+    assertSameAsSequential(GtfsTestData.getCaltrainGtfs(), "Caltrain");
+  }
+
+  @Test
+  public void testPierceTransitFlex() throws IOException {
+    assertSameAsSequential(GtfsTestData.getPierceTransitFlex(), "1");
+  }
+
+  @Test
+  public void testBrownCountyFlex() throws IOException {
+    assertSameAsSequential(GtfsTestData.getBrownCountyFlex(), "1");
+  }
+
+  @Test
+  public void testPierceTransitFlexChunked() throws IOException {
+    assertSameAsSequential(GtfsTestData.getPierceTransitFlex(), "1", 1, 4);
+  }
+
+  @Test
+  public void testBrownCountyFlexChunked() throws IOException {
+    assertSameAsSequential(GtfsTestData.getBrownCountyFlex(), "1", 4, 4);
+  }
+
+  private void assertSameAsSequential(File path, String agencyId)
+      throws IOException {
+    assertSameAsSequential(path, agencyId, 4, 1);
+  }
+
+  private void assertSameAsSequential(File path, String agencyId,
+      int parallelism, int chunkParallelism) throws IOException {
+    GtfsRelationalDaoImpl sequential = read(path, agencyId, 1, 1);
+    GtfsRelationalDaoImpl parallel = read(path, agencyId, parallelism,
+        chunkParallelism);
+
+    for (Class<?> entityClass : new GtfsReader().getEntityClasses()) {
+      Collection<?> expected = sequential.getAllEntitiesForType(entityClass);
+      Collection<?> actual = parallel.getAllEntitiesForType(entityClass);
+      assertEquals(toStrings(expected), toStrings(actual),
+          entityClass.getName());
+    }
+  }
+
+  private GtfsRelationalDaoImpl read(File path, String agencyId,
+      int parallelism, int chunkParallelism) throws IOException {
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId(agencyId);
+    reader.setParallelism(parallelism);
+    reader.setChunkParallelism(chunkParallelism);
+    reader.setChunkSize(1024);
+    reader.setInputLocation(path);
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setGenerateIds(true);
+    reader.setEntityStore(dao);
+    reader.run();
+    reader.close();
+    return dao;
+  }
+
+  private static List<String> toStrings(Collection<?> entities) {
+    List<String> values = new ArrayList<String>();
+    for (Object entity : entities) {
+      StringBuilder b = new StringBuilder();
+      if (entity instanceof IdentityBean<?>)
+        b.append(((IdentityBean<?>) entity).getId());
+      if (hasToString(entity))
+        b.append(' ').append(entity);
+      values.add(b.toString());
+    }
+    return values;
+  }
+
+  private static boolean hasToString(Object entity) {
+    try {
+      return entity.getClass().getMethod("toString").getDeclaringClass() != Object.class;
+    } catch (NoSuchMethodException ex) {
+      return false;
+    }
+  }
+
+  private static int waveOf(List<List<Integer>> waves, List<Class<?>> classes,
+      Class<?> entityClass) {
+    int index = classes.indexOf(entityClass);
+    for (int i = 0; i < waves.size(); i++) {
+      if (waves.get(i).contains(index))
+        return i;
+    }
+    throw new IllegalArgumentException(entityClass.getName());
+  }
+}
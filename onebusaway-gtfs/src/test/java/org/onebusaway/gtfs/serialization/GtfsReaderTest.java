@@ -39,6 +39,7 @@ import org.onebusaway.csv_entities.exceptions.CsvEntityIOException;
 import org.onebusaway.csv_entities.exceptions.InvalidValueEntityException;
 import org.onebusaway.csv_entities.exceptions.MissingRequiredFieldException;
 import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.impl.GtfsDaoImpl;
 import org.onebusaway.gtfs.model.*;
 import org.onebusaway.gtfs.model.calendar.ServiceDate;
 import org.onebusaway.gtfs.serialization.mappings.AgencyNotFoundForRouteException;
@@ -923,6 +924,30 @@ public class GtfsReaderTest extends BaseGtfsTest {
     assertEquals("Ten, Ten", route.getLongName());
   }
 
+  /**
+   * The default entity store shares the reader's pool of ids, like any
+   * {@link org.onebusaway.gtfs.impl.GtfsDaoImpl} passed to
+   * {@link GtfsReader#setEntityStore}
+   */
+  @Test
+  public void testDefaultEntityStoreSharesIds() throws IOException {
+    GtfsReader reader = newReader("1");
+
+    Agency agency = new Agency();
+    agency.setId("1");
+    reader.setAgencies(Arrays.asList(agency));
+
+    StringBuilder b = new StringBuilder();
+    b.append("agency_id,route_id,route_short_name,route_long_name,route_type\n");
+    b.append("1,R-10,10,Ten,3\n");
+    reader.readEntities(Route.class, new StringReader(b.toString()));
+
+    GtfsDaoImpl store = (GtfsDaoImpl) reader.getEntityStore();
+    assertSame(store.getAgencyAndIdPool(), reader.getAgencyAndIdPool());
+    Route route = store.getRouteForId(new AgencyAndId("1", "R-10"));
+    assertSame(route.getId(), store.getAgencyAndIdPool().getId("1", "R-10"));
+  }
+
   private ShapePoint getShapePoint(Iterable<ShapePoint> shapePoints,
       AgencyAndId shapeId, int sequence) {
     for (ShapePoint shapePoint : shapePoints) {
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2026 OneBusAway contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import static  org.junit.jupiter.api.Assertions.assertEquals;
+import static  org.junit.jupiter.api.Assertions.assertThrows;
+import static  org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.IdentityBean;
+import org.onebusaway.gtfs.model.Location;
+import org.onebusaway.gtfs.model.StopArea;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+public class GtfsSnapshotTest {
+
+  @Test
+  public void testBart() throws Exception {
+    assertRoundTrip(GtfsTestData.getBartGtfs(), "BART", false);
+  }
+
+  @Test
+  public void testBartPacked() throws Exception {
+    assertRoundTrip(GtfsTestData.getBartGtfs(), "BART", true);
+  }
+
+  @Test
+  public void testPierceTransitFlex() throws Exception {
+    GtfsRelationalDaoImpl dao = assertRoundTrip(
+        GtfsTestData.getPierceTransitFlex(), "1", true);
+    assertTrue(dao.getAllEntitiesForType(StopArea.class).size() > 0);
+  }
+
+  @Test
+  public void testBrownCountyFlex() throws Exception {
+    GtfsRelationalDaoImpl dao = assertRoundTrip(
+        GtfsTestData.getBrownCountyFlex(), "1", false);
+    assertTrue(dao.getAllEntitiesForType(Location.class).size() > 0);
+  }
+
+  @Test
+  public void testCorruptSnapshot() throws IOException {
+    GtfsRelationalDaoImpl dao = read(GtfsTestData.getBartGtfs(), "BART", true);
+    File path = write(dao);
+
+    try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+      file.seek(file.length() / 2);
+      int value = file.read();
+      file.seek(file.length() / 2);
+      file.write(value ^ 0x01);
+    }
+
+    GtfsSnapshotReader reader = new GtfsSnapshotReader();
+    reader.setInputLocation(path);
+    reader.setEntityStore(new GtfsRelationalDaoImpl());
+    IOException ex = assertThrows(IOException.class, () -> reader.run());
+    assertTrue(ex.getMessage().contains("checksum"), ex.getMessage());
+  }
+
+  @Test
+  public void testNotASnapshot() throws IOException {
+    GtfsSnapshotReader reader = new GtfsSnapshotReader();
+    reader.setInputLocation(GtfsTestData.getBartGtfs());
+    assertThrows(IOException.class, () -> reader.run());
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * The snapshot is written from a dao that packs its entities if packed is
+   * set, but is compared with a dao that does not, so that values lost by
+   * packed entities show
+   */
+  private GtfsRelationalDaoImpl assertRoundTrip(File gtfs, String agencyId,
+      boolean packed) throws Exception {
+
+    GtfsRelationalDaoImpl expected = read(gtfs, agencyId, false);
+    File path = write(read(gtfs, agencyId, packed));
+
+    GtfsRelationalDaoImpl actual = createDao(packed);
+    GtfsSnapshotReader reader = new GtfsSnapshotReader();
+    reader.setInputLocation(path);
+    reader.setEntityStore(actual);
+    reader.run();
+
+    for (Class<?> entityClass : new GtfsSnapshotWriter().getEntityClasses()) {
+      List<Object> expectedEntities = sorted(expected.getAllEntitiesForType(entityClass));
+      List<Object> actualEntities = sorted(actual.getAllEntitiesForType(entityClass));
+      assertEquals(expectedEntities.size(), actualEntities.size(),
+          entityClass.getName());
+      for (int i = 0; i < expectedEntities.size(); i++)
+        assertSameEntity(expectedEntities.get(i), actualEntities.get(i));
+    }
+
+    for (Trip trip : expected.getAllTrips()) {
+      List<StopTime> expectedStopTimes = expected.getStopTimesForTrip(trip);
+      List<StopTime> actualStopTimes = actual.getStopTimesForTrip(
+          actual.getTripForId(trip.getId()));
+      assertEquals(expectedStopTimes.size(), actualStopTimes.size());
+      for (int i = 0; i < expectedStopTimes.size(); i++)
+        assertSameEntity(expectedStopTimes.get(i), actualStopTimes.get(i));
+    }
+    assertEquals(expected.getAllServiceIds(), actual.getAllServiceIds());
+    for (String filename : expected.getOptionalMetadataFilenames())
+      assertEquals(expected.getMetadata(filename), actual.getMetadata(filename));
+
+    return actual;
+  }
+
+  private static GtfsRelationalDaoImpl createDao(boolean packed) {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(packed);
+    dao.setPackShapePoints(packed);
+    dao.setPackTrips(packed);
+    dao.setPackStops(packed);
+    dao.setPackFrequencies(packed);
+    return dao;
+  }
+
+  private static GtfsRelationalDaoImpl read(File gtfs, String agencyId,
+      boolean packed) throws IOException {
+    GtfsRelationalDaoImpl dao = createDao(packed);
+    GtfsTestData.readGtfs(dao, gtfs, agencyId);
+    return dao;
+  }
+
+  private static File write(GtfsRelationalDaoImpl dao) throws IOException {
+    File path = File.createTempFile("GtfsSnapshotTest-", ".snapshot");
+    path.deleteOnExit();
+    GtfsSnapshotWriter writer = new GtfsSnapshotWriter();
+    writer.setOutputLocation(path);
+    writer.run(dao);
+    return path;
+  }
+
+  /**
+   * Sorts entities by id, or by their values if their ids are generated by
+   * the dao, since packed and unpacked daos number them differently
+   */
+  private static List<Object> sorted(Collection<?> entities) throws Exception {
+    List<Object> values = new ArrayList<Object>(entities);
+    Map<Object, String> keys = new IdentityHashMap<Object, String>();
+    for (Object entity : values) {
+      Object id = ((IdentityBean<?>) entity).getId();
+      keys.put(entity, id instanceof Integer
+          ? getProperties(entity).values().toString() : String.valueOf(id));
+    }
+    values.sort(Comparator.comparing(keys::get));
+    return values;
+  }
+
+  /**
+   * Compares every bean property, so that the values of packed entities are
+   * read through their proxies, and compares referenced entities by id
+   */
+  private static void assertSameEntity(Object expected, Object actual)
+      throws Exception {
+    assertEquals(expected.getClass(), actual.getClass());
+    Map<String, Object> actualProperties = getProperties(actual);
+    for (Map.Entry<String, Object> property : getProperties(expected).entrySet()) {
+      assertEquals(property.getValue(),
+          actualProperties.get(property.getKey()), expected.getClass()
+              .getSimpleName() + "." + property.getKey());
+    }
+  }
+
+  /**
+   * @return the value of each bean property of the entity, except for ids
+   *         generated by the dao
+   */
+  private static Map<String, Object> getProperties(Object entity)
+      throws IntrospectionException, IllegalAccessException,
+      InvocationTargetException {
+    Map<String, Object> properties = new TreeMap<String, Object>();
+    for (PropertyDescriptor property : Introspector.getBeanInfo(
+        entity.getClass()).getPropertyDescriptors()) {
+      if (property.getReadMethod() == null
+          || property.getName().equals("class")
+          || property.getName().equals("proxy"))
+        continue;
+      Object value = property.getReadMethod().invoke(entity);
+      if (property.getName().equals("id") && value instanceof Integer)
+        continue;
+      properties.put(property.getName(), toValue(value));
+    }
+    return properties;
+  }
+
+  private static Object toValue(Object value) {
+    if (value instanceof IdentityBean<?>)
+      return value.getClass().getSimpleName() + ":"
+          + ((IdentityBean<?>) value).getId();
+    if (value instanceof Collection<?>)
+      return toValues((Collection<?>) value);
+    return value;
+  }
+
+  private static List<Object> toValues(Collection<?> values) {
+    List<Object> result = new ArrayList<Object>();
+    for (Object value : values)
+      result.add(toValue(value));
+    return result;
+  }
+}